@@ -2,37 +2,102 @@ package com.example.securenotesapp;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.securenotesapp.adapter.TextSegmentAdapter;
+import com.example.securenotesapp.database.DataMigrationRunner;
+import com.example.securenotesapp.fragments.NotebookPicker;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteRevision;
+import com.example.securenotesapp.model.Notebook;
 import com.example.securenotesapp.viewmodel.NoteViewModel;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 /**
  * Activity responsabile per l'aggiunta di nuove note o la modifica di note esistenti.
  * Questa Activity consente all'utente di inserire un titolo e un contenuto per una nota.
  * Utilizza un {@link NoteViewModel} per interagire con il database in modo asincrono.
+ *
+ * Per modificare una nota esistente l'Intent contiene solo il suo ID: titolo e contenuto vengono caricati
+ * in background, mostrando un segnaposto, così nessuna nota passa per il limite delle transazioni Binder.
+ * Le note oltre {@link TextSegmentAdapter#SEGMENTED_THRESHOLD} caratteri vengono modificate con l'editor a segmenti.
+ *
+ * Le modifiche vengono salvate automaticamente in una bozza cifrata nel database, {@link #AUTOSAVE_DELAY_MS} dopo
+ * l'ultima modifica e comunque entro {@link #AUTOSAVE_MAX_DELAY_MS} dalla prima, e quando l'Activity va in pausa.
+ * Uscendo dall'editor la bozza confluisce nella nota; se l'app viene chiusa prima, la bozza viene proposta
+ * alla riapertura della nota o al successivo avvio (vedi {@link #EXTRA_DRAFT_ID}).
  */
 
 public class AddEditNoteActivity extends AppCompatActivity {
+    private static final String TAG = "AddEditNoteActivity";
     // Costanti per le chiavi degli extra Intent, usate per passare dati tra Activity.
     public static final String EXTRA_NOTE_ID = "com.example.securenotesapp.EXTRA_NOTE_ID";
-    public static final String EXTRA_NOTE_TITLE = "com.example.securenotesapp.EXTRA_NOTE_TITLE";
-    public static final String EXTRA_NOTE_CONTENT = "com.example.securenotesapp.EXTRA_NOTE_CONTENT";
+    // Quaderno proposto per una nuova nota.
+    public static final String EXTRA_NOTEBOOK_ID = "com.example.securenotesapp.EXTRA_NOTEBOOK_ID";
+    // Bozza non salvata da riaprire, es. dopo che l'app è stata chiusa durante la modifica.
+    public static final String EXTRA_DRAFT_ID = "com.example.securenotesapp.EXTRA_DRAFT_ID";
+    // Stato salvato: se true gli EditText ripristinano da soli il testo e la nota non va ricaricata.
+    private static final String STATE_RESTORABLE = "restorable";
+    private static final String STATE_NOTEBOOK_ID = "notebook_id";
+    private static final String STATE_NOTE_ID = "note_id";
+    private static final String STATE_DRAFT_ID = "draft_id";
+    private static final String STATE_DIRTY = "dirty";
+    // Attesa dopo l'ultima modifica prima del salvataggio automatico.
+    private static final long AUTOSAVE_DELAY_MS = 2000;
+    // Attesa massima dalla prima modifica non salvata, anche se l'utente continua a scrivere.
+    private static final long AUTOSAVE_MAX_DELAY_MS = 10_000;
 
     private EditText editTextTitle;// Campo di testo per il titolo della nota.
     private EditText editTextContent;// Campo di testo per il contenuto della nota.
+    private RecyclerView recyclerViewSegments;// Editor a segmenti, usato al posto di editTextContent per le note grandi.
+    private ProgressBar progressBarLoading;// Segnaposto durante il caricamento della nota.
+    private TextSegmentAdapter segmentAdapter;// Non null quando è attivo l'editor a segmenti.
+    private boolean loading;// True finché la nota da modificare non è stata caricata.
 
     private NoteViewModel noteViewModel;// ViewModel per gestire i dati relativi alle note.
     // Variabile per memorizzare l'ID della nota. -1 indica una nuova nota, altrimenti è l'ID di una nota esistente.
     private int noteId = -1;
+    private Integer notebookId;// Quaderno della nota, null se la nota non appartiene a nessun quaderno.
+    private List<Notebook> notebooks = new ArrayList<>();// Tutti i quaderni, per il dialog di scelta.
+    private boolean saving;// True mentre una scrittura è in corso, per non salvare due volte la stessa nota.
+
+    private final Handler autosaveHandler = new Handler(Looper.getMainLooper());
+    private final Runnable autosaveRunnable = this::autosave;
+    private long firstPendingEditAt;// Istante (uptime) della prima modifica non ancora nella bozza, 0 se nessuna.
+    private boolean dirty;// True se l'editor contiene modifiche non salvate nella nota.
+    private boolean settingText;// True mentre l'editor viene popolato dal codice: non è una modifica.
+    private long draftId;// ID della bozza dell'editor, 0 se non ancora creata.
+    // Ultima scrittura della bozza: le scritture successive partono al suo completamento, in ordine.
+    private CompletableFuture<Long> draftWrite = CompletableFuture.completedFuture(0L);
     /**
      * Chiamato quando l'Activity viene creata per la prima volta.
      * Qui vengono inizializzati gli elementi dell'interfaccia utente e vengono gestiti
@@ -58,6 +123,9 @@ public class AddEditNoteActivity extends AppCompatActivity {
         // Inizializza i riferimenti agli EditText dal layout.
         editTextTitle = findViewById(R.id.edit_text_note_title);
         editTextContent = findViewById(R.id.edit_text_note_content);
+        recyclerViewSegments = findViewById(R.id.recycler_view_note_segments);
+        recyclerViewSegments.setLayoutManager(new LinearLayoutManager(this));
+        progressBarLoading = findViewById(R.id.progress_bar_note_loading);
 
         // Inizializza il NoteViewModel utilizzando ViewModelProvider.
         // ViewModelProvider gestisce il ciclo di vita del ViewModel.
@@ -65,23 +133,355 @@ public class AddEditNoteActivity extends AppCompatActivity {
 
         // Recupera l'Intent che ha avviato questa Activity.
         Intent intent = getIntent();
-        // Controlla se l'Intent contiene l'extra EXTRA_NOTE_ID, indicando che si tratta di una modifica.
-        if (intent.hasExtra(EXTRA_NOTE_ID)) {
-            // Modifica nota esistente
-            noteId = intent.getIntExtra(EXTRA_NOTE_ID, -1);// Recupera l'ID della nota.
-            editTextTitle.setText(intent.getStringExtra(EXTRA_NOTE_TITLE));// Popola il campo titolo.
-            editTextContent.setText(intent.getStringExtra(EXTRA_NOTE_CONTENT));// Popola il campo contenuto.
-            // Imposta il titolo della Toolbar per riflettere l'operazione di modifica.
-            if (getSupportActionBar() != null) {
-                getSupportActionBar().setTitle("Modifica Nota");
+        boolean restorable = false;
+        if (savedInstanceState != null) {
+            restorable = savedInstanceState.getBoolean(STATE_RESTORABLE);
+            noteId = savedInstanceState.getInt(STATE_NOTE_ID, -1);
+            draftId = savedInstanceState.getLong(STATE_DRAFT_ID);
+            dirty = savedInstanceState.getBoolean(STATE_DIRTY);
+            // La scrittura della bozza avviata prima della ricreazione può essere ancora in corso.
+            CompletableFuture<Long> pendingWrite = noteViewModel.getEditorDraftWrite();
+            draftWrite = pendingWrite != null ? pendingWrite : CompletableFuture.completedFuture(draftId);
+        } else {
+            noteId = intent.getIntExtra(EXTRA_NOTE_ID, -1);
+            draftId = intent.getLongExtra(EXTRA_DRAFT_ID, 0);
+        }
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_NOTEBOOK_ID)) {
+            int savedNotebookId = savedInstanceState.getInt(STATE_NOTEBOOK_ID);
+            notebookId = savedNotebookId != -1 ? savedNotebookId : null;
+        } else if (intent.hasExtra(EXTRA_NOTEBOOK_ID)) {
+            notebookId = intent.getIntExtra(EXTRA_NOTEBOOK_ID, -1);
+        }
+        noteViewModel.getNotebooks().observe(this, list -> notebooks = list);
+        if (!restorable) {
+            // Una bozza ha la precedenza sulla nota: contiene le modifiche più recenti.
+            if (draftId != 0) {
+                loadDraft();
+            } else if (dirty) {
+                loadPendingDraft();
+            } else if (noteId != -1) {
+                loadNote();
+            }
+        }
+        updateTitle();
+    }
+
+    /**
+     * Imposta il titolo della Toolbar in base all'operazione: modifica di una nota esistente o aggiunta.
+     */
+    private void updateTitle() {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(noteId != -1 ? "Modifica Nota" : "Aggiungi Nota");
+        }
+    }
+
+    /**
+     * Registra i listener delle modifiche dopo il ripristino dello stato: il testo ripristinato dagli EditText
+     * non è una modifica dell'utente.
+     */
+    @Override
+    protected void onPostCreate(Bundle savedInstanceState) {
+        super.onPostCreate(savedInstanceState);
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onEdit();
+            }
+        };
+        editTextTitle.addTextChangedListener(watcher);
+        editTextContent.addTextChangedListener(watcher);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        autosave(); // L'Activity potrebbe non tornare in primo piano: le modifiche in attesa vanno scritte ora.
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // L'editor a segmenti non salva il proprio testo: in quel caso la nota viene ricaricata.
+        outState.putBoolean(STATE_RESTORABLE, !loading && segmentAdapter == null);
+        outState.putInt(STATE_NOTEBOOK_ID, notebookId != null ? notebookId : -1);
+        outState.putInt(STATE_NOTE_ID, noteId);
+        outState.putLong(STATE_DRAFT_ID, draftId);
+        outState.putBoolean(STATE_DIRTY, dirty);
+    }
+
+    /**
+     * Chiamato a ogni modifica dell'utente: pianifica il salvataggio automatico dopo {@link #AUTOSAVE_DELAY_MS}
+     * senza altre modifiche, ma non oltre {@link #AUTOSAVE_MAX_DELAY_MS} dalla prima modifica in attesa.
+     */
+    private void onEdit() {
+        if (settingText || loading) {
+            return;
+        }
+        dirty = true;
+        long now = SystemClock.uptimeMillis();
+        if (firstPendingEditAt == 0) {
+            firstPendingEditAt = now;
+        }
+        autosaveHandler.removeCallbacks(autosaveRunnable);
+        autosaveHandler.postAtTime(autosaveRunnable,
+                Math.min(now + AUTOSAVE_DELAY_MS, firstPendingEditAt + AUTOSAVE_MAX_DELAY_MS));
+    }
+
+    /**
+     * Scrive nella bozza le modifiche in attesa, se presenti. La scrittura parte al termine della precedente,
+     * così la bozza riceve le differenze in ordine e la prima scrittura ne fornisce l'ID alle successive.
+     */
+    private void autosave() {
+        autosaveHandler.removeCallbacks(autosaveRunnable);
+        if (firstPendingEditAt == 0) {
+            return;
+        }
+        firstPendingEditAt = 0;
+        String title = editTextTitle.getText().toString();
+        String content = getContent();
+        Integer draftNoteId = noteId != -1 ? noteId : null;
+        Integer draftNotebookId = notebookId;
+        long knownDraftId = draftId;
+        CompletableFuture<Long> write = draftWrite
+                .exceptionally(error -> knownDraftId) // Una scrittura fallita non blocca le successive.
+                .thenCompose(id -> noteViewModel.saveDraft(id, draftNoteId, title, draftNotebookId, content));
+        setDraftWrite(write);
+        write.whenCompleteAsync((id, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Errore durante il salvataggio della bozza", error);
+            } else if (draftWrite == write) { // Non dopo discardDraft() o una scrittura più recente.
+                draftId = id;
             }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    /**
+     * Imposta l'ultima scrittura della bozza, conservandola anche nel ViewModel per l'Activity ricreata.
+     */
+    private void setDraftWrite(CompletableFuture<Long> write) {
+        draftWrite = write;
+        noteViewModel.setEditorDraftWrite(write);
+    }
+
+    /**
+     * Annulla il salvataggio automatico in attesa ed elimina la bozza dopo l'ultima scrittura,
+     * es. perché il suo contenuto è confluito nella nota.
+     */
+    private void discardDraft() {
+        autosaveHandler.removeCallbacks(autosaveRunnable);
+        firstPendingEditAt = 0;
+        dirty = false;
+        long knownDraftId = draftId;
+        draftWrite.handle((id, error) -> id != null ? id : knownDraftId)
+                .thenAccept(id -> {
+                    if (id != 0) {
+                        noteViewModel.deleteDraft(id);
+                    }
+                });
+        draftId = 0;
+        setDraftWrite(CompletableFuture.completedFuture(0L));
+    }
+
+    /**
+     * La nota modificata non esiste più (es. archiviata o eliminata mentre l'editor era aperto): il testo resta
+     * nell'editor, che passa alla creazione di una nuova nota, e viene scritto subito nella bozza di una nota nuova,
+     * proposta al prossimo avvio se l'utente esce senza salvare.
+     */
+    private void keepAsNewNoteDraft() {
+        noteId = -1;
+        draftId = 0; // La bozza della nota, se c'era, è stata eliminata con la nota.
+        dirty = true;
+        firstPendingEditAt = SystemClock.uptimeMillis();
+        autosave();
+        updateTitle();
+        Toast.makeText(this, "La nota non esiste più: le modifiche sono state salvate come bozza di una nuova nota",
+                Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Uscendo dall'editor le modifiche confluiscono nella nota. Se la nota non può ancora essere salvata
+     * (titolo o contenuto vuoti, migrazione in corso) resta la bozza, proposta al prossimo avvio;
+     * se l'editor è vuoto la bozza viene eliminata.
+     */
+    @Override
+    public void onBackPressed() {
+        if (!dirty || loading) {
+            super.onBackPressed();
+            return;
+        }
+        String title = editTextTitle.getText().toString().trim();
+        String content = getContent().trim();
+        if (title.isEmpty() && content.isEmpty()) {
+            discardDraft();
+            super.onBackPressed();
+        } else if (title.isEmpty() || content.isEmpty() || DataMigrationRunner.isReadOnly()) {
+            autosave();
+            Toast.makeText(this, "Modifiche salvate come bozza", Toast.LENGTH_SHORT).show();
+            super.onBackPressed();
         } else {
-            // Nuova nota
-            // Imposta il titolo della Toolbar per riflettere l'operazione di aggiunta.
-            if (getSupportActionBar() != null) {
-                getSupportActionBar().setTitle("Aggiungi Nota");
+            saveNote();
+        }
+    }
+
+    /**
+     * Carica in background la bozza da riaprire, mostrando il segnaposto fino al termine.
+     * Se la bozza non esiste più l'Activity viene chiusa.
+     */
+    private void loadDraft() {
+        setLoading(true);
+        noteViewModel.loadDraft(draftId).observe(this, draft -> {
+            setLoading(false);
+            if (draft == null) {
+                Toast.makeText(this, "Bozza non più disponibile", Toast.LENGTH_LONG).show();
+                finish();
+                return;
+            }
+            noteId = draft.getNoteId() != null ? draft.getNoteId() : -1;
+            updateTitle();
+            invalidateOptionsMenu(); // La cronologia dipende da noteId.
+            applyDraft(draft);
+        });
+    }
+
+    /**
+     * Ricreazione con modifiche non salvate, senza testo ripristinabile (editor a segmenti) e prima che la bozza
+     * avesse un ID: la prima scrittura della bozza può essere ancora in corso. Viene attesa e poi caricata;
+     * se il processo è stato ricreato la bozza viene cercata per nota. Solo senza bozza si ricarica la nota.
+     */
+    private void loadPendingDraft() {
+        setLoading(true);
+        draftWrite.handle((id, error) -> id != null ? id : 0L).thenAcceptAsync(id -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (id != 0) {
+                draftId = id;
+                loadDraft();
+            } else if (noteId != -1) {
+                noteViewModel.loadDraftForNote(noteId).observe(this, draft -> {
+                    if (draft == null) {
+                        loadNote();
+                        return;
+                    }
+                    setLoading(false);
+                    applyDraft(draft);
+                });
+            } else {
+                setLoading(false);
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    /**
+     * Carica nell'editor il contenuto di una bozza; le modifiche risultano non salvate nella nota.
+     *
+     * @param draft La bozza con il contenuto.
+     */
+    private void applyDraft(NoteDraft draft) {
+        settingText = true;
+        editTextTitle.setText(draft.getTitle());
+        settingText = false;
+        notebookId = draft.getNotebookId();
+        setContent(draft.getContent());
+        draftId = draft.getId();
+        setDraftWrite(CompletableFuture.completedFuture(draftId));
+        dirty = true;
+    }
+
+    /**
+     * Dopo il caricamento di una nota, propone di ripristinare la bozza lasciata da una sessione precedente.
+     */
+    private void checkDraftForNote() {
+        noteViewModel.loadDraftForNote(noteId).observe(this, draft -> {
+            if (draft == null) {
+                return;
             }
+            new AlertDialog.Builder(this)
+                    .setTitle("Bozza non salvata")
+                    .setMessage("Questa nota ha modifiche non salvate del "
+                            + DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
+                                    .format(new Date(draft.getUpdatedAt())) + ". Ripristinarle?")
+                    .setCancelable(false)
+                    .setPositiveButton("Ripristina", (dialog, which) -> applyDraft(draft))
+                    .setNegativeButton("Scarta", (dialog, which) -> noteViewModel.deleteDraft(draft.getId()))
+                    .show();
+        });
+    }
+
+    /**
+     * Carica in background la nota da modificare, mostrando il segnaposto fino al termine.
+     * Se la nota non esiste più l'Activity viene chiusa.
+     */
+    private void loadNote() {
+        setLoading(true);
+        noteViewModel.loadNote(noteId).observe(this, note -> {
+            setLoading(false);
+            if (note == null) {
+                Toast.makeText(this, "Impossibile aprire la nota", Toast.LENGTH_LONG).show();
+                finish();
+                return;
+            }
+            settingText = true;
+            editTextTitle.setText(note.getTitle());// Popola il campo titolo.
+            settingText = false;
+            notebookId = note.getNotebookId();
+            setContent(note.getContent());// Popola il campo contenuto.
+            checkDraftForNote();
+        });
+    }
+
+    /**
+     * Mostra o nasconde il segnaposto di caricamento; durante il caricamento i campi non sono modificabili.
+     *
+     * @param loading true durante il caricamento.
+     */
+    private void setLoading(boolean loading) {
+        this.loading = loading;
+        progressBarLoading.setVisibility(loading ? View.VISIBLE : View.GONE);
+        editTextTitle.setEnabled(!loading);
+        editTextContent.setVisibility(loading ? View.INVISIBLE : View.VISIBLE);
+    }
+
+    /**
+     * Imposta il contenuto dell'editor, scegliendo l'editor a segmenti se il testo supera la soglia.
+     *
+     * @param content Il contenuto completo.
+     */
+    private void setContent(String content) {
+        if (content == null) {
+            content = "";
+        }
+        settingText = true;
+        if (content.length() > TextSegmentAdapter.SEGMENTED_THRESHOLD) {
+            segmentAdapter = new TextSegmentAdapter(content);
+            segmentAdapter.setOnTextChangedListener(this::onEdit);
+            recyclerViewSegments.setAdapter(segmentAdapter);
+            recyclerViewSegments.setVisibility(View.VISIBLE);
+            editTextContent.setText(null);
+            editTextContent.setVisibility(View.GONE);
+        } else {
+            segmentAdapter = null;
+            recyclerViewSegments.setAdapter(null);
+            recyclerViewSegments.setVisibility(View.GONE);
+            editTextContent.setVisibility(View.VISIBLE);
+            editTextContent.setText(content);
         }
+        settingText = false;
+    }
+
+    /**
+     * @return Il testo dell'editor attivo.
+     */
+    private String getContent() {
+        return segmentAdapter != null ? segmentAdapter.getText() : editTextContent.getText().toString();
     }
 
     /**
@@ -95,6 +495,8 @@ public class AddEditNoteActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater menuInflater = getMenuInflater();// Ottiene un MenuInflater per convertire il XML del menu in oggetti Menu.
         menuInflater.inflate(R.menu.menu_add_edit_note, menu); // Inserisce il layout del menu (menu_add_edit_note.xml) nel Menu.
+        // La cronologia esiste solo per le note già salvate.
+        menu.findItem(R.id.note_history).setVisible(noteId != -1);
         return true;// Indica che il menu è stato creato e deve essere visualizzato.
     }
 
@@ -110,6 +512,17 @@ public class AddEditNoteActivity extends AppCompatActivity {
         if (id == R.id.save_note) { // Se l'ID corrisponde all'icona di salvataggio definita in menu_add_edit_note.xml.
             saveNote();// Chiama il metodo per salvare la nota.
             return true;// L'evento è stato gestito.
+        } else if (id == R.id.note_notebook) {
+            NotebookPicker.show(this, "Quaderno", notebooks, "Nessun quaderno", null, notebook -> {
+                notebookId = notebook != null ? notebook.getId() : null;
+                onEdit();
+                Toast.makeText(this, notebook != null ? "Quaderno: " + notebook.getName() : "Nessun quaderno",
+                        Toast.LENGTH_SHORT).show();
+            });
+            return true;
+        } else if (id == R.id.note_history) {
+            showHistoryDialog();
+            return true;
         } else if (id == android.R.id.home) { // Se l'ID corrisponde al pulsante "Indietro"  della Toolbar.
             onBackPressed(); // Simula la pressione del tasto Indietro del sistema, tornando all'Activity precedente.
             return true;
@@ -118,6 +531,60 @@ public class AddEditNoteActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Mostra la cronologia delle revisioni della nota. Selezionando una revisione ne viene ricostruito
+     * il contenuto in background e, dopo conferma, viene caricato nell'editor: la revisione diventa
+     * quella attuale solo quando l'utente salva.
+     */
+    private void showHistoryDialog() {
+        LiveData<List<NoteRevision.Header>> revisions = noteViewModel.getRevisions(noteId);
+        revisions.observe(this, new Observer<List<NoteRevision.Header>>() {
+            @Override
+            public void onChanged(List<NoteRevision.Header> headers) {
+                revisions.removeObserver(this); // Serve solo il primo valore.
+                if (headers == null || headers.isEmpty()) {
+                    Toast.makeText(AddEditNoteActivity.this, "Nessuna revisione disponibile", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+                String[] labels = new String[headers.size()];
+                for (int i = 0; i < headers.size(); i++) {
+                    NoteRevision.Header header = headers.get(i);
+                    labels[i] = "Revisione " + header.revision + " - " + format.format(new Date(header.timestamp));
+                }
+                new AlertDialog.Builder(AddEditNoteActivity.this)
+                        .setTitle("Cronologia")
+                        .setItems(labels, (dialog, which) -> previewRevision(headers.get(which).revision))
+                        .setNegativeButton("Chiudi", null)
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Ricostruisce una revisione e ne mostra un'anteprima, chiedendo conferma prima di ripristinarla nell'editor.
+     *
+     * @param revision Il numero della revisione da ripristinare.
+     */
+    private void previewRevision(int revision) {
+        noteViewModel.loadRevisionContent(noteId, revision).observe(this, content -> {
+            if (content == null) {
+                Toast.makeText(this, "Revisione non più disponibile", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle("Ripristinare la revisione " + revision + "?")
+                    .setMessage(content.length() > 500 ? content.substring(0, 500) + "…" : content)
+                    .setPositiveButton("Ripristina", (dialog, which) -> {
+                        setContent(content);
+                        onEdit();
+                        Toast.makeText(this, "Revisione caricata: salva per confermare", Toast.LENGTH_SHORT).show();
+                    })
+                    .setNegativeButton("Annulla", null)
+                    .show();
+        });
+    }
+
     /**
      * Salva una nuova nota o aggiorna una nota esistente nel database.
      * Questo metodo recupera il titolo e il contenuto dagli EditText,
@@ -125,10 +592,17 @@ public class AddEditNoteActivity extends AppCompatActivity {
      * per eseguire l'operazione di inserimento o aggiornamento nel database.
      */
     private void saveNote() {
+        if (loading) {
+            return; // La nota non è ancora stata caricata: non c'è nulla da salvare.
+        }
+        // Durante una migrazione dei dati l'editor resta aperto, così il testo inserito non va perso.
+        if (!DataMigrationRunner.checkWritable(this)) {
+            return;
+        }
         // Recupera il testo dal campo titolo e lo ripulisce da spazi iniziali/finali.
         String title = editTextTitle.getText().toString().trim();
         // Recupera il testo dal campo contenuto e lo ripulisce da spazi iniziali/finali.
-        String content = editTextContent.getText().toString().trim();
+        String content = getContent().trim();
 
         // Verifica se il titolo o il contenuto sono vuoti.
         if (TextUtils.isEmpty(title) || TextUtils.isEmpty(content)) {
@@ -137,22 +611,47 @@ public class AddEditNoteActivity extends AppCompatActivity {
             return;
         }
 
+        if (saving) {
+            return; // Il salvataggio precedente non è ancora terminato.
+        }
         long timestamp = System.currentTimeMillis(); // Ottiene il timestamp corrente per la nota.
 
         // Controlla se si sta creando una nuova nota (noteId è -1) o modificandone una esistente.
+        CompletableFuture<Integer> result;
+        String message;
         if (noteId == -1) {
             // Nuova nota// Nuova nota: crea un nuovo oggetto Note.
             Note newNote = new Note(title, content, timestamp);
-            noteViewModel.insert(newNote);// Inserisce la nuova nota nel database tramite ViewModel.
-            Toast.makeText(this, "Nota salvata!", Toast.LENGTH_SHORT).show();
+            newNote.setNotebookId(notebookId);
+            result = noteViewModel.insert(newNote);// Inserisce la nuova nota nel database tramite ViewModel.
+            message = "Nota salvata!";
         } else {
             // Aggiorna nota esistente: crea un oggetto Note con i nuovi dati.
             Note existingNote = new Note(title, content, timestamp);
             // È fondamentale impostare l'ID della nota esistente per l'operazione di aggiornamento.
             existingNote.setId(noteId);
-            noteViewModel.update(existingNote);// Aggiorna la nota esistente nel database tramite ViewModel.
-            Toast.makeText(this, "Nota aggiornata!", Toast.LENGTH_SHORT).show();
+            existingNote.setNotebookId(notebookId);
+            result = noteViewModel.update(existingNote);// Aggiorna la nota esistente nel database tramite ViewModel.
+            message = "Nota aggiornata!";
         }
-        finish();// Chiudi l'Activity dopo che l'operazione di salvataggio/aggiornamento è completata.
+        saving = true;
+        // L'Activity si chiude solo a scrittura completata: in caso di errore il testo resta nell'editor.
+        result.whenCompleteAsync((value, error) -> {
+            saving = false;
+            if (isDestroyed()) {
+                return;
+            }
+            if (error != null) {
+                Toast.makeText(this, "Errore durante il salvataggio della nota", Toast.LENGTH_LONG).show();
+                return;
+            }
+            if (noteId != -1 && value == 0) {
+                keepAsNewNoteDraft();
+                return;
+            }
+            discardDraft(); // Il contenuto è ora nella nota.
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            finish();// Chiudi l'Activity dopo che l'operazione di salvataggio/aggiornamento è completata.
+        }, ContextCompat.getMainExecutor(this));
     }
 }
\ No newline at end of file
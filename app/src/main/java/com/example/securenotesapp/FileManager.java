@@ -7,9 +7,12 @@ import android.util.Log;
 import android.webkit.MimeTypeMap;
 
 import androidx.core.content.FileProvider;
+import androidx.documentfile.provider.DocumentFile;
 import androidx.security.crypto.EncryptedFile;
 import androidx.security.crypto.MasterKeys;
 
+import com.example.securenotesapp.model.FileItem;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -17,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.GeneralSecurityException;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,6 +33,7 @@ import java.util.concurrent.Executors;
 public class FileManager {
     private static final String TAG = "FileManager";
     // Nome della directory dove verranno salvati i file criptati nell'archiviazione interna dell'app.
+    // È la directory della cassaforte predefinita: le altre ne hanno una propria (vedi VaultManager).
     public static final String ENCRYPTED_FILES_DIR = "encrypted_files";
     // Directory per i file temporanei decifrati che vengono aperti dall'utente.
     private static final String TEMP_FILES_DIR = "temp"; // Directory per i file temporanei decifrati
@@ -59,7 +64,7 @@ public class FileManager {
     }
 
     /**
-     * Cripta un flusso di input e lo salva come file criptato nella directory interna dell'app.
+     * Cripta un flusso di input e lo salva come file criptato nella directory della cassaforte attiva.
      * Viene generato un nome di file univoco.
      *
      * @param inputStream Il flusso di input da cui leggere i dati da criptare.
@@ -68,11 +73,10 @@ public class FileManager {
      * @throws GeneralSecurityException Se si verifica un errore durante la crittografia.
      */
     public String encryptAndSaveFile(InputStream inputStream) throws IOException, GeneralSecurityException {
-        // Crea la directory per i file criptati se non esiste
-        File encryptedFilesDir = new File(context.getFilesDir(), ENCRYPTED_FILES_DIR);
-        if (!encryptedFilesDir.exists()) {
-            encryptedFilesDir.mkdirs();// Crea tutte le directory necessarie.
-        }
+        // Crea la directory per i file criptati della cassaforte attiva se non esiste
+        String vaultId = new VaultManager(context).getActiveVaultId();
+        String encryptedFilesPath = VaultManager.getEncryptedFilesPath(vaultId);
+        File encryptedFilesDir = getEncryptedFilesDir(context, vaultId);
 
         // Genera un nome di file univoco per il file criptato per evitare collisioni.
         String encryptedFileName = UUID.randomUUID().toString() + ".encrypted";
@@ -97,14 +101,14 @@ public class FileManager {
         }
         Log.d(TAG, "File criptato salvato in: " + encryptedFile.getAbsolutePath());
         // Restituisce il percorso relativo per un salvataggio più flessibile (es. nel database).
-        return ENCRYPTED_FILES_DIR + File.separator + encryptedFileName;
+        return encryptedFilesPath + File.separator + encryptedFileName;
     }
 
     /**
      * Decifra un file criptato, lo salva temporaneamente in un percorso leggibile e
      * restituisce l'URI per permetterne l'apertura con un'applicazione esterna.
      *
-     * @param encryptedFilePath Il percorso relativo del file criptato.
+     * @param encryptedFilePath Il percorso del file criptato, assoluto o relativo (vedi {@link #resolveEncryptedFile}).
      * @param originalFileName Il nome originale del file, usato per il file temporaneo.
      * @return L'URI del file decifrato temporaneo, utilizzabile da FileProvider.
      * @throws IOException Se il file criptato non viene trovato o si verifica un errore di I/O.
@@ -112,7 +116,7 @@ public class FileManager {
      */
     public Uri decryptAndOpenFile(String encryptedFilePath, String originalFileName) throws IOException, GeneralSecurityException {
         // Costruisce il percorso completo del file criptato
-        File encryptedFile = new File(context.getFilesDir(), encryptedFilePath);
+        File encryptedFile = resolveEncryptedFile(context, encryptedFilePath);
 
         if (!encryptedFile.exists()) {
             throw new IOException("File criptato non trovato: " + encryptedFilePath);
@@ -159,14 +163,100 @@ public class FileManager {
         return FileProvider.getUriForFile(context, context.getApplicationContext().getPackageName() + ".fileprovider", tempDecryptedFile);
     }
 
+    /**
+     * Decifra un file criptato scrivendone il contenuto in uno stream, che non viene chiuso.
+     *
+     * @param encryptedFilePath Il percorso del file criptato, assoluto o relativo (vedi {@link #resolveEncryptedFile}).
+     * @param outputStream Lo stream di destinazione.
+     * @throws IOException Se il file criptato non viene trovato o si verifica un errore di I/O.
+     * @throws GeneralSecurityException Se si verifica un errore durante la decrittografia.
+     */
+    public void decryptTo(String encryptedFilePath, OutputStream outputStream) throws IOException, GeneralSecurityException {
+        File encryptedFile = resolveEncryptedFile(context, encryptedFilePath);
+        if (!encryptedFile.exists()) {
+            throw new IOException("File criptato non trovato: " + encryptedFilePath);
+        }
+        EncryptedFile encryptedFileReader = new EncryptedFile.Builder(
+                encryptedFile,
+                context,
+                masterKeyAlias,
+                EncryptedFile.FileEncryptionScheme.AES256_GCM_HKDF_4KB
+        ).build();
+        try (FileInputStream encryptedInputStream = encryptedFileReader.openFileInput()) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = encryptedInputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * Esporta in chiaro una selezione di file in una directory scelta dall'utente, con i nomi originali.
+     * Da chiamare da un thread in background, es. con un unico task su {@link #fileIOExecutor}.
+     *
+     * @param fileItems I file da esportare.
+     * @param treeUri L'URI della directory di destinazione (da {@code ACTION_OPEN_DOCUMENT_TREE}).
+     * @return Il numero di file esportati; quelli che non possono essere decifrati o scritti vengono saltati.
+     */
+    public int exportDecrypted(List<FileItem> fileItems, Uri treeUri) {
+        DocumentFile directory = DocumentFile.fromTreeUri(context, treeUri);
+        if (directory == null) {
+            return 0;
+        }
+        int exported = 0;
+        for (FileItem fileItem : fileItems) {
+            String mimeType = fileItem.getMimeType() != null ? fileItem.getMimeType() : "application/octet-stream";
+            DocumentFile target = directory.createFile(mimeType, fileItem.getOriginalFileName());
+            if (target == null) {
+                Log.e(TAG, "Impossibile creare il file esportato: " + fileItem.getOriginalFileName());
+                continue;
+            }
+            try (OutputStream outputStream = context.getContentResolver().openOutputStream(target.getUri())) {
+                if (outputStream == null) {
+                    throw new IOException("Stream di destinazione non disponibile");
+                }
+                decryptTo(fileItem.getEncryptedFilePath(), outputStream);
+                exported++;
+            } catch (IOException | GeneralSecurityException e) {
+                Log.e(TAG, "Esportazione di " + fileItem.getOriginalFileName() + " fallita: " + e.getMessage(), e);
+                target.delete(); // Nessun file parziale nella destinazione.
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Elimina i file criptati di un gruppo di righe, es. dopo la loro eliminazione definitiva.
+     * Da chiamare da un thread in background: un unico task su {@link #fileIOExecutor} per tutto il gruppo.
+     *
+     * @param fileItems Le righe eliminate, con i percorsi dei file criptati.
+     * @return Il numero di file eliminati.
+     */
+    public int deleteEncryptedFiles(List<FileItem> fileItems) {
+        int deleted = 0;
+        for (FileItem fileItem : fileItems) {
+            File file = resolveEncryptedFile(context, fileItem.getEncryptedFilePath());
+            if (file.exists()) {
+                if (file.delete()) {
+                    deleted++;
+                } else {
+                    Log.e(TAG, "Impossibile eliminare il file criptato: " + fileItem.getEncryptedFilePath());
+                }
+            }
+        }
+        Log.d(TAG, "File criptati eliminati: " + deleted + " di " + fileItems.size());
+        return deleted;
+    }
+
     /**
      * Elimina un file criptato dal filesystem.
      *
-     * @param encryptedFilePath Il percorso relativo del file criptato da eliminare.
+     * @param encryptedFilePath Il percorso del file criptato da eliminare, assoluto o relativo.
      * @return true se il file è stato eliminato con successo, false altrimenti.
      */
     public boolean deleteEncryptedFile(String encryptedFilePath) {
-        File file = new File(context.getFilesDir(), encryptedFilePath);// Costruisce il percorso completo.
+        File file = resolveEncryptedFile(context, encryptedFilePath);// Costruisce il percorso completo.
         if (file.exists()) {
             boolean deleted = file.delete();// Tenta di eliminare il file.
             if (deleted) {
@@ -180,6 +270,78 @@ public class FileManager {
         return false;
     }
 
+    /**
+     * Risolve il percorso di un file criptato salvato in un {@link com.example.securenotesapp.model.FileItem}.
+     *
+     * I percorsi salvati non sono uniformi: {@link #encryptAndSaveFile} restituisce un percorso relativo alla
+     * directory dei file dell'app, mentre le righe create dalla lista dei file contengono un percorso assoluto,
+     * che nelle versioni precedenti ripeteva la directory {@value #ENCRYPTED_FILES_DIR} e non esisteva sul disco.
+     * Se nessuna delle due interpretazioni porta a un file esistente, il file viene cercato per nome
+     * nella directory della cassaforte attiva.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param encryptedFilePath Il percorso salvato, assoluto o relativo.
+     * @return Il file criptato; può non esistere se è già stato eliminato.
+     */
+    public static File resolveEncryptedFile(Context context, String encryptedFilePath) {
+        return resolveEncryptedFile(context, new VaultManager(context).getActiveVaultId(), encryptedFilePath);
+    }
+
+    /**
+     * Come {@link #resolveEncryptedFile(Context, String)}, per un file di una cassaforte qualsiasi
+     * (es. dai worker in background, che lavorano anche sulle cassaforti non attive).
+     *
+     * Il file restituito è sempre nella directory della cassaforte: un percorso che porta fuori
+     * (un'altra cassaforte, la directory di una versione precedente, un backup ripristinato da un altro dispositivo,
+     * o un percorso con "..") viene ridotto al solo nome del file e cercato nella directory della cassaforte.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param vaultId L'identificativo della cassaforte della riga.
+     * @param encryptedFilePath Il percorso salvato, assoluto o relativo.
+     * @return Il file criptato; può non esistere se è già stato eliminato.
+     */
+    public static File resolveEncryptedFile(Context context, String vaultId, String encryptedFilePath) {
+        File vaultDir = getEncryptedFilesDir(context, vaultId);
+        File file = new File(encryptedFilePath);
+        if (!file.isAbsolute()) {
+            file = new File(context.getFilesDir(), encryptedFilePath);
+        }
+        try {
+            File canonical = file.getCanonicalFile();
+            if (vaultDir.getCanonicalFile().equals(canonical.getParentFile())) {
+                return canonical;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Percorso del file criptato non valido: " + encryptedFilePath, e);
+        }
+        return new File(vaultDir, file.getName());
+    }
+
+    /**
+     * Restituisce la directory dei file criptati di una cassaforte, creandola se non esiste.
+     * La directory di una cassaforte non predefinita creata da una versione precedente, annidata in quella della
+     * cassaforte predefinita, viene spostata nella nuova posizione (vedi {@link VaultManager#getEncryptedFilesPath}).
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param vaultId L'identificativo della cassaforte.
+     * @return La directory dei file criptati della cassaforte.
+     */
+    public static synchronized File getEncryptedFilesDir(Context context, String vaultId) {
+        File dir = new File(context.getFilesDir(), VaultManager.getEncryptedFilesPath(vaultId));
+        if (dir.exists()) {
+            return dir;
+        }
+        String legacyPath = VaultManager.getLegacyEncryptedFilesPath(vaultId);
+        File legacyDir = legacyPath != null ? new File(context.getFilesDir(), legacyPath) : null;
+        dir.getParentFile().mkdirs();
+        if (legacyDir != null && legacyDir.isDirectory() && legacyDir.renameTo(dir)) {
+            Log.d(TAG, "Directory dei file della cassaforte spostata: " + legacyPath);
+        } else {
+            dir.mkdirs(); // Crea tutte le directory necessarie.
+        }
+        return dir;
+    }
+
     /**
      * Pulisce tutti i file temporanei decifrati dalla directory della cache dell'applicazione.
      * Questa operazione viene eseguita su un thread separato per non bloccare l'UI.
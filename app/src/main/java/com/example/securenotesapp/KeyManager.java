@@ -35,6 +35,7 @@ public class KeyManager {
     // Nome del file per le EncryptedSharedPreferences.
     private static final String ENCRYPTED_PREFS_NAME = "secure_notes_prefs";
     // Chiave per salvare la passphrase del database all'interno di EncryptedSharedPreferences.
+    // Le cassaforti diverse da quella predefinita aggiungono il proprio identificativo (vedi {@link VaultManager}).
     private static final String PASSPHRASE_PREF_KEY = "db_passphrase"; // Chiave per la passphrase salvata
     // --- Costanti per la gestione del PIN ---
     // Chiave per salvare l'hash del PIN dell'utente.
@@ -51,8 +52,8 @@ public class KeyManager {
     private Context context;
     // Oggetto EncryptedSharedPreferences per archiviare dati sensibili in modo cifrato.
     private SharedPreferences encryptedSharedPreferences;
-    // Nome della directory dove FileManager salva i file criptati.
-    private static final String ENCRYPTED_FILES_DIR = "encrypted_files";
+    // Gestore delle cassaforti: passphrase e directory dei file dipendono dalla cassaforte attiva.
+    private VaultManager vaultManager;
 
     /**
      * Costruttore per {@code KeyManager}.
@@ -65,6 +66,7 @@ public class KeyManager {
      */
     public KeyManager(Context context) {
         this.context = context.getApplicationContext();
+        this.vaultManager = new VaultManager(context);
         try {
             // Ottiene o crea una chiave master AES256_GCM dal Keystore Android.
             // Questa chiave viene usata internamente da EncryptedSharedPreferences.
@@ -121,7 +123,7 @@ public class KeyManager {
 
     /**
      * Restituisce un oggetto {@link File} che rappresenta il percorso di un file crittografato locale.
-     * I file crittografati sono memorizzati in una sottocartella specifica definita da {@code ENCRYPTED_FILES_DIR}.
+     * I file crittografati sono memorizzati nella directory dei file criptati della cassaforte attiva.
      * Se la directory non esiste, viene creata.
      *
      * @param context Contesto dell'applicazione.
@@ -130,15 +132,33 @@ public class KeyManager {
      */
     public File getEncryptedFile(Context context, String filename) {
         // Ottiene il percorso della directory per i file criptati.
-        File encryptedFilesDir = new File(context.getFilesDir(), ENCRYPTED_FILES_DIR);
-        if (!encryptedFilesDir.exists()) {
-            encryptedFilesDir.mkdirs(); // Crea la directory se non esiste
-        }
-        return new File(encryptedFilesDir, filename);
+        File encryptedFilesDir = FileManager.getEncryptedFilesDir(context, vaultManager.getActiveVaultId());
+        // Solo il nome: un nome con separatori (es. da un backup) non deve uscire dalla directory.
+        return new File(encryptedFilesDir, new File(filename).getName());
+    }
+
+    /**
+     * Restituisce la chiave della passphrase della cassaforte attiva.
+     *
+     * @return La chiave in {@link EncryptedSharedPreferences}.
+     */
+    private String getPassphraseKey() {
+        return getPassphraseKey(vaultManager.getActiveVaultId());
+    }
+
+    /**
+     * Restituisce la chiave della passphrase di una cassaforte.
+     * La cassaforte predefinita usa la chiave precedente all'introduzione delle cassaforti.
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @return La chiave in {@link EncryptedSharedPreferences}.
+     */
+    private static String getPassphraseKey(String vaultId) {
+        return VaultManager.DEFAULT_VAULT_ID.equals(vaultId) ? PASSPHRASE_PREF_KEY : PASSPHRASE_PREF_KEY + "_" + vaultId;
     }
 
     /**
-     * Genera una nuova passphrase di 32 byte (256 bit) per il database SQLCipher
+     * Genera una nuova passphrase di 32 byte (256 bit) per il database SQLCipher della cassaforte attiva
      * e la memorizza in modo cifrato utilizzando {@link EncryptedSharedPreferences}.
      * Questo metodo dovrebbe essere chiamato solo la prima volta che il database viene creato.
      *
@@ -154,7 +174,7 @@ public class KeyManager {
 
         // Salva la passphrase cifrata in EncryptedSharedPreferences.
         encryptedSharedPreferences.edit()
-                .putString(PASSPHRASE_PREF_KEY, encodedPassphrase)
+                .putString(getPassphraseKey(), encodedPassphrase)
                 .apply();// Applica le modifiche in modo asincrono.
 
 
@@ -163,13 +183,24 @@ public class KeyManager {
     }
 
     /**
-     * Recupera la passphrase cifrata da {@link EncryptedSharedPreferences} e la decifra.
+     * Recupera la passphrase della cassaforte attiva da {@link EncryptedSharedPreferences} e la decifra.
      * Questo metodo decodifica la stringa Base64 e restituisce l'array di byte della passphrase.
      *
      * @return La passphrase decifrata come array di byte, o null se non è stata trovata.
      */
     public byte[] retrievePassphrase() {
-        String encodedPassphrase = encryptedSharedPreferences.getString(PASSPHRASE_PREF_KEY, null);
+        return retrievePassphrase(vaultManager.getActiveVaultId());
+    }
+
+    /**
+     * Recupera la passphrase di una cassaforte qualsiasi, es. per i worker in background
+     * che lavorano anche sulle cassaforti non attive.
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @return La passphrase decifrata come array di byte, o null se la cassaforte non è mai stata aperta.
+     */
+    public byte[] retrievePassphrase(String vaultId) {
+        String encodedPassphrase = encryptedSharedPreferences.getString(getPassphraseKey(vaultId), null);
         if (encodedPassphrase != null) {
             byte[] passphrase = Base64.decode(encodedPassphrase, Base64.DEFAULT);// Decodifica la stringa Base64.
             Log.d(TAG, "Passphrase recuperata e decifrata.");
@@ -186,7 +217,7 @@ public class KeyManager {
      * @return true se la passphrase esiste, false altrimenti.
      */
     public boolean hasPassphrase() {
-        return encryptedSharedPreferences.contains(PASSPHRASE_PREF_KEY);
+        return encryptedSharedPreferences.contains(getPassphraseKey());
     }
 
     /**
@@ -194,7 +225,7 @@ public class KeyManager {
      * Questo può essere utile in scenari di reset o logout.
      */
     public void clearPassphrase() {
-        encryptedSharedPreferences.edit().remove(PASSPHRASE_PREF_KEY).apply();
+        encryptedSharedPreferences.edit().remove(getPassphraseKey()).apply();
         Log.d(TAG, "Passphrase rimossa da EncryptedSharedPreferences.");
     }
     // ---  METODI PER LA GESTIONE DEL PIN ---
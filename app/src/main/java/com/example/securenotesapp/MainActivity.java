@@ -7,44 +7,72 @@ import android.util.Log;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.securenotesapp.database.DataMigrationRunner;
 import com.example.securenotesapp.database.NoteDatabase;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.Vault;
+import com.example.securenotesapp.viewmodel.NoteViewModel;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.navigation.NavigationView;
 
+import com.example.securenotesapp.fragments.ArchiveFragment;
 import com.example.securenotesapp.fragments.FileListFragment;
 import com.example.securenotesapp.fragments.NotesFragment;
+import com.example.securenotesapp.fragments.SharedViewPool;
+import com.example.securenotesapp.fragments.TrashFragment;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
 
 
 /**
  * {@code MainActivity} è la schermata principale dell'applicazione SecureNotes.
- * Gestisce la navigazione tra le diverse sezioni (NotesFragment, FileListFragment),
+ * Gestisce la navigazione tra le diverse sezioni (NotesFragment, FileListFragment, TrashFragment, ArchiveFragment),
  * la toolbar, il drawer di navigazione e il Floating Action Button (FAB).
  * È anche responsabile della gestione del timeout di sessione per la sicurezza.
+ *
+ * Le sezioni visitate restano aggiunte e vengono solo nascoste: tornando a una sezione la sua View, la posizione
+ * di scorrimento e i dati caricati sono ancora lì, senza nuove query. Le liste condividono un pool di righe
+ * (vedi {@link SharedViewPool}).
  */
-public class MainActivity extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
+public class MainActivity extends AppCompatActivity
+        implements NavigationView.OnNavigationItemSelectedListener, SharedViewPool.Provider {
 
     private static final String TAG = "MainActivity";
     private DrawerLayout drawerLayout;// Il layout del drawer di navigazione.
 
     private NotesFragment notesFragment;    // Riferimento al NotesFragment
     private FileListFragment fileListFragment; // Riferimento al FileListFragment
+    private TrashFragment trashFragment; // Riferimento al TrashFragment
+    private ArchiveFragment archiveFragment; // Riferimento all'ArchiveFragment
 
     private FloatingActionButton fabAddNote;
     private FloatingActionButton fabAddFile;
 
     // Variabile per tenere traccia del fragment attualmente mostrato
     private Fragment activeFragment;
+    // Pool di righe condiviso dalle liste di tutti i fragment.
+    private final RecyclerView.RecycledViewPool sharedViewPool = SharedViewPool.create();
 
     // --- Variabili per il Timeout della Sessione ---
     private long SESSION_TIMEOUT_MS = 60 * 1000; // Durata del timeout di sessione in millisecondi
@@ -72,6 +100,9 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         drawerLayout = findViewById(R.id.drawer_layout);
         NavigationView navigationView = findViewById(R.id.nav_view);
         navigationView.setNavigationItemSelectedListener(this);
+        // Mostra nell'intestazione del drawer la cassaforte aperta.
+        TextView vaultNameTextView = navigationView.getHeaderView(0).findViewById(R.id.text_view_vault_name);
+        vaultNameTextView.setText("Cassaforte: " + new VaultManager(this).getActiveVault().getName());
 
         // Configura il toggle per aprire/chiudere il drawer di navigazione dalla toolbar.
         ActionBarDrawerToggle toggle = new ActionBarDrawerToggle(this, drawerLayout, toolbar,
@@ -85,12 +116,18 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
         // Listener per fabAddNote
         fabAddNote.setOnClickListener(view -> {
+            if (!DataMigrationRunner.checkWritable(this)) {
+                return;
+            }
             Intent intent = new Intent(MainActivity.this, AddEditNoteActivity.class);
             startActivity(intent);
         });
 
         // Listener per fabAddFile
         fabAddFile.setOnClickListener(view -> {
+            if (!DataMigrationRunner.checkWritable(this)) {
+                return;
+            }
             // Controlla che fileListFragment sia stato inizializzato e sia il fragment attivo
             if (fileListFragment != null && activeFragment == fileListFragment) {
                 fileListFragment.pickFile(); // Chiama il metodo per la selezione del file nel fragment
@@ -100,30 +137,55 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             }
         });
 
+        // Mostra nella toolbar l'avanzamento delle migrazioni dei dati in background.
+        DataMigrationRunner.getProgress().observe(this, progress -> {
+            if (progress == null) {
+                toolbar.setSubtitle(null);
+            } else {
+                toolbar.setSubtitle(progress.description + ": " + progress.getPercent() + "%"
+                        + (progress.readOnly ? " (sola lettura)" : ""));
+            }
+        });
+
 
         // Carica il fragment di default (NotesFragment) se non ci sono stati salvati
         if (savedInstanceState == null) {
             notesFragment = new NotesFragment();
             getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.fragment_container, notesFragment, NotesFragment.class.getName()) // Usa un tag
+                    .add(R.id.fragment_container, notesFragment, NotesFragment.class.getName()) // Usa un tag
                     .commit();
             activeFragment = notesFragment; // Imposta il fragment attivo
             updateFabVisibility(activeFragment); // Aggiorna la visibilità dei FAB
             getSupportActionBar().setTitle("Le mie Note Sicure"); // Imposta il titolo iniziale
+            showDraftRecovery(); // Solo al primo avvio, non a ogni ricreazione.
         } else {
             // Se l'Activity viene ricreata (es. rotazione), recupera i riferimenti ai fragment esistenti
             // Usa findFragmentByTag per recuperare i fragment con i tag che abbiamo impostato
             notesFragment = (NotesFragment) getSupportFragmentManager().findFragmentByTag(NotesFragment.class.getName());
             fileListFragment = (FileListFragment) getSupportFragmentManager().findFragmentByTag(FileListFragment.class.getName());
-
-            // Determina quale fragment era attivo per impostare 'activeFragment' e aggiornare i FAB
-            Fragment currentFragmentInContainer = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+            trashFragment = (TrashFragment) getSupportFragmentManager().findFragmentByTag(TrashFragment.class.getName());
+            archiveFragment = (ArchiveFragment) getSupportFragmentManager().findFragmentByTag(ArchiveFragment.class.getName());
+
+            // Determina quale fragment era attivo per impostare 'activeFragment' e aggiornare i FAB:
+            // le sezioni già visitate restano aggiunte ma nascoste, quella attiva è l'unica visibile.
+            Fragment currentFragmentInContainer = null;
+            for (Fragment fragment : getSupportFragmentManager().getFragments()) {
+                if (fragment.getId() == R.id.fragment_container && !fragment.isHidden()) {
+                    currentFragmentInContainer = fragment;
+                }
+            }
             if (currentFragmentInContainer instanceof NotesFragment) {
                 activeFragment = notesFragment;
                 getSupportActionBar().setTitle("Le mie Note Sicure");
             } else if (currentFragmentInContainer instanceof FileListFragment) {
                 activeFragment = fileListFragment;
                 getSupportActionBar().setTitle("I miei File Criptati");
+            } else if (currentFragmentInContainer instanceof TrashFragment) {
+                activeFragment = trashFragment;
+                getSupportActionBar().setTitle("Cestino");
+            } else if (currentFragmentInContainer instanceof ArchiveFragment) {
+                activeFragment = archiveFragment;
+                getSupportActionBar().setTitle("Archivio");
             }
             updateFabVisibility(activeFragment); // Aggiorna la visibilità anche dopo la ricreazione
         }
@@ -197,28 +259,57 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             selectedFragment = fileListFragment;
             fragmentTag = FileListFragment.class.getName();
             getSupportActionBar().setTitle("I miei File Criptati"); // Aggiorna il titolo della Toolbar
+        } else if (id == R.id.nav_trash) {
+            if (trashFragment == null) {
+                trashFragment = new TrashFragment();
+            }
+            selectedFragment = trashFragment;
+            fragmentTag = TrashFragment.class.getName();
+            getSupportActionBar().setTitle("Cestino"); // Aggiorna il titolo della Toolbar
+        } else if (id == R.id.nav_archive) {
+            if (archiveFragment == null) {
+                archiveFragment = new ArchiveFragment();
+            }
+            selectedFragment = archiveFragment;
+            fragmentTag = ArchiveFragment.class.getName();
+            getSupportActionBar().setTitle("Archivio"); // Aggiorna il titolo della Toolbar
         } else if (id == R.id.nav_settings) {
             // Avvia la SettingsActivity
             Intent intent = new Intent(MainActivity.this, SettingsActivity.class); // Assicurati che 'SettingsActivity.class' sia il nome corretto della tua activity
             startActivity(intent);
             drawerLayout.closeDrawer(GravityCompat.START); // Chiudi il drawer dopo aver avviato l'Activity
             return true;
+        } else if (id == R.id.nav_vaults) {
+            showVaultsDialog();
+            drawerLayout.closeDrawer(GravityCompat.START);
+            return true;
         } else if (id == R.id.nav_logout) {
             Toast.makeText(this, "Logout...", Toast.LENGTH_SHORT).show();
-            // Implementa la logica di logout
+            // Come alla scadenza della sessione: chiude il database, svuotando cache e bozze in chiaro,
+            // e chiude tutte le Activity che mostrano contenuto della cassaforte.
+            NoteDatabase.closeDatabase();
             Intent intent = new Intent(MainActivity.this, LoginActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(intent);
             finish();
             return true;
         }
 
-        // Sostituisci il fragment solo se è diverso da quello attualmente attivo
-        // e se selectedFragment non è null (cioè non è una voce come "Impostazioni" senza fragment)
+        // Cambia il fragment solo se è diverso da quello attualmente attivo
+        // e se selectedFragment non è null (cioè non è una voce come "Impostazioni" senza fragment).
+        // Il fragment precedente viene nascosto, non distrutto: View, scorrimento e dati restano pronti.
         if (selectedFragment != null && selectedFragment != activeFragment) {
-            getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.fragment_container, selectedFragment, fragmentTag) // Usa il tag per il replace
-                    .commit();
+            FragmentTransaction transaction = getSupportFragmentManager().beginTransaction()
+                    .setReorderingAllowed(true);
+            if (activeFragment != null) {
+                transaction.hide(activeFragment);
+            }
+            if (selectedFragment.isAdded()) {
+                transaction.show(selectedFragment);
+            } else {
+                transaction.add(R.id.fragment_container, selectedFragment, fragmentTag); // Usa il tag per ritrovarlo
+            }
+            transaction.commit();
             activeFragment = selectedFragment; // Aggiorna il fragment attivo
             updateFabVisibility(activeFragment); // Aggiorna la visibilità dei FAB
         } else if (selectedFragment == null) {
@@ -232,6 +323,116 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         return true;
     }
 
+    /**
+     * Se una sessione precedente ha lasciato bozze non salvate (es. l'app è stata chiusa dal sistema durante
+     * la modifica), le elenca: selezionandone una si riapre l'editor con il suo contenuto.
+     */
+    private void showDraftRecovery() {
+        NoteViewModel noteViewModel = new ViewModelProvider(this).get(NoteViewModel.class);
+        LiveData<List<NoteDraft.Header>> drafts = noteViewModel.loadDraftHeaders();
+        drafts.observe(this, new Observer<List<NoteDraft.Header>>() {
+            @Override
+            public void onChanged(List<NoteDraft.Header> headers) {
+                drafts.removeObserver(this);
+                if (headers == null || headers.isEmpty()) {
+                    return;
+                }
+                DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+                String[] labels = new String[headers.size()];
+                for (int i = 0; i < headers.size(); i++) {
+                    NoteDraft.Header header = headers.get(i);
+                    String title = header.title == null || header.title.trim().isEmpty() ? "(senza titolo)" : header.title;
+                    labels[i] = title + " - " + format.format(new Date(header.updatedAt));
+                }
+                new AlertDialog.Builder(MainActivity.this)
+                        .setTitle("Bozze non salvate")
+                        .setItems(labels, (dialog, which) -> {
+                            Intent intent = new Intent(MainActivity.this, AddEditNoteActivity.class);
+                            intent.putExtra(AddEditNoteActivity.EXTRA_DRAFT_ID, headers.get(which).id);
+                            startActivity(intent);
+                        })
+                        .setNeutralButton("Più tardi", null)
+                        .setNegativeButton("Scarta tutte", (dialog, which) -> {
+                            noteViewModel.deleteAllDrafts();
+                            Toast.makeText(MainActivity.this, "Bozze eliminate", Toast.LENGTH_SHORT).show();
+                        })
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Mostra l'elenco delle cassaforti, con quella attiva selezionata, e permette di crearne una nuova.
+     */
+    private void showVaultsDialog() {
+        VaultManager vaultManager = new VaultManager(this);
+        List<Vault> vaults = vaultManager.getVaults();
+        String[] names = new String[vaults.size()];
+        int checked = 0;
+        for (int i = 0; i < vaults.size(); i++) {
+            names[i] = vaults.get(i).getName();
+            if (vaults.get(i).getId().equals(vaultManager.getActiveVaultId())) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Cassaforte")
+                .setSingleChoiceItems(names, checked, (dialog, which) -> {
+                    dialog.dismiss();
+                    switchVault(vaults.get(which));
+                })
+                .setPositiveButton("Nuova cassaforte", (dialog, which) -> showCreateVaultDialog())
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Chiede il nome di una nuova cassaforte, la crea e la apre.
+     */
+    private void showCreateVaultDialog() {
+        EditText nameEditText = new EditText(this);
+        nameEditText.setHint("Nome della cassaforte");
+        new AlertDialog.Builder(this)
+                .setTitle("Nuova cassaforte")
+                .setView(nameEditText)
+                .setPositiveButton("Crea", (dialog, which) -> {
+                    String name = nameEditText.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        Toast.makeText(this, "Il nome non può essere vuoto", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    switchVault(new VaultManager(this).createVault(name));
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Apre un'altra cassaforte senza riavviare il processo: chiude il database di quella attuale,
+     * così in memoria resta al più una cassaforte, e torna allo sblocco, che apre il database
+     * della nuova cassaforte con la sua passphrase.
+     *
+     * @param vault La cassaforte da aprire.
+     */
+    private void switchVault(Vault vault) {
+        VaultManager vaultManager = new VaultManager(this);
+        if (vault.getId().equals(vaultManager.getActiveVaultId())) {
+            return;
+        }
+        Log.d(TAG, "Cambio di cassaforte: " + vault.getId());
+        NoteDatabase.closeDatabase();
+        vaultManager.setActiveVault(vault.getId());
+        Intent intent = new Intent(MainActivity.this, LoginActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
+    }
+
+    @Override
+    public RecyclerView.RecycledViewPool getSharedViewPool() {
+        return sharedViewPool;
+    }
+
     /**
      * Aggiorna la visibilità del Floating Action Button (FAB) in base al fragment attualmente visualizzato.
      * Il FAB è visibile solo per {@link NotesFragment} e {@link FileListFragment}.
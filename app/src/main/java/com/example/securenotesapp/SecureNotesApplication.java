@@ -4,9 +4,14 @@ import android.app.Application;
 import net.sqlcipher.database.SQLiteDatabase;
 import android.util.Log;
 
+import com.example.securenotesapp.database.DatabaseMaintenanceWorker;
+import com.example.securenotesapp.database.NoteArchiveWorker;
+import com.example.securenotesapp.database.TrashPurgeWorker;
+
 /**
  * {@code SecureNotesApplication} è la classe principale dell'applicazione che estende {@link android.app.Application}.
- * Viene utilizzata per inizializzare componenti globali come SQLCipher e {@link FileManager}
+ * Viene utilizzata per inizializzare componenti globali come SQLCipher e {@link FileManager},
+ * e per pianificare la manutenzione periodica del database,
  * non appena l'applicazione viene avviata. Gestisce anche la pulizia delle risorse alla terminazione dell'app.
  */
 public class SecureNotesApplication extends Application {
@@ -32,6 +37,13 @@ public class SecureNotesApplication extends Application {
         // per l'intera applicazione. Questo è utile per gestire file cifrati in modo centralizzato.
         fileManager = new FileManager(getApplicationContext());
         Log.d(TAG, "FileManager initialized.");
+
+        // Pianifica la manutenzione periodica del database (solo con dispositivo inattivo e in carica).
+        DatabaseMaintenanceWorker.schedule(this);
+        // Pianifica l'eliminazione definitiva degli elementi rimasti nel cestino oltre il periodo di conservazione.
+        TrashPurgeWorker.schedule(this);
+        // Pianifica lo spostamento nell'archivio delle note non modificate da molto tempo.
+        NoteArchiveWorker.schedule(this);
     }
 
     /**
@@ -3,6 +3,7 @@ package com.example.securenotesapp;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -21,10 +22,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.preference.PreferenceManager;
 
+import com.example.securenotesapp.adapter.ScrollJankBenchmark;
+import com.example.securenotesapp.database.CipherBenchmark;
+import com.example.securenotesapp.database.CompressionBenchmark;
+import com.example.securenotesapp.database.CipherProfile;
+import com.example.securenotesapp.database.NoteDatabase;
+import com.example.securenotesapp.database.QueryPlanVerifier;
 import com.example.securenotesapp.utils.BackupManager;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@code SettingsActivity} gestisce le impostazioni dell'applicazione, permettendo all'utente di
@@ -117,6 +125,16 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Listener per il pulsante Importa Backup
         buttonImportBackup.setOnClickListener(v -> showPasswordDialogAndImport());
+
+        // Strumenti per sviluppatori (profili SQLCipher, benchmark, piani delle query): solo nelle build di debug.
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            findViewById(R.id.layout_developer_tools).setVisibility(View.VISIBLE);
+            findViewById(R.id.button_cipher_profile).setOnClickListener(v -> showCipherProfileDialog());
+            findViewById(R.id.button_cipher_benchmark).setOnClickListener(v -> startCipherBenchmark());
+            findViewById(R.id.button_compression_benchmark).setOnClickListener(v -> startCompressionBenchmark());
+            findViewById(R.id.button_scroll_benchmark).setOnClickListener(v -> startScrollBenchmark());
+            findViewById(R.id.button_query_plans).setOnClickListener(v -> verifyQueryPlans());
+        }
     }
 
     /**
@@ -354,7 +372,12 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Esegui l'operazione di ripristino in un thread separato
         executorService.execute(() -> {
+            // Messaggio dell'errore (progresso -1): indica anche un eventuale ripristino parziale.
+            AtomicReference<String> failureMessage = new AtomicReference<>();
             boolean success = backupManager.importBackup(inputUri, password, (progress, message) -> {
+                if (progress < 0) {
+                    failureMessage.set(message);
+                }
                 mainHandler.post(() -> {
                     progressBar.setProgress(progress);
                     progressMessage.setText(message);
@@ -365,6 +388,12 @@ public class SettingsActivity extends AppCompatActivity {
                 progressDialog.dismiss();
                 if (success) {
                     Toast.makeText(this, "Backup importato con successo!", Toast.LENGTH_LONG).show();
+                } else if (failureMessage.get() != null) {
+                    new AlertDialog.Builder(this)
+                            .setTitle("Importazione non riuscita")
+                            .setMessage(failureMessage.get() + "\nControlla la password e il file di backup.")
+                            .setPositiveButton("OK", null)
+                            .show();
                 } else {
                     Toast.makeText(this, "Errore durante l'importazione del backup. Controlla la password.", Toast.LENGTH_LONG).show();
                 }
@@ -441,6 +470,110 @@ public class SettingsActivity extends AppCompatActivity {
         finish();
         return true;
     }
+    // --- Strumenti per sviluppatori ---
+
+    /**
+     * Mostra la scelta del profilo SQLCipher. I parametri di esecuzione valgono dal prossimo sblocco,
+     * quelli di formato solo per i database creati da zero.
+     */
+    private void showCipherProfileDialog() {
+        CipherProfile[] profiles = CipherProfile.PROFILES;
+        String[] labels = new String[profiles.length];
+        int checked = 0;
+        CipherProfile selected = CipherProfile.selected(this);
+        for (int i = 0; i < profiles.length; i++) {
+            labels[i] = profiles[i].getLabel();
+            if (profiles[i] == selected) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Profilo SQLCipher")
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    PreferenceManager.getDefaultSharedPreferences(this).edit()
+                            .putString(CipherProfile.KEY_PROFILE, profiles[which].getName())
+                            .apply();
+                    Toast.makeText(this, "Profilo attivo dal prossimo sblocco.", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Esegue in background il benchmark comparativo dei profili SQLCipher e ne mostra i risultati.
+     */
+    private void startCipherBenchmark() {
+        TextView progressMessage = new TextView(this);
+        progressMessage.setPadding(30, 30, 30, 30);
+        progressMessage.setText("In preparazione...");
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Benchmark SQLCipher")
+                .setView(progressMessage)
+                .setCancelable(false)
+                .create();
+        progressDialog.show();
+
+        executorService.execute(() -> {
+            String report = new CipherBenchmark(this).runAll((progress, message) ->
+                    mainHandler.post(() -> progressMessage.setText(message + " (" + progress + "%)")));
+            mainHandler.post(() -> {
+                progressDialog.dismiss();
+                new AlertDialog.Builder(this)
+                        .setTitle("Risultati benchmark")
+                        .setMessage(report)
+                        .setPositiveButton("OK", null)
+                        .show();
+            });
+        });
+    }
+
+    /**
+     * Esegue in background il confronto tra note in chiaro e compresse (dimensione del file e latenze) e ne mostra i risultati.
+     */
+    private void startCompressionBenchmark() {
+        Toast.makeText(this, "Benchmark della compressione in corso...", Toast.LENGTH_SHORT).show();
+        executorService.execute(() -> {
+            String report = new CompressionBenchmark(this).run();
+            mainHandler.post(() -> new AlertDialog.Builder(this)
+                    .setTitle("Risultati compressione")
+                    .setMessage(report)
+                    .setPositiveButton("OK", null)
+                    .show());
+        });
+    }
+
+    /**
+     * Scorre una lista sintetica di note e mostra la distribuzione della durata dei frame.
+     */
+    private void startScrollBenchmark() {
+        Toast.makeText(this, "Preparazione di 10000 note...", Toast.LENGTH_SHORT).show();
+        new ScrollJankBenchmark(this).run(report -> new AlertDialog.Builder(this)
+                .setTitle("Risultati scorrimento")
+                .setMessage(report)
+                .setPositiveButton("OK", null)
+                .show());
+    }
+
+    /**
+     * Verifica in background che le query di ordinamento e filtro usino un indice e ne mostra i piani.
+     */
+    private void verifyQueryPlans() {
+        byte[] passphrase = keyManager.retrievePassphrase();
+        if (passphrase == null) {
+            Toast.makeText(this, "Database non disponibile.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        executorService.execute(() -> {
+            String report = new QueryPlanVerifier(NoteDatabase.getDatabase(this, passphrase)).verify();
+            mainHandler.post(() -> new AlertDialog.Builder(this)
+                    .setTitle("Piani delle query")
+                    .setMessage(report)
+                    .setPositiveButton("OK", null)
+                    .show());
+        });
+    }
+
     // --- Metodi per la gestione del PIN ---
 
     /**
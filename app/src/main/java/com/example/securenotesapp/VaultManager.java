@@ -0,0 +1,161 @@
+package com.example.securenotesapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.securenotesapp.model.Vault;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@code VaultManager} gestisce l'elenco delle cassaforti e quella attiva.
+ *
+ * Ogni cassaforte ha il proprio file di database, la propria passphrase SQLCipher (vedi {@link KeyManager})
+ * e la propria sottodirectory dei file criptati. Solo la cassaforte attiva viene aperta e tenuta in memoria:
+ * per cambiarla si chiude il database e si torna allo sblocco, senza riavviare il processo.
+ * I worker periodici aprono invece ogni cassaforte per la sola durata del loro lavoro
+ * (vedi {@link com.example.securenotesapp.database.VaultWorker}).
+ *
+ * La cassaforte predefinita usa i nomi precedenti all'introduzione delle cassaforti, quindi i dati
+ * esistenti ne fanno parte senza alcuna migrazione.
+ */
+public class VaultManager {
+
+    private static final String TAG = "VaultManager";
+    // File delle preferenze con l'elenco delle cassaforti (nomi e identificativi, nessuna chiave).
+    private static final String PREFS_NAME = "vaults";
+    private static final String KEY_VAULTS = "vaults";
+    private static final String KEY_ACTIVE_VAULT = "active_vault";
+
+    // Identificativo della cassaforte predefinita.
+    public static final String DEFAULT_VAULT_ID = "default";
+    private static final String DEFAULT_VAULT_NAME = "Principale";
+    // Nome del database della cassaforte predefinita (quello usato prima delle cassaforti).
+    private static final String DEFAULT_DATABASE_NAME = "secure_notes_database.db";
+    // Directory che contiene le directory dei file criptati delle cassaforti non predefinite.
+    private static final String VAULT_FILES_DIR = "vault_files";
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+
+    /**
+     * Costruttore per {@code VaultManager}.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public VaultManager(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Restituisce tutte le cassaforti, a partire da quella predefinita.
+     *
+     * @return L'elenco delle cassaforti.
+     */
+    public List<Vault> getVaults() {
+        List<Vault> vaults = new ArrayList<>();
+        vaults.add(new Vault(DEFAULT_VAULT_ID, DEFAULT_VAULT_NAME));
+        String json = prefs.getString(KEY_VAULTS, null);
+        if (json != null) {
+            List<Vault> stored = gson.fromJson(json, new TypeToken<List<Vault>>() {}.getType());
+            vaults.addAll(stored);
+        }
+        return vaults;
+    }
+
+    /**
+     * Crea una nuova cassaforte vuota. Il database e la passphrase vengono creati alla prima apertura.
+     *
+     * @param name Il nome della cassaforte.
+     * @return La cassaforte creata.
+     */
+    public Vault createVault(String name) {
+        List<Vault> vaults = getVaults();
+        vaults.remove(0); // La cassaforte predefinita non viene salvata.
+        Vault vault = new Vault(UUID.randomUUID().toString(), name);
+        vaults.add(vault);
+        prefs.edit().putString(KEY_VAULTS, gson.toJson(vaults)).apply();
+        Log.d(TAG, "Cassaforte creata: " + vault.getId());
+        return vault;
+    }
+
+    /**
+     * @return La cassaforte attiva.
+     */
+    public Vault getActiveVault() {
+        String activeId = getActiveVaultId();
+        for (Vault vault : getVaults()) {
+            if (vault.getId().equals(activeId)) {
+                return vault;
+            }
+        }
+        return getVaults().get(0);
+    }
+
+    /**
+     * @return L'identificativo della cassaforte attiva.
+     */
+    public String getActiveVaultId() {
+        return prefs.getString(KEY_ACTIVE_VAULT, DEFAULT_VAULT_ID);
+    }
+
+    /**
+     * Imposta la cassaforte attiva. Il database della cassaforte precedente va chiuso prima
+     * (vedi {@link com.example.securenotesapp.database.NoteDatabase#closeDatabase()}).
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     */
+    public void setActiveVault(String vaultId) {
+        prefs.edit().putString(KEY_ACTIVE_VAULT, vaultId).commit(); // Sincrono: la prossima apertura deve vederlo.
+        Log.d(TAG, "Cassaforte attiva: " + vaultId);
+    }
+
+    /**
+     * @param vaultId L'identificativo della cassaforte.
+     * @return Il nome del file di database della cassaforte.
+     */
+    public static String getDatabaseName(String vaultId) {
+        return DEFAULT_VAULT_ID.equals(vaultId) ? DEFAULT_DATABASE_NAME : "vault_" + vaultId + ".db";
+    }
+
+    /**
+     * @param vaultId L'identificativo della cassaforte.
+     * @return Il nome del file di database dell'archivio delle note vecchie della cassaforte.
+     */
+    public static String getArchiveDatabaseName(String vaultId) {
+        String databaseName = getDatabaseName(vaultId);
+        return databaseName.substring(0, databaseName.length() - ".db".length()) + "_archive.db";
+    }
+
+    /**
+     * Restituisce la directory dei file criptati della cassaforte, relativa alla directory dei file dell'app.
+     * La cassaforte predefinita usa la directory precedente all'introduzione delle cassaforti; le altre una
+     * sottodirectory di {@link #VAULT_FILES_DIR}, separata da quella della cassaforte predefinita.
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @return Il percorso relativo della directory.
+     */
+    public static String getEncryptedFilesPath(String vaultId) {
+        return DEFAULT_VAULT_ID.equals(vaultId)
+                ? FileManager.ENCRYPTED_FILES_DIR
+                : VAULT_FILES_DIR + File.separator + vaultId;
+    }
+
+    /**
+     * Restituisce la directory dei file criptati usata dalle versioni precedenti per le cassaforti non predefinite,
+     * annidata in quella della cassaforte predefinita. Viene spostata alla prima apertura
+     * (vedi {@link FileManager#getEncryptedFilesDir}).
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @return Il percorso relativo della directory, o null per la cassaforte predefinita.
+     */
+    static String getLegacyEncryptedFilesPath(String vaultId) {
+        return DEFAULT_VAULT_ID.equals(vaultId) ? null : FileManager.ENCRYPTED_FILES_DIR + File.separator + vaultId;
+    }
+}
@@ -8,23 +8,48 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.securenotesapp.R;
 import com.example.securenotesapp.model.FileItem;
+import com.example.securenotesapp.utils.TimestampFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
 /**
  * Adattatore per RecyclerView utilizzato per visualizzare un elenco di oggetti {@link com.example.securenotesapp.model.FileItem}.
  * Gestisce la creazione e il binding delle ViewHolder, e fornisce un'interfaccia per la gestione dei click sugli elementi.
+ *
+ * Come {@link NoteAdapter}, calcola le differenze tra le liste in background e aggiorna solo le righe cambiate,
+ * con ID stabili uguali a quelli dei file. Anche le sue ViewHolder possono provenire da un pool condiviso.
  */
-public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
+public class FileAdapter extends ListAdapter<FileItem, FileAdapter.FileHolder> {
+
+    /**
+     * Confronta i file per ID (stessa riga) e per tutti i campi memorizzati (stesso contenuto).
+     * Chiamato in un thread in background.
+     */
+    private static final DiffUtil.ItemCallback<FileItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<FileItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull FileItem oldItem, @NonNull FileItem newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull FileItem oldItem, @NonNull FileItem newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
+    // Payload del cambio di selezione: la riga aggiorna solo lo stato "activated", senza ricollegare i testi.
+    private static final Object PAYLOAD_SELECTION = new Object();
 
-    private List<FileItem> fileItems = new ArrayList<>();
     private OnItemClickListener listener;
+    private OnItemLongClickListener longClickListener;
+    private Set<Integer> selectedIds = Collections.emptySet();// ID delle righe selezionate in modalità selezione.
     private Context context;
     /**
      * Costruttore per FileAdapter.
@@ -32,7 +57,17 @@ public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
      * @param context Il contesto dell'applicazione, utilizzato per formattare le dimensioni dei file.
      */
     public FileAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Il tipo di vista è il layout della riga, unico tra gli adattatori che condividono il pool delle ViewHolder.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return R.layout.file_item;
     }
 
     /**
@@ -59,33 +94,48 @@ public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
      */
     @Override
     public void onBindViewHolder(@NonNull FileHolder holder, int position) {
-        FileItem currentFile = fileItems.get(position);
+        FileItem currentFile = getItem(position);
+        holder.adapter = this;
+        // Anche le righe che arrivano da un'altra lista del pool condiviso ripartono dallo stato di questa.
+        holder.itemView.setActivated(selectedIds.contains(currentFile.getId()));
         holder.fileNameTextView.setText(currentFile.getOriginalFileName());
         // Formatta la dimensione del file in un formato leggibile
         String sizeFormatted = Formatter.formatFileSize(context, currentFile.getFileSize());
         holder.fileSizeTextView.setText(sizeFormatted);
 
         // Formatta il timestamp del file in una data leggibile
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-        holder.fileDateTextView.setText(sdf.format(currentFile.getTimestamp()));
+        holder.fileDateTextView.setText(TimestampFormatter.format(currentFile.getTimestamp()));
+    }
+    /**
+     * Come {@link #onBindViewHolder(FileHolder, int)}, ma un cambio della sola selezione aggiorna lo stato "activated"
+     * senza ricollegare la riga.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull FileHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_SELECTION)) {
+            holder.itemView.setActivated(selectedIds.contains(getItem(position).getId()));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
     }
     /**
-     * Restituisce il numero totale di elementi nel set di dati in possesso dell'adattatore.
+     * Restituisce l'ID stabile della riga, cioè l'ID del file.
      *
-     * @return Il numero totale di elementi in questo adattatore.
+     * @param position La posizione dell'elemento.
+     * @return L'ID del file alla posizione specificata.
      */
     @Override
-    public int getItemCount() {
-        return fileItems.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
     /**
-     * Aggiorna il set di dati dell'adattatore con una nuova lista di elementi file e notifica il RecyclerView del cambiamento.
+     * Aggiorna il set di dati dell'adattatore con una nuova lista di elementi file.
+     * Le differenze vengono calcolate in background e applicate solo alle righe cambiate.
      *
      * @param fileItems La nuova lista di oggetti {@link FileItem} da visualizzare.
      */
     public void setFileItems(List<FileItem> fileItems) {
-        this.fileItems = fileItems;
-        notifyDataSetChanged();
+        submitList(fileItems);
     }
     /**
      * Restituisce l'elemento {@link FileItem} alla posizione specificata.
@@ -94,13 +144,14 @@ public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
      * @return L'oggetto FileItem alla posizione specificata.
      */
     public FileItem getFileItemAt(int position) {
-        return fileItems.get(position);
+        return getItem(position);
     }
     /**
      * Rappresenta un singolo elemento della lista (file) nella RecyclerView.
      * Ogni istanza di FileHolder gestisce il layout di un singolo elemento e i suoi componenti.
      */
-    class FileHolder extends RecyclerView.ViewHolder {
+    static class FileHolder extends RecyclerView.ViewHolder {
+        private FileAdapter adapter;// L'adattatore che ha collegato la ViewHolder per ultimo.
         private TextView fileNameTextView;
         private TextView fileSizeTextView;
         private TextView fileDateTextView;
@@ -120,11 +171,19 @@ public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
                 @Override
                 public void onClick(View v) {
                     int position = getAdapterPosition();
-                    if (listener != null && position != RecyclerView.NO_POSITION) {
-                        listener.onItemClick(fileItems.get(position));
+                    if (adapter != null && adapter.listener != null && position != RecyclerView.NO_POSITION) {
+                        adapter.listener.onItemClick(adapter.getItem(position));
                     }
                 }
             });
+            itemView.setOnLongClickListener(v -> {
+                int position = getAdapterPosition();
+                if (adapter != null && adapter.longClickListener != null && position != RecyclerView.NO_POSITION) {
+                    adapter.longClickListener.onItemLongClick(adapter.getItem(position));
+                    return true;
+                }
+                return false;
+            });
         }
     }
     /**
@@ -142,4 +201,30 @@ public class FileAdapter extends RecyclerView.Adapter<FileAdapter.FileHolder> {
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
+
+    /**
+     * Interfaccia per il click lungo su un elemento, es. per avviare la modalità selezione.
+     */
+    public interface OnItemLongClickListener {
+        void onItemLongClick(FileItem fileItem);
+    }
+    /**
+     * Imposta il listener per i click lunghi sugli elementi.
+     *
+     * @param listener L'implementazione di {@link OnItemLongClickListener} da usare, o null.
+     */
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        this.longClickListener = listener;
+    }
+
+    /**
+     * Evidenzia le righe selezionate. Le righe visibili aggiornano solo lo stato "activated"
+     * (vedi {@code selected_row_foreground}), senza ricollegare i testi.
+     *
+     * @param selectedIds Gli ID selezionati; l'insieme non viene copiato e non va modificato dopo la chiamata.
+     */
+    public void setSelectedIds(Set<Integer> selectedIds) {
+        this.selectedIds = selectedIds;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
 }
\ No newline at end of file
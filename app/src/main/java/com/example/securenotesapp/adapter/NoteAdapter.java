@@ -6,26 +6,62 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.securenotesapp.R;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
+import com.example.securenotesapp.utils.TimestampFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
 
 /**
  * Adattatore per RecyclerView utilizzato per visualizzare un elenco di oggetti {@link com.example.securenotesapp.model.Note}.
  * Gestisce la creazione e il binding delle ViewHolder per le note, e fornisce un'interfaccia per la gestione dei click sugli elementi.
+ *
+ * Le differenze tra la lista attuale e quella nuova vengono calcolate in un thread in background
+ * (vedi {@link ListAdapter}): vengono aggiornate solo le righe cambiate, con le animazioni e
+ * mantenendo la posizione di scorrimento. Gli ID delle righe sono stabili e coincidono con quelli delle note.
+ *
+ * Il collegamento di una riga non alloca formattatori (vedi {@link TimestampFormatter}) e non misura sul thread
+ * principale il contenuto intero della nota: l'anteprima viene troncata a {@link NoteCodec#PREVIEW_LENGTH} caratteri
+ * e il suo layout del testo viene precalcolato in background.
+ *
+ * Le ViewHolder possono provenire da un pool condiviso con altre liste (vedi
+ * {@link RecyclerView#setRecycledViewPool}): il tipo di vista è il layout della riga e ogni ViewHolder
+ * fa riferimento all'adattatore che l'ha collegata per ultimo, non a quello che l'ha creata.
  */
-public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder> {
+public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
+
+    /**
+     * Confronta le note per ID (stessa riga) e per tutti i campi memorizzati (stesso contenuto).
+     * Chiamato in un thread in background.
+     */
+    private static final DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
+    // Payload del cambio di selezione: la riga aggiorna solo lo stato "activated", senza ricollegare i testi.
+    private static final Object PAYLOAD_SELECTION = new Object();
 
-    // Inizializza la lista qui. Questo funge da costruttore predefinito.
-    private List<Note> notes;
     private OnItemClickListener listener;
+    private OnItemLongClickListener longClickListener;
+    private Set<Integer> selectedIds = Collections.emptySet();// ID delle righe selezionate in modalità selezione.
 
     /**
      * Costruttore per NoteAdapter che accetta una lista iniziale di note.
@@ -33,24 +69,34 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
      * @param initialNotes La lista iniziale di oggetti {@link com.example.securenotesapp.model.Note} da visualizzare.
      */
      public NoteAdapter(List<Note> initialNotes) {
-         this.notes.addAll(initialNotes); // Aggiungi gli elementi alla lista esistente
+         this();
+         submitList(initialNotes);
      }
 
     /**
-     * Costruttore predefinito per NoteAdapter. Inizializza la lista delle note come un nuovo ArrayList.
+     * Costruttore predefinito per NoteAdapter, con una lista vuota.
      */
      public NoteAdapter() {
-         this.notes = new ArrayList<>();
+         super(DIFF_CALLBACK);
+         setHasStableIds(true);
      }
 
     /**
-     * Aggiorna il set di dati dell'adattatore con una nuova lista di note e notifica il RecyclerView del cambiamento.
+     * Aggiorna il set di dati dell'adattatore con una nuova lista di note.
+     * Le differenze vengono calcolate in background e applicate solo alle righe cambiate.
      *
      * @param notes La nuova lista di oggetti {@link com.example.securenotesapp.model.Note} da visualizzare.
      */
     public void setNotes(List<Note> notes) {
-        this.notes = notes;
-        notifyDataSetChanged(); // Notifica al RecyclerView che i dati sono cambiati
+        submitList(notes);
+    }
+
+    /**
+     * Il tipo di vista è il layout della riga, unico tra gli adattatori che condividono il pool delle ViewHolder.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return R.layout.note_item;
     }
 
     /**
@@ -77,32 +123,60 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
      */
     @Override
     public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
-        Note currentNote = notes.get(position);
+        Note currentNote = getItem(position);
+        holder.adapter = this;
+        // Anche le righe che arrivano da un'altra lista del pool condiviso ripartono dallo stato di questa.
+        holder.itemView.setActivated(selectedIds.contains(currentNote.getId()));
         holder.textViewTitle.setText(currentNote.getTitle());
-        holder.textViewContentPreview.setText(currentNote.getContent());
+        // Il layout dell'anteprima viene calcolato in background e consumato alla misura della riga.
+        holder.textViewContentPreview.setTextFuture(PrecomputedTextCompat.getTextFuture(
+                preview(currentNote.getContent()),
+                TextViewCompat.getTextMetricsParams(holder.textViewContentPreview),
+                null));
 
         // Formatta il timestamp per una migliore leggibilità
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-        String formattedTimestamp = sdf.format(new Date(currentNote.getTimestamp()));
-        holder.textViewTimestamp.setText(formattedTimestamp);
+        holder.textViewTimestamp.setText(TimestampFormatter.format(currentNote.getTimestamp()));
+    }
+    /**
+     * Come {@link #onBindViewHolder(NoteViewHolder, int)}, ma un cambio della sola selezione aggiorna lo stato "activated"
+     * senza ricollegare la riga.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull NoteViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_SELECTION)) {
+            holder.itemView.setActivated(selectedIds.contains(getItem(position).getId()));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+    /**
+     * Tronca il contenuto alla parte che può comparire nell'anteprima, senza spezzare una coppia surrogata.
+     *
+     * @param content Il contenuto della nota (o la sua anteprima, per le note compresse). Può essere null.
+     * @return Il testo dell'anteprima.
+     */
+    static CharSequence preview(String content) {
+        return content != null ? NoteCodec.preview(content) : "";
     }
     /**
-     * Restituisce il numero totale di elementi nel set di dati in possesso dell'adattatore.
+     * Restituisce l'ID stabile della riga, cioè l'ID della nota.
      *
-     * @return Il numero totale di elementi in questo adattatore.
+     * @param position La posizione dell'elemento.
+     * @return L'ID della nota alla posizione specificata.
      */
     @Override
-    public int getItemCount() {
-        return notes.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     /**
      * ViewHolder interno per rappresentare ogni elemento della lista (nota) nella RecyclerView.
      * Ogni istanza di NoteViewHolder gestisce il layout di un singolo elemento e i suoi componenti.
      */
-    class NoteViewHolder extends RecyclerView.ViewHolder {
+    static class NoteViewHolder extends RecyclerView.ViewHolder {
+        private NoteAdapter adapter;// L'adattatore che ha collegato la ViewHolder per ultimo.
         private TextView textViewTitle;
-        private TextView textViewContentPreview;
+        private AppCompatTextView textViewContentPreview;
         private TextView textViewTimestamp;
         /**
          * Costruttore per NoteViewHolder.
@@ -121,11 +195,19 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
                 public void onClick(View v) {
                     int position = getAdapterPosition();
                     // Assicura che il listener non sia null e la posizione sia valida
-                    if (listener != null && position != RecyclerView.NO_POSITION) {
-                        listener.onItemClick(notes.get(position));
+                    if (adapter != null && adapter.listener != null && position != RecyclerView.NO_POSITION) {
+                        adapter.listener.onItemClick(adapter.getItem(position));
                     }
                 }
             });
+            itemView.setOnLongClickListener(v -> {
+                int position = getAdapterPosition();
+                if (adapter != null && adapter.longClickListener != null && position != RecyclerView.NO_POSITION) {
+                    adapter.longClickListener.onItemLongClick(adapter.getItem(position));
+                    return true;
+                }
+                return false;
+            });
         }
     }
 
@@ -149,6 +231,32 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
         this.listener = listener;
     }
 
+    /**
+     * Interfaccia per il click lungo su un elemento, es. per avviare la modalità selezione.
+     */
+    public interface OnItemLongClickListener {
+        void onItemLongClick(Note note);
+    }
+    /**
+     * Imposta il listener per i click lunghi sugli elementi.
+     *
+     * @param listener L'implementazione di {@link OnItemLongClickListener} da usare, o null.
+     */
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        this.longClickListener = listener;
+    }
+
+    /**
+     * Evidenzia le righe selezionate. Le righe visibili aggiornano solo lo stato "activated"
+     * (vedi {@code selected_row_foreground}), senza ricollegare i testi.
+     *
+     * @param selectedIds Gli ID selezionati; l'insieme non viene copiato e non va modificato dopo la chiamata.
+     */
+    public void setSelectedIds(Set<Integer> selectedIds) {
+        this.selectedIds = selectedIds;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
     /**
      * Metodo per ottenere una nota in una data posizione.
      * Utile per operazioni come swipe-to-delete.
@@ -157,6 +265,6 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
      * @return L'oggetto {@link com.example.securenotesapp.model.Note} alla posizione specificata.
      */
     public Note getNoteAt(int position) {
-        return notes.get(position);
+        return getItem(position);
     }
 }
\ No newline at end of file
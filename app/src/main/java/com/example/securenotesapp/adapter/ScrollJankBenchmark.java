@@ -0,0 +1,199 @@
+package com.example.securenotesapp.adapter;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.ViewGroup;
+import android.view.Window;
+
+import androidx.appcompat.app.AppCompatDialog;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.securenotesapp.model.Note;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Banco di prova dello scorrimento della lista delle note.
+ * Mostra a schermo intero un RecyclerView con {@link NoteAdapter} e {@link #ROW_COUNT} note sintetiche
+ * (alcune con contenuto di dimensioni da nota a frammenti), lo scorre a velocità costante per {@link #SCROLL_FRAMES}
+ * frame e raccoglie la durata di ogni frame con {@link FrameMetrics}. Riporta la mediana, il 95° e il 99° percentile
+ * e i frame in ritardo, cioè più lunghi di un intervallo di aggiornamento del display.
+ *
+ * Il contenuto è generato con un seme fisso, quindi le esecuzioni sono confrontabili.
+ * Pensato solo per le build di debug: va avviato dal thread principale.
+ */
+public class ScrollJankBenchmark {
+
+    private static final String TAG = "ScrollJankBenchmark";
+
+    private static final int ROW_COUNT = 10_000;
+    private static final int LONG_NOTE_EVERY = 500; // Una nota lunga ogni 500: 20 in tutto.
+    private static final int LONG_NOTE_CHARS = 256 * 1024;
+    private static final int SCROLL_FRAMES = 600;
+    private static final int SCROLL_STEP_DP = 48; // Spostamento per frame: uno scorrimento veloce.
+    private static final long METRICS_DRAIN_MS = 500; // Attesa delle ultime metriche, consegnate in ritardo.
+    private static final long SEED = 42L;
+
+    /**
+     * Callback per il risultato del benchmark, chiamato sul thread principale.
+     */
+    public interface ResultCallback {
+        void onResult(String report);
+    }
+
+    private final Activity activity;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Durate dei frame in nanosecondi, scritte dal thread delle metriche. Protette da 'this'.
+    private final List<Long> frameDurations = new ArrayList<>();
+    private boolean recording;
+
+    /**
+     * Costruttore per il benchmark.
+     *
+     * @param activity L'Activity su cui mostrare la lista.
+     */
+    public ScrollJankBenchmark(Activity activity) {
+        this.activity = activity;
+    }
+
+    /**
+     * Genera le note in background, poi mostra la lista e la scorre.
+     *
+     * @param callback Riceve il riepilogo leggibile al termine.
+     */
+    public void run(ResultCallback callback) {
+        executor.execute(() -> {
+            List<Note> notes = createNotes();
+            executor.shutdown();
+            activity.runOnUiThread(() -> scroll(notes, callback));
+        });
+    }
+
+    private void scroll(List<Note> notes, ResultCallback callback) {
+        RecyclerView recyclerView = new RecyclerView(activity);
+        recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+        NoteAdapter adapter = new NoteAdapter();
+        recyclerView.setAdapter(adapter);
+        adapter.setNotes(notes); // Il primo invio non calcola differenze: la lista è subito pronta.
+
+        AppCompatDialog dialog = new AppCompatDialog(activity);
+        dialog.setContentView(recyclerView);
+        dialog.setCancelable(false);
+        dialog.show();
+        Window window = dialog.getWindow();
+        window.setLayout(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+
+        HandlerThread metricsThread = new HandlerThread(TAG);
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener metricsListener = (w, frameMetrics, dropCount) -> {
+            if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                return; // Il primo frame include la creazione della finestra.
+            }
+            synchronized (this) {
+                if (recording) {
+                    frameDurations.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+                }
+            }
+        };
+        window.addOnFrameMetricsAvailableListener(metricsListener, new Handler(metricsThread.getLooper()));
+
+        int step = Math.round(SCROLL_STEP_DP * activity.getResources().getDisplayMetrics().density);
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        long frameBudgetNs = (long) (1_000_000_000L / refreshRate);
+        recyclerView.post(() -> {
+            synchronized (this) {
+                recording = true;
+            }
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                private int frames;
+
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    if (frames++ < SCROLL_FRAMES && recyclerView.canScrollVertically(1)) {
+                        recyclerView.scrollBy(0, step);
+                        Choreographer.getInstance().postFrameCallback(this);
+                        return;
+                    }
+                    recyclerView.postDelayed(() -> {
+                        synchronized (ScrollJankBenchmark.this) {
+                            recording = false;
+                        }
+                        window.removeOnFrameMetricsAvailableListener(metricsListener);
+                        metricsThread.quitSafely();
+                        dialog.dismiss();
+                        String report = buildReport(frameBudgetNs, refreshRate);
+                        Log.d(TAG, report);
+                        callback.onResult(report);
+                    }, METRICS_DRAIN_MS);
+                }
+            });
+        });
+    }
+
+    private synchronized String buildReport(long frameBudgetNs, float refreshRate) {
+        int count = frameDurations.size();
+        if (count == 0) {
+            return "Nessun frame misurato.";
+        }
+        long[] sorted = new long[count];
+        int janky = 0;
+        for (int i = 0; i < count; i++) {
+            sorted[i] = frameDurations.get(i);
+            if (sorted[i] > frameBudgetNs) {
+                janky++;
+            }
+        }
+        Arrays.sort(sorted);
+        return String.format(Locale.ROOT,
+                "Righe: %d, frame misurati: %d (display a %.0f Hz)\n"
+                        + "Durata frame: mediana %.1f ms, p95 %.1f ms, p99 %.1f ms, massima %.1f ms\n"
+                        + "Frame in ritardo: %d (%.1f%%)",
+                ROW_COUNT, count, refreshRate,
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), sorted[count - 1] / 1e6,
+                janky, 100.0 * janky / count);
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static List<Note> createNotes() {
+        Random random = new Random(SEED);
+        String longContent = randomText(random, LONG_NOTE_CHARS);
+        long now = System.currentTimeMillis();
+        List<Note> notes = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            String content = i % LONG_NOTE_EVERY == 0 ? longContent : randomText(random, 40 + random.nextInt(400));
+            Note note = new Note("Nota " + i, content, now - i * 60_000L);
+            note.setId(i + 1);
+            note.setContentLength(content.length());
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            int wordLength = 2 + random.nextInt(9);
+            for (int i = 0; i < wordLength; i++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+}
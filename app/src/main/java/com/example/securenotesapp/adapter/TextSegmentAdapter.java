@@ -0,0 +1,173 @@
+package com.example.securenotesapp.adapter;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.securenotesapp.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adattatore per l'editor a segmenti delle note molto grandi.
+ *
+ * Un unico EditText deve misurare e disporre tutto il testo a ogni modifica, e con qualche megabyte di contenuto
+ * l'apertura e lo scorrimento bloccano il thread principale. Questo adattatore divide il testo in segmenti
+ * di circa {@link #SEGMENT_CHARS} caratteri, spezzati a fine riga quando possibile, e mostra ogni segmento in un
+ * EditText di un RecyclerView: vengono disposti solo i segmenti visibili.
+ *
+ * Il testo originale non viene copiato: i segmenti sono intervalli calcolati una volta sola, e solo quelli
+ * modificati vengono trattenuti come stringhe separate. {@link #getText()} ricompone il testo completo.
+ */
+public class TextSegmentAdapter extends RecyclerView.Adapter<TextSegmentAdapter.SegmentHolder> {
+
+    /**
+     * Lunghezza oltre la quale l'editor usa i segmenti invece di un unico EditText.
+     */
+    public static final int SEGMENTED_THRESHOLD = 64 * 1024;
+    // Lunghezza indicativa di un segmento: poche schermate di testo.
+    private static final int SEGMENT_CHARS = 4 * 1024;
+
+    private final String original;
+    private final int[] starts; // Inizio di ogni segmento nel testo originale, più la lunghezza totale.
+    private final String[] edited; // Testo dei segmenti modificati, null per quelli invariati.
+    private Runnable onTextChangedListener;
+
+    /**
+     * Costruttore per TextSegmentAdapter.
+     *
+     * @param text Il testo completo da modificare.
+     */
+    public TextSegmentAdapter(String text) {
+        this.original = text;
+        this.starts = computeStarts(text);
+        this.edited = new String[starts.length - 1];
+    }
+
+    /**
+     * Calcola i confini dei segmenti: ogni segmento termina dopo l'ultimo a capo entro {@link #SEGMENT_CHARS}
+     * caratteri o, se non ce ne sono, dopo {@link #SEGMENT_CHARS} caratteri, senza spezzare una coppia surrogata.
+     */
+    private static int[] computeStarts(String text) {
+        List<Integer> boundaries = new ArrayList<>(text.length() / SEGMENT_CHARS + 2);
+        int start = 0;
+        int length = text.length();
+        boundaries.add(0);
+        while (start < length) {
+            int end = Math.min(start + SEGMENT_CHARS, length);
+            if (end < length) {
+                int newline = text.lastIndexOf('\n', end - 1);
+                if (newline >= start) {
+                    end = newline + 1;
+                } else if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end++;
+                }
+            }
+            boundaries.add(end);
+            start = end;
+        }
+        if (boundaries.size() == 1) {
+            boundaries.add(0); // Testo vuoto: un segmento vuoto, dove l'utente può scrivere.
+        }
+        int[] result = new int[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Imposta il listener chiamato a ogni modifica dell'utente, es. per il salvataggio automatico.
+     *
+     * @param listener Il listener, o null per rimuoverlo.
+     */
+    public void setOnTextChangedListener(Runnable listener) {
+        this.onTextChangedListener = listener;
+    }
+
+    private String segmentAt(int position) {
+        String text = edited[position];
+        return text != null ? text : original.substring(starts[position], starts[position + 1]);
+    }
+
+    /**
+     * Ricompone il testo completo, con le modifiche.
+     *
+     * @return Il testo dell'editor.
+     */
+    public String getText() {
+        int length = 0;
+        for (int i = 0; i < edited.length; i++) {
+            length += edited[i] != null ? edited[i].length() : starts[i + 1] - starts[i];
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < edited.length; i++) {
+            if (edited[i] != null) {
+                builder.append(edited[i]);
+            } else {
+                builder.append(original, starts[i], starts[i + 1]);
+            }
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    @Override
+    public SegmentHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.text_segment_item, parent, false);
+        return new SegmentHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SegmentHolder holder, int position) {
+        holder.binding = true; // Il testo impostato qui non è una modifica dell'utente.
+        holder.editTextSegment.setText(segmentAt(position));
+        holder.binding = false;
+    }
+
+    @Override
+    public int getItemCount() {
+        return edited.length;
+    }
+
+    /**
+     * Contiene l'EditText di un segmento e ne riporta le modifiche nell'adattatore.
+     */
+    class SegmentHolder extends RecyclerView.ViewHolder {
+        private final EditText editTextSegment;
+        private boolean binding;
+
+        SegmentHolder(@NonNull View itemView) {
+            super(itemView);
+            editTextSegment = itemView.findViewById(R.id.edit_text_segment);
+            editTextSegment.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    int position = getAdapterPosition();
+                    if (!binding && position != RecyclerView.NO_POSITION) {
+                        edited[position] = s.toString();
+                        if (onTextChangedListener != null) {
+                            onTextChangedListener.run();
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.securenotesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.securenotesapp.model.ChangeConsumer;
+import com.example.securenotesapp.model.ChangeLogEntry;
+
+import java.util.List;
+
+/**
+ * Interfaccia Data Access Object (DAO) per il registro delle modifiche ('change_log') e i suoi consumatori.
+ * Le voci del registro sono scritte solo dai trigger del database: questo DAO permette di leggerle
+ * a pagine dopo una sequenza data e di compattarle dopo la conferma dei consumatori.
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+@Dao
+public interface ChangeLogDao {
+    /**
+     * Recupera una pagina di modifiche successive alla sequenza indicata, in ordine di sequenza.
+     * La paginazione è per chiave, quindi ogni pagina costa una ricerca sulla chiave primaria.
+     *
+     * @param afterSeq L'ultima sequenza già elaborata (0 per iniziare).
+     * @param limit Il numero massimo di voci da restituire.
+     * @return La pagina di modifiche.
+     */
+    @Query("SELECT * FROM change_log WHERE seq > :afterSeq ORDER BY seq LIMIT :limit")
+    List<ChangeLogEntry> getChangesAfter(long afterSeq, int limit);
+    /**
+     * Restituisce la sequenza più recente assegnata, anche se la voce è già stata compattata.
+     * Un nuovo consumatore che esegue una lettura completa delle tabelle parte da questo valore.
+     *
+     * @return L'ultima sequenza assegnata, o 0 se il registro non è mai stato scritto.
+     */
+    @Query("SELECT IFNULL((SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)")
+    long getLatestSeq();
+    /**
+     * Registra un consumatore, se non è già registrato.
+     *
+     * @param consumer Il consumatore con la sequenza di partenza.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void registerConsumer(ChangeConsumer consumer);
+    /**
+     * Restituisce l'ultima sequenza confermata da un consumatore.
+     *
+     * @param name Il nome del consumatore.
+     * @return La sequenza confermata, o 0 se il consumatore non è registrato.
+     */
+    @Query("SELECT IFNULL((SELECT ackedSeq FROM change_consumers WHERE name = :name), 0)")
+    long getAckedSeq(String name);
+    /**
+     * Avanza la sequenza confermata da un consumatore. Una conferma più vecchia di quella attuale viene ignorata.
+     *
+     * @param name Il nome del consumatore.
+     * @param seq L'ultima sequenza elaborata.
+     */
+    @Query("UPDATE change_consumers SET ackedSeq = MAX(ackedSeq, :seq) WHERE name = :name")
+    void advanceConsumer(String name, long seq);
+    /**
+     * Rimuove un consumatore che non deve più ricevere modifiche, così che non blocchi la compattazione.
+     *
+     * @param name Il nome del consumatore.
+     */
+    @Query("DELETE FROM change_consumers WHERE name = :name")
+    void unregisterConsumer(String name);
+    /**
+     * Elimina le voci già confermate da tutti i consumatori registrati.
+     * Senza consumatori registrati nessuno ha bisogno dello storico, quindi il registro viene svuotato.
+     *
+     * @return Il numero di voci eliminate.
+     */
+    @Query("DELETE FROM change_log WHERE seq <= IFNULL((SELECT MIN(ackedSeq) FROM change_consumers), "
+            + "(SELECT IFNULL(MAX(seq), 0) FROM change_log))")
+    int compact();
+    /**
+     * Conferma l'elaborazione delle modifiche fino alla sequenza indicata e compatta il registro,
+     * in un'unica transazione.
+     *
+     * @param name Il nome del consumatore.
+     * @param seq L'ultima sequenza elaborata.
+     * @return Il numero di voci eliminate dalla compattazione.
+     */
+    @Transaction
+    default int acknowledge(String name, long seq) {
+        advanceConsumer(name, seq);
+        return compact();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.securenotesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.securenotesapp.model.DataMigrationState;
+
+/**
+ * Interfaccia Data Access Object (DAO) per lo stato delle migrazioni dei dati in background ('data_migrations').
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+@Dao
+public interface DataMigrationDao {
+    /**
+     * Registra una migrazione, se non è già registrata.
+     *
+     * @param state Lo stato iniziale della migrazione.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void register(DataMigrationState state);
+    /**
+     * Recupera lo stato di una migrazione.
+     *
+     * @param name Il nome della migrazione.
+     * @return Lo stato, o null se la migrazione non è registrata.
+     */
+    @Query("SELECT * FROM data_migrations WHERE name = :name")
+    DataMigrationState getState(String name);
+    /**
+     * Salva il checkpoint e l'avanzamento di una migrazione.
+     *
+     * @param state Lo stato aggiornato.
+     */
+    @Update
+    void update(DataMigrationState state);
+}
@@ -6,10 +6,12 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.example.securenotesapp.model.FileItem;
 
+import java.util.ArrayList;
 import java.util.List;
 /**
  * Interfaccia Data Access Object (DAO) per l'entità {@link com.example.securenotesapp.model.FileItem}.
@@ -18,29 +20,51 @@ import java.util.List;
  */
 @Dao
 public interface FileDao {
+    // Query delle viste della lista, ognuna servita da un indice di 'file_items' (vedi QueryPlanVerifier).
+    // I file nel cestino (deletedAt non null) sono esclusi da tutte le viste tranne il cestino stesso.
+    String QUERY_BY_MODIFIED = "SELECT * FROM file_items WHERE deletedAt IS NULL ORDER BY timestamp DESC";
+    String QUERY_BY_NAME = "SELECT * FROM file_items WHERE deletedAt IS NULL ORDER BY originalFileName COLLATE NOCASE";
+    String QUERY_BY_SIZE = "SELECT * FROM file_items WHERE deletedAt IS NULL ORDER BY fileSize DESC";
+    String QUERY_IN_DATE_RANGE = "SELECT * FROM file_items "
+            + "WHERE deletedAt IS NULL AND timestamp >= :fromTime AND timestamp < :toTime ORDER BY timestamp DESC";
+    String QUERY_BY_MIME_TYPE = "SELECT * FROM file_items WHERE deletedAt IS NULL AND mimeType = :mimeType "
+            + "ORDER BY timestamp DESC";
+    String QUERY_BY_MIME_TYPE_IN_DATE_RANGE = "SELECT * FROM file_items WHERE deletedAt IS NULL "
+            + "AND mimeType = :mimeType AND timestamp >= :fromTime AND timestamp < :toTime ORDER BY timestamp DESC";
+    String QUERY_BY_NAME_PREFIX = "SELECT * FROM file_items WHERE deletedAt IS NULL "
+            + "AND originalFileName COLLATE NOCASE >= :lower AND originalFileName COLLATE NOCASE < :upper "
+            + "ORDER BY originalFileName COLLATE NOCASE";
+    String QUERY_TRASH = "SELECT * FROM file_items WHERE deletedAt IS NOT NULL ORDER BY deletedAt DESC";
+    String QUERY_EXPIRED = "SELECT * FROM file_items WHERE deletedAt < :before ORDER BY deletedAt LIMIT :limit";
+    String QUERY_MIME_TYPES = "SELECT DISTINCT mimeType FROM file_items "
+            + "WHERE deletedAt IS NULL AND mimeType IS NOT NULL ORDER BY mimeType";
+
     /**
      * Inserisce un nuovo oggetto {@link com.example.securenotesapp.model.FileItem} nel database.
      *
      * @param fileItem L'oggetto FileItem da inserire.
+     * @return L'ID generato per il nuovo elemento.
      */
     @Insert
-    void insert(FileItem fileItem);
+    long insert(FileItem fileItem);
     /**
      * Aggiorna un oggetto {@link com.example.securenotesapp.model.FileItem} esistente nel database.
      * La nota viene identificata tramite il suo ID.
      *
      * @param fileItem L'oggetto FileItem da aggiornare.
+     * @return Il numero di righe aggiornate.
      */
     @Update
-    void update(FileItem fileItem);
+    int update(FileItem fileItem);
     /**
      * Elimina un oggetto {@link com.example.securenotesapp.model.FileItem} dal database.
      * L'elemento viene identificato tramite il suo ID.
      *
      * @param fileItem L'oggetto FileItem da eliminare.
+     * @return Il numero di righe eliminate.
      */
     @Delete
-    void delete(FileItem fileItem);
+    int delete(FileItem fileItem);
     /**
      * Recupera tutti gli oggetti {@link com.example.securenotesapp.model.FileItem} dal database,
      * ordinati per timestamp in ordine decrescente (dal più recente al meno recente).
@@ -48,8 +72,83 @@ public interface FileDao {
      * @return Un oggetto {@link androidx.lifecycle.LiveData} contenente una lista di tutti gli elementi FileItem.
      * LiveData è osservabile e si aggiorna automaticamente quando i dati nel database cambiano.
      */
-    @Query("SELECT * FROM file_items ORDER BY timestamp DESC")
+    @Query(QUERY_BY_MODIFIED)
     LiveData<List<FileItem>> getAllFileItems();
+    /**
+     * Versione sincrona di {@link #getAllFileItems()}, per le liste aggiornate riga per riga
+     * (vedi {@link com.example.securenotesapp.database.LiveRowList}).
+     *
+     * @return La lista dei file, dal più recente.
+     */
+    @Query(QUERY_BY_MODIFIED)
+    List<FileItem> getFileItemsByModifiedSync();
+    /**
+     * Recupera tutti i file ordinati per nome, senza distinguere maiuscole e minuscole.
+     *
+     * @return La lista dei file.
+     */
+    @Query(QUERY_BY_NAME)
+    List<FileItem> getFileItemsByNameSync();
+    /**
+     * Recupera tutti i file ordinati per dimensione, dal più grande.
+     *
+     * @return La lista dei file.
+     */
+    @Query(QUERY_BY_SIZE)
+    List<FileItem> getFileItemsBySizeSync();
+    /**
+     * Recupera i file con gli ID indicati, compresi quelli nel cestino.
+     * Usato per rileggere solo le righe cambiate dopo una notifica del registro delle modifiche.
+     *
+     * @param ids Gli ID dei file (al più {@link NoteDao#MAX_IDS_PER_QUERY}).
+     * @return I file trovati; gli ID di file eliminati non hanno una riga.
+     */
+    @Query("SELECT * FROM file_items WHERE id IN (:ids)")
+    List<FileItem> getFileItemsByIdsSync(List<Integer> ids);
+    /**
+     * Recupera i file aggiunti in un intervallo di tempo, dal più recente.
+     *
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista dei file.
+     */
+    @Query(QUERY_IN_DATE_RANGE)
+    LiveData<List<FileItem>> getFileItemsInDateRange(long fromTime, long toTime);
+    /**
+     * Recupera i file di un tipo MIME, dal più recente.
+     *
+     * @param mimeType Il tipo MIME (es. "application/pdf").
+     * @return La lista dei file.
+     */
+    @Query(QUERY_BY_MIME_TYPE)
+    List<FileItem> getFileItemsByMimeTypeSync(String mimeType);
+    /**
+     * Recupera i file di un tipo MIME aggiunti in un intervallo di tempo, dal più recente.
+     *
+     * @param mimeType Il tipo MIME.
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista dei file.
+     */
+    @Query(QUERY_BY_MIME_TYPE_IN_DATE_RANGE)
+    LiveData<List<FileItem>> getFileItemsByMimeTypeInDateRange(String mimeType, long fromTime, long toTime);
+    /**
+     * Recupera i file il cui nome inizia con un prefisso, ordinati per nome.
+     * I limiti vanno calcolati con {@link com.example.securenotesapp.utils.PrefixRange}.
+     *
+     * @param lower Limite inferiore dell'intervallo (incluso).
+     * @param upper Limite superiore dell'intervallo (escluso).
+     * @return Un LiveData con la lista dei file.
+     */
+    @Query(QUERY_BY_NAME_PREFIX)
+    LiveData<List<FileItem>> getFileItemsByNamePrefix(String lower, String upper);
+    /**
+     * Recupera i tipi MIME distinti presenti, letti dal solo indice (deletedAt, mimeType, timestamp).
+     *
+     * @return Un LiveData con la lista dei tipi MIME.
+     */
+    @Query(QUERY_MIME_TYPES)
+    LiveData<List<String>> getMimeTypes();
     /**
      * Recupera un singolo oggetto {@link com.example.securenotesapp.model.FileItem} dal database
      * tramite il suo ID.
@@ -68,6 +167,15 @@ public interface FileDao {
      */
     @Query("SELECT * FROM file_items ORDER BY timestamp DESC")
     List<FileItem> getAllFileItemsSync(); // Metodo sincrono per il backup
+    /**
+     * Recupera una pagina di file (compresi quelli nel cestino) in ordine di ID, per il backup a flusso.
+     *
+     * @param afterId L'ultimo ID della pagina precedente (0 per iniziare).
+     * @param limit Il numero massimo di file da restituire.
+     * @return La pagina di file.
+     */
+    @Query("SELECT * FROM file_items WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<FileItem> getFileItemsAfterSync(int afterId, int limit);
     /**
      * Inserisce una lista di oggetti {@link com.example.securenotesapp.model.FileItem} nel database.
      * Se un elemento con lo stesso ID esiste già, viene sostituito.
@@ -77,4 +185,80 @@ public interface FileDao {
      */
     @Insert(onConflict = OnConflictStrategy.REPLACE) // Sostituisce se c'è un conflitto sull'ID
     void insertAll(List<FileItem> fileItems);
-}
\ No newline at end of file
+    /**
+     * Recupera i file nel cestino, dal più recentemente eliminato.
+     *
+     * @return Un LiveData con la lista dei file nel cestino.
+     */
+    @Query(QUERY_TRASH)
+    LiveData<List<FileItem>> getTrashedFileItems();
+    /**
+     * Sposta un file nel cestino o lo ripristina, modificando solo il campo deletedAt.
+     *
+     * @param fileItemId L'ID del file.
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarlo.
+     * @return Il numero di righe aggiornate.
+     */
+    @Query("UPDATE file_items SET deletedAt = :deletedAt WHERE id = :fileItemId")
+    int setDeletedAt(int fileItemId, Long deletedAt);
+    /**
+     * Sposta nel cestino o ripristina i file indicati.
+     *
+     * @param fileItemIds Gli ID dei file (al più {@link NoteDao#MAX_IDS_PER_QUERY}).
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarli.
+     * @return Il numero di righe aggiornate.
+     */
+    @Query("UPDATE file_items SET deletedAt = :deletedAt WHERE id IN (:fileItemIds)")
+    int setDeletedAtByIds(List<Integer> fileItemIds, Long deletedAt);
+    /**
+     * Sposta nel cestino o ripristina una selezione di file di qualunque dimensione in un'unica transazione:
+     * le liste ricevono una sola invalidazione per tutta la selezione.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarli.
+     * @return Il numero di righe aggiornate.
+     */
+    @Transaction
+    default int setDeletedAtForSelection(List<Integer> fileItemIds, Long deletedAt) {
+        int rows = 0;
+        for (int from = 0; from < fileItemIds.size(); from += NoteDao.MAX_IDS_PER_QUERY) {
+            rows += setDeletedAtByIds(fileItemIds.subList(from,
+                    Math.min(fileItemIds.size(), from + NoteDao.MAX_IDS_PER_QUERY)), deletedAt);
+        }
+        return rows;
+    }
+    /**
+     * Recupera una pagina di file nel cestino da prima del momento indicato, dal più vecchio.
+     * Servono le righe complete per eliminare anche i file criptati sul filesystem.
+     *
+     * @param before Il limite (escluso) sul momento dell'eliminazione.
+     * @param limit Il numero massimo di file da restituire.
+     * @return I file da eliminare definitivamente.
+     */
+    @Query(QUERY_EXPIRED)
+    List<FileItem> getExpiredFileItems(long before, int limit);
+    /**
+     * Elimina definitivamente le righe dei file indicati.
+     *
+     * @param fileItemIds Gli ID dei file.
+     */
+    @Query("DELETE FROM file_items WHERE id IN (:fileItemIds)")
+    void deleteByIds(List<Integer> fileItemIds);
+    /**
+     * Elimina definitivamente le righe di una selezione di file di qualunque dimensione in un'unica transazione.
+     * I file criptati vanno eliminati dopo, dai percorsi delle righe restituite.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Le righe eliminate.
+     */
+    @Transaction
+    default List<FileItem> deleteSelection(List<Integer> fileItemIds) {
+        List<FileItem> deleted = new ArrayList<>(fileItemIds.size());
+        for (int from = 0; from < fileItemIds.size(); from += NoteDao.MAX_IDS_PER_QUERY) {
+            List<Integer> ids = fileItemIds.subList(from, Math.min(fileItemIds.size(), from + NoteDao.MAX_IDS_PER_QUERY));
+            deleted.addAll(getFileItemsByIdsSync(ids));
+            deleteByIds(ids);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.securenotesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.securenotesapp.model.NoteChunk;
+
+import java.util.List;
+
+/**
+ * Interfaccia Data Access Object (DAO) per l'entità {@link com.example.securenotesapp.model.NoteChunk}.
+ * Fornisce i metodi per leggere e riscrivere i frammenti del contenuto delle note grandi.
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+@Dao
+public interface NoteChunkDao {
+    /**
+     * Recupera le intestazioni (chiave, hash e lunghezza) di tutti i frammenti di una nota, in ordine.
+     * Non legge la colonna dei dati, quindi resta economico anche per note di molti MB.
+     *
+     * @param noteId L'ID della nota.
+     * @return La lista ordinata delle intestazioni dei frammenti.
+     */
+    @Query("SELECT chunkKey, chunkHash, charLength FROM note_chunks WHERE noteId = :noteId ORDER BY chunkKey")
+    List<NoteChunk.Header> getChunkHeaders(int noteId);
+    /**
+     * Calcola la lunghezza del contenuto di una nota a frammenti, senza leggerne i dati.
+     *
+     * @param noteId L'ID della nota.
+     * @return La somma delle lunghezze dei frammenti, in caratteri.
+     */
+    @Query("SELECT IFNULL(SUM(charLength), 0) FROM note_chunks WHERE noteId = :noteId")
+    int getContentLength(int noteId);
+    /**
+     * Recupera i frammenti di una nota con chiave compresa nell'intervallo indicato, in ordine.
+     * Usato per leggere solo la parte di contenuto toccata da una modifica.
+     *
+     * @param noteId L'ID della nota.
+     * @param fromKey La prima chiave (inclusa).
+     * @param toKey L'ultima chiave (inclusa).
+     * @return La lista ordinata dei frammenti.
+     */
+    @Query("SELECT * FROM note_chunks WHERE noteId = :noteId AND chunkKey BETWEEN :fromKey AND :toKey ORDER BY chunkKey")
+    List<NoteChunk> getChunksInRange(int noteId, long fromKey, long toKey);
+    /**
+     * Recupera una pagina di frammenti successivi alla chiave indicata.
+     * Usato per ricomporre il contenuto in streaming, senza caricare tutti i frammenti insieme.
+     *
+     * @param noteId L'ID della nota.
+     * @param afterKey L'ultima chiave letta (Long.MIN_VALUE per iniziare).
+     * @param limit Il numero massimo di frammenti da restituire.
+     * @return La pagina di frammenti.
+     */
+    @Query("SELECT * FROM note_chunks WHERE noteId = :noteId AND chunkKey > :afterKey ORDER BY chunkKey LIMIT :limit")
+    List<NoteChunk> getChunksAfter(int noteId, long afterKey, int limit);
+    /**
+     * Inserisce (o sostituisce) una lista di frammenti.
+     *
+     * @param chunks I frammenti da scrivere.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<NoteChunk> chunks);
+    /**
+     * Elimina i frammenti di una nota con le chiavi indicate.
+     *
+     * @param noteId L'ID della nota.
+     * @param chunkKeys Le chiavi dei frammenti da eliminare.
+     */
+    @Query("DELETE FROM note_chunks WHERE noteId = :noteId AND chunkKey IN (:chunkKeys)")
+    void deleteChunks(int noteId, List<Long> chunkKeys);
+    /**
+     * Elimina tutti i frammenti di una nota.
+     *
+     * @param noteId L'ID della nota.
+     */
+    @Query("DELETE FROM note_chunks WHERE noteId = :noteId")
+    void deleteAllForNote(int noteId);
+    /**
+     * Elimina tutti i frammenti delle note indicate.
+     *
+     * @param noteIds Gli ID delle note.
+     */
+    @Query("DELETE FROM note_chunks WHERE noteId IN (:noteIds)")
+    void deleteAllForNotes(List<Integer> noteIds);
+}
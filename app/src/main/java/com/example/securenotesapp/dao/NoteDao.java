@@ -6,10 +6,15 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
 
+import java.util.ArrayList;
 import java.util.List;
 /**
  * Interfaccia Data Access Object (DAO) per l'entità {@link com.example.securenotesapp.model.Note}.
@@ -18,30 +23,52 @@ import java.util.List;
  */
 @Dao // Indica che questa interfaccia è un DAO di Room
 public interface NoteDao {
+    // Numero massimo di ID per query con IN (...): resta sotto il limite di parametri di SQLite (999).
+    // Le liste più lunghe vanno divise in blocchi da chi chiama (vedi LiveRowList e i metodi "ForSelection").
+    int MAX_IDS_PER_QUERY = 500;
+    // Colonne delle righe della lista. Il contenuto compresso non viene letto (contentBlob resta null) e di 'content'
+    // si legge solo la parte mostrata nell'anteprima: la lista non copia né tiene in memoria il corpo delle note.
+    // Le note lette così sono parziali e non vanno salvate: l'editor rilegge la nota completa per ID.
+    String LIST_COLUMNS = "id, title, substr(content, 1, " + NoteCodec.PREVIEW_LENGTH + ") AS content, "
+            + "timestamp, contentCodec, NULL AS contentBlob, notebookId, contentLength, deletedAt";
+    // Query delle viste della lista, ognuna servita da un indice di 'notes' (vedi QueryPlanVerifier).
+    // Le note nel cestino (deletedAt non null) sono escluse da tutte le viste tranne il cestino stesso.
+    String QUERY_BY_MODIFIED = "SELECT " + LIST_COLUMNS + " FROM notes WHERE deletedAt IS NULL ORDER BY timestamp DESC";
+    String QUERY_BY_TITLE = "SELECT " + LIST_COLUMNS + " FROM notes WHERE deletedAt IS NULL ORDER BY title COLLATE NOCASE";
+    String QUERY_BY_SIZE = "SELECT " + LIST_COLUMNS + " FROM notes WHERE deletedAt IS NULL ORDER BY contentLength DESC";
+    String QUERY_IN_DATE_RANGE = "SELECT " + LIST_COLUMNS + " FROM notes "
+            + "WHERE deletedAt IS NULL AND timestamp >= :fromTime AND timestamp < :toTime ORDER BY timestamp DESC";
+    String QUERY_BY_TITLE_PREFIX = "SELECT " + LIST_COLUMNS + " FROM notes WHERE deletedAt IS NULL "
+            + "AND title COLLATE NOCASE >= :lower AND title COLLATE NOCASE < :upper ORDER BY title COLLATE NOCASE";
+    String QUERY_TRASH = "SELECT " + LIST_COLUMNS + " FROM notes WHERE deletedAt IS NOT NULL ORDER BY deletedAt DESC";
+    String QUERY_EXPIRED_IDS = "SELECT id FROM notes WHERE deletedAt < :before ORDER BY deletedAt LIMIT :limit";
+
     /**
      * Inserisce un nuovo oggetto {@link com.example.securenotesapp.model.Note} nel database.
      *
      * @param note L'oggetto Note da inserire.
+     * @return L'ID generato per la nuova nota.
      */
     @Insert // Annotazione per inserire una o più note nel DB
-    void insert(Note note);
+    long insert(Note note);
     /**
      * Aggiorna un oggetto {@link com.example.securenotesapp.model.Note} esistente nel database.
      * La nota viene identificata tramite il suo ID.
      *
      * @param note L'oggetto Note da aggiornare.
+     * @return Il numero di righe aggiornate.
      */
     @Update // Annotazione per aggiornare una o più note esistenti nel DB
-    void update(Note note);
+    int update(Note note);
     /**
      * Elimina un oggetto {@link com.example.securenotesapp.model.Note} dal database.
      * La nota viene identificata tramite il suo ID.
      *
      * @param note L'oggetto Note da eliminare.
+     * @return Il numero di righe eliminate.
      */
-
     @Delete // Annotazione per eliminare una o più note dal DB
-    void delete(Note note);
+    int delete(Note note);
     /**
      * Recupera tutti gli oggetti {@link com.example.securenotesapp.model.Note} dal database,
      * ordinati per timestamp in ordine decrescente (dal più recente al meno recente).
@@ -49,8 +76,85 @@ public interface NoteDao {
      * @return Un oggetto {@link androidx.lifecycle.LiveData} contenente una lista di tutte le note.
      * LiveData è osservabile e si aggiorna automaticamente quando i dati nel database cambiano.
      */
-    @Query("SELECT * FROM notes ORDER BY timestamp DESC") // Query personalizzata per ottenere tutte le note, ordinate dalla più recente
+    @Query(QUERY_BY_MODIFIED) // Query personalizzata per ottenere tutte le note, ordinate dalla più recente
     LiveData<List<Note>> getAllNotes();
+    /**
+     * Versione sincrona di {@link #getAllNotes()}, per le liste aggiornate riga per riga
+     * (vedi {@link com.example.securenotesapp.database.LiveRowList}).
+     *
+     * @return La lista delle note, dalla più recente.
+     */
+    @Query(QUERY_BY_MODIFIED)
+    List<Note> getNotesByModifiedSync();
+    /**
+     * Recupera tutte le note ordinate per titolo, senza distinguere maiuscole e minuscole.
+     *
+     * @return La lista delle note.
+     */
+    @Query(QUERY_BY_TITLE)
+    List<Note> getNotesByTitleSync();
+    /**
+     * Recupera tutte le note ordinate per lunghezza del contenuto, dalla più grande.
+     *
+     * @return La lista delle note.
+     */
+    @Query(QUERY_BY_SIZE)
+    List<Note> getNotesBySizeSync();
+    /**
+     * Recupera le righe della lista con gli ID indicati, comprese quelle nel cestino (vedi {@link #LIST_COLUMNS}).
+     * Usato per rileggere solo le righe cambiate dopo una notifica del registro delle modifiche.
+     *
+     * @param ids Gli ID delle note (al più {@link #MAX_IDS_PER_QUERY}).
+     * @return Le note trovate; gli ID di note eliminate non hanno una riga.
+     */
+    @Query("SELECT " + LIST_COLUMNS + " FROM notes WHERE id IN (:ids)")
+    List<Note> getNoteRowsByIdsSync(List<Integer> ids);
+    /**
+     * Recupera le note complete con gli ID indicati, nel formato di memorizzazione (es. per l'esportazione).
+     *
+     * @param ids Gli ID delle note (al più {@link #MAX_IDS_PER_QUERY}).
+     * @return Le note trovate.
+     */
+    @Query("SELECT * FROM notes WHERE id IN (:ids)")
+    List<Note> getNotesByIdsSync(List<Integer> ids);
+    /**
+     * Recupera le note modificate in un intervallo di tempo, dalla più recente.
+     *
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista delle note.
+     */
+    @Query(QUERY_IN_DATE_RANGE)
+    LiveData<List<Note>> getNotesInDateRange(long fromTime, long toTime);
+    /**
+     * Recupera le note il cui titolo inizia con un prefisso, ordinate per titolo.
+     * I limiti vanno calcolati con {@link com.example.securenotesapp.utils.PrefixRange}.
+     *
+     * @param lower Limite inferiore dell'intervallo (incluso).
+     * @param upper Limite superiore dell'intervallo (escluso).
+     * @return Un LiveData con la lista delle note.
+     */
+    @Query(QUERY_BY_TITLE_PREFIX)
+    LiveData<List<Note>> getNotesByTitlePrefix(String lower, String upper);
+    /**
+     * Versione sincrona di {@link #getNotesByTitlePrefix}, per la ricerca durante la digitazione.
+     *
+     * @param lower Limite inferiore dell'intervallo (incluso).
+     * @param upper Limite superiore dell'intervallo (escluso).
+     * @return La lista delle note.
+     */
+    @Query(QUERY_BY_TITLE_PREFIX)
+    List<Note> getNotesByTitlePrefixSync(String lower, String upper);
+    /**
+     * Esegue una query costruita a runtime che restituisce righe con le colonne di 'notes'.
+     * Usato per le tabelle dell'archivio, che Room non conosce perché si trovano in un database collegato
+     * (vedi {@link com.example.securenotesapp.database.NoteArchive}).
+     *
+     * @param query La query.
+     * @return Le note lette.
+     */
+    @RawQuery
+    List<Note> getNotesByRawQuery(SupportSQLiteQuery query);
 
     /**
      * Recupera un singolo oggetto {@link com.example.securenotesapp.model.Note} dal database
@@ -70,13 +174,190 @@ public interface NoteDao {
      */
     @Query("SELECT * FROM notes ORDER BY timestamp DESC")
     List<Note> getAllNotesSync(); // Metodo sincrono per il backup
+    /**
+     * Recupera una pagina di note (comprese quelle nel cestino) in ordine di ID, per il backup a flusso.
+     * La paginazione è per chiave: ogni pagina costa una ricerca sull'indice primario.
+     *
+     * @param afterId L'ultimo ID della pagina precedente (0 per iniziare).
+     * @param limit Il numero massimo di note da restituire.
+     * @return La pagina di note, nel formato di memorizzazione.
+     */
+    @Query("SELECT * FROM notes WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<Note> getNotesAfterSync(int afterId, int limit);
     /**
      * Inserisce una lista di oggetti {@link com.example.securenotesapp.model.Note} nel database.
-     * Se una nota con lo stesso ID esiste già, viene sostituita.
+     * Se una nota con lo stesso ID esiste già, viene aggiornata e non sostituita: con REPLACE la riga verrebbe
+     * eliminata, e con lei a cascata la bozza, i frammenti e la cronologia della nota.
      * Questo è utile per le operazioni di ripristino del backup.
      *
      * @param notes La lista di oggetti Note da inserire.
      */
-    @Insert(onConflict = OnConflictStrategy.REPLACE) // Sostituisce se c'è un conflitto sull'ID
-    void insertAll(List<Note> notes);
-}
\ No newline at end of file
+    @Transaction
+    default void insertAll(List<Note> notes) {
+        long[] rowIds = insertAllIgnoringExisting(notes);
+        List<Note> existing = new ArrayList<>();
+        for (int i = 0; i < rowIds.length; i++) {
+            if (rowIds[i] == -1) {
+                existing.add(notes.get(i));
+            }
+        }
+        if (!existing.isEmpty()) {
+            updateAll(existing);
+        }
+    }
+    /**
+     * Inserisce le note che non esistono ancora, ignorando quelle con un ID già presente.
+     *
+     * @param notes La lista di oggetti Note da inserire.
+     * @return Il rowId di ogni nota inserita, o -1 per quelle ignorate.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAllIgnoringExisting(List<Note> notes);
+    /**
+     * Recupera una singola nota tramite il suo ID, in modo sincrono.
+     * Da chiamare solo da un thread in background (es. per caricare il contenuto completo nell'editor).
+     *
+     * @param noteId L'ID della nota da recuperare.
+     * @return La nota corrispondente all'ID, o null se non esiste.
+     */
+    @Query("SELECT * FROM notes WHERE id = :noteId")
+    Note getNoteByIdSync(int noteId);
+    /**
+     * Recupera una pagina di note ancora salvate in chiaro il cui contenuto supera la lunghezza indicata.
+     * La paginazione è per chiave (id crescente), così ogni pagina costa una ricerca sull'indice primario
+     * invece di una scansione con OFFSET.
+     *
+     * @param afterId L'ultimo ID elaborato nella pagina precedente (0 per iniziare).
+     * @param minLength La lunghezza minima del contenuto, in caratteri.
+     * @param limit Il numero massimo di note da restituire.
+     * @return La pagina di note da comprimere.
+     */
+    @Query("SELECT * FROM notes WHERE id > :afterId AND contentCodec = 0 AND length(content) >= :minLength ORDER BY id LIMIT :limit")
+    List<Note> getUncompressedNotesAfter(int afterId, int minLength, int limit);
+    /**
+     * Conta le note in chiaro ancora da comprimere dopo l'ID indicato, per l'avanzamento della migrazione.
+     *
+     * @param afterId L'ultimo ID elaborato.
+     * @param minLength La lunghezza minima del contenuto, in caratteri.
+     * @return Il numero di note rimanenti.
+     */
+    @Query("SELECT COUNT(*) FROM notes WHERE id > :afterId AND contentCodec = 0 AND length(content) >= :minLength")
+    int countUncompressedNotesAfter(int afterId, int minLength);
+    /**
+     * Recupera una pagina di note la cui lunghezza del contenuto non è ancora stata calcolata,
+     * in ordine di ID a partire da quello indicato.
+     *
+     * @param afterId L'ultimo ID elaborato nella pagina precedente (0 per iniziare).
+     * @param limit Il numero massimo di note da restituire.
+     * @return La pagina di note, nel formato di memorizzazione.
+     */
+    @Query("SELECT * FROM notes WHERE id > :afterId AND contentLength = 0 ORDER BY id LIMIT :limit")
+    List<Note> getNotesWithoutLengthAfter(int afterId, int limit);
+    /**
+     * Conta le note senza lunghezza del contenuto dopo l'ID indicato.
+     *
+     * @param afterId L'ultimo ID elaborato.
+     * @return Il numero di note rimanenti.
+     */
+    @Query("SELECT COUNT(*) FROM notes WHERE id > :afterId AND contentLength = 0")
+    int countNotesWithoutLengthAfter(int afterId);
+    /**
+     * Imposta la lunghezza del contenuto di una nota, solo se non è già stata calcolata:
+     * una nota salvata nel frattempo ha già la lunghezza corretta e non viene toccata.
+     *
+     * @param noteId L'ID della nota.
+     * @param contentLength La lunghezza del contenuto, in caratteri.
+     */
+    @Query("UPDATE notes SET contentLength = :contentLength WHERE id = :noteId AND contentLength = 0")
+    void setMissingContentLength(int noteId, int contentLength);
+    /**
+     * Recupera le note nel cestino, dalla più recentemente eliminata.
+     *
+     * @return Un LiveData con la lista delle note nel cestino.
+     */
+    @Query(QUERY_TRASH)
+    LiveData<List<Note>> getTrashedNotes();
+    /**
+     * Sposta una nota nel cestino o la ripristina, modificando solo il campo deletedAt.
+     *
+     * @param noteId L'ID della nota.
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarla.
+     * @return Il numero di righe aggiornate.
+     */
+    @Query("UPDATE notes SET deletedAt = :deletedAt WHERE id = :noteId")
+    int setDeletedAt(int noteId, Long deletedAt);
+    /**
+     * Sposta nel cestino o ripristina le note indicate.
+     *
+     * @param noteIds Gli ID delle note (al più {@link #MAX_IDS_PER_QUERY}).
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarle.
+     * @return Il numero di righe aggiornate.
+     */
+    @Query("UPDATE notes SET deletedAt = :deletedAt WHERE id IN (:noteIds)")
+    int setDeletedAtByIds(List<Integer> noteIds, Long deletedAt);
+    /**
+     * Sposta le note indicate in un quaderno.
+     *
+     * @param noteIds Gli ID delle note (al più {@link #MAX_IDS_PER_QUERY}).
+     * @param notebookId Il quaderno di destinazione, o null per nessun quaderno.
+     * @return Il numero di righe aggiornate.
+     */
+    @Query("UPDATE notes SET notebookId = :notebookId WHERE id IN (:noteIds)")
+    int setNotebookIdByIds(List<Integer> noteIds, Integer notebookId);
+    /**
+     * Sposta nel cestino o ripristina una selezione di note di qualunque dimensione in un'unica transazione:
+     * le liste ricevono una sola invalidazione per tutta la selezione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @param deletedAt Il momento dell'eliminazione, o null per ripristinarle.
+     * @return Il numero di righe aggiornate.
+     */
+    @Transaction
+    default int setDeletedAtForSelection(List<Integer> noteIds, Long deletedAt) {
+        int rows = 0;
+        for (int from = 0; from < noteIds.size(); from += MAX_IDS_PER_QUERY) {
+            rows += setDeletedAtByIds(noteIds.subList(from,
+                    Math.min(noteIds.size(), from + MAX_IDS_PER_QUERY)), deletedAt);
+        }
+        return rows;
+    }
+    /**
+     * Sposta una selezione di note di qualunque dimensione in un quaderno, in un'unica transazione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @param notebookId Il quaderno di destinazione, o null per nessun quaderno.
+     * @return Il numero di righe aggiornate.
+     */
+    @Transaction
+    default int setNotebookIdForSelection(List<Integer> noteIds, Integer notebookId) {
+        int rows = 0;
+        for (int from = 0; from < noteIds.size(); from += MAX_IDS_PER_QUERY) {
+            rows += setNotebookIdByIds(noteIds.subList(from,
+                    Math.min(noteIds.size(), from + MAX_IDS_PER_QUERY)), notebookId);
+        }
+        return rows;
+    }
+    /**
+     * Recupera una pagina di ID di note nel cestino da prima del momento indicato, dalla più vecchia.
+     *
+     * @param before Il limite (escluso) sul momento dell'eliminazione.
+     * @param limit Il numero massimo di ID da restituire.
+     * @return Gli ID delle note da eliminare definitivamente.
+     */
+    @Query(QUERY_EXPIRED_IDS)
+    List<Integer> getExpiredNoteIds(long before, int limit);
+    /**
+     * Elimina definitivamente le note indicate. Frammenti e revisioni vengono eliminati a cascata.
+     *
+     * @param noteIds Gli ID delle note.
+     */
+    @Query("DELETE FROM notes WHERE id IN (:noteIds)")
+    void deleteByIds(List<Integer> noteIds);
+    /**
+     * Aggiorna una lista di note esistenti in un'unica transazione.
+     *
+     * @param notes La lista di oggetti Note da aggiornare.
+     */
+    @Update
+    void updateAll(List<Note> notes);
+}
@@ -0,0 +1,106 @@
+package com.example.securenotesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteDraftDelta;
+
+import java.util.List;
+
+/**
+ * Interfaccia Data Access Object (DAO) per le bozze del salvataggio automatico
+ * ({@link NoteDraft}) e le loro differenze ({@link NoteDraftDelta}).
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+@Dao
+public interface NoteDraftDao {
+    /**
+     * Inserisce una nuova bozza.
+     *
+     * @param draft La bozza da inserire.
+     * @return L'ID generato.
+     */
+    @Insert
+    long insert(NoteDraft draft);
+    /**
+     * Aggiorna una bozza esistente (es. dopo la riscrittura della base).
+     *
+     * @param draft La bozza da aggiornare.
+     */
+    @Update
+    void update(NoteDraft draft);
+    /**
+     * Aggiorna i campi piccoli di una bozza dopo l'aggiunta di una differenza, senza riscrivere la base.
+     */
+    @Query("UPDATE note_drafts SET title = :title, notebookId = :notebookId, deltaCount = :deltaCount, "
+            + "deltaBytes = :deltaBytes, updatedAt = :updatedAt WHERE id = :id")
+    void updateHeader(long id, String title, Integer notebookId, int deltaCount, int deltaBytes, long updatedAt);
+    /**
+     * Inserisce una differenza.
+     *
+     * @param delta La differenza da inserire.
+     */
+    @Insert
+    void insertDelta(NoteDraftDelta delta);
+    /**
+     * Recupera una bozza per ID.
+     *
+     * @param id L'ID della bozza.
+     * @return La bozza, o null se non esiste.
+     */
+    @Query("SELECT * FROM note_drafts WHERE id = :id")
+    NoteDraft getById(long id);
+    /**
+     * Recupera la bozza di una nota esistente.
+     *
+     * @param noteId L'ID della nota.
+     * @return La bozza, o null se non esiste.
+     */
+    @Query("SELECT * FROM note_drafts WHERE noteId = :noteId")
+    NoteDraft getByNoteId(int noteId);
+    /**
+     * Recupera le dimensioni di una bozza senza leggerne la base.
+     *
+     * @param id L'ID della bozza.
+     * @return Le dimensioni, o null se la bozza non esiste.
+     */
+    @Query("SELECT deltaCount, deltaBytes, length(base) AS baseBytes FROM note_drafts WHERE id = :id")
+    NoteDraft.Sizes getSizes(long id);
+    /**
+     * Recupera le intestazioni di tutte le bozze, dalla più recente.
+     *
+     * @return La lista delle intestazioni.
+     */
+    @Query("SELECT id, noteId, title, updatedAt FROM note_drafts ORDER BY updatedAt DESC")
+    List<NoteDraft.Header> getHeaders();
+    /**
+     * Recupera le differenze di una bozza, in ordine di applicazione.
+     *
+     * @param draftId L'ID della bozza.
+     * @return La lista ordinata delle differenze.
+     */
+    @Query("SELECT * FROM note_draft_deltas WHERE draftId = :draftId ORDER BY seq")
+    List<NoteDraftDelta> getDeltas(long draftId);
+    /**
+     * Elimina tutte le differenze di una bozza (dopo la riscrittura della base).
+     *
+     * @param draftId L'ID della bozza.
+     */
+    @Query("DELETE FROM note_draft_deltas WHERE draftId = :draftId")
+    void deleteDeltas(long draftId);
+    /**
+     * Elimina una bozza e, a cascata, le sue differenze.
+     *
+     * @param id L'ID della bozza.
+     */
+    @Query("DELETE FROM note_drafts WHERE id = :id")
+    void delete(long id);
+    /**
+     * Elimina tutte le bozze e, a cascata, le loro differenze.
+     */
+    @Query("DELETE FROM note_drafts")
+    void deleteAll();
+}
@@ -0,0 +1,103 @@
+package com.example.securenotesapp.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.example.securenotesapp.model.NoteRevision;
+
+import java.util.List;
+
+/**
+ * Interfaccia Data Access Object (DAO) per l'entità {@link com.example.securenotesapp.model.NoteRevision}.
+ * Fornisce i metodi per registrare, ricostruire e potare la cronologia delle note.
+ * Tutte le query usano l'indice (noteId, revision).
+ */
+@Dao
+public interface NoteRevisionDao {
+    /**
+     * Inserisce una nuova revisione.
+     *
+     * @param revision La revisione da inserire.
+     */
+    @Insert
+    void insert(NoteRevision revision);
+    /**
+     * Restituisce il numero dell'ultima revisione di una nota.
+     *
+     * @param noteId L'ID della nota.
+     * @return Il numero dell'ultima revisione, o 0 se la nota non ha cronologia.
+     */
+    @Query("SELECT IFNULL(MAX(revision), 0) FROM note_revisions WHERE noteId = :noteId")
+    int getLatestRevision(int noteId);
+    /**
+     * Restituisce il numero dell'ultima istantanea completa non successiva alla revisione indicata.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision La revisione di riferimento.
+     * @return Il numero dell'istantanea, o 0 se non esiste.
+     */
+    @Query("SELECT IFNULL(MAX(revision), 0) FROM note_revisions WHERE noteId = :noteId AND kind = 0 AND revision <= :revision")
+    int getSnapshotAtOrBefore(int noteId, int revision);
+    /**
+     * Restituisce il numero della prima istantanea completa successiva alla revisione indicata.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision La revisione di riferimento.
+     * @return Il numero dell'istantanea, o 0 se non esiste.
+     */
+    @Query("SELECT IFNULL(MIN(revision), 0) FROM note_revisions WHERE noteId = :noteId AND kind = 0 AND revision > :revision")
+    int getSnapshotAfter(int noteId, int revision);
+    /**
+     * Restituisce la dimensione (in byte compressi) delle revisioni di una nota a partire da quella indicata.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision La prima revisione (inclusa).
+     * @return La somma delle dimensioni dei dati.
+     */
+    @Query("SELECT IFNULL(SUM(length(data)), 0) FROM note_revisions WHERE noteId = :noteId AND revision >= :revision")
+    long getHistoryBytesFrom(int noteId, int revision);
+    /**
+     * Recupera le revisioni di una nota comprese nell'intervallo indicato, in ordine.
+     *
+     * @param noteId L'ID della nota.
+     * @param fromRevision La prima revisione (inclusa).
+     * @param toRevision L'ultima revisione (inclusa).
+     * @return La lista ordinata delle revisioni.
+     */
+    @Query("SELECT * FROM note_revisions WHERE noteId = :noteId AND revision BETWEEN :fromRevision AND :toRevision ORDER BY revision")
+    List<NoteRevision> getRevisionRange(int noteId, int fromRevision, int toRevision);
+    /**
+     * Restituisce la prima revisione salvata dopo il timestamp indicato.
+     *
+     * @param noteId L'ID della nota.
+     * @param timestamp Il limite temporale.
+     * @return Il numero della revisione, o 0 se non esiste.
+     */
+    @Query("SELECT IFNULL(MIN(revision), 0) FROM note_revisions WHERE noteId = :noteId AND timestamp >= :timestamp")
+    int getFirstRevisionSince(int noteId, long timestamp);
+    /**
+     * Elimina le revisioni di una nota precedenti a quella indicata.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision La prima revisione da conservare.
+     */
+    @Query("DELETE FROM note_revisions WHERE noteId = :noteId AND revision < :revision")
+    void deleteBefore(int noteId, int revision);
+    /**
+     * Elimina l'intera cronologia delle note indicate (es. prima di sostituirne il contenuto con quello di un backup).
+     *
+     * @param noteIds Gli ID delle note.
+     */
+    @Query("DELETE FROM note_revisions WHERE noteId IN (:noteIds)")
+    void deleteAllForNotes(List<Integer> noteIds);
+    /**
+     * Recupera le intestazioni della cronologia di una nota, dalla più recente.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un LiveData con le intestazioni delle revisioni.
+     */
+    @Query("SELECT revision, timestamp, kind, length(data) AS size FROM note_revisions WHERE noteId = :noteId ORDER BY revision DESC")
+    LiveData<List<NoteRevision.Header>> getRevisionHeaders(int noteId);
+}
@@ -0,0 +1,261 @@
+package com.example.securenotesapp.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.Notebook;
+import com.example.securenotesapp.model.NotebookClosure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interfaccia Data Access Object (DAO) per i quaderni e la loro tabella di chiusura.
+ * La tabella di chiusura viene mantenuta solo dai metodi transazionali di questo DAO
+ * ({@link #createNotebook}, {@link #moveNotebook}, {@link #deleteNotebook}, {@link #replaceAll(List)}).
+ */
+@Dao
+public interface NotebookDao {
+    // Profondità massima della gerarchia: limita le righe di chiusura toccate da uno spostamento.
+    int MAX_DEPTH = 8;
+
+    /**
+     * Recupera tutti i quaderni, ordinati per nome.
+     *
+     * @return Un LiveData con la lista dei quaderni.
+     */
+    @Query("SELECT * FROM notebooks ORDER BY name COLLATE NOCASE")
+    LiveData<List<Notebook>> getAllNotebooks();
+    /**
+     * Recupera tutti i quaderni in modo sincrono (es. per il backup).
+     *
+     * @return La lista dei quaderni.
+     */
+    @Query("SELECT * FROM notebooks ORDER BY id")
+    List<Notebook> getAllNotebooksSync();
+    /**
+     * Recupera le note contenute in un quaderno o in uno qualsiasi dei suoi sotto-quaderni,
+     * con una sola query sulla tabella di chiusura. Le note nel cestino sono escluse: il "+" impedisce a SQLite
+     * di usare per quel filtro gli indici (deletedAt, ...), che leggerebbero tutte le note attive invece
+     * delle sole note dei quaderni del sotto-albero.
+     *
+     * @param notebookId L'ID del quaderno.
+     * @return Le note, dalla più recente.
+     */
+    @Query("SELECT " + NoteDao.LIST_COLUMNS + " FROM notebook_closure "
+            + "JOIN notes ON notes.notebookId = notebook_closure.descendantId "
+            + "WHERE notebook_closure.ancestorId = :notebookId AND +notes.deletedAt IS NULL ORDER BY notes.timestamp DESC")
+    List<Note> getNotesInSubtreeSync(int notebookId);
+    /**
+     * Come {@link #getNotesInSubtreeSync(int)}, ordinate per titolo.
+     */
+    @Query("SELECT " + NoteDao.LIST_COLUMNS + " FROM notebook_closure "
+            + "JOIN notes ON notes.notebookId = notebook_closure.descendantId "
+            + "WHERE notebook_closure.ancestorId = :notebookId AND +notes.deletedAt IS NULL ORDER BY notes.title COLLATE NOCASE")
+    List<Note> getNotesInSubtreeByTitleSync(int notebookId);
+    /**
+     * Come {@link #getNotesInSubtreeSync(int)}, ordinate per lunghezza del contenuto, dalla più grande.
+     */
+    @Query("SELECT " + NoteDao.LIST_COLUMNS + " FROM notebook_closure "
+            + "JOIN notes ON notes.notebookId = notebook_closure.descendantId "
+            + "WHERE notebook_closure.ancestorId = :notebookId AND +notes.deletedAt IS NULL ORDER BY notes.contentLength DESC")
+    List<Note> getNotesInSubtreeBySizeSync(int notebookId);
+    /**
+     * Restituisce gli ID di un quaderno e di tutti i suoi discendenti.
+     *
+     * @param notebookId L'ID del quaderno.
+     * @return Gli ID del sotto-albero, compreso il quaderno stesso.
+     */
+    @Query("SELECT descendantId FROM notebook_closure WHERE ancestorId = :notebookId")
+    List<Integer> getSubtreeIds(int notebookId);
+
+    @Insert
+    long insert(Notebook notebook);
+
+    /**
+     * Inserisce i quaderni che non esistono ancora, ignorando quelli con un ID già presente.
+     *
+     * @param notebooks I quaderni da inserire.
+     * @return Il rowId di ogni quaderno inserito, o -1 per quelli ignorati.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAllNotebooks(List<Notebook> notebooks);
+
+    @Update
+    void updateAllNotebooks(List<Notebook> notebooks);
+
+    @Insert
+    void insertClosure(List<NotebookClosure> rows);
+
+    @Query("INSERT INTO notebook_closure (ancestorId, descendantId, depth) "
+            + "SELECT ancestorId, :notebookId, depth + 1 FROM notebook_closure WHERE descendantId = :parentId "
+            + "UNION ALL SELECT :notebookId, :notebookId, 0")
+    void insertClosureForNew(int notebookId, Integer parentId);
+
+    /**
+     * Restituisce la profondità di un quaderno (0 per un quaderno di primo livello).
+     */
+    @Query("SELECT IFNULL(MAX(depth), 0) FROM notebook_closure WHERE descendantId = :notebookId")
+    int getDepth(int notebookId);
+
+    /**
+     * Restituisce l'altezza del sotto-albero di un quaderno (0 se non ha sotto-quaderni).
+     */
+    @Query("SELECT IFNULL(MAX(depth), 0) FROM notebook_closure WHERE ancestorId = :notebookId")
+    int getSubtreeHeight(int notebookId);
+
+    @Query("SELECT COUNT(*) > 0 FROM notebook_closure WHERE ancestorId = :ancestorId AND descendantId = :notebookId")
+    boolean isInSubtree(int ancestorId, int notebookId);
+
+    /**
+     * Scollega un sotto-albero dai suoi antenati esterni, mantenendo le relazioni interne.
+     */
+    @Query("DELETE FROM notebook_closure "
+            + "WHERE descendantId IN (SELECT descendantId FROM notebook_closure WHERE ancestorId = :notebookId) "
+            + "AND ancestorId NOT IN (SELECT descendantId FROM notebook_closure WHERE ancestorId = :notebookId)")
+    void detachSubtree(int notebookId);
+
+    /**
+     * Collega un sotto-albero (già scollegato) sotto un nuovo genitore: prodotto cartesiano
+     * tra gli antenati del genitore e i discendenti del sotto-albero.
+     */
+    @Query("INSERT INTO notebook_closure (ancestorId, descendantId, depth) "
+            + "SELECT above.ancestorId, below.descendantId, above.depth + below.depth + 1 "
+            + "FROM notebook_closure AS above, notebook_closure AS below "
+            + "WHERE above.descendantId = :parentId AND below.ancestorId = :notebookId")
+    void attachSubtree(int notebookId, int parentId);
+
+    @Query("UPDATE notebooks SET parentId = :parentId WHERE id = :notebookId")
+    void setParent(int notebookId, Integer parentId);
+
+    /**
+     * Sposta le note di un sotto-albero nel quaderno indicato (es. prima di eliminare il sotto-albero).
+     */
+    @Query("UPDATE notes SET notebookId = :targetId "
+            + "WHERE notebookId IN (SELECT descendantId FROM notebook_closure WHERE ancestorId = :notebookId)")
+    void moveNotesOutOfSubtree(int notebookId, Integer targetId);
+
+    @Query("DELETE FROM notebooks WHERE id = :notebookId")
+    void deleteById(int notebookId);
+
+    @Query("DELETE FROM notebook_closure")
+    void clearClosure();
+
+    /**
+     * Crea un quaderno e le sue righe di chiusura in un'unica transazione.
+     *
+     * @param notebook Il quaderno da creare.
+     * @return L'ID del nuovo quaderno, o -1 se il genitore è già alla profondità massima.
+     */
+    @Transaction
+    default int createNotebook(Notebook notebook) {
+        if (notebook.getParentId() != null && getDepth(notebook.getParentId()) + 1 >= MAX_DEPTH) {
+            return -1;
+        }
+        int id = (int) insert(notebook);
+        insertClosureForNew(id, notebook.getParentId());
+        return id;
+    }
+
+    /**
+     * Sposta un quaderno, con tutto il suo sotto-albero, sotto un nuovo genitore.
+     * Le note non vengono toccate: cambiano solo le righe di chiusura tra il sotto-albero e i suoi
+     * antenati, il cui numero è limitato da dimensione del sotto-albero per {@link #MAX_DEPTH}.
+     *
+     * @param notebookId L'ID del quaderno da spostare.
+     * @param newParentId L'ID del nuovo genitore, o null per spostarlo al primo livello.
+     * @return true se lo spostamento è stato eseguito, false se creerebbe un ciclo o supererebbe la profondità massima.
+     */
+    @Transaction
+    default boolean moveNotebook(int notebookId, Integer newParentId) {
+        if (newParentId != null) {
+            if (isInSubtree(notebookId, newParentId)) {
+                return false; // Un quaderno non può finire dentro sé stesso o un suo discendente.
+            }
+            if (getDepth(newParentId) + 1 + getSubtreeHeight(notebookId) >= MAX_DEPTH) {
+                return false;
+            }
+        }
+        detachSubtree(notebookId);
+        if (newParentId != null) {
+            attachSubtree(notebookId, newParentId);
+        }
+        setParent(notebookId, newParentId);
+        return true;
+    }
+
+    /**
+     * Elimina un quaderno e i suoi sotto-quaderni. Le note contenute vengono spostate nel genitore
+     * del quaderno eliminato (o fuori da ogni quaderno), non eliminate.
+     *
+     * @param notebook Il quaderno da eliminare.
+     */
+    @Transaction
+    default void deleteNotebook(Notebook notebook) {
+        moveNotesOutOfSubtree(notebook.getId(), notebook.getParentId());
+        deleteById(notebook.getId()); // Sotto-quaderni e righe di chiusura vengono eliminati a cascata.
+    }
+
+    /**
+     * Inserisce o aggiorna i quaderni indicati e ricostruisce l'intera tabella di chiusura
+     * a partire dai genitori diretti (es. ripristino da backup).
+     * Un quaderno esistente viene aggiornato e non sostituito: con REPLACE la riga verrebbe eliminata,
+     * e con lei a cascata i suoi sotto-quaderni locali, lasciando le loro note su quaderni inesistenti.
+     *
+     * @param notebooks I quaderni da scrivere.
+     */
+    @Transaction
+    default void replaceAll(List<Notebook> notebooks) {
+        // I genitori vanno scritti prima dei figli, altrimenti la chiave esterna su parentId fallisce.
+        Map<Integer, Integer> depths = new HashMap<>();
+        for (NotebookClosure row : buildClosure(notebooks)) {
+            depths.merge(row.getDescendantId(), row.getDepth(), Math::max);
+        }
+        List<Notebook> ordered = new ArrayList<>(notebooks);
+        ordered.sort(Comparator.comparingInt(notebook -> depths.get(notebook.getId())));
+        long[] rowIds = insertAllNotebooks(ordered);
+        List<Notebook> existing = new ArrayList<>();
+        for (int i = 0; i < rowIds.length; i++) {
+            if (rowIds[i] == -1) {
+                existing.add(ordered.get(i));
+            }
+        }
+        if (!existing.isEmpty()) {
+            updateAllNotebooks(existing);
+        }
+        clearClosure();
+        insertClosure(buildClosure(getAllNotebooksSync()));
+    }
+
+    /**
+     * Calcola le righe di chiusura risalendo la catena dei genitori di ogni quaderno.
+     * Una catena che non termina (dati corrotti) viene interrotta dopo {@code notebooks.size()} passi.
+     *
+     * @param notebooks Tutti i quaderni.
+     * @return Le righe della tabella di chiusura.
+     */
+    static List<NotebookClosure> buildClosure(List<Notebook> notebooks) {
+        Map<Integer, Integer> parents = new HashMap<>();
+        for (Notebook notebook : notebooks) {
+            parents.put(notebook.getId(), notebook.getParentId());
+        }
+        List<NotebookClosure> rows = new ArrayList<>();
+        for (Notebook notebook : notebooks) {
+            Integer ancestor = notebook.getId();
+            for (int depth = 0; ancestor != null && depth <= notebooks.size(); depth++) {
+                rows.add(new NotebookClosure(ancestor, notebook.getId(), depth));
+                ancestor = parents.get(ancestor);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.securenotesapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Banco di prova comparativo dei profili {@link CipherProfile}.
+ * Per ogni profilo crea nella cache un archivio sintetico con lo stesso schema e le stesse dimensioni tipiche
+ * della tabella 'notes', poi misura:
+ * <ul>
+ *     <li>il tempo di apertura (derivazione della chiave e prima lettura);</li>
+ *     <li>la velocità di inserimento in blocco (note al secondo, a transazioni da {@link #INSERT_BATCH});</li>
+ *     <li>la latenza della query della lista (mediana) e di una lettura per ID (mediana);</li>
+ *     <li>la dimensione del file risultante.</li>
+ * </ul>
+ * Il contenuto è generato con un seme fisso, quindi i profili vengono confrontati sugli stessi dati.
+ * Pensato solo per le build di debug: va eseguito su un thread in background.
+ */
+public class CipherBenchmark {
+
+    private static final String TAG = "CipherBenchmark";
+
+    private static final int NOTE_COUNT = 2000;
+    private static final int INSERT_BATCH = 100;
+    private static final int QUERY_RUNS = 25;
+    private static final int LIST_PAGE = 50; // Righe visibili in una schermata della lista, con margine.
+    private static final long SEED = 42L;
+
+    /**
+     * Callback per l'avanzamento del benchmark.
+     */
+    public interface ProgressCallback {
+        void onProgress(int percentage, String message);
+    }
+
+    private final Context context;
+
+    /**
+     * Costruttore per il benchmark.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public CipherBenchmark(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Esegue il benchmark su tutti i profili e restituisce un riepilogo leggibile.
+     *
+     * @param callback Il callback per l'avanzamento, può essere null.
+     * @return Il riepilogo dei risultati, un profilo per riga.
+     */
+    public String runAll(ProgressCallback callback) {
+        StringBuilder report = new StringBuilder();
+        CipherProfile[] profiles = CipherProfile.PROFILES;
+        for (int i = 0; i < profiles.length; i++) {
+            if (callback != null) {
+                callback.onProgress(i * 100 / profiles.length, "Profilo: " + profiles[i].getLabel());
+            }
+            try {
+                report.append(run(profiles[i])).append('\n');
+            } catch (Exception e) {
+                Log.e(TAG, "Benchmark fallito per il profilo " + profiles[i].getName() + ": " + e.getMessage(), e);
+                report.append(profiles[i].getLabel()).append(": errore (").append(e.getMessage()).append(")\n\n");
+            }
+        }
+        if (callback != null) {
+            callback.onProgress(100, "Completato");
+        }
+        Log.d(TAG, report.toString());
+        return report.toString();
+    }
+
+    /**
+     * Esegue il benchmark per un singolo profilo su un archivio sintetico nuovo.
+     */
+    private String run(CipherProfile profile) {
+        File file = new File(context.getCacheDir(), "benchmark_" + profile.getName() + ".db");
+        deleteDatabaseFiles(file);
+        byte[] passphrase = new byte[32];
+        new SecureRandom().nextBytes(passphrase); // Come la passphrase reale: casuale, non derivata da una password.
+        int flags = SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.CREATE_IF_NECESSARY;
+        try {
+            // Creazione e inserimento in blocco.
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), passphrase, null, flags,
+                    CipherProfile.createHook(profile, profile));
+            db.execSQL("CREATE TABLE notes (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, title TEXT, "
+                    + "content TEXT, timestamp INTEGER NOT NULL, contentCodec INTEGER NOT NULL DEFAULT 0, contentBlob BLOB)");
+            Random random = new Random(SEED);
+            long insertStart = SystemClock.elapsedRealtimeNanos();
+            for (int from = 0; from < NOTE_COUNT; from += INSERT_BATCH) {
+                db.beginTransaction();
+                try {
+                    for (int i = from; i < Math.min(NOTE_COUNT, from + INSERT_BATCH); i++) {
+                        ContentValues values = new ContentValues();
+                        values.put("title", "Nota " + i);
+                        values.put("content", syntheticText(random, 200 + random.nextInt(4000)));
+                        values.put("timestamp", 1_600_000_000_000L + i * 60_000L);
+                        db.insert("notes", null, values);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            long insertNanos = SystemClock.elapsedRealtimeNanos() - insertStart;
+            db.close();
+
+            // Apertura a freddo: derivazione della chiave e prima lettura dello schema.
+            long openStart = SystemClock.elapsedRealtimeNanos();
+            db = SQLiteDatabase.openDatabase(file.getPath(), passphrase, null, flags,
+                    CipherProfile.createHook(profile, profile));
+            readLong(db, "SELECT count(*) FROM sqlite_master", null);
+            long openNanos = SystemClock.elapsedRealtimeNanos() - openStart;
+
+            // Query della lista (prima schermata) e letture per ID.
+            long[] listNanos = new long[QUERY_RUNS];
+            long[] lookupNanos = new long[QUERY_RUNS];
+            for (int i = 0; i < QUERY_RUNS; i++) {
+                long t0 = SystemClock.elapsedRealtimeNanos();
+                try (Cursor cursor = db.rawQuery("SELECT id, title, substr(content, 1, 280), timestamp FROM notes "
+                        + "ORDER BY timestamp DESC LIMIT " + LIST_PAGE, null)) {
+                    while (cursor.moveToNext()) {
+                        cursor.getString(2);
+                    }
+                }
+                listNanos[i] = SystemClock.elapsedRealtimeNanos() - t0;
+
+                t0 = SystemClock.elapsedRealtimeNanos();
+                readLong(db, "SELECT length(content) FROM notes WHERE id = ?",
+                        new String[]{String.valueOf(1 + random.nextInt(NOTE_COUNT))});
+                lookupNanos[i] = SystemClock.elapsedRealtimeNanos() - t0;
+            }
+            db.close();
+
+            return String.format(Locale.ITALY,
+                    "%s\n  apertura %.1f ms, inserimento %.0f note/s\n  lista %.2f ms, lettura per ID %.2f ms, file %d KB\n",
+                    profile.getLabel(),
+                    openNanos / 1e6,
+                    NOTE_COUNT / (insertNanos / 1e9),
+                    median(listNanos) / 1e6,
+                    median(lookupNanos) / 1e6,
+                    file.length() / 1024);
+        } finally {
+            Arrays.fill(passphrase, (byte) 0);
+            deleteDatabaseFiles(file);
+        }
+    }
+
+    private static long readLong(SQLiteDatabase db, String sql, String[] args) {
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Genera testo simile a una nota reale (parole di lunghezza variabile), così che la comprimibilità
+     * e il numero di pagine siano realistici.
+     */
+    private static String syntheticText(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            int wordLength = 2 + random.nextInt(9);
+            for (int i = 0; i < wordLength; i++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return builder.toString();
+    }
+
+    private static void deleteDatabaseFiles(File file) {
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            File candidate = new File(file.getPath() + suffix);
+            if (candidate.exists() && !candidate.delete()) {
+                Log.e(TAG, "Impossibile eliminare " + candidate.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteDatabaseHook;
+import net.sqlcipher.database.SupportFactory;
+
+import java.io.File;
+
+/**
+ * Profilo di configurazione di SQLCipher, applicato tramite {@link SQLiteDatabaseHook} subito dopo la chiave.
+ *
+ * I parametri si dividono in due gruppi:
+ * <ul>
+ *     <li><b>di formato</b> (dimensione pagina, iterazioni KDF, algoritmo HMAC): determinano come è scritto
+ *     il file e devono restare identici per tutta la vita del database. Vengono scelti alla creazione del file
+ *     e memorizzati per ogni file in {@link #KEY_FORMAT_PROFILE}; cambiare profilo non li modifica sui database esistenti;</li>
+ *     <li><b>di esecuzione</b> (sicurezza della memoria, dimensione della cache): possono cambiare a ogni apertura.</li>
+ * </ul>
+ * La passphrase del database è generata casualmente da {@code KeyManager}, quindi ridurre le iterazioni KDF
+ * accelera lo sblocco senza indebolire la chiave, che non è ricavata da una password scelta dall'utente.
+ */
+public final class CipherProfile {
+
+    private static final String TAG = "CipherProfile";
+
+    // Preferenza con il profilo selezionato (parametri di esecuzione e formato dei nuovi database).
+    public static final String KEY_PROFILE = "sqlcipher_profile";
+    // Preferenza con il profilo usato per creare ogni database (parametri di formato), seguita dal nome del file.
+    // Senza suffisso è quella del database creato prima delle cassaforti.
+    public static final String KEY_FORMAT_PROFILE = "sqlcipher_format_profile";
+
+    // Valori predefiniti di SQLCipher 4.
+    public static final CipherProfile DEFAULT = new CipherProfile(
+            "default", "Predefinito SQLCipher", 0, 0, null, null, 0);
+    // Cache più grande e nessun azzeramento della memoria a ogni allocazione: liste e salvataggi più veloci.
+    public static final CipherProfile BALANCED = new CipherProfile(
+            "balanced", "Bilanciato", 0, 0, null, false, 8 * 1024);
+    // Sblocco rapido: meno iterazioni KDF (solo nuovi database) oltre alle impostazioni del profilo bilanciato.
+    public static final CipherProfile FAST_UNLOCK = new CipherProfile(
+            "fast_unlock", "Sblocco rapido", 0, 64_000, null, false, 8 * 1024);
+    // Pagine da 16 KB e HMAC-SHA256 (solo nuovi database): meno pagine da decifrare e autenticare
+    // per i contenuti grandi e i frammenti.
+    public static final CipherProfile LARGE_PAGES = new CipherProfile(
+            "large_pages", "Pagine grandi", 16 * 1024, 0, "HMAC_SHA256", false, 16 * 1024);
+
+    // Tutti i profili disponibili, nell'ordine in cui vengono mostrati.
+    public static final CipherProfile[] PROFILES = {DEFAULT, BALANCED, FAST_UNLOCK, LARGE_PAGES};
+
+    private final String name;
+    private final String label;
+    private final int pageSize;         // 0 = valore predefinito
+    private final int kdfIterations;    // 0 = valore predefinito
+    private final String hmacAlgorithm; // null = valore predefinito
+    private final Boolean memorySecurity; // null = valore predefinito
+    private final int cacheSizeKb;      // 0 = valore predefinito
+
+    private CipherProfile(String name, String label, int pageSize, int kdfIterations, String hmacAlgorithm,
+                          Boolean memorySecurity, int cacheSizeKb) {
+        this.name = name;
+        this.label = label;
+        this.pageSize = pageSize;
+        this.kdfIterations = kdfIterations;
+        this.hmacAlgorithm = hmacAlgorithm;
+        this.memorySecurity = memorySecurity;
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    /**
+     * Cerca un profilo per nome.
+     *
+     * @param name Il nome del profilo.
+     * @return Il profilo corrispondente, o {@link #DEFAULT} se il nome è sconosciuto.
+     */
+    public static CipherProfile fromName(String name) {
+        for (CipherProfile profile : PROFILES) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Restituisce il profilo selezionato nelle impostazioni.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @return Il profilo selezionato.
+     */
+    public static CipherProfile selected(Context context) {
+        return fromName(PreferenceManager.getDefaultSharedPreferences(context).getString(KEY_PROFILE, DEFAULT.name));
+    }
+
+    /**
+     * Crea il factory SQLCipher per il file indicato. Se il file non esiste ancora, il suo formato
+     * viene preso dal profilo selezionato e memorizzato; altrimenti viene riusato il formato con cui
+     * il file è stato creato (i database creati prima dei profili usano il formato predefinito).
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param passphrase La passphrase del database.
+     * @param databaseFile Il file del database.
+     * @return Il factory da passare a Room.
+     */
+    public static SupportFactory createFactory(Context context, byte[] passphrase, File databaseFile) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        CipherProfile runtime = selected(context);
+        CipherProfile format;
+        String formatKey = KEY_FORMAT_PROFILE + "." + databaseFile.getName();
+        if (databaseFile.exists()) {
+            format = fromName(prefs.getString(formatKey, prefs.getString(KEY_FORMAT_PROFILE, DEFAULT.name)));
+        } else {
+            format = runtime;
+            prefs.edit().putString(formatKey, format.name).apply();
+        }
+        Log.d(TAG, "Formato: " + format.name + ", esecuzione: " + runtime.name);
+        return new SupportFactory(passphrase, createHook(format, runtime));
+    }
+
+    /**
+     * Crea l'hook che applica i parametri di formato di un profilo e quelli di esecuzione di un altro.
+     *
+     * @param format Il profilo da cui prendere i parametri di formato.
+     * @param runtime Il profilo da cui prendere i parametri di esecuzione.
+     * @return L'hook da passare a SQLCipher.
+     */
+    public static SQLiteDatabaseHook createHook(CipherProfile format, CipherProfile runtime) {
+        return new SQLiteDatabaseHook() {
+            @Override
+            public void preKey(SQLiteDatabase database) {
+            }
+
+            @Override
+            public void postKey(SQLiteDatabase database) {
+                format.applyFormat(database);
+                runtime.applyRuntime(database);
+            }
+        };
+    }
+
+    private void applyFormat(SQLiteDatabase database) {
+        if (pageSize > 0) {
+            database.rawExecSQL("PRAGMA cipher_page_size = " + pageSize);
+        }
+        if (kdfIterations > 0) {
+            database.rawExecSQL("PRAGMA kdf_iter = " + kdfIterations);
+        }
+        if (hmacAlgorithm != null) {
+            database.rawExecSQL("PRAGMA cipher_hmac_algorithm = " + hmacAlgorithm);
+        }
+    }
+
+    private void applyRuntime(SQLiteDatabase database) {
+        if (memorySecurity != null) {
+            database.rawExecSQL("PRAGMA cipher_memory_security = " + (memorySecurity ? "ON" : "OFF"));
+        }
+        if (cacheSizeKb > 0) {
+            database.rawExecSQL("PRAGMA cache_size = -" + cacheSizeKb); // Valore negativo: dimensione in KB.
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.securenotesapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.utils.NoteCodec;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Banco di prova dell'effetto della compressione a riposo ({@link NoteCodec}) su dimensione e latenza.
+ * Crea nella cache due archivi sintetici con le stesse note grandi (log e trascrizioni incollati), uno con il contenuto
+ * in chiaro e uno compresso come lo salva l'app, con il profilo SQLCipher selezionato, e misura per ognuno:
+ * <ul>
+ *     <li>la dimensione del file;</li>
+ *     <li>la latenza della query della lista (mediana), con le colonne di {@link NoteDao#LIST_COLUMNS};</li>
+ *     <li>la latenza di apertura di una nota (mediana): lettura per ID più l'eventuale decompressione.</li>
+ * </ul>
+ * Il contenuto è generato con un seme fisso, quindi i due archivi contengono gli stessi dati.
+ * Pensato solo per le build di debug: va eseguito su un thread in background.
+ */
+public class CompressionBenchmark {
+
+    private static final String TAG = "CompressionBenchmark";
+
+    private static final int NOTE_COUNT = 200;
+    private static final int MIN_NOTE_CHARS = NoteCodec.COMPRESSION_THRESHOLD;
+    private static final int MAX_NOTE_CHARS = 256 * 1024;
+    private static final int INSERT_BATCH = 20;
+    private static final int QUERY_RUNS = 25;
+    private static final int LIST_PAGE = 50; // Righe visibili in una schermata della lista, con margine.
+    private static final long SEED = 42L;
+
+    private static final String[] WORDS = {"INFO", "WARN", "DEBUG", "richiesta", "completata", "utente", "sessione",
+            "connessione", "timeout", "riunione", "progetto", "scadenza", "verbale", "azione", "risposta", "errore"};
+
+    private final Context context;
+
+    /**
+     * Costruttore per il benchmark.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public CompressionBenchmark(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Esegue il benchmark sui due archivi e restituisce un riepilogo leggibile.
+     *
+     * @return Il riepilogo dei risultati.
+     */
+    public String run() {
+        CipherProfile profile = CipherProfile.selected(context);
+        StringBuilder report = new StringBuilder();
+        try {
+            Result plain = run(profile, false);
+            Result compressed = run(profile, true);
+            report.append(plain.format("In chiaro")).append('\n')
+                    .append(compressed.format("Compresso")).append('\n')
+                    .append(String.format(Locale.ITALY, "Riduzione del file: %d%%",
+                            100 - compressed.fileBytes * 100 / Math.max(1, plain.fileBytes)));
+        } catch (Exception e) {
+            Log.e(TAG, "Benchmark della compressione fallito: " + e.getMessage(), e);
+            report.append("Errore (").append(e.getMessage()).append(')');
+        }
+        Log.d(TAG, report.toString());
+        return report.toString();
+    }
+
+    /**
+     * I risultati di un archivio.
+     */
+    private static final class Result {
+        long fileBytes;
+        long listNanos;
+        long openNanos;
+
+        String format(String label) {
+            return String.format(Locale.ITALY, "%s\n  file %d KB\n  lista %.2f ms, apertura di una nota %.2f ms\n",
+                    label, fileBytes / 1024, listNanos / 1e6, openNanos / 1e6);
+        }
+    }
+
+    /**
+     * Esegue il benchmark su un archivio sintetico nuovo, con il contenuto in chiaro o compresso.
+     */
+    private Result run(CipherProfile profile, boolean compress) {
+        File file = new File(context.getCacheDir(), "benchmark_compression_" + (compress ? "deflate" : "plain") + ".db");
+        deleteDatabaseFiles(file);
+        byte[] passphrase = new byte[32];
+        new SecureRandom().nextBytes(passphrase);
+        int flags = SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.CREATE_IF_NECESSARY;
+        try {
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), passphrase, null, flags,
+                    CipherProfile.createHook(profile, profile));
+            db.execSQL("CREATE TABLE notes (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, title TEXT, "
+                    + "content TEXT, timestamp INTEGER NOT NULL, contentCodec INTEGER NOT NULL DEFAULT 0, "
+                    + "contentBlob BLOB, notebookId INTEGER, contentLength INTEGER NOT NULL DEFAULT 0, deletedAt INTEGER)");
+            db.execSQL("CREATE INDEX index_notes_deletedAt_timestamp ON notes (deletedAt, timestamp)");
+            Random random = new Random(SEED);
+            for (int from = 0; from < NOTE_COUNT; from += INSERT_BATCH) {
+                db.beginTransaction();
+                try {
+                    for (int i = from; i < Math.min(NOTE_COUNT, from + INSERT_BATCH); i++) {
+                        String content = syntheticLog(random,
+                                MIN_NOTE_CHARS + random.nextInt(MAX_NOTE_CHARS - MIN_NOTE_CHARS));
+                        ContentValues values = new ContentValues();
+                        values.put("title", "Nota " + i);
+                        values.put("timestamp", 1_600_000_000_000L + i * 60_000L);
+                        values.put("contentLength", content.length());
+                        if (compress) {
+                            values.put("content", NoteCodec.preview(content));
+                            values.put("contentCodec", NoteCodec.CODEC_DEFLATE);
+                            values.put("contentBlob", NoteCodec.deflate(content.getBytes(StandardCharsets.UTF_8)));
+                        } else {
+                            values.put("content", content);
+                        }
+                        db.insert("notes", null, values);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            db.close();
+
+            Result result = new Result();
+            db = SQLiteDatabase.openDatabase(file.getPath(), passphrase, null, flags,
+                    CipherProfile.createHook(profile, profile));
+            long[] listNanos = new long[QUERY_RUNS];
+            long[] openNanos = new long[QUERY_RUNS];
+            long charsRead = 0;
+            for (int i = 0; i < QUERY_RUNS; i++) {
+                long t0 = SystemClock.elapsedRealtimeNanos();
+                try (Cursor cursor = db.rawQuery("SELECT " + NoteDao.LIST_COLUMNS + " FROM notes "
+                        + "WHERE deletedAt IS NULL ORDER BY timestamp DESC LIMIT " + LIST_PAGE, null)) {
+                    while (cursor.moveToNext()) {
+                        cursor.getString(2);
+                    }
+                }
+                listNanos[i] = SystemClock.elapsedRealtimeNanos() - t0;
+
+                t0 = SystemClock.elapsedRealtimeNanos();
+                try (Cursor cursor = db.rawQuery("SELECT content, contentCodec, contentBlob FROM notes WHERE id = ?",
+                        new String[]{String.valueOf(1 + random.nextInt(NOTE_COUNT))})) {
+                    if (cursor.moveToFirst()) {
+                        String content = cursor.getInt(1) == NoteCodec.CODEC_DEFLATE
+                                ? new String(NoteCodec.inflate(cursor.getBlob(2)), StandardCharsets.UTF_8)
+                                : cursor.getString(0);
+                        charsRead += content.length();
+                    }
+                }
+                openNanos[i] = SystemClock.elapsedRealtimeNanos() - t0;
+            }
+            db.close();
+            Log.d(TAG, "Caratteri letti all'apertura: " + charsRead);
+            result.listNanos = median(listNanos);
+            result.openNanos = median(openNanos);
+            result.fileBytes = file.length();
+            return result;
+        } finally {
+            Arrays.fill(passphrase, (byte) 0);
+            deleteDatabaseFiles(file);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Genera testo simile a un log o a una trascrizione incollati: righe con timestamp e parole ricorrenti,
+     * così che la comprimibilità sia realistica.
+     */
+    private static String syntheticLog(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length + 128);
+        long time = 1_600_000_000L;
+        while (builder.length() < length) {
+            time += random.nextInt(5000);
+            builder.append(time).append(' ');
+            int words = 4 + random.nextInt(10);
+            for (int i = 0; i < words; i++) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            builder.append("id=").append(random.nextInt(100_000)).append('\n');
+        }
+        return builder.substring(0, length);
+    }
+
+    private static void deleteDatabaseFiles(File file) {
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            File candidate = new File(file.getPath() + suffix);
+            if (candidate.exists() && !candidate.delete()) {
+                Log.e(TAG, "Impossibile eliminare " + candidate.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.securenotesapp.database;
+
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Calcola in background la lunghezza del contenuto ('contentLength') delle note salvate prima
+ * della versione 8 del database, per tutti i formati di memorizzazione: la migrazione 7→8 aggiunge solo la colonna,
+ * perché un aggiornamento dell'intera tabella durante lo sblocco lo ritarderebbe in proporzione al numero di note.
+ * Le note in chiaro usano il testo della riga, quelle a frammenti la somma delle lunghezze dei frammenti,
+ * quelle compresse vanno decompresse.
+ *
+ * Aggiorna solo le righe con lunghezza ancora a 0, quindi non sovrascrive mai le note salvate nel frattempo
+ * dall'utente e non blocca le scritture. Fino al termine, l'ordinamento per dimensione può essere impreciso.
+ */
+public class ContentLengthBackfill extends DataMigration {
+
+    private static final int BATCH_SIZE = 20; // Ogni nota va decompressa: blocchi piccoli tengono brevi le transazioni.
+
+    @Override
+    public String getName() {
+        return "content_length";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Calcolo della dimensione delle note";
+    }
+
+    @Override
+    public boolean blocksWrites() {
+        return false;
+    }
+
+    @Override
+    public int countRemaining(NoteDatabase database, long checkpoint) {
+        return database.noteDao().countNotesWithoutLengthAfter((int) checkpoint);
+    }
+
+    @Override
+    public Batch migrateBatch(NoteDatabase database, long checkpoint) {
+        int lastId = (int) checkpoint;
+        List<Note> page = database.noteDao().getNotesWithoutLengthAfter(lastId, BATCH_SIZE);
+        for (Note note : page) {
+            lastId = note.getId();
+            int length = contentLength(database, note);
+            if (length > 0) {
+                database.noteDao().setMissingContentLength(note.getId(), length);
+            }
+        }
+        return Batch.of(lastId, page.size(), BATCH_SIZE);
+    }
+
+    private static int contentLength(NoteDatabase database, Note note) {
+        switch (note.getContentCodec()) {
+            case NoteCodec.CODEC_CHUNKED:
+                return database.noteChunkDao().getContentLength(note.getId());
+            case NoteCodec.CODEC_DEFLATE:
+                byte[] blob = note.getContentBlob();
+                return blob != null ? new String(NoteCodec.inflate(blob), StandardCharsets.UTF_8).length() : 0;
+            default:
+                return note.getContent() != null ? note.getContent().length() : 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.securenotesapp.database;
+
+/**
+ * Migrazione dei dati eseguita in background dopo l'apertura del database.
+ *
+ * Le {@link androidx.room.migration.Migration} di Room vengono eseguite in modo sincrono alla prima apertura
+ * e devono limitarsi alle modifiche dello schema. Le riscritture delle righe esistenti (calcolo di colonne
+ * derivate, cambio di formato del contenuto) vanno invece in una DataMigration: {@link DataMigrationRunner}
+ * la esegue a blocchi con chiave crescente, ognuno in una transazione insieme al checkpoint, e la riprende
+ * dall'ultimo blocco completato se viene interrotta.
+ *
+ * Ogni blocco deve essere idempotente: dopo un'interruzione l'ultimo blocco non confermato viene ripetuto.
+ */
+public abstract class DataMigration {
+
+    /**
+     * Esito dell'elaborazione di un blocco.
+     */
+    public static final class Batch {
+        /**
+         * La chiave dell'ultima riga elaborata, da cui riparte il blocco successivo.
+         */
+        public final long checkpoint;
+        /**
+         * Il numero di righe elaborate nel blocco.
+         */
+        public final int processed;
+        /**
+         * Indica se non ci sono altre righe da elaborare.
+         */
+        public final boolean done;
+
+        private Batch(long checkpoint, int processed, boolean done) {
+            this.checkpoint = checkpoint;
+            this.processed = processed;
+            this.done = done;
+        }
+
+        /**
+         * @param checkpoint La chiave dell'ultima riga elaborata.
+         * @param processed Il numero di righe elaborate.
+         * @param pageSize La dimensione del blocco richiesta: un blocco più corto è l'ultimo.
+         * @return L'esito del blocco.
+         */
+        public static Batch of(long checkpoint, int processed, int pageSize) {
+            return new Batch(checkpoint, processed, processed < pageSize);
+        }
+    }
+
+    /**
+     * @return Il nome univoco della migrazione, usato come chiave del suo stato. Non va mai cambiato.
+     */
+    public abstract String getName();
+
+    /**
+     * @return La descrizione mostrata all'utente durante l'avanzamento.
+     */
+    public abstract String getDescription();
+
+    /**
+     * Indica se l'app deve restare in sola lettura finché la migrazione non è terminata.
+     * Il valore predefinito è prudente; una migrazione che aggiorna solo colonne derivate,
+     * con condizioni che non sovrascrivono le modifiche dell'utente, può restituire false.
+     *
+     * @return true se le modifiche dell'utente vanno sospese durante la migrazione.
+     */
+    public boolean blocksWrites() {
+        return true;
+    }
+
+    /**
+     * Conta le righe ancora da elaborare dopo il checkpoint, per il calcolo dell'avanzamento.
+     *
+     * @param database Il database.
+     * @param checkpoint L'ultima chiave elaborata.
+     * @return Il numero di righe rimanenti.
+     */
+    public abstract int countRemaining(NoteDatabase database, long checkpoint);
+
+    /**
+     * Elabora il blocco successivo al checkpoint. Viene chiamato all'interno di una transazione.
+     *
+     * @param database Il database.
+     * @param checkpoint L'ultima chiave elaborata (0 per iniziare).
+     * @return L'esito del blocco.
+     */
+    public abstract Batch migrateBatch(NoteDatabase database, long checkpoint);
+
+    /**
+     * Chiamato una volta al termine della migrazione (es. per registrare statistiche nel log).
+     */
+    public void onCompleted() {
+    }
+}
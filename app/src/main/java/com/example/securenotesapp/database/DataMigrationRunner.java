@@ -0,0 +1,171 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.securenotesapp.dao.DataMigrationDao;
+import com.example.securenotesapp.model.DataMigrationState;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Esegue in background le {@link DataMigration} registrate in {@link NoteDatabase}, una alla volta e in ordine.
+ *
+ * Ogni blocco viene elaborato in una transazione insieme al salvataggio del checkpoint in 'data_migrations':
+ * se il database viene chiuso (logout, timeout di sessione, fine di un worker) la migrazione si ferma
+ * e riprende alla prossima apertura. L'avanzamento è esposto come {@link LiveData}; finché è in corso
+ * una migrazione che blocca le scritture l'app è in sola lettura (vedi {@link #isReadOnly()}).
+ */
+public final class DataMigrationRunner {
+
+    private static final String TAG = "DataMigrationRunner";
+
+    /**
+     * Messaggio mostrato quando l'utente prova a modificare i dati in sola lettura.
+     */
+    public static final String READ_ONLY_MESSAGE = "Aggiornamento del database in corso: le modifiche sono temporaneamente disattivate.";
+
+    /**
+     * Avanzamento della migrazione in corso.
+     */
+    public static final class Progress {
+        public final String description;
+        public final int processed;
+        public final int total;
+        public final boolean readOnly;
+
+        Progress(String description, int processed, int total, boolean readOnly) {
+            this.description = description;
+            this.processed = processed;
+            this.total = total;
+            this.readOnly = readOnly;
+        }
+
+        /**
+         * @return La percentuale completata, da 0 a 100.
+         */
+        public int getPercent() {
+            return total == 0 ? 100 : (int) Math.min(100, processed * 100L / total);
+        }
+    }
+
+    // Il database su cui sono in esecuzione le migrazioni, o null. Cambiando cassaforte il database precedente
+    // viene chiuso e la sua esecuzione termina, mentre quella del nuovo database può già iniziare.
+    private static final AtomicReference<NoteDatabase> RUNNING = new AtomicReference<>(null);
+    private static final MutableLiveData<Progress> PROGRESS = new MutableLiveData<>(null);
+    private static volatile boolean readOnly;
+
+    private DataMigrationRunner() {
+    }
+
+    /**
+     * Avvia le migrazioni in sospeso sull'executor del database. Se sono già in esecuzione sullo stesso
+     * database non fa nulla.
+     *
+     * @param database Il database appena aperto.
+     * @param migrations Le migrazioni, nell'ordine in cui vanno eseguite.
+     */
+    static void start(NoteDatabase database, DataMigration... migrations) {
+        NoteDatabase previous = RUNNING.getAndSet(database);
+        if (previous == database) {
+            return;
+        }
+        NoteDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                for (DataMigration migration : migrations) {
+                    if (!run(database, migration)) {
+                        break; // Database chiuso: le migrazioni riprendono alla prossima apertura.
+                    }
+                }
+            } catch (Exception e) {
+                // Il checkpoint dell'ultimo blocco completato è salvato: si riprende alla prossima apertura.
+                Log.e(TAG, "Migrazione dei dati interrotta: " + e.getMessage(), e);
+            } finally {
+                // Se nel frattempo è stata aperta un'altra cassaforte lo stato appartiene alla sua esecuzione.
+                if (RUNNING.compareAndSet(database, null)) {
+                    readOnly = false;
+                    PROGRESS.postValue(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Esegue una migrazione fino al termine, a partire dal suo checkpoint.
+     *
+     * @return false se il database è stato chiuso prima del termine.
+     */
+    private static boolean run(NoteDatabase database, DataMigration migration) {
+        DataMigrationDao dao = database.dataMigrationDao();
+        dao.register(new DataMigrationState(migration.getName()));
+        DataMigrationState state = dao.getState(migration.getName());
+        if (state.isCompleted()) {
+            return true;
+        }
+
+        int total = state.getProcessed() + migration.countRemaining(database, state.getCheckpoint());
+        readOnly = migration.blocksWrites();
+        Log.d(TAG, "Avvio della migrazione " + migration.getName() + " dal checkpoint " + state.getCheckpoint()
+                + " (" + state.getProcessed() + "/" + total + ")");
+        PROGRESS.postValue(new Progress(migration.getDescription(), state.getProcessed(), total, readOnly));
+
+        while (!state.isCompleted()) {
+            if (!database.isOpen()) {
+                Log.d(TAG, "Database chiuso: migrazione " + migration.getName() + " sospesa al checkpoint "
+                        + state.getCheckpoint());
+                return false;
+            }
+            database.runInTransaction(() -> {
+                DataMigration.Batch batch = migration.migrateBatch(database, state.getCheckpoint());
+                state.setCheckpoint(batch.checkpoint);
+                state.setProcessed(state.getProcessed() + batch.processed);
+                state.setCompleted(batch.done);
+                dao.update(state);
+            });
+            // Le righe aggiunte durante la migrazione possono superare la stima iniziale.
+            total = Math.max(total, state.getProcessed());
+            PROGRESS.postValue(new Progress(migration.getDescription(), state.getProcessed(), total, readOnly));
+        }
+        migration.onCompleted();
+        Log.d(TAG, "Migrazione " + migration.getName() + " completata: " + state.getProcessed() + " righe.");
+        return true;
+    }
+
+    /**
+     * Restituisce l'avanzamento della migrazione in corso, o null se non ce ne sono.
+     *
+     * @return Un LiveData con l'avanzamento.
+     */
+    public static LiveData<Progress> getProgress() {
+        return PROGRESS;
+    }
+
+    /**
+     * Indica se l'app è in sola lettura perché è in corso una migrazione che blocca le scritture.
+     * Le schermate che modificano i dati lo controllano prima di salvare.
+     *
+     * @return true se le modifiche sono sospese.
+     */
+    public static boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Controlla, prima di una modifica, che l'app non sia in sola lettura; se lo è avvisa l'utente
+     * con {@link #READ_ONLY_MESSAGE}. Va chiamato dal thread principale.
+     *
+     * @param context Il contesto in cui mostrare l'avviso.
+     * @return true se la modifica può procedere.
+     */
+    public static boolean checkWritable(Context context) {
+        if (!readOnly) {
+            return true;
+        }
+        Toast.makeText(context, READ_ONLY_MESSAGE, Toast.LENGTH_LONG).show();
+        return false;
+    }
+}
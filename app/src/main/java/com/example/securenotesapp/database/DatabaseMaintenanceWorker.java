@@ -0,0 +1,215 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker di manutenzione periodica dei database cifrati di tutte le cassaforti (vedi {@link VaultWorker}),
+ * eseguito solo con dispositivo inattivo e in carica.
+ * Per ogni cassaforte l'esecuzione svolge a passi, ognuno entro il budget di tempo residuo:
+ * <ol>
+ *     <li>la conversione una tantum ad {@code auto_vacuum = INCREMENTAL} (richiede un VACUUM completo, vedi sotto);</li>
+ *     <li>il recupero delle pagine libere con {@code PRAGMA incremental_vacuum}, a blocchi;</li>
+ *     <li>{@code PRAGMA optimize} e {@code ANALYZE} per aggiornare le statistiche del query planner;</li>
+ *     <li>un controllo di integrità rapido ({@code PRAGMA quick_check});</li>
+ *     <li>la compattazione del registro delle modifiche.</li>
+ * </ol>
+ * I passi non completati vengono ripresi all'esecuzione successiva. Il VACUUM completo non è interrompibile
+ * e tiene un lock esclusivo per tutta la durata: viene eseguito solo se la cassaforte non è aperta nell'interfaccia
+ * e se la durata stimata dalla dimensione del file rientra nel budget residuo; altrimenti viene rimandato.
+ * Un database troppo grande per il budget resta senza auto_vacuum e la manutenzione salta solo il recupero delle pagine.
+ * Byte recuperati, durata ed esito del controllo di integrità vengono registrati nel log e, sommati su tutte
+ * le cassaforti, nelle SharedPreferences {@link #PREFS_NAME}.
+ */
+public class DatabaseMaintenanceWorker extends VaultWorker {
+
+    private static final String TAG = "DatabaseMaintenance";
+    private static final String UNIQUE_WORK_NAME = "database_maintenance";
+
+    // SharedPreferences con l'esito dell'ultima manutenzione.
+    public static final String PREFS_NAME = "database_maintenance";
+    public static final String KEY_LAST_RUN = "last_run";
+    public static final String KEY_BYTES_RECLAIMED = "bytes_reclaimed";
+    public static final String KEY_DURATION_MS = "duration_ms";
+    public static final String KEY_INTEGRITY = "integrity";
+
+    // Budget di tempo di un'esecuzione, per ogni cassaforte.
+    private static final long TIME_BUDGET_MS = TimeUnit.SECONDS.toMillis(30);
+    // Pagine liberate per ogni passo di incremental_vacuum.
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+    // Valore di PRAGMA auto_vacuum per la modalità incrementale.
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    // Velocità prudente di un VACUUM cifrato (lettura, decifratura e riscrittura di ogni pagina), in byte al millisecondo.
+    private static final long VACUUM_BYTES_PER_MS = 2 * 1024;
+
+    // Riepilogo dell'esecuzione, sommato su tutte le cassaforti.
+    private long bytesReclaimed;
+    private long durationMs;
+    private String integrity; // Il primo esito non "ok", o "ok"; null se nessun controllo è stato eseguito.
+
+    /**
+     * Costruttore richiesto da WorkManager.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param params I parametri del worker.
+     */
+    public DatabaseMaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Pianifica la manutenzione giornaliera, se non è già pianificata.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                DatabaseMaintenanceWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @Override
+    protected void processVault(String vaultId, NoteDatabase database) {
+        long vaultStart = SystemClock.elapsedRealtime();
+        long deadline = vaultStart + TIME_BUDGET_MS;
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        long sizeBefore = fileSize(db);
+
+        ensureIncrementalVacuum(db, vaultId, deadline);
+        int freed = incrementalVacuum(db, deadline);
+
+        if (hasTime(deadline)) {
+            readPragma(db, "PRAGMA optimize");
+            db.execSQL("ANALYZE");
+        }
+        String integrity = hasTime(deadline) ? readPragma(db, "PRAGMA quick_check(1)") : null;
+        if (integrity != null && !"ok".equals(integrity)) {
+            Log.e(TAG, "Controllo di integrità fallito nella cassaforte " + vaultId + ": " + integrity);
+            this.integrity = integrity; // Un errore resta nel riepilogo anche se le cassaforti successive sono integre.
+        } else if (integrity != null && this.integrity == null) {
+            this.integrity = integrity;
+        }
+        if (hasTime(deadline)) {
+            database.changeLogDao().compact();
+        }
+        // In modalità WAL il file principale si riduce solo dopo un checkpoint.
+        readPragma(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+
+        long reclaimed = Math.max(0, sizeBefore - fileSize(db));
+        long duration = SystemClock.elapsedRealtime() - vaultStart;
+        bytesReclaimed += reclaimed;
+        durationMs += duration;
+        Log.d(TAG, "Manutenzione della cassaforte " + vaultId + " completata: pagine liberate " + freed
+                + ", byte recuperati " + reclaimed
+                + ", integrità " + (integrity != null ? integrity : "non verificata")
+                + ", durata " + duration + "ms");
+    }
+
+    /**
+     * Registra il riepilogo di tutte le cassaforti nelle SharedPreferences {@link #PREFS_NAME}.
+     */
+    @Override
+    protected void onFinished() {
+        SharedPreferences.Editor editor = getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(KEY_LAST_RUN, System.currentTimeMillis())
+                .putLong(KEY_BYTES_RECLAIMED, bytesReclaimed)
+                .putLong(KEY_DURATION_MS, durationMs);
+        if (integrity != null) {
+            editor.putString(KEY_INTEGRITY, integrity);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Converte il database ad auto_vacuum incrementale. La modifica ha effetto solo dopo un VACUUM completo,
+     * eseguito una sola volta: dalle esecuzioni successive basta incremental_vacuum.
+     * Il VACUUM viene rimandato se la cassaforte è aperta nell'interfaccia (bloccherebbe le sue scritture)
+     * o se la durata stimata supera il budget residuo.
+     */
+    private void ensureIncrementalVacuum(SupportSQLiteDatabase db, String vaultId, long deadline) {
+        if (Integer.parseInt(readPragma(db, "PRAGMA auto_vacuum")) == AUTO_VACUUM_INCREMENTAL) {
+            return;
+        }
+        if (NoteDatabase.isVaultOpen(vaultId)) {
+            Log.d(TAG, "Conversione ad auto_vacuum incrementale rimandata: cassaforte aperta.");
+            return;
+        }
+        long estimatedMs = fileSize(db) / VACUUM_BYTES_PER_MS;
+        if (!hasTime(deadline) || SystemClock.elapsedRealtime() + estimatedMs > deadline) {
+            Log.d(TAG, "Conversione ad auto_vacuum incrementale rimandata: durata stimata " + estimatedMs
+                    + "ms oltre il budget.");
+            return;
+        }
+        long t0 = SystemClock.elapsedRealtime();
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+        Log.d(TAG, "Database convertito ad auto_vacuum incrementale in " + (SystemClock.elapsedRealtime() - t0) + "ms");
+    }
+
+    /**
+     * Restituisce al filesystem le pagine libere a blocchi, fermandosi allo scadere del budget
+     * o quando il sistema interrompe il worker.
+     *
+     * @return Il numero di pagine liberate.
+     */
+    private int incrementalVacuum(SupportSQLiteDatabase db, long deadline) {
+        int freed = 0;
+        long freePages = Long.parseLong(readPragma(db, "PRAGMA freelist_count"));
+        while (freePages > 0 && hasTime(deadline)) {
+            readPragma(db, "PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")");
+            long remaining = Long.parseLong(readPragma(db, "PRAGMA freelist_count"));
+            if (remaining >= freePages) {
+                break; // Nessun progresso (es. auto_vacuum non attivo).
+            }
+            freed += (int) (freePages - remaining);
+            freePages = remaining;
+        }
+        return freed;
+    }
+
+    private boolean hasTime(long deadline) {
+        return !isStopped() && SystemClock.elapsedRealtime() < deadline;
+    }
+
+    private long fileSize(SupportSQLiteDatabase db) {
+        return Long.parseLong(readPragma(db, "PRAGMA page_count"))
+                * Long.parseLong(readPragma(db, "PRAGMA page_size"));
+    }
+
+    /**
+     * Esegue un PRAGMA scorrendo tutte le righe del risultato (alcuni PRAGMA lavorano a ogni passo)
+     * e restituisce la prima colonna della prima riga.
+     */
+    private static String readPragma(SupportSQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.query(pragma)) {
+            String first = null;
+            while (cursor.moveToNext()) {
+                if (first == null) {
+                    first = cursor.getString(0);
+                }
+            }
+            return first;
+        }
+    }
+}
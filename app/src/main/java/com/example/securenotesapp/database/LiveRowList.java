@@ -0,0 +1,196 @@
+package com.example.securenotesapp.database;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.room.InvalidationTracker;
+
+import com.example.securenotesapp.dao.NoteDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Lista osservabile di righe che, dopo il primo caricamento, viene aggiornata riga per riga.
+ *
+ * Un LiveData di Room riesegue l'intera query a ogni modifica della tabella: salvare una nota rilegge tutte le note.
+ * Questa lista invece riceve da {@link RowChangeNotifier} gli ID cambiati in ogni commit, rilegge solo quelle righe
+ * e aggiorna la copia in memoria: le righe eliminate o che non soddisfano più il filtro vengono tolte,
+ * le altre inserite nella posizione data dall'ordinamento. Il costo sul database di una modifica è quindi
+ * proporzionale alle righe cambiate, non alla dimensione della lista.
+ *
+ * Mentre non è osservata la lista non riceve modifiche; alla successiva osservazione viene ricaricata
+ * solo se nel frattempo ci sono state modifiche del suo tipo di entità.
+ *
+ * @param <T> Il tipo di riga.
+ */
+public abstract class LiveRowList<T> extends LiveData<List<T>> implements RowChangeNotifier.Listener {
+
+
+    // Caricamenti e aggiornamenti di tutte le liste vengono serializzati: un aggiornamento non può
+    // essere applicato prima del caricamento completo che lo precede.
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+
+    protected final NoteDatabase database;
+    private final RowChangeNotifier notifier;
+    private final String entityType;
+    private final InvalidationTracker.Observer reloadObserver;
+
+    // Accessibili solo da EXECUTOR.
+    private List<T> rows;
+    private long seenSeq;
+
+    /**
+     * @param database Il database.
+     * @param entityType Il tipo di entità delle righe, come registrato in 'change_log'.
+     * @param reloadTables Tabelle la cui modifica cambia il filtro stesso (es. la gerarchia dei quaderni)
+     *                     e richiede quindi un caricamento completo. Può essere vuoto.
+     */
+    protected LiveRowList(NoteDatabase database, String entityType, String... reloadTables) {
+        this.database = database;
+        this.notifier = database.getRowChangeNotifier();
+        this.entityType = entityType;
+        this.reloadObserver = reloadTables.length == 0 ? null : new InvalidationTracker.Observer(reloadTables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                EXECUTOR.execute(LiveRowList.this::reload);
+            }
+        };
+    }
+
+    /**
+     * Prepara il filtro prima di un caricamento completo (es. legge gli ID del sotto-albero di un quaderno).
+     * Chiamato su un thread in background.
+     */
+    protected void prepare() {
+    }
+
+    /**
+     * @return Tutte le righe della lista, già filtrate e ordinate dalla query.
+     */
+    protected abstract List<T> loadAll();
+
+    /**
+     * @param ids Al più {@link NoteDao#MAX_IDS_PER_QUERY} ID.
+     * @return Le righe con gli ID indicati che esistono ancora, senza filtri.
+     */
+    protected abstract List<T> loadByIds(List<Integer> ids);
+
+    /**
+     * @return true se la riga appartiene alla lista (stesso filtro della query di {@link #loadAll()}).
+     */
+    protected abstract boolean matches(T row);
+
+    /**
+     * @return L'ID della riga.
+     */
+    protected abstract int getId(T row);
+
+    /**
+     * @return L'ordinamento della lista, lo stesso della clausola ORDER BY di {@link #loadAll()}.
+     */
+    protected abstract Comparator<T> comparator();
+
+    @Override
+    protected void onActive() {
+        notifier.addListener(this);
+        if (reloadObserver != null) {
+            database.getInvalidationTracker().addObserver(reloadObserver);
+        }
+        EXECUTOR.execute(() -> {
+            if (rows == null || notifier.getLastSeq(entityType) != seenSeq) {
+                reload();
+            }
+        });
+    }
+
+    @Override
+    protected void onInactive() {
+        notifier.removeListener(this);
+        if (reloadObserver != null) {
+            database.getInvalidationTracker().removeObserver(reloadObserver);
+        }
+    }
+
+    @Override
+    public void onRowsChanged(RowChangeNotifier.RowChanges changes) {
+        if (entityType.equals(changes.entityType)) {
+            EXECUTOR.execute(() -> apply(changes));
+        }
+    }
+
+    private void reload() {
+        // La sequenza va letta prima del caricamento: le modifiche successive vengono riapplicate,
+        // e riapplicare una modifica già presente nel caricamento non ha effetti.
+        seenSeq = notifier.getLastSeq(entityType);
+        prepare();
+        rows = new ArrayList<>(loadAll());
+        postValue(new ArrayList<>(rows));
+    }
+
+    private void apply(RowChangeNotifier.RowChanges changes) {
+        if (rows == null || changes.lastSeq <= seenSeq) {
+            return; // Già incluse nell'ultimo caricamento completo.
+        }
+        seenSeq = changes.lastSeq;
+
+        Set<Integer> changedIds = new HashSet<>(changes.deleted);
+        changedIds.addAll(changes.inserted);
+        changedIds.addAll(changes.updated);
+        // Le righe cambiate vengono rimosse e poi reinserite, se esistono ancora e soddisfano il filtro.
+        for (Iterator<T> it = rows.iterator(); it.hasNext(); ) {
+            if (changedIds.contains(getId(it.next()))) {
+                it.remove();
+            }
+        }
+
+        List<Integer> toLoad = new ArrayList<>(changes.inserted);
+        toLoad.addAll(changes.updated);
+        Comparator<T> comparator = comparator();
+        for (int from = 0; from < toLoad.size(); from += NoteDao.MAX_IDS_PER_QUERY) {
+            List<Integer> ids = toLoad.subList(from, Math.min(toLoad.size(), from + NoteDao.MAX_IDS_PER_QUERY));
+            for (T row : loadByIds(ids)) {
+                if (!matches(row)) {
+                    continue;
+                }
+                int position = Collections.binarySearch(rows, row, comparator);
+                rows.add(position >= 0 ? position : -position - 1, row);
+            }
+        }
+        postValue(new ArrayList<>(rows));
+    }
+
+    /**
+     * Confronta due stringhe come la collazione NOCASE di SQLite: ordine dei code point,
+     * con le sole lettere ASCII confrontate senza distinguere maiuscole e minuscole. Null viene prima di tutto.
+     *
+     * @return Un valore negativo, zero o positivo come {@link Comparator#compare}.
+     */
+    protected static int compareNoCase(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = foldAscii(a.codePointAt(i));
+            int cb = foldAscii(b.codePointAt(j));
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int foldAscii(int codePoint) {
+        return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.securenotesapp.database;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
+import com.example.securenotesapp.utils.PrefixRange;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivio delle note non modificate da più di {@link #ARCHIVE_AGE_MS}, in un secondo file di database cifrato
+ * della stessa cassaforte.
+ *
+ * Il file viene collegato alla connessione di Room con {@code ATTACH DATABASE} solo quando serve
+ * (lista o ricerca nell'archivio, spostamento delle note da parte di {@link NoteArchiveWorker}) e scollegato subito dopo:
+ * il database principale resta piccolo e le sue liste, i suoi indici e la sua manutenzione non pagano le note vecchie.
+ * Senza la clausola KEY SQLCipher cifra il file collegato con la stessa chiave del database principale.
+ *
+ * Le tabelle dell'archivio hanno le stesse colonne di 'notes', 'note_chunks' e 'note_revisions': una nota
+ * viene spostata così com'è, con frammenti e cronologia, e mantiene il suo ID (gli ID di Room non vengono riusati).
+ * Room non conosce queste tabelle, quindi non ne osserva le modifiche: chi mostra l'archivio lo rilegge dopo un ripristino.
+ *
+ * Il collegamento è condiviso dall'unica connessione di SQLCipher ed è contato: {@link #attach()} e {@link #detach()}
+ * vanno sempre chiamati in coppia. Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+public class NoteArchive {
+
+    private static final String TAG = "NoteArchive";
+    // Nome dello schema con cui il file dell'archivio viene collegato.
+    private static final String SCHEMA = "archive";
+
+    /**
+     * Età (dall'ultima modifica) oltre la quale una nota viene spostata nell'archivio.
+     */
+    public static final long ARCHIVE_AGE_MS = TimeUnit.DAYS.toMillis(180);
+
+    // Colonne copiate tra il database principale e l'archivio, nello stesso ordine nelle due direzioni.
+    private static final String NOTE_COLUMNS =
+            "id, title, content, timestamp, contentCodec, contentBlob, notebookId, contentLength, deletedAt";
+    private static final String CHUNK_COLUMNS = "noteId, chunkKey, chunkHash, charLength, data";
+    private static final String REVISION_COLUMNS = "id, noteId, revision, timestamp, kind, data";
+
+    private static final String[] CREATE_SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS " + SCHEMA + ".archived_notes (id INTEGER PRIMARY KEY NOT NULL, "
+                    + "title TEXT COLLATE NOCASE, content TEXT, timestamp INTEGER NOT NULL, "
+                    + "contentCodec INTEGER NOT NULL DEFAULT 0, contentBlob BLOB, notebookId INTEGER, "
+                    + "contentLength INTEGER NOT NULL DEFAULT 0, deletedAt INTEGER)",
+            "CREATE INDEX IF NOT EXISTS " + SCHEMA + ".index_archived_notes_timestamp ON archived_notes (timestamp)",
+            "CREATE INDEX IF NOT EXISTS " + SCHEMA + ".index_archived_notes_title ON archived_notes (title)",
+            "CREATE TABLE IF NOT EXISTS " + SCHEMA + ".archived_note_chunks (noteId INTEGER NOT NULL, "
+                    + "chunkKey INTEGER NOT NULL, chunkHash INTEGER NOT NULL, charLength INTEGER NOT NULL, "
+                    + "data BLOB, PRIMARY KEY(noteId, chunkKey))",
+            "CREATE TABLE IF NOT EXISTS " + SCHEMA + ".archived_note_revisions (id INTEGER PRIMARY KEY NOT NULL, "
+                    + "noteId INTEGER NOT NULL, revision INTEGER NOT NULL, timestamp INTEGER NOT NULL, "
+                    + "kind INTEGER NOT NULL, data BLOB)",
+            "CREATE INDEX IF NOT EXISTS " + SCHEMA + ".index_archived_note_revisions_noteId "
+                    + "ON archived_note_revisions (noteId)"
+    };
+
+    private final NoteDatabase database;
+    private final File archiveFile;
+    // Numero di utilizzatori del collegamento in corso. Protetto da 'this'.
+    private int attachCount;
+
+    /**
+     * @param database Il database principale.
+     * @param archiveFile Il file dell'archivio; viene creato al primo collegamento.
+     */
+    NoteArchive(NoteDatabase database, File archiveFile) {
+        this.database = database;
+        this.archiveFile = archiveFile;
+    }
+
+    /**
+     * Indica se l'archivio è già stato creato. Se non esiste non c'è nulla da cercare e non serve collegarlo.
+     *
+     * @return true se il file dell'archivio esiste.
+     */
+    public boolean exists() {
+        return archiveFile.exists();
+    }
+
+    /**
+     * Collega il file dell'archivio, creandolo se necessario. Non va chiamato dentro una transazione.
+     */
+    public synchronized void attach() {
+        if (attachCount++ > 0) {
+            return;
+        }
+        try {
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            db.execSQL("ATTACH DATABASE ? AS " + SCHEMA, new Object[]{archiveFile.getAbsolutePath()});
+            for (String sql : CREATE_SCHEMA) {
+                db.execSQL(sql);
+            }
+            Log.d(TAG, "Archivio collegato: " + archiveFile.getName());
+        } catch (RuntimeException e) {
+            attachCount--;
+            throw e;
+        }
+    }
+
+    /**
+     * Scollega il file dell'archivio quando l'ultimo utilizzatore ha finito.
+     */
+    public synchronized void detach() {
+        if (attachCount == 0 || --attachCount > 0) {
+            return;
+        }
+        try {
+            database.getOpenHelper().getWritableDatabase().execSQL("DETACH DATABASE " + SCHEMA);
+            Log.d(TAG, "Archivio scollegato.");
+        } catch (Exception e) {
+            // Es. database già chiuso: il collegamento è terminato con la connessione.
+            Log.e(TAG, "Scollegamento dell'archivio fallito: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sposta nell'archivio, in una transazione, un blocco delle note non nel cestino modificate prima del momento indicato,
+     * con i loro frammenti e la loro cronologia. L'eliminazione dal database principale viene registrata nel registro
+     * delle modifiche, quindi le liste aperte tolgono le note spostate. Richiede l'archivio collegato.
+     * Le note con una bozza non salvata restano nel database principale: l'eliminazione eliminerebbe a cascata la bozza.
+     *
+     * @param before Il limite (escluso) sul momento dell'ultima modifica.
+     * @param limit Il numero massimo di note da spostare.
+     * @return Il numero di note spostate; 0 se non ce ne sono altre.
+     */
+    public int archiveBatch(long before, int limit) {
+        return database.runInTransaction(() -> {
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            List<Integer> ids = new ArrayList<>();
+            try (Cursor cursor = db.query("SELECT id FROM main.notes WHERE deletedAt IS NULL AND timestamp < ? "
+                    + "AND id NOT IN (SELECT noteId FROM main.note_drafts WHERE noteId IS NOT NULL) "
+                    + "ORDER BY timestamp LIMIT ?", new Object[]{before, limit})) {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getInt(0));
+                }
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            String idList = joinIds(ids);
+            db.execSQL("INSERT OR REPLACE INTO " + SCHEMA + ".archived_notes (" + NOTE_COLUMNS + ") "
+                    + "SELECT " + NOTE_COLUMNS + " FROM main.notes WHERE id IN (" + idList + ")");
+            db.execSQL("INSERT OR REPLACE INTO " + SCHEMA + ".archived_note_chunks (" + CHUNK_COLUMNS + ") "
+                    + "SELECT " + CHUNK_COLUMNS + " FROM main.note_chunks WHERE noteId IN (" + idList + ")");
+            db.execSQL("INSERT OR REPLACE INTO " + SCHEMA + ".archived_note_revisions (" + REVISION_COLUMNS + ") "
+                    + "SELECT " + REVISION_COLUMNS + " FROM main.note_revisions WHERE noteId IN (" + idList + ")");
+            // Frammenti e revisioni vengono eliminati a cascata.
+            db.execSQL("DELETE FROM main.notes WHERE id IN (" + idList + ")");
+            return ids.size();
+        });
+    }
+
+    /**
+     * Riporta una nota dall'archivio al database principale, con frammenti e cronologia. Richiede l'archivio collegato.
+     * Il timestamp viene aggiornato al momento del ripristino, altrimenti la nota tornerebbe nell'archivio
+     * al successivo passaggio di {@link NoteArchiveWorker}. Se il suo quaderno non esiste più la nota torna senza quaderno.
+     * Se nel database principale esiste già una nota con lo stesso ID (es. ripristinata da un backup) la riga viene
+     * aggiornata e non sostituita: INSERT OR REPLACE la eliminerebbe, eliminando a cascata anche la sua bozza.
+     *
+     * @param noteId L'ID della nota archiviata.
+     */
+    public void restore(int noteId) {
+        database.runInTransaction(() -> {
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            // Frammenti e cronologia della nota archiviata sostituiscono quelli di un'eventuale nota con lo stesso ID.
+            db.execSQL("DELETE FROM main.note_chunks WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("DELETE FROM main.note_revisions WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("INSERT INTO main.notes (" + NOTE_COLUMNS + ") "
+                            + "SELECT id, title, content, ?, contentCodec, contentBlob, "
+                            + "CASE WHEN notebookId IN (SELECT id FROM main.notebooks) THEN notebookId END, "
+                            + "contentLength, NULL FROM " + SCHEMA + ".archived_notes WHERE id = ? "
+                            + "ON CONFLICT(id) DO UPDATE SET title = excluded.title, content = excluded.content, "
+                            + "timestamp = excluded.timestamp, contentCodec = excluded.contentCodec, "
+                            + "contentBlob = excluded.contentBlob, notebookId = excluded.notebookId, "
+                            + "contentLength = excluded.contentLength, deletedAt = excluded.deletedAt",
+                    new Object[]{System.currentTimeMillis(), noteId});
+            db.execSQL("INSERT OR REPLACE INTO main.note_chunks (" + CHUNK_COLUMNS + ") SELECT " + CHUNK_COLUMNS
+                    + " FROM " + SCHEMA + ".archived_note_chunks WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("INSERT OR REPLACE INTO main.note_revisions (" + REVISION_COLUMNS + ") SELECT " + REVISION_COLUMNS
+                    + " FROM " + SCHEMA + ".archived_note_revisions WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("DELETE FROM " + SCHEMA + ".archived_note_chunks WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("DELETE FROM " + SCHEMA + ".archived_note_revisions WHERE noteId = ?", new Object[]{noteId});
+            db.execSQL("DELETE FROM " + SCHEMA + ".archived_notes WHERE id = ?", new Object[]{noteId});
+        });
+        Log.d(TAG, "Nota " + noteId + " ripristinata dall'archivio.");
+    }
+
+    /**
+     * Restituisce le note archiviate, dalla più recente. Richiede l'archivio collegato.
+     *
+     * @return Le righe della lista delle note archiviate (vedi {@link NoteDao#LIST_COLUMNS}).
+     */
+    public List<Note> getArchivedNotes() {
+        return database.noteDao().getNotesByRawQuery(new SimpleSQLiteQuery(
+                "SELECT " + NoteDao.LIST_COLUMNS + " FROM " + SCHEMA + ".archived_notes ORDER BY timestamp DESC"));
+    }
+
+    /**
+     * Restituisce una pagina di note archiviate in ordine di ID, es. per il backup. Richiede l'archivio collegato.
+     *
+     * @param afterId L'ultimo ID della pagina precedente (0 per iniziare).
+     * @param limit Il numero massimo di note da restituire.
+     * @return La pagina di note, con il contenuto nel formato di memorizzazione (vedi {@link #readContent(Note)}).
+     */
+    public List<Note> getArchivedNotesAfter(int afterId, int limit) {
+        return database.noteDao().getNotesByRawQuery(new SimpleSQLiteQuery(
+                "SELECT " + NOTE_COLUMNS + " FROM " + SCHEMA + ".archived_notes WHERE id > ? ORDER BY id LIMIT ?",
+                new Object[]{afterId, limit}));
+    }
+
+    /**
+     * Cerca le note archiviate il cui titolo inizia con un prefisso, come la ricerca delle note attive
+     * (vedi {@link PrefixRange}). Richiede l'archivio collegato.
+     *
+     * @param prefix Il prefisso del titolo, non vuoto.
+     * @return Le note trovate, ordinate per titolo.
+     */
+    public List<Note> searchByTitlePrefix(String prefix) {
+        PrefixRange range = PrefixRange.of(prefix);
+        return database.noteDao().getNotesByRawQuery(new SimpleSQLiteQuery(
+                "SELECT " + NoteDao.LIST_COLUMNS + " FROM " + SCHEMA + ".archived_notes "
+                        + "WHERE title COLLATE NOCASE >= ? AND title COLLATE NOCASE < ? ORDER BY title COLLATE NOCASE",
+                new Object[]{range.lower, range.upper}));
+    }
+
+    /**
+     * Restituisce il contenuto completo di una nota archiviata, qualunque sia il formato di memorizzazione.
+     * Richiede l'archivio collegato.
+     *
+     * @param note La nota letta dall'archivio.
+     * @return Il contenuto completo.
+     */
+    public String readContent(Note note) {
+        if (note.getContentCodec() != NoteCodec.CODEC_CHUNKED) {
+            return NoteCodec.decode(note);
+        }
+        StringBuilder builder = new StringBuilder(note.getContentLength());
+        try (Cursor cursor = database.getOpenHelper().getWritableDatabase().query(
+                "SELECT data FROM " + SCHEMA + ".archived_note_chunks WHERE noteId = ? ORDER BY chunkKey",
+                new Object[]{note.getId()})) {
+            while (cursor.moveToNext()) {
+                builder.append(new String(NoteCodec.inflate(cursor.getBlob(0)), StandardCharsets.UTF_8));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Apre un {@link Reader} sul contenuto di una nota archiviata a frammenti, leggendo un frammento alla volta
+     * (es. per scriverla nel backup senza ricomporla in memoria). Richiede l'archivio collegato per tutta la lettura.
+     *
+     * @param noteId L'ID della nota archiviata.
+     * @return Un Reader sul contenuto della nota.
+     */
+    public Reader openChunkReader(int noteId) {
+        return new ArchivedChunkReader(noteId);
+    }
+
+    private static String joinIds(List<Integer> ids) {
+        StringBuilder builder = new StringBuilder();
+        for (int id : ids) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(id);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Ricompone il contenuto di una nota archiviata leggendo dall'archivio un frammento per query.
+     */
+    private class ArchivedChunkReader extends Reader {
+        private final int noteId;
+        private long lastKey = Long.MIN_VALUE;
+        private boolean exhausted;
+        private String current = "";
+        private int position;
+
+        ArchivedChunkReader(int noteId) {
+            this.noteId = noteId;
+        }
+
+        @Override
+        public int read(@NonNull char[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            while (position >= current.length()) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        private boolean advance() {
+            if (exhausted) {
+                return false;
+            }
+            try (Cursor cursor = database.getOpenHelper().getWritableDatabase().query(
+                    "SELECT chunkKey, data FROM " + SCHEMA + ".archived_note_chunks WHERE noteId = ? AND chunkKey > ? "
+                            + "ORDER BY chunkKey LIMIT 1", new Object[]{noteId, lastKey})) {
+                if (!cursor.moveToFirst()) {
+                    exhausted = true;
+                    return false;
+                }
+                lastKey = cursor.getLong(0);
+                current = new String(NoteCodec.inflate(cursor.getBlob(1)), StandardCharsets.UTF_8);
+            }
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            current = "";
+        }
+    }
+}
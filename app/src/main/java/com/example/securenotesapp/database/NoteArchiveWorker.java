@@ -0,0 +1,90 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.WorkerParameters;
+
+import com.example.securenotesapp.model.DataMigrationState;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker periodico che sposta nell'archivio ({@link NoteArchive}) le note non modificate da più di
+ * {@link NoteArchive#ARCHIVE_AGE_MS}, in tutte le cassaforti (vedi {@link VaultWorker}), eseguito solo con dispositivo
+ * inattivo e in carica.
+ *
+ * Le note vengono spostate a blocchi di {@link #BATCH_SIZE}, ognuno in una propria transazione:
+ * un'interruzione lascia ogni nota o nel database principale o nell'archivio, e lo spostamento
+ * riprende dall'esecuzione successiva. L'archivio resta collegato solo per la durata del worker.
+ */
+public class NoteArchiveWorker extends VaultWorker {
+
+    private static final String TAG = "NoteArchiveWorker";
+    private static final String UNIQUE_WORK_NAME = "note_archive";
+
+    // Note spostate per transazione.
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Costruttore richiesto da WorkManager.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param params I parametri del worker.
+     */
+    public NoteArchiveWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Pianifica l'archiviazione giornaliera, se non è già pianificata.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                NoteArchiveWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Sposta le note vecchie della cassaforte. Una cassaforte con migrazioni dei dati non completate
+     * (es. mai sbloccata dopo un aggiornamento, o con una migrazione in corso nell'interfaccia) viene saltata:
+     * le migrazioni lavorano solo sul database principale.
+     */
+    @Override
+    protected void processVault(String vaultId, NoteDatabase database) {
+        for (DataMigration migration : NoteDatabase.dataMigrations()) {
+            DataMigrationState state = database.dataMigrationDao().getState(migration.getName());
+            if (state == null || !state.isCompleted()) {
+                Log.d(TAG, "Cassaforte " + vaultId + " saltata: migrazione dei dati in sospeso.");
+                return;
+            }
+        }
+        NoteArchive archive = database.getNoteArchive();
+        archive.attach();
+        try {
+            long before = System.currentTimeMillis() - NoteArchive.ARCHIVE_AGE_MS;
+            int archived = 0;
+            int moved;
+            while (!isStopped() && (moved = archive.archiveBatch(before, BATCH_SIZE)) > 0) {
+                archived += moved;
+            }
+            Log.d(TAG, "Note spostate nell'archivio della cassaforte " + vaultId + ": " + archived);
+        } finally {
+            archive.detach();
+        }
+    }
+}
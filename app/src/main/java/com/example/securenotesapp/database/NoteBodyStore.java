@@ -0,0 +1,408 @@
+package com.example.securenotesapp.database;
+
+import androidx.annotation.NonNull;
+
+import com.example.securenotesapp.dao.NoteChunkDao;
+import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.NoteChunk;
+import com.example.securenotesapp.utils.ContentChunker;
+import com.example.securenotesapp.utils.NoteCodec;
+import com.example.securenotesapp.utils.TextDelta;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gestisce la memorizzazione del contenuto delle note scegliendo il formato adatto alla dimensione:
+ * <ul>
+ *     <li>in chiaro o compresso nella riga della nota (vedi {@link NoteCodec});</li>
+ *     <li>a frammenti ordinati nella tabella 'note_chunks' per le note oltre {@link #CHUNKING_THRESHOLD}.</li>
+ * </ul>
+ * Per le note a frammenti un salvataggio riscrive solo i frammenti cambiati, quindi il costo
+ * di scrittura e cifratura è proporzionale alla modifica e non alla dimensione della nota.
+ *
+ * Ogni salvataggio viene anche registrato nella cronologia delle revisioni ({@link NoteRevisionStore})
+ * come differenza rispetto alla versione precedente, nella stessa transazione.
+ *
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background.
+ */
+public class NoteBodyStore {
+    // Soglia (in caratteri) oltre la quale il contenuto viene salvato a frammenti.
+    public static final int CHUNKING_THRESHOLD = 256 * 1024;
+    // Distanza tra le chiavi di due frammenti consecutivi scritti da zero.
+    private static final long KEY_GAP = 1L << 20;
+    // Numero di frammenti letti per query durante la lettura in streaming.
+    private static final int READ_PAGE_SIZE = 4;
+    // Numero massimo di chiavi per singola DELETE (limite delle variabili di SQLite).
+    private static final int MAX_KEYS_PER_DELETE = 500;
+
+    private final NoteDatabase database;
+    private final NoteDao noteDao;
+    private final NoteChunkDao chunkDao;
+    private final NoteRevisionStore revisionStore;
+
+    /**
+     * Costruttore per il NoteBodyStore.
+     *
+     * @param database Il database delle note.
+     */
+    public NoteBodyStore(NoteDatabase database) {
+        this.database = database;
+        this.noteDao = database.noteDao();
+        this.chunkDao = database.noteChunkDao();
+        this.revisionStore = new NoteRevisionStore(database);
+    }
+
+    /**
+     * Inserisce una nuova nota, scegliendo il formato di memorizzazione del contenuto.
+     * Il campo {@code content} della nota deve contenere il testo completo.
+     *
+     * @param note La nota da inserire. Al termine il suo ID è quello generato dal database.
+     */
+    public void insert(Note note) {
+        String content = note.getContent();
+        database.runInTransaction(() -> {
+            if (content == null || content.length() < CHUNKING_THRESHOLD) {
+                NoteCodec.encode(note);
+                note.setId((int) noteDao.insert(note));
+            } else {
+                markChunked(note, content);
+                note.setId((int) noteDao.insert(note));
+                writeAllChunks(note.getId(), ContentChunker.split(content));
+            }
+            // La prima revisione di una nota è sempre un'istantanea completa.
+            revisionStore.appendSnapshot(note.getId(), content != null ? content : "", note.getTimestamp());
+        });
+    }
+
+    /**
+     * Aggiorna una nota esistente, riscrivendo solo i frammenti di contenuto cambiati,
+     * e registra la modifica nella cronologia delle revisioni.
+     * Il campo {@code content} della nota deve contenere il testo completo. Lo stato nel cestino ({@code deletedAt})
+     * resta quello salvato, qualunque sia il valore nella nota.
+     *
+     * @param note La nota da aggiornare.
+     * @return Il numero di righe aggiornate: 0 se la nota non esiste (es. archiviata o eliminata nel frattempo).
+     */
+    public int update(Note note) {
+        String content = note.getContent() != null ? note.getContent() : "";
+        return database.runInTransaction(() -> {
+            Note previous = noteDao.getNoteByIdSync(note.getId());
+            if (previous == null) {
+                // Nessuna scrittura: frammenti e revisioni di una nota inesistente violerebbero le chiavi esterne.
+                return 0;
+            }
+            // L'editor costruisce una nota nuova, senza deletedAt: il cestino cambia solo con NoteDao#setDeletedAt.
+            note.setDeletedAt(previous.getDeletedAt());
+            if (!revisionStore.hasHistory(note.getId())) {
+                // Nota salvata prima dell'introduzione della cronologia: la versione attuale diventa la base,
+                // ma solo se il contenuto cambia davvero (es. non durante la compressione in background).
+                String base = readContent(previous);
+                if (!base.equals(content)) {
+                    revisionStore.appendSnapshot(note.getId(), base, previous.getTimestamp());
+                }
+            }
+            boolean wasChunked = previous.getContentCodec() == NoteCodec.CODEC_CHUNKED;
+            List<NoteChunk.Header> existing = chunkDao.getChunkHeaders(note.getId());
+            TextDelta delta;
+            int rows;
+            if (content.length() < CHUNKING_THRESHOLD) {
+                delta = TextDelta.between(readContent(previous), content);
+                if (!existing.isEmpty()) {
+                    chunkDao.deleteAllForNote(note.getId()); // La nota è tornata sotto la soglia.
+                }
+                NoteCodec.encode(note);
+                rows = noteDao.update(note);
+            } else if (wasChunked) {
+                markChunked(note, content);
+                rows = noteDao.update(note);
+                delta = rewriteChangedChunks(note.getId(), existing, ContentChunker.split(content));
+            } else {
+                delta = TextDelta.between(readContent(previous), content);
+                markChunked(note, content);
+                rows = noteDao.update(note);
+                rewriteChangedChunks(note.getId(), existing, ContentChunker.split(content));
+            }
+            revisionStore.append(note.getId(), delta, content, note.getTimestamp());
+            return rows;
+        });
+    }
+
+    /**
+     * Inserisce o sostituisce una nota mantenendone l'ID (es. ripristino da backup),
+     * scegliendo il formato di memorizzazione del contenuto.
+     *
+     * @param note La nota da scrivere, con il contenuto completo e l'ID da preservare.
+     */
+    public void upsert(Note note) {
+        upsertAll(Collections.singletonList(note));
+    }
+
+    /**
+     * Inserisce o sostituisce un lotto di note mantenendone gli ID (es. ripristino da backup), in un'unica transazione.
+     * Una nota esistente viene aggiornata e non eliminata, così la sua bozza resta; frammenti e cronologia
+     * del contenuto precedente vengono invece scartati.
+     *
+     * @param notes Le note da scrivere, con il contenuto completo e l'ID da preservare.
+     */
+    public void upsertAll(List<Note> notes) {
+        List<Integer> ids = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            ids.add(note.getId());
+        }
+        database.runInTransaction(() -> {
+            chunkDao.deleteAllForNotes(ids);
+            revisionStore.clearHistory(ids);
+            List<Note> chunked = new ArrayList<>();
+            List<List<String>> chunks = new ArrayList<>();
+            for (Note note : notes) {
+                String content = note.getContent();
+                if (content == null || content.length() < CHUNKING_THRESHOLD) {
+                    NoteCodec.encode(note);
+                } else {
+                    chunks.add(ContentChunker.split(content)); // Prima di markChunked, che lascia solo l'anteprima.
+                    markChunked(note, content);
+                    chunked.add(note);
+                }
+            }
+            noteDao.insertAll(notes);
+            for (int i = 0; i < chunked.size(); i++) {
+                writeAllChunks(chunked.get(i).getId(), chunks.get(i));
+            }
+        });
+    }
+
+    /**
+     * Restituisce il contenuto completo di una nota, qualunque sia il formato di memorizzazione.
+     *
+     * @param note La nota letta dal database.
+     * @return Il contenuto completo.
+     */
+    public String readContent(Note note) {
+        if (note.getContentCodec() != NoteCodec.CODEC_CHUNKED) {
+            return NoteCodec.decode(note);
+        }
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        try (Reader reader = openChunkReader(note.getId())) {
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Lettura dei frammenti fallita", e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Riporta una nota alla forma in chiaro, con il contenuto completo in {@code content}.
+     *
+     * @param note La nota da decodificare sul posto.
+     */
+    public void decodeInPlace(Note note) {
+        if (note.getContentCodec() != NoteCodec.CODEC_PLAIN) {
+            note.setContent(readContent(note));
+            note.setContentBlob(null);
+            note.setContentCodec(NoteCodec.CODEC_PLAIN);
+        }
+    }
+
+    /**
+     * Apre un {@link Reader} che ricompone il contenuto di una nota a frammenti leggendoli
+     * a pagine dal database: in memoria c'è al massimo una pagina di frammenti alla volta.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un Reader sul contenuto della nota.
+     */
+    public Reader openChunkReader(int noteId) {
+        return new ChunkReader(noteId);
+    }
+
+    private void markChunked(Note note, String content) {
+        note.setContentCodec(NoteCodec.CODEC_CHUNKED);
+        note.setContentLength(content.length());
+        note.setContentBlob(null);
+        note.setContent(NoteCodec.preview(content)); // La riga della nota conserva solo l'anteprima.
+    }
+
+    private void writeAllChunks(int noteId, List<String> chunks) {
+        List<NoteChunk> rows = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            rows.add(newChunk(noteId, i * KEY_GAP, chunks.get(i)));
+        }
+        chunkDao.insertAll(rows);
+    }
+
+    /**
+     * Confronta i frammenti esistenti con quelli nuovi tramite hash, individua il prefisso e il suffisso
+     * invariati e riscrive solo i frammenti intermedi.
+     *
+     * @return La differenza tra il vecchio e il nuovo contenuto, calcolata leggendo solo i frammenti cambiati.
+     */
+    private TextDelta rewriteChangedChunks(int noteId, List<NoteChunk.Header> existing, List<String> chunks) {
+        int newCount = chunks.size();
+        long[] newHashes = new long[newCount];
+        for (int i = 0; i < newCount; i++) {
+            newHashes[i] = ContentChunker.hash(chunks.get(i));
+        }
+
+        int oldCount = existing.size();
+        int prefix = 0;
+        while (prefix < oldCount && prefix < newCount
+                && existing.get(prefix).chunkHash == newHashes[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldCount - prefix && suffix < newCount - prefix
+                && existing.get(oldCount - 1 - suffix).chunkHash == newHashes[newCount - 1 - suffix]) {
+            suffix++;
+        }
+        if (prefix == oldCount && prefix == newCount) {
+            return new TextDelta(0, 0, ""); // Nessun frammento cambiato (es. modifica solo del titolo).
+        }
+
+        // La differenza per la cronologia riguarda solo i frammenti intermedi, spostata dopo il prefisso.
+        int prefixChars = 0;
+        for (int i = 0; i < prefix; i++) {
+            prefixChars += existing.get(i).charLength;
+        }
+        StringBuilder newMiddle = new StringBuilder();
+        for (int i = prefix; i < newCount - suffix; i++) {
+            newMiddle.append(chunks.get(i));
+        }
+        TextDelta delta = TextDelta.between(readChunks(noteId, existing, prefix, oldCount - suffix),
+                newMiddle.toString()).shift(prefixChars);
+
+        // Elimina i frammenti intermedi non più validi.
+        List<Long> staleKeys = new ArrayList<>();
+        for (int i = prefix; i < oldCount - suffix; i++) {
+            staleKeys.add(existing.get(i).chunkKey);
+        }
+        deleteKeys(noteId, staleKeys);
+
+        // Assegna ai nuovi frammenti chiavi comprese tra l'ultimo del prefisso e il primo del suffisso.
+        int middle = newCount - prefix - suffix;
+        if (middle == 0) {
+            return delta;
+        }
+        long low = prefix > 0 ? existing.get(prefix - 1).chunkKey : Long.MIN_VALUE;
+        long high = suffix > 0 ? existing.get(oldCount - suffix).chunkKey : Long.MAX_VALUE;
+        if (low == Long.MIN_VALUE && high == Long.MAX_VALUE) {
+            low = -KEY_GAP;
+            high = middle * KEY_GAP;
+        } else if (low == Long.MIN_VALUE) {
+            low = high - (middle + 1) * KEY_GAP;
+        } else if (high == Long.MAX_VALUE) {
+            high = low + (middle + 1) * KEY_GAP;
+        }
+        long step = (high - low) / (middle + 1);
+        if (step < 1) {
+            // Spazio tra le chiavi esaurito: caso raro, si riscrive l'intera nota con chiavi nuove.
+            chunkDao.deleteAllForNote(noteId);
+            writeAllChunks(noteId, chunks);
+            return delta;
+        }
+        List<NoteChunk> rows = new ArrayList<>(middle);
+        for (int i = 0; i < middle; i++) {
+            int index = prefix + i;
+            rows.add(newChunk(noteId, low + step * (i + 1), chunks.get(index), newHashes[index]));
+        }
+        chunkDao.insertAll(rows);
+        return delta;
+    }
+
+    /**
+     * Legge e ricompone il testo dei frammenti esistenti con indice in [from, to).
+     */
+    private String readChunks(int noteId, List<NoteChunk.Header> headers, int from, int to) {
+        if (from >= to) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (NoteChunk chunk : chunkDao.getChunksInRange(noteId, headers.get(from).chunkKey, headers.get(to - 1).chunkKey)) {
+            builder.append(new String(NoteCodec.inflate(chunk.getData()), StandardCharsets.UTF_8));
+        }
+        return builder.toString();
+    }
+
+    private void deleteKeys(int noteId, List<Long> keys) {
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_DELETE) {
+            chunkDao.deleteChunks(noteId, keys.subList(from, Math.min(keys.size(), from + MAX_KEYS_PER_DELETE)));
+        }
+    }
+
+    private static NoteChunk newChunk(int noteId, long key, String text) {
+        return newChunk(noteId, key, text, ContentChunker.hash(text));
+    }
+
+    private static NoteChunk newChunk(int noteId, long key, String text, long hash) {
+        byte[] data = NoteCodec.deflate(text.getBytes(StandardCharsets.UTF_8));
+        return new NoteChunk(noteId, key, hash, text.length(), data);
+    }
+
+    /**
+     * Reader che legge i frammenti di una nota a pagine, in ordine di chiave.
+     */
+    private class ChunkReader extends Reader {
+        private final int noteId;
+        private final ArrayDeque<NoteChunk> pending = new ArrayDeque<>();
+        private long lastKey = Long.MIN_VALUE;
+        private boolean exhausted;
+        private String current = "";
+        private int position;
+
+        ChunkReader(int noteId) {
+            this.noteId = noteId;
+        }
+
+        @Override
+        public int read(@NonNull char[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            while (position >= current.length()) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        private boolean advance() {
+            if (pending.isEmpty()) {
+                if (exhausted) {
+                    return false;
+                }
+                List<NoteChunk> page = chunkDao.getChunksAfter(noteId, lastKey, READ_PAGE_SIZE);
+                if (page.size() < READ_PAGE_SIZE) {
+                    exhausted = true;
+                }
+                if (page.isEmpty()) {
+                    return false;
+                }
+                lastKey = page.get(page.size() - 1).getChunkKey();
+                pending.addAll(page);
+            }
+            NoteChunk chunk = pending.poll();
+            current = new String(NoteCodec.inflate(chunk.getData()), StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            pending.clear();
+            current = "";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.securenotesapp.database;
+
+import android.util.LruCache;
+
+import com.example.securenotesapp.model.ChangeLogEntry;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
+
+/**
+ * Cache in memoria delle note decodificate (contenuto completo in chiaro), per ID, con eliminazione LRU
+ * in base al numero di caratteri.
+ *
+ * Riaprire una nota vista di recente non richiede così una nuova query su SQLCipher né la decompressione
+ * o la ricomposizione dei frammenti. La cache appartiene a una singola istanza di {@link NoteDatabase}:
+ * è registrata su {@link RowChangeNotifier} e scarta le note modificate o eliminate da qualunque scrittore
+ * (editor, worker, ripristino), e viene svuotata alla chiusura del database (blocco della sessione, logout,
+ * cambio di cassaforte), così il testo in chiaro non resta in memoria.
+ *
+ * Tutti i metodi sono thread-safe. Le note restituite sono condivise e non vanno modificate.
+ */
+public class NoteCache implements RowChangeNotifier.Listener {
+
+    // Caratteri totali trattenuti dalla cache (circa 2 MB).
+    private static final int MAX_CHARS = 1024 * 1024;
+    // Le note più lunghe non vengono trattenute: svuoterebbero la cache da sole.
+    private static final int MAX_ENTRY_CHARS = MAX_CHARS / 4;
+
+    private final LruCache<Integer, Note> contents = new LruCache<Integer, Note>(MAX_CHARS) {
+        @Override
+        protected int sizeOf(Integer key, Note value) {
+            return Math.max(1, weight(value));
+        }
+    };
+    // Incrementata a ogni invalidazione. Protetta da 'this'.
+    private long generation;
+
+    NoteCache() {
+    }
+
+    /**
+     * @param noteId L'ID della nota.
+     * @return La nota con il contenuto completo, o null se la nota non è in cache.
+     */
+    public Note get(int noteId) {
+        return contents.get(noteId);
+    }
+
+    /**
+     * Restituisce la generazione corrente, da leggere prima di caricare un contenuto dal database
+     * e da passare poi a {@link #put}.
+     *
+     * @return La generazione corrente.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Inserisce una nota letta dal database, a meno che nel frattempo una modifica
+     * non abbia invalidato la cache: il valore letto potrebbe essere già superato.
+     *
+     * @param note La nota, già decodificata (vedi {@link NoteBodyStore#decodeInPlace}).
+     * @param readGeneration La generazione letta con {@link #getGeneration()} prima della lettura.
+     */
+    public synchronized void put(Note note, long readGeneration) {
+        if (note.getContentCodec() == NoteCodec.CODEC_PLAIN && weight(note) <= MAX_ENTRY_CHARS
+                && readGeneration == generation) {
+            contents.put(note.getId(), note);
+        }
+    }
+
+    /**
+     * Scarta il contenuto di una nota. Va chiamato dopo il commit della modifica.
+     *
+     * @param noteId L'ID della nota.
+     */
+    public synchronized void invalidate(int noteId) {
+        generation++;
+        contents.remove(noteId);
+    }
+
+    /**
+     * Svuota la cache.
+     */
+    public synchronized void clear() {
+        generation++;
+        contents.evictAll();
+    }
+
+    private static int weight(Note note) {
+        return (note.getTitle() != null ? note.getTitle().length() : 0)
+                + (note.getContent() != null ? note.getContent().length() : 0);
+    }
+
+    @Override
+    public void onRowsChanged(RowChangeNotifier.RowChanges changes) {
+        if (!ChangeLogEntry.ENTITY_NOTE.equals(changes.entityType)) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+            for (int id : changes.updated) {
+                contents.remove(id);
+            }
+            for (int id : changes.deleted) {
+                contents.remove(id);
+            }
+            for (int id : changes.inserted) {
+                contents.remove(id); // Es. una nota ripristinata dall'archivio con lo stesso ID.
+            }
+        }
+    }
+}
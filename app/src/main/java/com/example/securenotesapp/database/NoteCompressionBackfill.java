@@ -0,0 +1,108 @@
+package com.example.securenotesapp.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.NoteCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Comprime in background le note esistenti salvate in chiaro prima dell'introduzione di {@link NoteCodec}.
+ * Le note vengono elaborate da {@link DataMigrationRunner} a blocchi di {@link #BATCH_SIZE} righe, in ordine di ID,
+ * ognuno in una transazione breve, così che il database resti leggibile dall'interfaccia durante la migrazione.
+ * Poiché il contenuto delle note viene riscritto, le modifiche dell'utente restano sospese fino al termine.
+ *
+ * Al termine vengono registrati nel log i byte risparmiati e il costo medio di decompressione,
+ * cioè l'impatto sulla latenza di apertura di una nota compressa.
+ */
+public class NoteCompressionBackfill extends DataMigration {
+
+    private static final String TAG = "NoteCompressionBackfill";
+    private static final int BATCH_SIZE = 20; // Note per transazione: le note candidate sono grandi per definizione.
+
+    // Statistiche della sessione corrente, registrate al termine.
+    private final long startTime = SystemClock.elapsedRealtime();
+    private long bytesBefore;
+    private long bytesAfter;
+    private long inflateNanos;
+    private int compressedCount;
+    private int chunkedCount;
+
+    @Override
+    public String getName() {
+        return "note_compression";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Compressione delle note";
+    }
+
+    @Override
+    public int countRemaining(NoteDatabase database, long checkpoint) {
+        return database.noteDao().countUncompressedNotesAfter((int) checkpoint, NoteCodec.COMPRESSION_THRESHOLD);
+    }
+
+    @Override
+    public Batch migrateBatch(NoteDatabase database, long checkpoint) {
+        NoteDao noteDao = database.noteDao();
+        NoteBodyStore bodyStore = new NoteBodyStore(database);
+        int lastId = (int) checkpoint;
+
+        List<Note> page = noteDao.getUncompressedNotesAfter(lastId, NoteCodec.COMPRESSION_THRESHOLD, BATCH_SIZE);
+        List<Note> toUpdate = new ArrayList<>();
+        for (Note note : page) {
+            lastId = note.getId();
+            String original = note.getContent();
+            if (original.length() >= NoteBodyStore.CHUNKING_THRESHOLD) {
+                // Le note molto grandi vengono salvate a frammenti.
+                bodyStore.update(note);
+                chunkedCount++;
+                continue;
+            }
+            if (!NoteCodec.encode(note)) {
+                continue; // Contenuto non comprimibile: resta in chiaro.
+            }
+            // Verifica il round-trip prima di sovrascrivere il contenuto originale,
+            // misurando allo stesso tempo il costo di decompressione.
+            long t0 = System.nanoTime();
+            byte[] restored = NoteCodec.inflate(note.getContentBlob());
+            inflateNanos += System.nanoTime() - t0;
+            byte[] raw = original.getBytes(StandardCharsets.UTF_8);
+            if (!Arrays.equals(raw, restored)) {
+                Log.e(TAG, "Round-trip fallito per la nota " + note.getId() + ", lasciata in chiaro.");
+                continue;
+            }
+            bytesBefore += raw.length;
+            bytesAfter += note.getContentBlob().length
+                    + note.getContent().getBytes(StandardCharsets.UTF_8).length;
+            compressedCount++;
+            toUpdate.add(note);
+        }
+        if (!toUpdate.isEmpty()) {
+            noteDao.updateAll(toUpdate); // Nella stessa transazione della lettura: nessuna modifica concorrente persa.
+        }
+        return Batch.of(lastId, page.size(), BATCH_SIZE);
+    }
+
+    @Override
+    public void onCompleted() {
+        if (chunkedCount > 0) {
+            Log.d(TAG, "Note salvate a frammenti: " + chunkedCount);
+        }
+        if (compressedCount > 0) {
+            Log.d(TAG, "Note compresse: " + compressedCount
+                    + ", byte prima: " + bytesBefore
+                    + ", byte dopo: " + bytesAfter
+                    + ", riduzione: " + (100 - bytesAfter * 100 / Math.max(1, bytesBefore)) + "%"
+                    + ", decompressione media: " + (inflateNanos / compressedCount / 1000) + "us"
+                    + ", durata: " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+    }
+}
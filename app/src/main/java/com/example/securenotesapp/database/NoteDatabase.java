@@ -13,10 +13,26 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import net.sqlcipher.database.SupportFactory;
 
+import com.example.securenotesapp.VaultManager;
+import com.example.securenotesapp.dao.ChangeLogDao;
+import com.example.securenotesapp.dao.DataMigrationDao;
 import com.example.securenotesapp.dao.FileDao;
+import com.example.securenotesapp.dao.NoteChunkDao;
 import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.dao.NoteDraftDao;
+import com.example.securenotesapp.dao.NoteRevisionDao;
+import com.example.securenotesapp.dao.NotebookDao;
+import com.example.securenotesapp.model.ChangeConsumer;
+import com.example.securenotesapp.model.ChangeLogEntry;
+import com.example.securenotesapp.model.DataMigrationState;
 import com.example.securenotesapp.model.FileItem;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.NoteChunk;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteDraftDelta;
+import com.example.securenotesapp.model.NoteRevision;
+import com.example.securenotesapp.model.Notebook;
+import com.example.securenotesapp.model.NotebookClosure;
 import com.example.securenotesapp.utils.DateConverter;
 
 import java.util.concurrent.ExecutorService;
@@ -26,9 +42,18 @@ import java.util.concurrent.Executors;
  * Utilizza Room per la persistenza dei dati e SQLCipher per la crittografia end-to-end.
  * Questa classe è un Singleton per garantire una singola istanza del database in tutta l'applicazione.
  *
- * Le entità gestite sono {@link com.example.securenotesapp.model.Note} e {@link com.example.securenotesapp.model.FileItem}.
+ * Le entità gestite sono {@link com.example.securenotesapp.model.Note}, {@link com.example.securenotesapp.model.FileItem}
+ * {@link com.example.securenotesapp.model.NoteChunk} (frammenti del contenuto delle note grandi)
+ * {@link com.example.securenotesapp.model.NoteRevision} (cronologia delle revisioni delle note)
+ * {@link com.example.securenotesapp.model.ChangeLogEntry} (registro delle modifiche, scritto da trigger)
+ * {@link com.example.securenotesapp.model.Notebook} (quaderni, con la tabella di chiusura
+ * {@link com.example.securenotesapp.model.NotebookClosure}),
+ * {@link com.example.securenotesapp.model.DataMigrationState} (checkpoint delle migrazioni dei dati)
+ * e {@link com.example.securenotesapp.model.NoteDraft} (bozze del salvataggio automatico, con le differenze
+ * {@link com.example.securenotesapp.model.NoteDraftDelta}).
  *
- * La versione del database è 2 e gestisce le migrazioni.
+ * La versione del database è 11. Le migrazioni di Room modificano solo lo schema, in modo sincrono all'apertura;
+ * le riscritture dei dati esistenti sono {@link DataMigration} eseguite in background da {@link DataMigrationRunner}.
  *
  * @see androidx.room.RoomDatabase
  * @see net.sqlcipher.database.SupportFactory
@@ -38,8 +63,10 @@ import java.util.concurrent.Executors;
  * @see com.example.securenotesapp.model.FileItem
  */
 @Database(
-        entities = {Note.class, FileItem.class},
-        version = 2,
+        entities = {Note.class, FileItem.class, NoteChunk.class, NoteRevision.class,
+                ChangeLogEntry.class, ChangeConsumer.class, Notebook.class, NotebookClosure.class,
+                DataMigrationState.class, NoteDraft.class, NoteDraftDelta.class},
+        version = 11,
         exportSchema = true // prima era false
 )
 @TypeConverters({DateConverter.class}) // Assicurati che questa riga ci sia se usi DateConverter
@@ -54,8 +81,43 @@ public abstract class NoteDatabase extends RoomDatabase {
      * @return Il {@link FileDao} per interagire con gli elementi file.
      */
     public abstract FileDao fileDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per i frammenti del contenuto delle note.
+     * @return Il {@link NoteChunkDao} per interagire con i frammenti.
+     */
+    public abstract NoteChunkDao noteChunkDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per la cronologia delle revisioni delle note.
+     * @return Il {@link NoteRevisionDao} per interagire con le revisioni.
+     */
+    public abstract NoteRevisionDao noteRevisionDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per il registro delle modifiche.
+     * @return Il {@link ChangeLogDao} per leggere e compattare il registro.
+     */
+    public abstract ChangeLogDao changeLogDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per i quaderni.
+     * @return Il {@link NotebookDao} per interagire con i quaderni e la loro gerarchia.
+     */
+    public abstract NotebookDao notebookDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per lo stato delle migrazioni dei dati.
+     * @return Il {@link DataMigrationDao} per leggere e salvare i checkpoint.
+     */
+    public abstract DataMigrationDao dataMigrationDao();
+    /**
+     * Ritorna l'istanza del Data Access Object (DAO) per le bozze del salvataggio automatico.
+     * @return Il {@link NoteDraftDao} per interagire con le bozze e le loro differenze.
+     */
+    public abstract NoteDraftDao noteDraftDao();
 
     private static volatile NoteDatabase INSTANCE;
+    private String vaultId; // La cassaforte del file aperto da questa istanza.
+    private RowChangeNotifier rowChangeNotifier; // Notifiche delle modifiche a livello di riga, dal registro.
+    private NoteArchive noteArchive; // Archivio delle note vecchie, collegato solo quando serve.
+    private NoteCache noteCache; // Contenuto delle note aperte di recente, svuotato alla chiusura.
+    private NoteDraftStore noteDraftStore; // Bozze del salvataggio automatico dell'editor.
     private static final int NUMBER_OF_THREADS = 4;
     public static final ExecutorService databaseWriteExecutor =
             Executors.newFixedThreadPool(NUMBER_OF_THREADS);
@@ -72,10 +134,208 @@ public abstract class NoteDatabase extends RoomDatabase {
         }
     };
 
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Aggiunge il tag del codec e la colonna BLOB per il contenuto compresso delle note.
+            // Le righe esistenti restano in chiaro (codec 0) e vengono compresse in background.
+            database.execSQL("ALTER TABLE notes ADD COLUMN contentCodec INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notes ADD COLUMN contentBlob BLOB");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Crea la tabella dei frammenti per il contenuto delle note molto grandi.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_chunks` (`noteId` INTEGER NOT NULL, "
+                    + "`chunkKey` INTEGER NOT NULL, `chunkHash` INTEGER NOT NULL, `charLength` INTEGER NOT NULL, "
+                    + "`data` BLOB, PRIMARY KEY(`noteId`, `chunkKey`), "
+                    + "FOREIGN KEY(`noteId`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Crea la tabella della cronologia delle revisioni. Le note esistenti ricevono
+            // un'istantanea di base al primo salvataggio successivo.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_revisions` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`noteId` INTEGER NOT NULL, `revision` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`kind` INTEGER NOT NULL, `data` BLOB, "
+                    + "FOREIGN KEY(`noteId`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_note_revisions_noteId_revision` "
+                    + "ON `note_revisions` (`noteId`, `revision`)");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Crea il registro delle modifiche e la tabella dei consumatori. Le righe già presenti
+            // non vengono registrate: un consumatore parte sempre da una lettura completa.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `change_log` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`entityType` TEXT NOT NULL, `entityId` INTEGER NOT NULL, `op` INTEGER NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `change_consumers` (`name` TEXT NOT NULL, "
+                    + "`ackedSeq` INTEGER NOT NULL, PRIMARY KEY(`name`))");
+            createChangeLogTriggers(database);
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Crea i quaderni e la tabella di chiusura della gerarchia. Le note esistenti restano fuori da ogni quaderno.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `notebooks` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`name` TEXT, `parentId` INTEGER, "
+                    + "FOREIGN KEY(`parentId`) REFERENCES `notebooks`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notebooks_parentId` ON `notebooks` (`parentId`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `notebook_closure` (`ancestorId` INTEGER NOT NULL, "
+                    + "`descendantId` INTEGER NOT NULL, `depth` INTEGER NOT NULL, PRIMARY KEY(`ancestorId`, `descendantId`), "
+                    + "FOREIGN KEY(`ancestorId`) REFERENCES `notebooks`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , "
+                    + "FOREIGN KEY(`descendantId`) REFERENCES `notebooks`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notebook_closure_descendantId` "
+                    + "ON `notebook_closure` (`descendantId`)");
+            database.execSQL("ALTER TABLE notes ADD COLUMN notebookId INTEGER");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_notebookId` ON `notes` (`notebookId`)");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Indici per ordinamenti e filtri della lista (vedi QueryPlanVerifier). La collazione NOCASE
+            // va dichiarata sull'indice perché la colonna esistente non può essere modificata.
+            database.execSQL("ALTER TABLE notes ADD COLUMN contentLength INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_timestamp` ON `notes` (`timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_title` ON `notes` (`title` COLLATE NOCASE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_contentLength` ON `notes` (`contentLength`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_timestamp` ON `file_items` (`timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_originalFileName` "
+                    + "ON `file_items` (`originalFileName` COLLATE NOCASE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_fileSize` ON `file_items` (`fileSize`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_mimeType_timestamp` "
+                    + "ON `file_items` (`mimeType`, `timestamp`)");
+            // La lunghezza del contenuto delle note esistenti viene calcolata da ContentLengthBackfill in background,
+            // non qui: la migrazione gira durante lo sblocco e deve toccare solo lo schema.
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Cestino: le righe con deletedAt non null sono eliminate in modo reversibile.
+            // Gli indici delle viste vengono ricreati con deletedAt come prima colonna.
+            database.execSQL("ALTER TABLE notes ADD COLUMN deletedAt INTEGER");
+            database.execSQL("ALTER TABLE file_items ADD COLUMN deletedAt INTEGER");
+            database.execSQL("DROP INDEX IF EXISTS `index_notes_timestamp`");
+            database.execSQL("DROP INDEX IF EXISTS `index_notes_title`");
+            database.execSQL("DROP INDEX IF EXISTS `index_notes_contentLength`");
+            database.execSQL("DROP INDEX IF EXISTS `index_file_items_timestamp`");
+            database.execSQL("DROP INDEX IF EXISTS `index_file_items_originalFileName`");
+            database.execSQL("DROP INDEX IF EXISTS `index_file_items_fileSize`");
+            database.execSQL("DROP INDEX IF EXISTS `index_file_items_mimeType_timestamp`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_deletedAt_timestamp` "
+                    + "ON `notes` (`deletedAt`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_deletedAt_title` "
+                    + "ON `notes` (`deletedAt`, `title` COLLATE NOCASE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_deletedAt_contentLength` "
+                    + "ON `notes` (`deletedAt`, `contentLength`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_deletedAt_timestamp` "
+                    + "ON `file_items` (`deletedAt`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_deletedAt_originalFileName` "
+                    + "ON `file_items` (`deletedAt`, `originalFileName` COLLATE NOCASE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_deletedAt_fileSize` "
+                    + "ON `file_items` (`deletedAt`, `fileSize`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_file_items_deletedAt_mimeType_timestamp` "
+                    + "ON `file_items` (`deletedAt`, `mimeType`, `timestamp`)");
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Stato delle migrazioni dei dati in background: solo lo schema, le righe vengono riscritte dopo l'apertura.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `data_migrations` (`name` TEXT NOT NULL, "
+                    + "`checkpoint` INTEGER NOT NULL, `processed` INTEGER NOT NULL, `completed` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`name`))");
+        }
+    };
+
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Bozze del salvataggio automatico: base compressa più differenze, nello stesso database criptato.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_drafts` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`noteId` INTEGER, `title` TEXT, `notebookId` INTEGER, `base` BLOB, "
+                    + "`deltaCount` INTEGER NOT NULL, `deltaBytes` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`noteId`) REFERENCES `notes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_note_drafts_noteId` ON `note_drafts` (`noteId`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_draft_deltas` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`draftId` INTEGER NOT NULL, `seq` INTEGER NOT NULL, `data` BLOB, "
+                    + "FOREIGN KEY(`draftId`) REFERENCES `note_drafts`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_note_draft_deltas_draftId_seq` "
+                    + "ON `note_draft_deltas` (`draftId`, `seq`)");
+        }
+    };
+
     /**
-     * Restituisce l'istanza singola del database {@link NoteDatabase}.
-     * Se l'istanza non esiste, ne crea una nuova, inizializzandola con SQLCipher
-     * e la passphrase fornita. Applica le migrazioni necessarie.
+     * Restituisce le migrazioni dei dati, nell'ordine di esecuzione. Le nuove migrazioni vanno aggiunte in coda
+     * con un nome mai usato: quelle già completate vengono saltate leggendo il loro stato.
+     *
+     * @return Le migrazioni dei dati.
+     */
+    static DataMigration[] dataMigrations() {
+        return new DataMigration[]{
+                new ContentLengthBackfill(),
+                new NoteCompressionBackfill()
+        };
+    }
+
+    /**
+     * Callback che crea i trigger del registro delle modifiche sui database nuovi.
+     * Room non gestisce i trigger nello schema, quindi vanno creati sia qui sia nella migrazione.
+     */
+    private static final RoomDatabase.Callback CHANGE_LOG_CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createChangeLogTriggers(db);
+        }
+    };
+
+    /**
+     * Crea i trigger che registrano in 'change_log' ogni inserimento, aggiornamento ed eliminazione
+     * nelle tabelle 'notes' e 'file_items'. Le voci vengono scritte nella stessa transazione della modifica.
+     *
+     * @param db Il database su cui creare i trigger.
+     */
+    static void createChangeLogTriggers(SupportSQLiteDatabase db) {
+        String[][] tables = {
+                {"notes", ChangeLogEntry.ENTITY_NOTE},
+                {"file_items", ChangeLogEntry.ENTITY_FILE}
+        };
+        String[][] operations = {
+                {"INSERT", "NEW", String.valueOf(ChangeLogEntry.OP_INSERT)},
+                {"UPDATE", "NEW", String.valueOf(ChangeLogEntry.OP_UPDATE)},
+                {"DELETE", "OLD", String.valueOf(ChangeLogEntry.OP_DELETE)}
+        };
+        for (String[] table : tables) {
+            for (String[] operation : operations) {
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS `change_log_" + table[0] + "_" + operation[0].toLowerCase()
+                        + "` AFTER " + operation[0] + " ON `" + table[0] + "` BEGIN "
+                        + "INSERT INTO change_log (entityType, entityId, op, timestamp) VALUES ('"
+                        + table[1] + "', " + operation[1] + ".id, " + operation[2] + ", "
+                        + "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)); END");
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'istanza singola del database {@link NoteDatabase} della cassaforte attiva.
+     * Se l'istanza non esiste, ne crea una nuova sul file della cassaforte (vedi {@link VaultManager}), inizializzandola con SQLCipher,
+     * la passphrase fornita e il profilo di configurazione selezionato (vedi {@link CipherProfile}).
+     * Applica le migrazioni necessarie.
      *
      * @param context Il contesto dell'applicazione.
      * @param passphrase La passphrase (chiave di crittografia) come array di byte.
@@ -85,30 +345,144 @@ public abstract class NoteDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (NoteDatabase.class) {
                 if (INSTANCE == null) {
-                    // Crea il factory per SQLCipher
-                    SupportFactory factory = new SupportFactory(passphrase);
-
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    NoteDatabase.class, "secure_notes_database.db") // Nome del database con .db
-                            .openHelperFactory(factory)
-                            // ***  MIGRAZIONE ***
-                            .addMigrations(MIGRATION_1_2)
-                            // .fallbackToDestructiveMigration()
-                            .build();
+                    // Ogni cassaforte ha il proprio file: viene aperto solo quello della cassaforte attiva.
+                    String vaultId = new VaultManager(context).getActiveVaultId();
+                    NoteDatabase instance = build(context, vaultId, passphrase);
+                    // Notifiche a livello di riga: le liste attendono il loro avvio prima del primo caricamento.
+                    // Il notificatore va impostato prima di pubblicare l'istanza agli altri thread.
+                    instance.rowChangeNotifier = new RowChangeNotifier(instance);
+                    instance.noteCache = new NoteCache();
+                    instance.rowChangeNotifier.addListener(instance.noteCache);
+                    instance.noteDraftStore = new NoteDraftStore(instance);
+                    INSTANCE = instance;
+                    databaseWriteExecutor.execute(instance.rowChangeNotifier::start);
+                    // Riprende in background le migrazioni dei dati in sospeso (vedi DataMigration).
+                    DataMigrationRunner.start(INSTANCE, dataMigrations());
+                    // Rimuove dal registro delle modifiche le voci già confermate da tutti i consumatori.
+                    final NoteDatabase database = INSTANCE;
+                    databaseWriteExecutor.execute(() -> {
+                        int removed = database.changeLogDao().compact();
+                        Log.d(TAG, "Registro delle modifiche compattato: " + removed + " voci rimosse.");
+                    });
                 }
             }
         }
         return INSTANCE;
     }
+
+    /**
+     * Apre un'istanza separata e di breve durata del database di una cassaforte, per i worker in background.
+     * L'istanza non viene condivisa: chi la apre la chiude con {@link #close()} al termine, senza toccare l'istanza
+     * singola dell'interfaccia, che può essere aperta, chiusa o cambiare cassaforte nel frattempo.
+     *
+     * Le due istanze usano connessioni diverse sullo stesso file; le scritture di una invalidano le tabelle osservate
+     * dall'altra (vedi {@link RoomDatabase.Builder#enableMultiInstanceInvalidation()}), quindi le liste aperte
+     * vedono le modifiche del worker. L'istanza ha solo l'archivio: niente notificatore, cache, bozze
+     * né migrazioni dei dati, che restano dell'istanza dell'interfaccia.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param vaultId L'identificativo della cassaforte.
+     * @param passphrase La passphrase della cassaforte.
+     * @return La nuova istanza, da chiudere al termine.
+     */
+    public static NoteDatabase openForBackground(Context context, String vaultId, byte[] passphrase) {
+        return build(context, vaultId, passphrase);
+    }
+
+    /**
+     * Crea un'istanza del database di una cassaforte, con le migrazioni dello schema e l'archivio.
+     */
+    private static NoteDatabase build(Context context, String vaultId, byte[] passphrase) {
+        String databaseName = VaultManager.getDatabaseName(vaultId);
+        // Crea il factory per SQLCipher, con i parametri del profilo di configurazione.
+        SupportFactory factory = CipherProfile.createFactory(context, passphrase,
+                context.getDatabasePath(databaseName));
+
+        NoteDatabase instance = Room.databaseBuilder(context.getApplicationContext(),
+                        NoteDatabase.class, databaseName) // Nome del database con .db
+                .openHelperFactory(factory)
+                // ***  MIGRAZIONE ***
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                        MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10,
+                        MIGRATION_10_11)
+                .addCallback(CHANGE_LOG_CALLBACK)
+                // Le scritture dei worker (istanze separate) invalidano le tabelle osservate dall'interfaccia.
+                .enableMultiInstanceInvalidation()
+                // .fallbackToDestructiveMigration()
+                .build();
+        instance.vaultId = vaultId;
+        instance.noteArchive = new NoteArchive(instance,
+                context.getDatabasePath(VaultManager.getArchiveDatabaseName(vaultId)));
+        return instance;
+    }
+    /**
+     * Restituisce la cassaforte del file aperto da questa istanza.
+     *
+     * @return L'identificativo della cassaforte.
+     */
+    public String getVaultId() {
+        return vaultId;
+    }
+    /**
+     * Restituisce il notificatore delle modifiche a livello di riga di questa istanza.
+     *
+     * @return Il {@link RowChangeNotifier}.
+     */
+    public RowChangeNotifier getRowChangeNotifier() {
+        return rowChangeNotifier;
+    }
+    /**
+     * Restituisce l'archivio delle note vecchie della cassaforte di questa istanza.
+     *
+     * @return Il {@link NoteArchive}.
+     */
+    public NoteArchive getNoteArchive() {
+        return noteArchive;
+    }
+    /**
+     * Restituisce la cache del contenuto delle note di questa istanza.
+     *
+     * @return La {@link NoteCache}.
+     */
+    public NoteCache getNoteCache() {
+        return noteCache;
+    }
+    /**
+     * Restituisce il gestore delle bozze del salvataggio automatico di questa istanza.
+     *
+     * @return Il {@link NoteDraftStore}.
+     */
+    public NoteDraftStore getNoteDraftStore() {
+        return noteDraftStore;
+    }
+    /**
+     * Indica se il database di una cassaforte è aperto dall'interfaccia, cioè se la cassaforte è sbloccata.
+     * Non dipende da {@link #isOpen()}, che resta false fino alla prima query.
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @return true se l'istanza singola esiste ed è quella della cassaforte.
+     */
+    public static boolean isVaultOpen(String vaultId) {
+        NoteDatabase instance = INSTANCE;
+        return instance != null && instance.vaultId.equals(vaultId);
+    }
     /**
      * Chiude l'istanza del database se è aperta e rilascia il riferimento.
-     * Questo è utile per la gestione del ciclo di vita e per prevenire memory leak.
+     * Questo è utile per la gestione del ciclo di vita e per prevenire memory leak,
+     * e va chiamato prima di cambiare la cassaforte attiva.
      */
     public static void closeDatabase() {
-        if (INSTANCE != null && INSTANCE.isOpen()) {
-            INSTANCE.close();
-            INSTANCE = null; // Rilascia l'istanza
-            Log.d(TAG, "NoteDatabase closed and instance released.");
+        synchronized (NoteDatabase.class) {
+            if (INSTANCE != null) {
+                // Il contenuto in chiaro delle note non deve sopravvivere al blocco della sessione.
+                INSTANCE.noteCache.clear();
+                INSTANCE.noteDraftStore.clear();
+                if (INSTANCE.isOpen()) {
+                    INSTANCE.close();
+                }
+                INSTANCE = null; // Rilascia l'istanza
+                Log.d(TAG, "NoteDatabase closed and instance released.");
+            }
         }
     }
 }
\ No newline at end of file
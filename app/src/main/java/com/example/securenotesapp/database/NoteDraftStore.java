@@ -0,0 +1,182 @@
+package com.example.securenotesapp.database;
+
+import com.example.securenotesapp.dao.NoteDraftDao;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteDraftDelta;
+import com.example.securenotesapp.utils.NoteCodec;
+import com.example.securenotesapp.utils.TextDelta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gestisce le bozze del salvataggio automatico dell'editor ({@link NoteDraft}).
+ *
+ * Ogni salvataggio automatico scrive solo la differenza rispetto al precedente ({@link NoteDraftDelta}) e
+ * l'intestazione della bozza; la base compressa viene riscritta solo quando le differenze accumulate
+ * superano la dimensione della base stessa (almeno {@link #MIN_REWRITE_BYTES}) o sono più di {@link #MAX_DELTAS}.
+ * Il costo di una riscrittura è quindi ripagato da differenze di dimensione comparabile: i byte scritti
+ * restano proporzionali al testo effettivamente modificato, anche digitando velocemente su una nota grande.
+ *
+ * Per calcolare la differenza il gestore ricorda l'ultimo contenuto scritto di ogni bozza; se manca
+ * (es. dopo un errore o un riavvio) il salvataggio successivo riscrive la base. La memoria è svuotata alla
+ * chiusura del database, insieme alla cache delle note.
+ *
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background; i salvataggi di una stessa bozza
+ * vanno eseguiti in ordine.
+ */
+public class NoteDraftStore {
+    // Numero massimo di differenze dopo la base: limita il lavoro del ripristino.
+    static final int MAX_DELTAS = 200;
+    // Byte di differenze da accumulare prima di riscrivere la base, anche per le note piccole.
+    static final int MIN_REWRITE_BYTES = 4 * 1024;
+
+    private final NoteDatabase database;
+    private final NoteDraftDao draftDao;
+    // Ultimo contenuto scritto per ID della bozza. Protetta da 'this'.
+    private final Map<Long, String> lastWritten = new HashMap<>();
+
+    NoteDraftStore(NoteDatabase database) {
+        this.database = database;
+        this.draftDao = database.noteDraftDao();
+    }
+
+    /**
+     * Salva lo stato dell'editor in una bozza, creandola se necessario.
+     *
+     * @param draftId L'ID della bozza, o 0 se l'editor non ne ha ancora una.
+     * @param noteId L'ID della nota modificata, o null per una nota nuova.
+     * @param title Il titolo.
+     * @param notebookId Il quaderno, o null.
+     * @param content Il contenuto completo.
+     * @return L'ID della bozza.
+     */
+    public long save(long draftId, Integer noteId, String title, Integer notebookId, String content) {
+        long now = System.currentTimeMillis();
+        try {
+            long id = database.runInTransaction(() -> {
+                long target = draftId;
+                if (target == 0 && noteId != null) {
+                    // Una bozza lasciata da una sessione precedente e non ripristinata viene sostituita.
+                    NoteDraft existing = draftDao.getByNoteId(noteId);
+                    target = existing != null ? existing.getId() : 0;
+                }
+                NoteDraft.Sizes sizes = target != 0 ? draftDao.getSizes(target) : null;
+                if (sizes == null) {
+                    return draftDao.insert(new NoteDraft(noteId, title, notebookId, compress(content), now));
+                }
+                String previous = previousContent(target);
+                TextDelta delta = previous != null ? TextDelta.between(previous, content) : null;
+                byte[] data = delta != null && !delta.isEmpty() ? delta.toBytes() : null;
+                if (delta == null || sizes.deltaCount >= MAX_DELTAS
+                        || (data != null && sizes.deltaBytes + data.length > Math.max(MIN_REWRITE_BYTES, sizes.baseBytes))) {
+                    rewriteBase(target, noteId, title, notebookId, content, now);
+                } else if (data != null) {
+                    draftDao.insertDelta(new NoteDraftDelta(target, sizes.deltaCount + 1, data));
+                    draftDao.updateHeader(target, title, notebookId, sizes.deltaCount + 1,
+                            sizes.deltaBytes + data.length, now);
+                } else {
+                    // Solo il titolo o il quaderno sono cambiati.
+                    draftDao.updateHeader(target, title, notebookId, sizes.deltaCount, sizes.deltaBytes, now);
+                }
+                return target;
+            });
+            synchronized (this) {
+                lastWritten.put(id, content);
+            }
+            return id;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                lastWritten.remove(draftId); // Il prossimo salvataggio riscrive la base.
+            }
+            throw e;
+        }
+    }
+
+    private void rewriteBase(long id, Integer noteId, String title, Integer notebookId, String content, long now) {
+        NoteDraft draft = new NoteDraft(noteId, title, notebookId, compress(content), now);
+        draft.setId(id);
+        draftDao.update(draft);
+        draftDao.deleteDeltas(id);
+    }
+
+    private synchronized String previousContent(long draftId) {
+        return lastWritten.get(draftId);
+    }
+
+    /**
+     * Carica una bozza ricostruendone il contenuto (base più differenze).
+     *
+     * @param draftId L'ID della bozza.
+     * @return La bozza con il contenuto, o null se non esiste.
+     */
+    public NoteDraft load(long draftId) {
+        return reconstruct(draftDao.getById(draftId));
+    }
+
+    /**
+     * Carica la bozza di una nota esistente, se presente.
+     *
+     * @param noteId L'ID della nota.
+     * @return La bozza con il contenuto, o null se la nota non ha bozze.
+     */
+    public NoteDraft loadForNote(int noteId) {
+        return reconstruct(draftDao.getByNoteId(noteId));
+    }
+
+    private NoteDraft reconstruct(NoteDraft draft) {
+        if (draft == null) {
+            return null;
+        }
+        String content = new String(NoteCodec.inflate(draft.getBase()), StandardCharsets.UTF_8);
+        List<NoteDraftDelta> deltas = draftDao.getDeltas(draft.getId());
+        for (NoteDraftDelta delta : deltas) {
+            content = TextDelta.fromBytes(delta.getData()).applyTo(content);
+        }
+        draft.setContent(content);
+        synchronized (this) {
+            lastWritten.put(draft.getId(), content); // Il salvataggio successivo può scrivere una differenza.
+        }
+        return draft;
+    }
+
+    /**
+     * @return Le intestazioni di tutte le bozze, dalla più recente.
+     */
+    public List<NoteDraft.Header> getHeaders() {
+        return draftDao.getHeaders();
+    }
+
+    /**
+     * Elimina una bozza, es. dopo che il suo contenuto è stato salvato nella nota.
+     *
+     * @param draftId L'ID della bozza.
+     */
+    public void delete(long draftId) {
+        draftDao.delete(draftId);
+        synchronized (this) {
+            lastWritten.remove(draftId);
+        }
+    }
+
+    /**
+     * Elimina tutte le bozze.
+     */
+    public void deleteAll() {
+        draftDao.deleteAll();
+        clear();
+    }
+
+    /**
+     * Dimentica i contenuti ricordati, senza toccare il database.
+     */
+    synchronized void clear() {
+        lastWritten.clear();
+    }
+
+    private static byte[] compress(String content) {
+        return NoteCodec.deflate(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.securenotesapp.database;
+
+import com.example.securenotesapp.dao.NoteRevisionDao;
+import com.example.securenotesapp.model.NoteRevision;
+import com.example.securenotesapp.utils.NoteCodec;
+import com.example.securenotesapp.utils.TextDelta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gestisce la cronologia delle revisioni delle note.
+ * Ogni salvataggio viene registrato come differenza rispetto alla versione precedente; ogni
+ * {@link #SNAPSHOT_INTERVAL} revisioni viene salvata un'istantanea completa. Ricostruire una revisione
+ * richiede quindi al massimo {@code SNAPSHOT_INTERVAL - 1} applicazioni di differenze,
+ * indipendentemente dalla lunghezza della cronologia.
+ *
+ * La politica di conservazione elimina le revisioni oltre le ultime {@link #MAX_REVISIONS} oppure più vecchie
+ * di {@link #MAX_AGE_MS}, e le istantanee più vecchie finché la cronologia di una nota supera {@link #MAX_HISTORY_BYTES}:
+ * lo spazio occupato resta limitato anche per una nota di diversi MB salvata molto spesso. Non viene mai eliminata
+ * l'istantanea da cui dipendono le revisioni conservate, né l'ultima istantanea.
+ *
+ * Tutti i metodi sono sincroni e vanno chiamati da un thread in background, all'interno della
+ * transazione di salvataggio della nota.
+ */
+public class NoteRevisionStore {
+    // Numero di revisioni tra due istantanee complete.
+    static final int SNAPSHOT_INTERVAL = 10;
+    // Numero massimo di revisioni conservate per nota.
+    static final int MAX_REVISIONS = 50;
+    // Età massima delle revisioni conservate.
+    static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(90);
+    // Byte massimi (compressi) della cronologia di una nota, a partire dalla sua ultima istantanea.
+    static final long MAX_HISTORY_BYTES = 8L * 1024 * 1024;
+
+    private final NoteRevisionDao revisionDao;
+
+    /**
+     * Costruttore per il NoteRevisionStore.
+     *
+     * @param database Il database delle note.
+     */
+    public NoteRevisionStore(NoteDatabase database) {
+        this.revisionDao = database.noteRevisionDao();
+    }
+
+    /**
+     * Indica se la nota ha già una cronologia.
+     *
+     * @param noteId L'ID della nota.
+     * @return true se esiste almeno una revisione.
+     */
+    public boolean hasHistory(int noteId) {
+        return revisionDao.getLatestRevision(noteId) > 0;
+    }
+
+    /**
+     * Elimina la cronologia delle note indicate, es. quando il loro contenuto viene sostituito da un backup:
+     * le differenze registrate non partirebbero più dal contenuto attuale.
+     *
+     * @param noteIds Gli ID delle note.
+     */
+    public void clearHistory(List<Integer> noteIds) {
+        revisionDao.deleteAllForNotes(noteIds);
+    }
+
+    /**
+     * Registra un'istantanea completa del contenuto come nuova revisione.
+     *
+     * @param noteId L'ID della nota.
+     * @param content Il contenuto completo.
+     * @param timestamp Il timestamp del salvataggio.
+     */
+    public void appendSnapshot(int noteId, String content, long timestamp) {
+        int revision = revisionDao.getLatestRevision(noteId) + 1;
+        revisionDao.insert(new NoteRevision(noteId, revision, timestamp, NoteRevision.KIND_SNAPSHOT,
+                NoteCodec.deflate(content.getBytes(StandardCharsets.UTF_8))));
+        prune(noteId, revision, timestamp);
+    }
+
+    /**
+     * Registra un salvataggio come differenza rispetto alla revisione precedente, oppure come
+     * istantanea completa se è trascorso l'intervallo tra due istantanee.
+     *
+     * @param noteId L'ID della nota.
+     * @param delta La differenza rispetto alla revisione precedente.
+     * @param content Il nuovo contenuto completo, usato solo se serve un'istantanea.
+     * @param timestamp Il timestamp del salvataggio.
+     */
+    public void append(int noteId, TextDelta delta, String content, long timestamp) {
+        if (delta.isEmpty()) {
+            return; // Contenuto invariato (es. modifica solo del titolo).
+        }
+        int latest = revisionDao.getLatestRevision(noteId);
+        int revision = latest + 1;
+        int lastSnapshot = revisionDao.getSnapshotAtOrBefore(noteId, latest);
+        if (latest == 0 || revision - lastSnapshot >= SNAPSHOT_INTERVAL) {
+            appendSnapshot(noteId, content, timestamp);
+            return;
+        }
+        revisionDao.insert(new NoteRevision(noteId, revision, timestamp, NoteRevision.KIND_DELTA, delta.toBytes()));
+        prune(noteId, revision, timestamp);
+    }
+
+    /**
+     * Ricostruisce il contenuto di una revisione partendo dall'istantanea precedente più vicina.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision Il numero della revisione.
+     * @return Il contenuto della revisione, o null se la revisione non è più disponibile.
+     */
+    public String reconstruct(int noteId, int revision) {
+        int snapshot = revisionDao.getSnapshotAtOrBefore(noteId, revision);
+        if (snapshot == 0) {
+            return null;
+        }
+        List<NoteRevision> chain = revisionDao.getRevisionRange(noteId, snapshot, revision);
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getRevision() != revision) {
+            return null;
+        }
+        String content = new String(NoteCodec.inflate(chain.get(0).getData()), StandardCharsets.UTF_8);
+        for (int i = 1; i < chain.size(); i++) {
+            content = TextDelta.fromBytes(chain.get(i).getData()).applyTo(content);
+        }
+        return content;
+    }
+
+    /**
+     * Applica la politica di conservazione, eliminando le revisioni vecchie ma mantenendo
+     * l'istantanea da cui dipende la più vecchia revisione conservata.
+     */
+    private void prune(int noteId, int latest, long now) {
+        // Basta uno dei due limiti per eliminare una revisione; quella appena salvata li rispetta entrambi.
+        int keepByCount = latest - MAX_REVISIONS + 1;
+        int keepByAge = revisionDao.getFirstRevisionSince(noteId, now - MAX_AGE_MS);
+        int oldestToKeep = Math.max(keepByCount, keepByAge > 0 ? keepByAge : latest);
+        int base = revisionDao.getSnapshotAtOrBefore(noteId, oldestToKeep);
+        // Oltre il limite di byte si rinuncia alle istantanee più vecchie, una alla volta, tranne l'ultima.
+        int next;
+        while (revisionDao.getHistoryBytesFrom(noteId, base) > MAX_HISTORY_BYTES
+                && (next = revisionDao.getSnapshotAfter(noteId, base)) > 0) {
+            base = next;
+        }
+        if (base > 1) {
+            revisionDao.deleteBefore(noteId, base);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.securenotesapp.database;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.securenotesapp.dao.FileDao;
+import com.example.securenotesapp.dao.NoteDao;
+
+/**
+ * Controlla con {@code EXPLAIN QUERY PLAN} che le query delle viste della lista (ordinamenti e filtri
+ * di {@link NoteDao} e {@link FileDao}) siano risolte con un indice, senza scansioni complete della tabella
+ * né ordinamenti in una B-tree temporanea.
+ *
+ * Le query vengono lette dalle costanti dei DAO, quindi il controllo riguarda esattamente l'SQL eseguito da Room.
+ * Pensato come strumento per sviluppatori: va eseguito da un thread in background.
+ */
+public class QueryPlanVerifier {
+    private static final String TAG = "QueryPlanVerifier";
+
+    // Coppie (descrizione, query) da verificare.
+    private static final String[][] QUERIES = {
+            {"Note per data", NoteDao.QUERY_BY_MODIFIED},
+            {"Note per titolo", NoteDao.QUERY_BY_TITLE},
+            {"Note per dimensione", NoteDao.QUERY_BY_SIZE},
+            {"Note in un intervallo di date", NoteDao.QUERY_IN_DATE_RANGE},
+            {"Note per prefisso del titolo", NoteDao.QUERY_BY_TITLE_PREFIX},
+            {"Note nel cestino", NoteDao.QUERY_TRASH},
+            {"Note scadute nel cestino", NoteDao.QUERY_EXPIRED_IDS},
+            {"File per data", FileDao.QUERY_BY_MODIFIED},
+            {"File per nome", FileDao.QUERY_BY_NAME},
+            {"File per dimensione", FileDao.QUERY_BY_SIZE},
+            {"File in un intervallo di date", FileDao.QUERY_IN_DATE_RANGE},
+            {"File per tipo MIME", FileDao.QUERY_BY_MIME_TYPE},
+            {"File per tipo MIME e date", FileDao.QUERY_BY_MIME_TYPE_IN_DATE_RANGE},
+            {"File per prefisso del nome", FileDao.QUERY_BY_NAME_PREFIX},
+            {"File nel cestino", FileDao.QUERY_TRASH},
+            {"File scaduti nel cestino", FileDao.QUERY_EXPIRED},
+            {"Tipi MIME presenti", FileDao.QUERY_MIME_TYPES}
+    };
+
+    private final NoteDatabase database;
+
+    /**
+     * Costruttore per il QueryPlanVerifier.
+     *
+     * @param database Il database delle note.
+     */
+    public QueryPlanVerifier(NoteDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Esegue {@code EXPLAIN QUERY PLAN} su tutte le query e restituisce un resoconto leggibile.
+     * I parametri non vengono legati: il piano scelto da SQLite non dipende dai loro valori.
+     *
+     * @return Il resoconto, con una riga di esito per query seguita dai passi del piano.
+     */
+    public String verify() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+        StringBuilder report = new StringBuilder();
+        int failures = 0;
+        for (String[] query : QUERIES) {
+            StringBuilder plan = new StringBuilder();
+            boolean indexed = true;
+            try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + query[1])) {
+                int detailColumn = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    String detail = cursor.getString(detailColumn);
+                    plan.append("    ").append(detail).append('\n');
+                    // "SCAN <tabella>" senza indice è una scansione completa; una B-tree temporanea è un ordinamento.
+                    if ((detail.startsWith("SCAN") && !detail.contains("INDEX")) || detail.contains("TEMP B-TREE")) {
+                        indexed = false;
+                    }
+                }
+            }
+            if (!indexed) {
+                failures++;
+                Log.e(TAG, "Query non servita da un indice: " + query[0] + "\n" + plan);
+            }
+            report.append(indexed ? "OK  " : "NO  ").append(query[0]).append('\n').append(plan);
+        }
+        report.insert(0, failures == 0
+                ? "Tutte le query usano un indice.\n\n"
+                : failures + " query senza indice adatto.\n\n");
+        Log.d(TAG, report.toString());
+        return report.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.securenotesapp.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.securenotesapp.dao.ChangeLogDao;
+import com.example.securenotesapp.model.ChangeConsumer;
+import com.example.securenotesapp.model.ChangeLogEntry;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Notifica a livello di riga le modifiche alle tabelle 'notes' e 'file_items'.
+ *
+ * L'invalidazione di Room riguarda l'intera tabella e non dice quali righe sono cambiate. Il registro delle modifiche
+ * ('change_log', scritto da trigger nella stessa transazione) invece sì: dopo ogni commit che lo modifica questo
+ * notificatore legge le voci nuove e consegna ai listener gli ID inseriti, aggiornati ed eliminati, raggruppati
+ * per tipo di entità. Le liste possono così rileggere solo quelle righe (vedi {@link LiveRowList}).
+ *
+ * Il notificatore è registrato come consumatore del registro, così la compattazione non elimina voci
+ * non ancora consegnate. All'apertura del database riparte dall'ultima sequenza: le liste caricano comunque
+ * il contenuto completo alla prima osservazione. Per questo la conferma serve solo alla compattazione
+ * e viene scritta al più ogni {@link #ACK_INTERVAL_MS} o ogni {@link #ACK_MAX_PENDING} voci, non a ogni commit.
+ */
+public class RowChangeNotifier {
+
+    private static final String TAG = "RowChangeNotifier";
+    private static final String CONSUMER_NAME = "row_change_notifier";
+    private static final int PAGE_SIZE = 500; // Voci del registro lette per query.
+    // Intervallo minimo tra due conferme al registro.
+    private static final long ACK_INTERVAL_MS = 30_000;
+    // Voci consegnate e non confermate oltre le quali la conferma non attende l'intervallo.
+    private static final long ACK_MAX_PENDING = 1000;
+
+    /**
+     * Le righe cambiate per un tipo di entità in uno o più commit consecutivi.
+     * Ogni ID compare in uno solo degli insiemi, secondo l'effetto complessivo delle operazioni registrate.
+     */
+    public static final class RowChanges {
+        public final String entityType;
+        public final Set<Integer> inserted = new LinkedHashSet<>();
+        public final Set<Integer> updated = new LinkedHashSet<>();
+        public final Set<Integer> deleted = new LinkedHashSet<>();
+        /**
+         * La sequenza dell'ultima voce del registro inclusa.
+         */
+        public long lastSeq;
+
+        RowChanges(String entityType) {
+            this.entityType = entityType;
+        }
+
+        void add(ChangeLogEntry entry) {
+            int id = entry.getEntityId();
+            lastSeq = entry.getSeq();
+            switch (entry.getOp()) {
+                case ChangeLogEntry.OP_INSERT:
+                    deleted.remove(id);
+                    updated.remove(id);
+                    inserted.add(id);
+                    break;
+                case ChangeLogEntry.OP_UPDATE:
+                    if (!inserted.contains(id)) {
+                        updated.add(id); // Un aggiornamento dopo un inserimento resta un inserimento.
+                    }
+                    break;
+                case ChangeLogEntry.OP_DELETE:
+                    inserted.remove(id);
+                    updated.remove(id);
+                    deleted.add(id);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Listener per le modifiche a livello di riga. Viene chiamato su un thread in background.
+     */
+    public interface Listener {
+        void onRowsChanged(RowChanges changes);
+    }
+
+    private final NoteDatabase database;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    // Ultima sequenza consegnata per tipo di entità. Protetta da 'this'.
+    private final Map<String, Long> lastSeqByEntity = new HashMap<>();
+    private long lastSeq;
+    private long ackedSeq; // Ultima sequenza confermata nel registro.
+    private long ackedAt; // Momento dell'ultima conferma, in SystemClock.elapsedRealtime().
+
+    RowChangeNotifier(NoteDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Registra il consumatore e inizia a osservare il registro. Da chiamare da un thread in background.
+     */
+    void start() {
+        ChangeLogDao dao = database.changeLogDao();
+        long latest = dao.getLatestSeq();
+        dao.registerConsumer(new ChangeConsumer(CONSUMER_NAME, latest));
+        dao.advanceConsumer(CONSUMER_NAME, latest); // Le voci di una sessione precedente non servono più.
+        synchronized (this) {
+            lastSeq = latest;
+            ackedSeq = latest;
+            ackedAt = SystemClock.elapsedRealtime();
+        }
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("change_log") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                dispatchNewChanges();
+            }
+        });
+        ready.countDown();
+    }
+
+    /**
+     * Legge le voci del registro successive all'ultima consegnata e le consegna ai listener.
+     */
+    private synchronized void dispatchNewChanges() {
+        ChangeLogDao dao = database.changeLogDao();
+        Map<String, RowChanges> byEntity = new HashMap<>();
+        try {
+            List<ChangeLogEntry> page;
+            do {
+                page = dao.getChangesAfter(lastSeq, PAGE_SIZE);
+                for (ChangeLogEntry entry : page) {
+                    RowChanges changes = byEntity.get(entry.getEntityType());
+                    if (changes == null) {
+                        changes = new RowChanges(entry.getEntityType());
+                        byEntity.put(entry.getEntityType(), changes);
+                    }
+                    changes.add(entry);
+                    lastSeq = entry.getSeq();
+                }
+            } while (page.size() == PAGE_SIZE);
+        } catch (Exception e) {
+            // Database chiuso durante la lettura (es. logout): le liste verranno ricaricate alla prossima apertura.
+            Log.e(TAG, "Lettura del registro delle modifiche fallita: " + e.getMessage(), e);
+            return;
+        }
+        if (byEntity.isEmpty()) {
+            return; // Es. la compattazione del registro: nessuna voce nuova.
+        }
+        for (RowChanges changes : byEntity.values()) {
+            lastSeqByEntity.put(changes.entityType, changes.lastSeq);
+            for (Listener listener : listeners) {
+                listener.onRowsChanged(changes);
+            }
+        }
+        // Solo l'avanzamento, e non a ogni commit: la compattazione resta al worker di manutenzione.
+        long now = SystemClock.elapsedRealtime();
+        if (lastSeq - ackedSeq >= ACK_MAX_PENDING || now - ackedAt >= ACK_INTERVAL_MS) {
+            dao.advanceConsumer(CONSUMER_NAME, lastSeq);
+            ackedSeq = lastSeq;
+            ackedAt = now;
+        }
+    }
+
+    /**
+     * Restituisce l'ultima sequenza consegnata per un tipo di entità. Attende l'avvio del notificatore,
+     * quindi va chiamato da un thread in background.
+     * Una lista che legge questo valore prima di un caricamento completo può ignorare le modifiche fino a esso.
+     *
+     * @param entityType Il tipo di entità ({@link ChangeLogEntry#ENTITY_NOTE} o {@link ChangeLogEntry#ENTITY_FILE}).
+     * @return L'ultima sequenza consegnata, o 0 se non ci sono state modifiche dall'apertura.
+     */
+    public long getLastSeq(String entityType) {
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            Long seq = lastSeqByEntity.get(entityType);
+            return seq != null ? seq : 0;
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.WorkerParameters;
+
+import com.example.securenotesapp.FileManager;
+import com.example.securenotesapp.model.FileItem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker periodico che svuota il cestino: elimina definitivamente le note e i file spostati nel cestino
+ * da più di {@link #RETENTION_MS}, in tutte le cassaforti (vedi {@link VaultWorker}). Per le note vengono eliminati
+ * a cascata anche frammenti e revisioni; per i file anche il file criptato sul filesystem.
+ *
+ * Le righe vengono eliminate a blocchi di {@link #BATCH_SIZE}, ognuno in una propria transazione,
+ * così un cestino molto pieno non blocca a lungo il database.
+ */
+public class TrashPurgeWorker extends VaultWorker {
+
+    private static final String TAG = "TrashPurgeWorker";
+    private static final String UNIQUE_WORK_NAME = "trash_purge";
+
+    // Tempo di permanenza nel cestino prima dell'eliminazione definitiva.
+    public static final long RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+    // Righe eliminate per transazione.
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * Costruttore richiesto da WorkManager.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param params I parametri del worker.
+     */
+    public TrashPurgeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Pianifica lo svuotamento giornaliero del cestino, se non è già pianificato.
+     *
+     * @param context Il contesto dell'applicazione.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                TrashPurgeWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @Override
+    protected void processVault(String vaultId, NoteDatabase database) {
+        purge(getApplicationContext(), database, System.currentTimeMillis() - RETENTION_MS);
+    }
+
+    /**
+     * Elimina definitivamente le note e i file spostati nel cestino prima del momento indicato.
+     * Da chiamare da un thread in background.
+     *
+     * @param context Il contesto, per risolvere i percorsi dei file criptati.
+     * @param database Il database delle note.
+     * @param before Il limite (escluso) sul momento dell'eliminazione; {@code Long.MAX_VALUE} svuota tutto il cestino.
+     * @return Il numero di righe eliminate.
+     */
+    public static int purge(Context context, NoteDatabase database, long before) {
+        int notes = 0;
+        List<Integer> noteIds;
+        while (!(noteIds = database.noteDao().getExpiredNoteIds(before, BATCH_SIZE)).isEmpty()) {
+            database.noteDao().deleteByIds(noteIds); // Frammenti e revisioni vengono eliminati a cascata.
+            notes += noteIds.size();
+        }
+
+        int files = 0;
+        List<FileItem> expired;
+        while (!(expired = database.fileDao().getExpiredFileItems(before, BATCH_SIZE)).isEmpty()) {
+            List<Integer> ids = new ArrayList<>(expired.size());
+            for (FileItem item : expired) {
+                ids.add(item.getId());
+            }
+            database.fileDao().deleteByIds(ids);
+            // I file criptati si eliminano dopo le righe: un'interruzione lascia al più un file orfano,
+            // mai una riga che punta a un file inesistente.
+            for (FileItem item : expired) {
+                File file = FileManager.resolveEncryptedFile(context, database.getVaultId(),
+                        item.getEncryptedFilePath());
+                if (file.exists() && !file.delete()) {
+                    Log.e(TAG, "Impossibile eliminare il file criptato: " + item.getEncryptedFilePath());
+                }
+            }
+            files += expired.size();
+        }
+        Log.d(TAG, "Cestino svuotato: " + notes + " note e " + files + " file eliminati definitivamente.");
+        return notes + files;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.securenotesapp.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.securenotesapp.KeyManager;
+import com.example.securenotesapp.VaultManager;
+import com.example.securenotesapp.model.Vault;
+
+/**
+ * Worker periodico che svolge lo stesso lavoro su tutte le cassaforti, non solo su quella attiva.
+ *
+ * Ogni cassaforte viene aperta con la propria passphrase in un'istanza separata del database
+ * (vedi {@link NoteDatabase#openForBackground}), chiusa subito dopo il suo lavoro; l'istanza dell'interfaccia
+ * non viene mai toccata. Le cassaforti mai aperte (senza passphrase o senza file) vengono saltate.
+ * Un errore su una cassaforte non interrompe le altre: al termine il worker chiede di essere ripetuto.
+ */
+public abstract class VaultWorker extends Worker {
+
+    private final String tag = getClass().getSimpleName();
+
+    /**
+     * Costruttore richiesto da WorkManager.
+     *
+     * @param context Il contesto dell'applicazione.
+     * @param params I parametri del worker.
+     */
+    protected VaultWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public final Result doWork() {
+        Context context = getApplicationContext();
+        KeyManager keyManager;
+        try {
+            keyManager = new KeyManager(context);
+        } catch (Exception e) {
+            Log.e(tag, "Impossibile accedere alle passphrase: " + e.getMessage(), e);
+            return Result.success(); // Si riprova alla prossima esecuzione periodica.
+        }
+        boolean failed = false;
+        for (Vault vault : new VaultManager(context).getVaults()) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            String vaultId = vault.getId();
+            byte[] passphrase = keyManager.retrievePassphrase(vaultId);
+            if (passphrase == null || !context.getDatabasePath(VaultManager.getDatabaseName(vaultId)).exists()) {
+                continue; // Cassaforte creata ma mai aperta: nessun database.
+            }
+            NoteDatabase database = NoteDatabase.openForBackground(context, vaultId, passphrase);
+            try {
+                processVault(vaultId, database);
+            } catch (Exception e) {
+                Log.e(tag, "Lavoro sulla cassaforte " + vault.getName() + " fallito: " + e.getMessage(), e);
+                failed = true;
+            } finally {
+                database.close();
+            }
+        }
+        onFinished();
+        return failed ? Result.retry() : Result.success();
+    }
+
+    /**
+     * Svolge il lavoro su una cassaforte. L'istanza del database è propria del worker e viene chiusa al ritorno.
+     *
+     * @param vaultId L'identificativo della cassaforte.
+     * @param database L'istanza del database della cassaforte.
+     * @throws Exception Se il lavoro fallisce: le altre cassaforti vengono comunque elaborate.
+     */
+    protected abstract void processVault(String vaultId, NoteDatabase database) throws Exception;
+
+    /**
+     * Chiamato una volta dopo l'elaborazione di tutte le cassaforti (es. per registrare un riepilogo).
+     */
+    protected void onFinished() {
+    }
+}
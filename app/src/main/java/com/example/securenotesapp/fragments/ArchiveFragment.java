@@ -0,0 +1,114 @@
+package com.example.securenotesapp.fragments;
+
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.core.content.ContextCompat;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.securenotesapp.R;
+import com.example.securenotesapp.adapter.NoteAdapter;
+import com.example.securenotesapp.database.DataMigrationRunner;
+import com.example.securenotesapp.database.NoteArchive;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.viewmodel.NoteViewModel;
+
+import java.util.Collections;
+
+/**
+ * Fragment che mostra le note archiviate (vedi {@link NoteArchive}), con la ricerca per titolo.
+ * L'archivio viene collegato solo durante ogni lettura; una nota archiviata può essere riportata tra le note attive.
+ */
+public class ArchiveFragment extends Fragment {
+
+    private static final String TAG = "ArchiveFragment";
+    private NoteViewModel noteViewModel;
+    private TextView textViewNoNotes;
+    // Prefisso cercato: ogni nuovo valore (anche uguale) rilegge l'archivio.
+    private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_archive, container, false);
+
+        textViewNoNotes = view.findViewById(R.id.text_view_no_archived_notes);
+
+        RecyclerView recyclerView = view.findViewById(R.id.recycler_view_archived_notes);
+        SharedViewPool.attach(this, recyclerView);
+        NoteAdapter adapter = new NoteAdapter();
+        recyclerView.setAdapter(adapter);
+        adapter.setOnItemClickListener(this::showNoteActions);
+
+        EditText searchEditText = view.findViewById(R.id.edit_text_archive_search);
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery.setValue(s.toString().trim());
+            }
+        });
+
+        noteViewModel = new ViewModelProvider(this).get(NoteViewModel.class);
+        Transformations.switchMap(searchQuery, noteViewModel::loadArchivedNotes)
+                .observe(getViewLifecycleOwner(), notes -> {
+                    if (notes == null) {
+                        Toast.makeText(getContext(), "Errore durante la lettura dell'archivio.", Toast.LENGTH_SHORT).show();
+                        notes = Collections.emptyList();
+                    }
+                    adapter.setNotes(notes);
+                    textViewNoNotes.setVisibility(notes.isEmpty() ? View.VISIBLE : View.GONE);
+                });
+
+        return view;
+    }
+
+    /**
+     * Mostra le azioni disponibili per una nota archiviata.
+     *
+     * @param note La nota selezionata.
+     */
+    private void showNoteActions(Note note) {
+        if (!DataMigrationRunner.checkWritable(requireContext())) {
+            return;
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(note.getTitle())
+                .setMessage("La nota verrà riportata tra le note attive.")
+                .setPositiveButton("Ripristina", (dialog, which) ->
+                        noteViewModel.restoreFromArchive(note).whenCompleteAsync((ignored, error) -> {
+                            if (!isAdded()) {
+                                return;
+                            }
+                            if (error != null) {
+                                Toast.makeText(getContext(), "Errore durante il ripristino della nota.", Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            Toast.makeText(getContext(), "Nota ripristinata dall'archivio", Toast.LENGTH_SHORT).show();
+                            searchQuery.setValue(searchQuery.getValue()); // L'archivio non è osservato da Room.
+                        }, ContextCompat.getMainExecutor(requireContext())))
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.securenotesapp.fragments;
 
-import static com.example.securenotesapp.FileManager.ENCRYPTED_FILES_DIR;
-
 import android.content.ContentResolver;
 import android.content.Intent;
 import android.database.Cursor;
@@ -12,6 +10,9 @@ import android.os.Looper;
 import android.provider.OpenableColumns;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
@@ -21,17 +22,20 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.ItemTouchHelper;
-import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.securenotesapp.FileManager;
 import com.example.securenotesapp.R;
 import com.example.securenotesapp.SecureNotesApplication;
 import com.example.securenotesapp.adapter.FileAdapter;
+import com.example.securenotesapp.database.DataMigrationRunner;
 import com.example.securenotesapp.model.FileItem;
+import com.example.securenotesapp.viewmodel.FileRepository;
 import com.example.securenotesapp.viewmodel.FileViewModel;
 import com.google.android.material.snackbar.Snackbar;
 
@@ -39,7 +43,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import android.webkit.MimeTypeMap;
 
 /**
@@ -47,8 +53,11 @@ import android.webkit.MimeTypeMap;
  * e della gestione delle operazioni correlate come l'aggiunta, l'apertura e l'eliminazione di file.
  * Interagisce con il {@link FileViewModel} per recuperare e gestire i dati dei file
  * e con FileManager per le operazioni di crittografia/decrittografia dei file sul filesystem.
+ * Un click lungo avvia la selezione multipla (vedi {@link SelectionMode}): i file selezionati possono essere
+ * spostati nel cestino, eliminati definitivamente o esportati in chiaro. I file non appartengono a contenitori,
+ * quindi lo "spostamento" di una selezione è lo spostamento nel cestino.
  */
-public class FileListFragment extends Fragment implements FileAdapter.OnItemClickListener {
+public class FileListFragment extends Fragment implements FileAdapter.OnItemClickListener, SelectionMode.Host {
 
     private static final String TAG = "FileListFragment";
     private FileViewModel fileViewModel;
@@ -56,10 +65,17 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
     private TextView textViewNoFiles;
     private SecureNotesApplication application;
     private ActivityResultLauncher<String[]> filePickerLauncher;
+    private List<String> mimeTypes = new ArrayList<>(); // Tipi MIME presenti, per il filtro.
+    private SelectionMode selectionMode;
+    private ActivityResultLauncher<Uri> exportLauncher;// Scelta della directory di destinazione dell'esportazione.
+    private ArrayList<Integer> pendingExportIds;// File da esportare mentre l'utente sceglie la directory.
+
+    private static final String STATE_PENDING_EXPORT_IDS = "pending_export_ids";
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
 
         filePickerLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
             if (uri != null) {
@@ -71,9 +87,28 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
             }
         });
 
+        if (savedInstanceState != null) {
+            pendingExportIds = savedInstanceState.getIntegerArrayList(STATE_PENDING_EXPORT_IDS);
+        }
+        exportLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocumentTree(), uri -> {
+            List<Integer> ids = pendingExportIds;
+            pendingExportIds = null;
+            if (uri != null && ids != null) {
+                exportFiles(ids, uri);
+            }
+        });
+
         application = (SecureNotesApplication) requireActivity().getApplication();
     }
 
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (pendingExportIds != null) {
+            outState.putIntegerArrayList(STATE_PENDING_EXPORT_IDS, pendingExportIds);
+        }
+    }
+
     /**
      * Chiamato per creare e restituire la gerarchia di View associata al Fragment.
      *
@@ -91,7 +126,7 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
         View view = inflater.inflate(R.layout.fragment_file_list, container, false);
 
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view_files);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        SharedViewPool.attach(this, recyclerView);
         recyclerView.setHasFixedSize(true);
 
         textViewNoFiles = view.findViewById(R.id.text_view_no_files);
@@ -99,15 +134,25 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
         adapter = new FileAdapter(getContext());
         recyclerView.setAdapter(adapter);
         adapter.setOnItemClickListener(this);
+        adapter.setOnItemLongClickListener(fileItem -> selectionMode.start(fileItem.getId()));
+        selectionMode = new SelectionMode(this, R.menu.menu_files_selection, this);
 
         fileViewModel = new ViewModelProvider(this).get(FileViewModel.class);
-        fileViewModel.getAllFileItems().observe(getViewLifecycleOwner(), new Observer<List<FileItem>>() {
+        fileViewModel.getFileItems().observe(getViewLifecycleOwner(), new Observer<List<FileItem>>() {
             @Override
             public void onChanged(List<FileItem> fileItems) {
                 adapter.setFileItems(fileItems);
                 updateNoFilesVisibility(fileItems.isEmpty());
+                if (selectionMode.isActive()) {
+                    List<Integer> ids = new ArrayList<>(fileItems.size());
+                    for (FileItem fileItem : fileItems) {
+                        ids.add(fileItem.getId());
+                    }
+                    selectionMode.retain(ids); // I file non più in lista escono dalla selezione.
+                }
             }
         });
+        fileViewModel.getMimeTypes().observe(getViewLifecycleOwner(), list -> mimeTypes = list);
 
         new ItemTouchHelper(new ItemTouchHelper.SimpleCallback(0,
                 ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT) {
@@ -120,20 +165,18 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
                 int position = viewHolder.getAdapterPosition();
                 if (position == RecyclerView.NO_POSITION) return;
+                if (!DataMigrationRunner.checkWritable(requireContext())) {
+                    adapter.notifyItemChanged(position); // Riporta l'elemento in posizione.
+                    return;
+                }
 
+                // Sposta il file nel cestino: il file criptato viene eliminato solo allo svuotamento del cestino.
                 FileItem deletedFile = adapter.getFileItemAt(position);
-                fileViewModel.delete(deletedFile);
-                Toast.makeText(getContext(), "File eliminato", Toast.LENGTH_SHORT).show();
+                fileViewModel.moveToTrash(deletedFile);
 
-                // Elimina fisicamente il file crittografato utilizzando FileManager
-                // Passa il percorso assoluto, FileManager lo gestirà.
-                application.getFileManager().fileIOExecutor.execute(() -> {
-                    application.getFileManager().deleteEncryptedFile(deletedFile.getEncryptedFilePath());
-                });
-
-                Snackbar.make(view, "File eliminato", Snackbar.LENGTH_LONG)
+                Snackbar.make(view, "File spostato nel cestino", Snackbar.LENGTH_LONG)
                         .setAction("ANNULLA", v -> {
-                            fileViewModel.insert(deletedFile);
+                            fileViewModel.restoreFromTrash(deletedFile);
                         }).show();
             }
         }).attachToRecyclerView(recyclerView);
@@ -141,11 +184,202 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
         return view;
     }
 
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.menu_files, menu);
+        super.onCreateOptionsMenu(menu, inflater);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_sort_files) {
+            showSortDialog();
+            return true;
+        } else if (item.getItemId() == R.id.action_filter_mime_type) {
+            showMimeTypeFilterDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Mostra la scelta dell'ordinamento della lista dei file.
+     * L'indice della voce corrisponde alla costante {@code SORT_BY_*} di {@link FileRepository}.
+     */
+    private void showSortDialog() {
+        String[] labels = {"Data di aggiunta", "Nome", "Dimensione"};
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Ordina per")
+                .setSingleChoiceItems(labels, fileViewModel.getSortOrder(), (dialog, which) -> {
+                    fileViewModel.setSortOrder(which);
+                    if (fileViewModel.getMimeTypeFilter() != null) {
+                        Toast.makeText(getContext(), "Con un filtro per tipo i file sono ordinati per data.",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Mostra i tipi MIME presenti per limitare la lista dei file a uno di essi.
+     */
+    private void showMimeTypeFilterDialog() {
+        String[] labels = new String[mimeTypes.size() + 1];
+        labels[0] = "Tutti i file";
+        int checked = 0;
+        for (int i = 0; i < mimeTypes.size(); i++) {
+            labels[i + 1] = mimeTypes.get(i);
+            if (mimeTypes.get(i).equals(fileViewModel.getMimeTypeFilter())) {
+                checked = i + 1;
+            }
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Filtra per tipo")
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    fileViewModel.setMimeTypeFilter(which == 0 ? null : mimeTypes.get(which - 1));
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
     @Override
     public void onItemClick(FileItem fileItem) {
+        if (selectionMode.isActive()) {
+            selectionMode.toggle(fileItem.getId());
+            return;
+        }
         openEncryptedFile(fileItem);
     }
 
+    @Override
+    public void onSelectionChanged(Set<Integer> selectedIds) {
+        adapter.setSelectedIds(selectedIds);
+    }
+
+    @Override
+    public List<Integer> getSelectableIds() {
+        List<FileItem> fileItems = adapter.getCurrentList();
+        List<Integer> ids = new ArrayList<>(fileItems.size());
+        for (FileItem fileItem : fileItems) {
+            ids.add(fileItem.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public void onSelectionAction(int itemId, List<Integer> selectedIds) {
+        if (itemId == R.id.action_selection_export) {
+            confirmExport(selectedIds);
+            return;
+        }
+        if (!DataMigrationRunner.checkWritable(requireContext())) {
+            return;
+        }
+        if (itemId == R.id.action_selection_delete) {
+            // Una sola transazione per tutta la selezione; i file criptati restano fino allo svuotamento del cestino.
+            fileViewModel.moveToTrash(selectedIds);
+            Snackbar.make(requireView(), "File spostati nel cestino: " + selectedIds.size(), Snackbar.LENGTH_LONG)
+                    .setAction("ANNULLA", v -> fileViewModel.restoreFromTrash(selectedIds))
+                    .show();
+        } else if (itemId == R.id.action_selection_delete_permanently) {
+            confirmDeletePermanently(selectedIds);
+        }
+    }
+
+    /**
+     * Chiede conferma ed elimina definitivamente una selezione di file: prima le righe, in un'unica transazione,
+     * poi i file criptati, con un unico task in background per tutta la selezione.
+     *
+     * @param fileItemIds I file da eliminare.
+     */
+    private void confirmDeletePermanently(List<Integer> fileItemIds) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Eliminare definitivamente " + fileItemIds.size() + " file?")
+                .setMessage("I file verranno eliminati senza passare dal cestino. L'operazione non può essere annullata.")
+                .setPositiveButton("Elimina", (dialog, which) -> {
+                    FileManager fileManager = application.getFileManager();
+                    fileViewModel.deletePermanently(fileItemIds).whenComplete((deleted, error) -> {
+                        if (error != null) {
+                            postToast("Errore nell'eliminazione dei file.");
+                            return;
+                        }
+                        fileManager.fileIOExecutor.execute(() -> fileManager.deleteEncryptedFiles(deleted));
+                        postToast("File eliminati: " + deleted.size());
+                    });
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Avvisa che i file esportati non sono criptati e, se l'utente conferma, chiede la directory di destinazione.
+     *
+     * @param fileItemIds I file da esportare.
+     */
+    private void confirmExport(List<Integer> fileItemIds) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Esportare " + fileItemIds.size() + " file?")
+                .setMessage("I file vengono decifrati e salvati NON criptati nella cartella scelta, "
+                        + "dove altre app potranno leggerli.")
+                .setPositiveButton("Esporta", (dialog, which) -> {
+                    pendingExportIds = new ArrayList<>(fileItemIds);
+                    exportLauncher.launch(null);
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Esporta in chiaro i file indicati: una lettura delle righe e un unico task di decrittografia per tutta la selezione.
+     *
+     * @param fileItemIds I file da esportare.
+     * @param treeUri La directory di destinazione.
+     */
+    private void exportFiles(List<Integer> fileItemIds, Uri treeUri) {
+        FileManager fileManager = application.getFileManager();
+        fileViewModel.getFileItemsByIds(fileItemIds).whenComplete((fileItems, error) -> {
+            if (error != null) {
+                postToast("Errore durante l'esportazione dei file.");
+                return;
+            }
+            fileManager.fileIOExecutor.execute(() -> {
+                int exported = fileManager.exportDecrypted(fileItems, treeUri);
+                postToast("File esportati: " + exported + " di " + fileItemIds.size());
+            });
+        });
+    }
+
+    /**
+     * Mostra un messaggio dal thread principale, se il fragment è ancora collegato.
+     */
+    private void postToast(String message) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            if (isAdded()) {
+                Toast.makeText(requireContext(), message, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * La sezione viene nascosta, non distrutta, quando si passa ad altre sezioni del drawer: la selezione va chiusa.
+     */
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden && selectionMode != null) {
+            selectionMode.finish();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        selectionMode.finish();
+    }
+
     public void pickFile() {
         filePickerLauncher.launch(new String[]{"*/*"});
     }
@@ -202,19 +436,25 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
                         // Questo metodo gestirà la creazione del file crittografato e restituirà il suo percorso relativo
                         encryptedRelativePath = application.getFileManager().encryptAndSaveFile(inputStream);
 
-                        // Poiché encryptAndSaveFile restituisce un percorso *relativo*,
+                        // Poiché encryptAndSaveFile restituisce un percorso *relativo* alla directory dei file dell'app,
                         // dobbiamo costruire il percorso assoluto per il FileItem.
-                        // La directory è context.getFilesDir() + ENCRYPTED_FILES_DIR
-                        File encryptedFilesBaseDir = new File(requireContext().getFilesDir(), "encrypted_files");
-                        String absoluteEncryptedFilePath = new File(encryptedFilesBaseDir, encryptedRelativePath).getAbsolutePath();
+                        String absoluteEncryptedFilePath = new File(requireContext().getFilesDir(), encryptedRelativePath).getAbsolutePath();
 
 
                         // Crea FileItem e lo salva nel database
                         FileItem newFileItem = new FileItem(originalFileName, mimeType, absoluteEncryptedFilePath, fileSize, System.currentTimeMillis());
-                        fileViewModel.insert(newFileItem);
-
-                        new Handler(Looper.getMainLooper()).post(() ->
-                                Toast.makeText(getContext(), "File '" + newFileItem.getOriginalFileName() + "' aggiunto e criptato!", Toast.LENGTH_LONG).show());
+                        // Il messaggio di conferma arriva solo a riga salvata; se l'inserimento fallisce
+                        // il file criptato appena scritto viene eliminato, per non lasciare file orfani.
+                        fileViewModel.insert(newFileItem).whenComplete((id, error) -> {
+                            if (error != null) {
+                                application.getFileManager().deleteEncryptedFile(absoluteEncryptedFilePath);
+                                new Handler(Looper.getMainLooper()).post(() ->
+                                        Toast.makeText(getContext(), "Errore nel salvataggio del file.", Toast.LENGTH_SHORT).show());
+                                return;
+                            }
+                            new Handler(Looper.getMainLooper()).post(() ->
+                                    Toast.makeText(getContext(), "File '" + newFileItem.getOriginalFileName() + "' aggiunto e criptato!", Toast.LENGTH_LONG).show());
+                        });
 
                     } catch (GeneralSecurityException | IOException e) {
                         Log.e(TAG, "Errore durante la crittografia del file: " + e.getMessage(), e);
@@ -239,27 +479,7 @@ public class FileListFragment extends Fragment implements FileAdapter.OnItemClic
     private void openEncryptedFile(FileItem fileItem) {
         application.getFileManager().fileIOExecutor.execute(() -> {
             try {
-                // Dobbiamo estrarre il percorso relativo dal percorso assoluto salvato nel FileItem
-                String absolutePath = fileItem.getEncryptedFilePath();
-                String relativePath = null;
-                File filesDir = requireContext().getFilesDir();
-                File encryptedFilesBaseDir = new File(filesDir, ENCRYPTED_FILES_DIR);
-
-                if (absolutePath.startsWith(encryptedFilesBaseDir.getAbsolutePath())) {
-                    relativePath = absolutePath.substring(encryptedFilesBaseDir.getAbsolutePath().length() + 1);
-                } else {
-                    Log.e(TAG, "Il percorso del file criptato non corrisponde alla directory prevista: " + absolutePath);
-                    // Fallback: usa solo il nome del file se il percorso non è come previsto
-                    relativePath = new File(absolutePath).getName();
-                }
-
-                if (relativePath == null) {
-                    new Handler(Looper.getMainLooper()).post(() ->
-                            Toast.makeText(getContext(), "Errore: Percorso file criptato non valido.", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                final Uri fileUriToOpen = application.getFileManager().decryptAndOpenFile(relativePath, fileItem.getOriginalFileName());
+                final Uri fileUriToOpen = application.getFileManager().decryptAndOpenFile(fileItem.getEncryptedFilePath(), fileItem.getOriginalFileName());
 
                 new Handler(Looper.getMainLooper()).post(() -> {
                     try {
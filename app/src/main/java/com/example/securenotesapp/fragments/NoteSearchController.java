@@ -0,0 +1,174 @@
+package com.example.securenotesapp.fragments;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.utils.LatencyHistogram;
+import com.example.securenotesapp.utils.PrefixRange;
+import com.example.securenotesapp.viewmodel.NoteViewModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Ricerca delle note per prefisso del titolo durante la digitazione, per {@link NotesFragment}.
+ *
+ * Ogni tasto annulla il lavoro reso inutile dal testo più recente:
+ * <ul>
+ *     <li>la query viene avviata solo {@link #DEBOUNCE_MS} dopo l'ultimo tasto;</li>
+ *     <li>una query superata non ancora iniziata viene annullata, e i risultati di una già in corso vengono
+ *     scartati (SQLite non interrompe una query avviata), quindi i risultati non arrivano mai fuori ordine;</li>
+ *     <li>se il nuovo prefisso estende quello dell'ultimo risultato, il risultato viene filtrato in memoria,
+ *     subito e senza query.</li>
+ * </ul>
+ * Per ogni tasto il cui risultato viene mostrato si registra la latenza percepita, dal tasto alla consegna,
+ * attesa compresa; il riepilogo dell'istogramma viene scritto nel log alla chiusura.
+ *
+ * Tutti i metodi vanno chiamati dal thread principale; anche il listener viene chiamato sul thread principale.
+ */
+public class NoteSearchController {
+
+    private static final String TAG = "NoteSearchController";
+
+    // Attesa dopo l'ultimo tasto prima di interrogare il database.
+    static final long DEBOUNCE_MS = 200;
+
+    /**
+     * Riceve i risultati della ricerca.
+     */
+    public interface Listener {
+        /**
+         * @param notes Le note il cui titolo inizia con il testo cercato, ordinate per titolo,
+         * o null se il testo è vuoto e va mostrata la lista completa.
+         */
+        void onSearchResults(@Nullable List<Note> notes);
+    }
+
+    private final NoteViewModel noteViewModel;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable runQuery = this::runQuery;
+    private final LatencyHistogram latency = new LatencyHistogram("Ricerca note, latenza per tasto");
+
+    private String query = "";// Testo attuale della ricerca, senza spazi iniziali e finali.
+    private int generation;// Incrementato a ogni cambio del testo: i risultati di generazioni precedenti sono superati.
+    private long inputAt;// Istante (uptime) dell'ultimo tasto non ancora servito, 0 se servito.
+    private int superseded;// Tasti il cui risultato non è stato mostrato perché superato da un tasto successivo.
+    private Future<?> inFlight;// Query avviata e non ancora consegnata.
+    private PrefixRange cachedRange;// Prefisso dell'ultimo risultato del database, null se non valido.
+    private List<Note> cachedNotes;
+
+    /**
+     * Costruttore per NoteSearchController.
+     *
+     * @param noteViewModel Il ViewModel che esegue le ricerche.
+     * @param listener Riceve i risultati.
+     */
+    public NoteSearchController(NoteViewModel noteViewModel, Listener listener) {
+        this.noteViewModel = noteViewModel;
+        this.listener = listener;
+    }
+
+    /**
+     * Aggiorna il testo cercato, da chiamare a ogni tasto.
+     *
+     * @param input Il testo del campo di ricerca.
+     */
+    public void setQuery(String input) {
+        String trimmed = input == null ? "" : input.trim();
+        if (trimmed.equals(query)) {
+            return;
+        }
+        if (inputAt != 0) {
+            superseded++;
+        }
+        query = trimmed;
+        generation++;
+        inputAt = SystemClock.uptimeMillis();
+        cancelPending();
+        if (trimmed.isEmpty()) {
+            deliver(null);
+            return;
+        }
+        PrefixRange range = PrefixRange.of(trimmed);
+        if (cachedNotes != null && range.isWithin(cachedRange)) {
+            // Le note che iniziano con il nuovo prefisso sono un sottoinsieme del risultato, già ordinato.
+            List<Note> filtered = new ArrayList<>();
+            for (Note note : cachedNotes) {
+                if (range.contains(note.getTitle())) {
+                    filtered.add(note);
+                }
+            }
+            deliver(filtered);
+            return;
+        }
+        handler.postDelayed(runQuery, DEBOUNCE_MS);
+    }
+
+    /**
+     * @return Il testo attualmente cercato, vuoto se la ricerca non è attiva.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Scarta il risultato in memoria e ripete la ricerca attuale, es. perché le note sono cambiate.
+     */
+    public void invalidate() {
+        cachedRange = null;
+        cachedNotes = null;
+        if (!query.isEmpty()) {
+            cancelPending();
+            generation++;
+            handler.post(runQuery);
+        }
+    }
+
+    /**
+     * Annulla le ricerche in corso e scrive nel log il riepilogo delle latenze.
+     */
+    public void close() {
+        cancelPending();
+        generation++;
+        if (latency.getCount() > 0) {
+            Log.d(TAG, latency.summary() + "\nTasti superati: " + superseded);
+        }
+    }
+
+    private void cancelPending() {
+        handler.removeCallbacks(runQuery);
+        if (inFlight != null) {
+            inFlight.cancel(false); // Non ancora iniziata: non verrà eseguita. Già in corso: il risultato sarà scartato.
+            inFlight = null;
+        }
+    }
+
+    private void runQuery() {
+        int requestGeneration = generation;
+        PrefixRange range = PrefixRange.of(query);
+        inFlight = noteViewModel.searchByTitlePrefix(query, notes -> handler.post(() -> {
+            if (requestGeneration != generation) {
+                return; // Superata da un tasto successivo.
+            }
+            inFlight = null;
+            cachedRange = range;
+            cachedNotes = notes;
+            deliver(notes);
+        }));
+    }
+
+    private void deliver(@Nullable List<Note> notes) {
+        if (inputAt != 0) {
+            latency.record(SystemClock.uptimeMillis() - inputAt);
+            inputAt = 0;
+        }
+        listener.onSearchResults(notes);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.securenotesapp.fragments;
+
+import android.content.Context;
+import android.text.InputType;
+import android.widget.EditText;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+
+import com.example.securenotesapp.model.Notebook;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dialog riutilizzabili per scegliere un quaderno dalla gerarchia e per inserirne il nome.
+ * I quaderni vengono mostrati in ordine di albero, con un rientro proporzionale alla profondità.
+ */
+public final class NotebookPicker {
+
+    /**
+     * Listener per la scelta di un quaderno.
+     */
+    public interface OnNotebookPickedListener {
+        /**
+         * @param notebook Il quaderno scelto, o null se è stata scelta la voce senza quaderno.
+         */
+        void onNotebookPicked(@Nullable Notebook notebook);
+    }
+
+    /**
+     * Listener per l'inserimento del nome di un quaderno.
+     */
+    public interface OnNameEnteredListener {
+        void onNameEntered(String name);
+    }
+
+    private NotebookPicker() {
+    }
+
+    /**
+     * Mostra la lista dei quaderni in ordine di albero.
+     *
+     * @param context Il contesto per il dialog.
+     * @param title Il titolo del dialog.
+     * @param notebooks Tutti i quaderni.
+     * @param noneLabel L'etichetta della prima voce, che corrisponde a "nessun quaderno".
+     * @param excludedSubtreeId Se non null, il quaderno da nascondere insieme ai suoi discendenti
+     *                          (es. destinazioni non valide per uno spostamento).
+     * @param listener Il listener per la scelta.
+     */
+    public static void show(Context context, String title, List<Notebook> notebooks, String noneLabel,
+                            @Nullable Integer excludedSubtreeId, OnNotebookPickedListener listener) {
+        show(context, title, notebooks, noneLabel, excludedSubtreeId, listener, null, null);
+    }
+
+    /**
+     * Mostra la lista dei quaderni in ordine di albero, con un pulsante aggiuntivo (es. "Nuovo quaderno").
+     *
+     * @param context Il contesto per il dialog.
+     * @param title Il titolo del dialog.
+     * @param notebooks Tutti i quaderni.
+     * @param noneLabel L'etichetta della prima voce, che corrisponde a "nessun quaderno".
+     * @param excludedSubtreeId Se non null, il quaderno da nascondere insieme ai suoi discendenti.
+     * @param listener Il listener per la scelta.
+     * @param neutralLabel L'etichetta del pulsante aggiuntivo, o null per non mostrarlo.
+     * @param onNeutral L'azione del pulsante aggiuntivo.
+     */
+    public static void show(Context context, String title, List<Notebook> notebooks, String noneLabel,
+                            @Nullable Integer excludedSubtreeId, OnNotebookPickedListener listener,
+                            @Nullable String neutralLabel, @Nullable Runnable onNeutral) {
+        List<Notebook> ordered = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        Map<Integer, List<Notebook>> children = new HashMap<>();
+        for (Notebook notebook : notebooks) {
+            children.computeIfAbsent(notebook.getParentId(), key -> new ArrayList<>()).add(notebook);
+        }
+        appendSubtree(children, null, 0, excludedSubtreeId, ordered, depths);
+
+        String[] labels = new String[ordered.size() + 1];
+        labels[0] = noneLabel;
+        for (int i = 0; i < ordered.size(); i++) {
+            StringBuilder label = new StringBuilder();
+            for (int d = 0; d < depths.get(i); d++) {
+                label.append("    ");
+            }
+            labels[i + 1] = label.append(ordered.get(i).getName()).toString();
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(context)
+                .setTitle(title)
+                .setItems(labels, (dialog, which) ->
+                        listener.onNotebookPicked(which == 0 ? null : ordered.get(which - 1)))
+                .setNegativeButton("Annulla", null);
+        if (neutralLabel != null && onNeutral != null) {
+            builder.setNeutralButton(neutralLabel, (dialog, which) -> onNeutral.run());
+        }
+        builder.show();
+    }
+
+    /**
+     * Mostra un dialog per inserire il nome di un quaderno.
+     *
+     * @param context Il contesto per il dialog.
+     * @param title Il titolo del dialog.
+     * @param listener Il listener chiamato con il nome inserito, se non vuoto.
+     */
+    public static void askName(Context context, String title, OnNameEnteredListener listener) {
+        EditText input = new EditText(context);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES);
+        input.setHint("Nome del quaderno");
+        new AlertDialog.Builder(context)
+                .setTitle(title)
+                .setView(input)
+                .setPositiveButton("Crea", (dialog, which) -> {
+                    String name = input.getText().toString().trim();
+                    if (!name.isEmpty()) {
+                        listener.onNameEntered(name);
+                    }
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    private static void appendSubtree(Map<Integer, List<Notebook>> children, Integer parentId, int depth,
+                                      Integer excludedSubtreeId, List<Notebook> ordered, List<Integer> depths) {
+        List<Notebook> level = children.get(parentId);
+        if (level == null) {
+            return;
+        }
+        for (Notebook notebook : level) { // Già ordinati per nome dalla query.
+            if (excludedSubtreeId != null && notebook.getId() == excludedSubtreeId) {
+                continue;
+            }
+            ordered.add(notebook);
+            depths.add(depth);
+            appendSubtree(children, notebook.getId(), depth + 1, excludedSubtreeId, ordered, depths);
+        }
+    }
+}
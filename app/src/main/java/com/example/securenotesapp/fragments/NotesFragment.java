@@ -1,28 +1,46 @@
 package com.example.securenotesapp.fragments;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
-import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.ItemTouchHelper; // Importante per lo swipe-to-delete
 
 import com.example.securenotesapp.AddEditNoteActivity;
 import com.example.securenotesapp.R;
 import com.example.securenotesapp.adapter.NoteAdapter;
+import com.example.securenotesapp.database.DataMigrationRunner;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.Notebook;
+import com.example.securenotesapp.viewmodel.NoteRepository;
 import com.example.securenotesapp.viewmodel.NoteViewModel;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Fragment responsabile della visualizzazione di un elenco di note e
  * della gestione delle operazioni CRUD (Creazione, Lettura, Aggiornamento, Eliminazione)
@@ -30,15 +48,58 @@ import com.google.android.material.snackbar.Snackbar;
  * e interagisce con {@link NoteViewModel} per la gestione dei dati persistenti.
  * Permette di aggiungere nuove note, modificarle esistenti tramite click e
  * eliminarle con un'azione di swipe.
+ * La lista può essere limitata a un quaderno (compresi i sotto-quaderni) tramite il menu "Quaderni".
+ * La ricerca nella Toolbar mostra le note il cui titolo inizia con il testo digitato (vedi {@link NoteSearchController}).
+ * Un click lungo avvia la selezione multipla (vedi {@link SelectionMode}): le note selezionate possono essere
+ * spostate nel cestino, in un quaderno o esportate, ogni azione con un'unica transazione per tutta la selezione.
  */
 
-public class NotesFragment extends Fragment {
+public class NotesFragment extends Fragment implements SelectionMode.Host {
 
     public static final int ADD_NOTE_REQUEST = 1;
     public static final int EDIT_NOTE_REQUEST = 2;
 
     private NoteViewModel noteViewModel;
     private NoteAdapter adapter;
+    private List<Notebook> notebooks = new ArrayList<>();// Tutti i quaderni, per i dialog di scelta.
+    private Notebook currentNotebook;// Quaderno a cui è limitata la lista, null per tutte le note.
+    private NoteSearchController searchController;
+    private List<Note> allNotes;// Ultima lista completa, mostrata di nuovo alla chiusura della ricerca.
+    private boolean searching;// True mentre la lista mostra i risultati della ricerca.
+    private SelectionMode selectionMode;
+    private ActivityResultLauncher<Uri> exportLauncher;// Scelta della directory di destinazione dell'esportazione.
+    private ArrayList<Integer> pendingExportIds;// Note da esportare mentre l'utente sceglie la directory.
+
+    private static final String STATE_PENDING_EXPORT_IDS = "pending_export_ids";
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
+        if (savedInstanceState != null) {
+            pendingExportIds = savedInstanceState.getIntegerArrayList(STATE_PENDING_EXPORT_IDS);
+        }
+
+        exportLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocumentTree(), uri -> {
+            List<Integer> ids = pendingExportIds;
+            pendingExportIds = null;
+            if (uri == null || ids == null) {
+                return;
+            }
+            int count = ids.size();
+            noteViewModel.exportNotes(ids, uri).whenComplete((exported, error) -> postToast(error != null
+                    ? "Errore durante l'esportazione delle note."
+                    : "Note esportate: " + exported + " di " + count));
+        });
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (pendingExportIds != null) {
+            outState.putIntegerArrayList(STATE_PENDING_EXPORT_IDS, pendingExportIds);
+        }
+    }
     /**
      * Chiamato per creare e restituire la gerarchia di View associata al Fragment.
      * Questo è il punto in cui si infla il layout e si inizializzano i componenti della UI.
@@ -60,30 +121,61 @@ public class NotesFragment extends Fragment {
         FloatingActionButton buttonAddNote = view.findViewById(R.id.button_add_note);
         buttonAddNote.setOnClickListener(v -> {
             Intent intent = new Intent(getActivity(), AddEditNoteActivity.class);
+            if (currentNotebook != null) {
+                // La nuova nota viene creata nel quaderno visualizzato.
+                intent.putExtra(AddEditNoteActivity.EXTRA_NOTEBOOK_ID, currentNotebook.getId());
+            }
             startActivityForResult(intent, ADD_NOTE_REQUEST);
         });
 
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view_notes);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        SharedViewPool.attach(this, recyclerView);
         recyclerView.setHasFixedSize(true);
 
         adapter = new NoteAdapter();
         recyclerView.setAdapter(adapter);
+        selectionMode = new SelectionMode(this, R.menu.menu_notes_selection, this);
 
         noteViewModel = new ViewModelProvider(this).get(NoteViewModel.class);
-        noteViewModel.getAllNotes().observe(getViewLifecycleOwner(), notes -> {
-            // Aggiorna la UI quando i dati delle note cambiano
-            adapter.setNotes(notes);
+        searchController = new NoteSearchController(noteViewModel, results -> {
+            searching = results != null;
+            showNotes(searching ? results : allNotes);
+        });
+        noteViewModel.getNotes().observe(getViewLifecycleOwner(), notes -> {
+            // Aggiorna la UI quando i dati delle note (o il quaderno selezionato) cambiano
+            allNotes = notes;
+            if (searching) {
+                searchController.invalidate(); // I risultati potrebbero non essere più attuali.
+            } else {
+                showNotes(notes);
+            }
+        });
+        noteViewModel.getNotebooks().observe(getViewLifecycleOwner(), list -> {
+            notebooks = list;
+            if (currentNotebook != null) {
+                // Aggiorna il quaderno selezionato (es. dopo uno spostamento) o torna a tutte le note se è stato eliminato.
+                Notebook updated = null;
+                for (Notebook notebook : list) {
+                    if (notebook.getId() == currentNotebook.getId()) {
+                        updated = notebook;
+                    }
+                }
+                selectNotebook(updated);
+            }
         });
 
         // Imposta il listener per i click sugli elementi della lista
         adapter.setOnItemClickListener(note -> {
+            if (selectionMode.isActive()) {
+                selectionMode.toggle(note.getId());
+                return;
+            }
             Intent intent = new Intent(getActivity(), AddEditNoteActivity.class);
+            // Solo l'ID: l'editor carica titolo e contenuto completo in background.
             intent.putExtra(AddEditNoteActivity.EXTRA_NOTE_ID, note.getId());
-            intent.putExtra(AddEditNoteActivity.EXTRA_NOTE_TITLE, note.getTitle());
-            intent.putExtra(AddEditNoteActivity.EXTRA_NOTE_CONTENT, note.getContent());
             startActivityForResult(intent, EDIT_NOTE_REQUEST);
         });
+        adapter.setOnItemLongClickListener(note -> selectionMode.start(note.getId()));
 
         // Implementazione dello swipe-to-delete
         new ItemTouchHelper(new ItemTouchHelper.SimpleCallback(0,
@@ -95,15 +187,18 @@ public class NotesFragment extends Fragment {
 
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
-                // Quando un elemento viene swipato, lo si elimina dal database
+                if (!DataMigrationRunner.checkWritable(requireContext())) {
+                    adapter.notifyItemChanged(viewHolder.getAdapterPosition()); // Riporta l'elemento in posizione.
+                    return;
+                }
+                // Quando un elemento viene swipato, lo si sposta nel cestino (la riga resta nel database)
                 Note deletedNote = adapter.getNoteAt(viewHolder.getAdapterPosition());
-                noteViewModel.delete(deletedNote);
-                Toast.makeText(getContext(), "Nota eliminata", Toast.LENGTH_SHORT).show();
+                noteViewModel.moveToTrash(deletedNote);
 
-                // Snackbar con opzione UNDO
-                Snackbar.make(recyclerView, "Nota eliminata", Snackbar.LENGTH_LONG)
+                // Snackbar con opzione UNDO: basta azzerare il campo deletedAt, senza reinserire la nota
+                Snackbar.make(recyclerView, "Nota spostata nel cestino", Snackbar.LENGTH_LONG)
                         .setAction("Annulla", v -> {
-                            noteViewModel.insert(deletedNote); // Re-inserisci la nota
+                            noteViewModel.restoreFromTrash(deletedNote);
                             Toast.makeText(getContext(), "Eliminazione annullata", Toast.LENGTH_SHORT).show();
                         })
                         .show();
@@ -113,6 +208,268 @@ public class NotesFragment extends Fragment {
         return view;
     }
 
+    /**
+     * Mostra una lista di note e toglie dalla selezione quelle non più presenti.
+     *
+     * @param notes Le note da mostrare, o null se non sono ancora state caricate.
+     */
+    private void showNotes(@Nullable List<Note> notes) {
+        adapter.setNotes(notes);
+        if (notes != null && selectionMode.isActive()) {
+            List<Integer> ids = new ArrayList<>(notes.size());
+            for (Note note : notes) {
+                ids.add(note.getId());
+            }
+            selectionMode.retain(ids);
+        }
+    }
+
+    @Override
+    public void onSelectionChanged(Set<Integer> selectedIds) {
+        adapter.setSelectedIds(selectedIds);
+    }
+
+    @Override
+    public List<Integer> getSelectableIds() {
+        List<Note> notes = adapter.getCurrentList();
+        List<Integer> ids = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            ids.add(note.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public void onSelectionAction(int itemId, List<Integer> selectedIds) {
+        if (itemId == R.id.action_selection_export) {
+            confirmExport(selectedIds);
+            return;
+        }
+        if (!DataMigrationRunner.checkWritable(requireContext())) {
+            return;
+        }
+        if (itemId == R.id.action_selection_delete) {
+            // Una sola transazione per tutta la selezione; l'annullamento le ripristina allo stesso modo.
+            noteViewModel.moveToTrash(selectedIds);
+            Snackbar.make(requireView(), "Note spostate nel cestino: " + selectedIds.size(), Snackbar.LENGTH_LONG)
+                    .setAction("Annulla", v -> {
+                        noteViewModel.restoreFromTrash(selectedIds);
+                        Toast.makeText(getContext(), "Eliminazione annullata", Toast.LENGTH_SHORT).show();
+                    })
+                    .show();
+        } else if (itemId == R.id.action_selection_move) {
+            NotebookPicker.show(requireContext(), "Sposta in", notebooks, "Nessun quaderno", null,
+                    target -> noteViewModel.moveToNotebook(selectedIds, target != null ? target.getId() : null)
+                            .whenComplete((rows, error) -> postToast(error != null
+                                    ? "Errore nello spostamento delle note." : "Note spostate: " + rows)));
+        }
+    }
+
+    /**
+     * Avvisa che le note esportate non sono criptate e, se l'utente conferma, chiede la directory di destinazione.
+     *
+     * @param noteIds Le note da esportare.
+     */
+    private void confirmExport(List<Integer> noteIds) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Esportare " + noteIds.size() + " note?")
+                .setMessage("Le note vengono salvate come file di testo NON criptati nella cartella scelta, "
+                        + "dove altre app potranno leggerle.")
+                .setPositiveButton("Esporta", (dialog, which) -> {
+                    pendingExportIds = new ArrayList<>(noteIds);
+                    exportLauncher.launch(null);
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Mostra un messaggio dal thread principale, se il fragment è ancora collegato.
+     * I future del ViewModel si completano in un thread in background.
+     */
+    private void postToast(String message) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            if (isAdded()) {
+                Toast.makeText(requireContext(), message, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.menu_notes, menu);
+        MenuItem searchItem = menu.findItem(R.id.action_search_notes);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint("Cerca per titolo");
+        if (searchController != null && !searchController.getQuery().isEmpty()) {
+            // Il menu viene ricreato (es. cambio di quaderno): la ricerca in corso resta aperta.
+            searchItem.expandActionView();
+            searchView.setQuery(searchController.getQuery(), false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus(); // I risultati sono già mostrati: chiude solo la tastiera.
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (searchController != null) {
+                    searchController.setQuery(newText);
+                }
+                return true;
+            }
+        });
+        super.onCreateOptionsMenu(menu, inflater);
+    }
+
+    @Override
+    public void onPrepareOptionsMenu(@NonNull Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+        menu.findItem(R.id.action_manage_notebook).setVisible(currentNotebook != null);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_notebooks) {
+            showNotebookChooser();
+            return true;
+        } else if (item.getItemId() == R.id.action_sort_notes) {
+            showSortDialog();
+            return true;
+        } else if (item.getItemId() == R.id.action_manage_notebook) {
+            showManageNotebookDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Mostra la scelta dell'ordinamento della lista delle note.
+     * L'indice della voce corrisponde alla costante {@code SORT_BY_*} di {@link NoteRepository}.
+     */
+    private void showSortDialog() {
+        String[] labels = {"Data di modifica", "Titolo", "Dimensione"};
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Ordina per")
+                .setSingleChoiceItems(labels, noteViewModel.getSortOrder(), (dialog, which) -> {
+                    noteViewModel.setSortOrder(which);
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Mostra la gerarchia dei quaderni per limitare la lista delle note, con l'opzione di crearne uno nuovo.
+     */
+    private void showNotebookChooser() {
+        NotebookPicker.show(requireContext(), "Quaderni", notebooks, "Tutte le note", null, this::selectNotebook,
+                "Nuovo quaderno", () -> NotebookPicker.askName(requireContext(), "Nuovo quaderno",
+                        name -> createNotebook(name, null)));
+    }
+
+    /**
+     * Mostra le azioni disponibili sul quaderno selezionato.
+     */
+    private void showManageNotebookDialog() {
+        Notebook notebook = currentNotebook;
+        if (notebook == null) {
+            return;
+        }
+        String[] actions = {"Nuovo sotto-quaderno", "Sposta in…", "Elimina"};
+        new AlertDialog.Builder(requireContext())
+                .setTitle(notebook.getName())
+                .setItems(actions, (dialog, which) -> {
+                    if (which == 0) {
+                        NotebookPicker.askName(requireContext(), "Nuovo sotto-quaderno",
+                                name -> createNotebook(name, notebook.getId()));
+                    } else if (which == 1) {
+                        NotebookPicker.show(requireContext(), "Sposta in", notebooks, "Primo livello",
+                                notebook.getId(), target -> moveNotebook(notebook, target));
+                    } else {
+                        confirmDeleteNotebook(notebook);
+                    }
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    private void createNotebook(String name, Integer parentId) {
+        noteViewModel.createNotebook(name, parentId).observe(getViewLifecycleOwner(), created -> {
+            if (!created) {
+                Toast.makeText(getContext(), "Profondità massima dei quaderni raggiunta", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void moveNotebook(Notebook notebook, @Nullable Notebook target) {
+        noteViewModel.moveNotebook(notebook.getId(), target != null ? target.getId() : null)
+                .observe(getViewLifecycleOwner(), moved -> Toast.makeText(getContext(),
+                        moved ? "Quaderno spostato" : "Impossibile spostare il quaderno in questa posizione",
+                        Toast.LENGTH_SHORT).show());
+    }
+
+    private void confirmDeleteNotebook(Notebook notebook) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Eliminare \"" + notebook.getName() + "\"?")
+                .setMessage("Verranno eliminati anche i sotto-quaderni. Le note non vengono eliminate, "
+                        + "ma spostate nel quaderno superiore.")
+                .setPositiveButton("Elimina", (dialog, which) -> noteViewModel.deleteNotebook(notebook))
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        selectionMode.finish();
+        searchController.close();
+        searchController = null;
+        searching = false;
+        // Il nome del quaderno non deve restare nella Toolbar quando si passa ad altre sezioni.
+        ActionBar actionBar = ((AppCompatActivity) requireActivity()).getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setSubtitle(null);
+        }
+    }
+
+    /**
+     * La sezione viene nascosta, non distrutta, quando si passa ad altre sezioni del drawer:
+     * il nome del quaderno va tolto dalla Toolbar e rimesso quando la sezione torna visibile.
+     */
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden && selectionMode != null) {
+            selectionMode.finish(); // La selezione non deve restare nella Toolbar di un'altra sezione.
+        }
+        ActionBar actionBar = ((AppCompatActivity) requireActivity()).getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setSubtitle(!hidden && currentNotebook != null ? currentNotebook.getName() : null);
+        }
+    }
+
+    /**
+     * Limita la lista al quaderno indicato (e ai suoi sotto-quaderni) e ne mostra il nome nella Toolbar.
+     *
+     * @param notebook Il quaderno da mostrare, o null per tutte le note.
+     */
+    private void selectNotebook(@Nullable Notebook notebook) {
+        currentNotebook = notebook;
+        Integer notebookId = notebook != null ? notebook.getId() : null;
+        if (notebookId == null ? noteViewModel.getNotebookFilter() != null
+                : !notebookId.equals(noteViewModel.getNotebookFilter())) {
+            noteViewModel.setNotebookFilter(notebookId);
+        }
+        ActionBar actionBar = ((AppCompatActivity) requireActivity()).getSupportActionBar();
+        if (actionBar != null && !isHidden()) {
+            actionBar.setSubtitle(notebook != null ? notebook.getName() : null);
+        }
+        requireActivity().invalidateOptionsMenu();
+    }
+
     /**
      * Chiamato quando un'attività viene completata e restituisce un risultato. Questo metodo è qui per completezza, ma le operazioni
      * di inserimento/aggiornamento sono già gestite dal ViewModel e dalle LiveData,
@@ -0,0 +1,176 @@
+package com.example.securenotesapp.fragments;
+
+import android.view.Menu;
+import android.view.MenuItem;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.fragment.app.Fragment;
+
+import com.example.securenotesapp.R;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Modalità selezione multipla delle liste della schermata principale, mostrata come ActionMode nella Toolbar.
+ *
+ * Un click lungo su una riga avvia la modalità; mentre è attiva, un click aggiunge o toglie la riga dalla selezione.
+ * Le azioni del menu ricevono gli ID di tutta la selezione, da eseguire con un'unica operazione sul database
+ * (una transazione e un solo aggiornamento delle liste, invece di uno per riga).
+ * La voce {@code action_selection_all} è gestita qui: seleziona tutte le righe della lista.
+ *
+ * Tutti i metodi vanno chiamati dal thread principale.
+ */
+public class SelectionMode implements ActionMode.Callback {
+
+    /**
+     * Il fragment che usa la modalità selezione.
+     */
+    public interface Host {
+        /**
+         * Chiamato a ogni cambio della selezione, es. per evidenziare le righe.
+         *
+         * @param selectedIds Gli ID selezionati (insieme non modificabile, vuoto alla chiusura della modalità).
+         */
+        void onSelectionChanged(Set<Integer> selectedIds);
+
+        /**
+         * @return Gli ID di tutte le righe mostrate, per "Seleziona tutto".
+         */
+        List<Integer> getSelectableIds();
+
+        /**
+         * Esegue un'azione sulla selezione. Al ritorno la modalità viene chiusa.
+         *
+         * @param itemId L'ID della voce di menu.
+         * @param selectedIds Gli ID selezionati, nell'ordine di selezione.
+         */
+        void onSelectionAction(int itemId, List<Integer> selectedIds);
+    }
+
+    private final Fragment fragment;
+    private final int menuRes;
+    private final Host host;
+    private final Set<Integer> selectedIds = new LinkedHashSet<>();
+    private ActionMode actionMode;
+
+    /**
+     * Costruttore per SelectionMode.
+     *
+     * @param fragment Il fragment che contiene la lista; la sua Activity deve essere un {@link AppCompatActivity}.
+     * @param menuRes Il menu delle azioni sulla selezione.
+     * @param host Il fragment che riceve la selezione e le azioni.
+     */
+    public SelectionMode(Fragment fragment, int menuRes, Host host) {
+        this.fragment = fragment;
+        this.menuRes = menuRes;
+        this.host = host;
+    }
+
+    /**
+     * @return true se la modalità selezione è attiva.
+     */
+    public boolean isActive() {
+        return actionMode != null;
+    }
+
+    /**
+     * Avvia la modalità selezione con una riga selezionata, o la aggiunge alla selezione se la modalità è già attiva.
+     *
+     * @param id L'ID della riga.
+     */
+    public void start(int id) {
+        if (actionMode == null) {
+            actionMode = ((AppCompatActivity) fragment.requireActivity()).startSupportActionMode(this);
+            if (actionMode == null) {
+                return;
+            }
+        }
+        selectedIds.add(id);
+        onChanged();
+    }
+
+    /**
+     * Aggiunge o toglie una riga dalla selezione; se la selezione resta vuota la modalità viene chiusa.
+     *
+     * @param id L'ID della riga.
+     */
+    public void toggle(int id) {
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        if (selectedIds.isEmpty()) {
+            finish();
+        } else {
+            onChanged();
+        }
+    }
+
+    /**
+     * Toglie dalla selezione le righe non più mostrate, es. dopo un aggiornamento della lista.
+     *
+     * @param visibleIds Gli ID delle righe mostrate.
+     */
+    public void retain(Collection<Integer> visibleIds) {
+        if (actionMode == null || !selectedIds.retainAll(new HashSet<>(visibleIds))) {
+            return;
+        }
+        if (selectedIds.isEmpty()) {
+            finish();
+        } else {
+            onChanged();
+        }
+    }
+
+    /**
+     * Chiude la modalità selezione, se attiva, e svuota la selezione.
+     */
+    public void finish() {
+        if (actionMode != null) {
+            actionMode.finish(); // Chiama onDestroyActionMode.
+        }
+    }
+
+    private void onChanged() {
+        actionMode.setTitle(selectedIds.size() == 1 ? "1 selezionato" : selectedIds.size() + " selezionati");
+        host.onSelectionChanged(Collections.unmodifiableSet(new LinkedHashSet<>(selectedIds)));
+    }
+
+    @Override
+    public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+        mode.getMenuInflater().inflate(menuRes, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+        return false;
+    }
+
+    @Override
+    public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+        if (item.getItemId() == R.id.action_selection_all) {
+            selectedIds.addAll(host.getSelectableIds());
+            if (!selectedIds.isEmpty()) {
+                onChanged();
+            }
+            return true;
+        }
+        host.onSelectionAction(item.getItemId(), new ArrayList<>(selectedIds));
+        finish();
+        return true;
+    }
+
+    @Override
+    public void onDestroyActionMode(ActionMode mode) {
+        actionMode = null;
+        selectedIds.clear();
+        host.onSelectionChanged(Collections.emptySet());
+    }
+}
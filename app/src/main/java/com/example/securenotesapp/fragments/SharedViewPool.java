@@ -0,0 +1,58 @@
+package com.example.securenotesapp.fragments;
+
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.securenotesapp.R;
+
+/**
+ * Configura le liste dei fragment della schermata principale perché condividano un unico pool di ViewHolder.
+ *
+ * Le righe di note e file hanno la stessa forma in tutte le sezioni (note, file, cestino, archivio): una lista
+ * creata per la prima volta riusa le righe già create dalle altre invece di gonfiare nuovi layout.
+ * Gli adattatori usano come tipo di vista il layout della riga, quindi righe di tipo diverso non si mescolano.
+ */
+public final class SharedViewPool {
+
+    // Righe trattenute per tipo: circa due schermate, più del valore predefinito di RecyclerView (5).
+    private static final int MAX_RECYCLED_VIEWS = 20;
+
+    /**
+     * Implementato dall'Activity che possiede il pool condiviso.
+     */
+    public interface Provider {
+        RecyclerView.RecycledViewPool getSharedViewPool();
+    }
+
+    private SharedViewPool() {
+    }
+
+    /**
+     * Crea un pool per le liste della schermata principale.
+     *
+     * @return Il nuovo pool.
+     */
+    public static RecyclerView.RecycledViewPool create() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(R.layout.note_item, MAX_RECYCLED_VIEWS);
+        pool.setMaxRecycledViews(R.layout.file_item, MAX_RECYCLED_VIEWS);
+        return pool;
+    }
+
+    /**
+     * Imposta un LinearLayoutManager sulla lista e, se l'Activity del fragment lo fornisce, il pool condiviso.
+     * Quando la View del fragment viene distrutta le righe tornano nel pool, a disposizione delle altre liste.
+     *
+     * @param fragment Il fragment che contiene la lista.
+     * @param recyclerView La lista.
+     */
+    public static void attach(Fragment fragment, RecyclerView recyclerView) {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(fragment.getContext());
+        if (fragment.getActivity() instanceof Provider) {
+            layoutManager.setRecycleChildrenOnDetach(true);
+            recyclerView.setRecycledViewPool(((Provider) fragment.getActivity()).getSharedViewPool());
+        }
+        recyclerView.setLayoutManager(layoutManager);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.securenotesapp.fragments;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.securenotesapp.R;
+import com.example.securenotesapp.SecureNotesApplication;
+import com.example.securenotesapp.adapter.FileAdapter;
+import com.example.securenotesapp.adapter.NoteAdapter;
+import com.example.securenotesapp.database.DataMigrationRunner;
+import com.example.securenotesapp.database.TrashPurgeWorker;
+import com.example.securenotesapp.model.FileItem;
+import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.viewmodel.FileViewModel;
+import com.example.securenotesapp.viewmodel.NoteViewModel;
+
+/**
+ * Fragment che mostra le note e i file nel cestino.
+ * Ogni elemento può essere ripristinato o eliminato definitivamente; gli elementi non ripristinati
+ * vengono eliminati da {@link TrashPurgeWorker} dopo il periodo di permanenza.
+ */
+public class TrashFragment extends Fragment {
+
+    private static final String TAG = "TrashFragment";
+    private NoteViewModel noteViewModel;
+    private FileViewModel fileViewModel;
+    private TextView textViewNoNotes;
+    private TextView textViewNoFiles;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_trash, container, false);
+
+        textViewNoNotes = view.findViewById(R.id.text_view_no_trashed_notes);
+        textViewNoFiles = view.findViewById(R.id.text_view_no_trashed_files);
+
+        RecyclerView notesRecyclerView = view.findViewById(R.id.recycler_view_trashed_notes);
+        SharedViewPool.attach(this, notesRecyclerView);
+        NoteAdapter noteAdapter = new NoteAdapter();
+        notesRecyclerView.setAdapter(noteAdapter);
+        noteAdapter.setOnItemClickListener(this::showNoteActions);
+
+        RecyclerView filesRecyclerView = view.findViewById(R.id.recycler_view_trashed_files);
+        SharedViewPool.attach(this, filesRecyclerView);
+        FileAdapter fileAdapter = new FileAdapter(getContext());
+        filesRecyclerView.setAdapter(fileAdapter);
+        fileAdapter.setOnItemClickListener(this::showFileActions);
+
+        noteViewModel = new ViewModelProvider(this).get(NoteViewModel.class);
+        noteViewModel.getTrashedNotes().observe(getViewLifecycleOwner(), notes -> {
+            noteAdapter.setNotes(notes);
+            textViewNoNotes.setVisibility(notes.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+
+        fileViewModel = new ViewModelProvider(this).get(FileViewModel.class);
+        fileViewModel.getTrashedFileItems().observe(getViewLifecycleOwner(), fileItems -> {
+            fileAdapter.setFileItems(fileItems);
+            textViewNoFiles.setVisibility(fileItems.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+
+        return view;
+    }
+
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.menu_trash, menu);
+        super.onCreateOptionsMenu(menu, inflater);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_empty_trash) {
+            if (!DataMigrationRunner.checkWritable(requireContext())) {
+                return true;
+            }
+            new AlertDialog.Builder(requireContext())
+                    .setTitle("Svuota cestino")
+                    .setMessage("Tutte le note e i file nel cestino verranno eliminati definitivamente. Continuare?")
+                    .setPositiveButton("Svuota", (dialog, which) -> {
+                        noteViewModel.emptyTrash();
+                        Toast.makeText(getContext(), "Cestino svuotato", Toast.LENGTH_SHORT).show();
+                    })
+                    .setNegativeButton("Annulla", null)
+                    .show();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Mostra le azioni disponibili per una nota nel cestino.
+     *
+     * @param note La nota selezionata.
+     */
+    private void showNoteActions(Note note) {
+        if (!DataMigrationRunner.checkWritable(requireContext())) {
+            return;
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(note.getTitle())
+                .setItems(new String[]{"Ripristina", "Elimina definitivamente"}, (dialog, which) -> {
+                    if (which == 0) {
+                        noteViewModel.restoreFromTrash(note);
+                        Toast.makeText(getContext(), "Nota ripristinata", Toast.LENGTH_SHORT).show();
+                    } else {
+                        noteViewModel.delete(note);
+                        Toast.makeText(getContext(), "Nota eliminata definitivamente", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+
+    /**
+     * Mostra le azioni disponibili per un file nel cestino.
+     * L'eliminazione definitiva rimuove anche il file criptato dal filesystem.
+     *
+     * @param fileItem Il file selezionato.
+     */
+    private void showFileActions(FileItem fileItem) {
+        if (!DataMigrationRunner.checkWritable(requireContext())) {
+            return;
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(fileItem.getOriginalFileName())
+                .setItems(new String[]{"Ripristina", "Elimina definitivamente"}, (dialog, which) -> {
+                    if (which == 0) {
+                        fileViewModel.restoreFromTrash(fileItem);
+                        Toast.makeText(getContext(), "File ripristinato", Toast.LENGTH_SHORT).show();
+                    } else {
+                        fileViewModel.delete(fileItem);
+                        SecureNotesApplication application = (SecureNotesApplication) requireActivity().getApplication();
+                        application.getFileManager().fileIOExecutor.execute(() ->
+                                application.getFileManager().deleteEncryptedFile(fileItem.getEncryptedFilePath()));
+                        Toast.makeText(getContext(), "File eliminato definitivamente", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Annulla", null)
+                .show();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.securenotesapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Rappresenta un consumatore registrato del registro delle modifiche (es. backup incrementale, indicizzazione).
+ * Ogni consumatore conferma l'ultima sequenza elaborata; il registro viene compattato fino alla sequenza
+ * più bassa confermata da tutti i consumatori.
+ */
+@Entity(tableName = "change_consumers")
+public class ChangeConsumer {
+    /**
+     * Il nome univoco del consumatore.
+     */
+    @PrimaryKey
+    @NonNull
+    private String name;
+    /**
+     * L'ultima sequenza del registro elaborata e confermata dal consumatore.
+     */
+    private long ackedSeq;
+
+    /**
+     * Costruttore per un consumatore.
+     *
+     * @param name Il nome univoco del consumatore.
+     * @param ackedSeq La sequenza da cui il consumatore parte (es. l'ultima al momento di una lettura completa).
+     */
+    public ChangeConsumer(@NonNull String name, long ackedSeq) {
+        this.name = name;
+        this.ackedSeq = ackedSeq;
+    }
+
+    // --- Getter e Setter ---
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+
+    public long getAckedSeq() {
+        return ackedSeq;
+    }
+
+    public void setAckedSeq(long ackedSeq) {
+        this.ackedSeq = ackedSeq;
+    }
+}
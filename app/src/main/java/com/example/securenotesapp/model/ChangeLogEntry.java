@@ -0,0 +1,107 @@
+package com.example.securenotesapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Rappresenta una voce del registro delle modifiche (change feed) del database.
+ * Le voci non vengono scritte dall'applicazione ma da trigger SQLite sulle tabelle 'notes' e 'file_items'
+ * (vedi {@code NoteDatabase.createChangeLogTriggers}), quindi nessuna scrittura può sfuggire al registro.
+ *
+ * Il numero di sequenza {@code seq} è AUTOINCREMENT: cresce in modo monotono e non viene mai riutilizzato,
+ * neanche dopo la compattazione del registro. Un consumatore (backup, sincronizzazione, indicizzazione)
+ * può quindi ricordare l'ultima sequenza elaborata e leggere solo le modifiche successive.
+ */
+@Entity(tableName = "change_log")
+public class ChangeLogEntry {
+    // Tipi di entità registrati.
+    public static final String ENTITY_NOTE = "note";
+    public static final String ENTITY_FILE = "file";
+
+    // Operazioni registrate. Un ripristino con REPLACE viene registrato come inserimento:
+    // i consumatori devono trattare OP_INSERT come "inserisci o sostituisci".
+    public static final int OP_INSERT = 0;
+    public static final int OP_UPDATE = 1;
+    public static final int OP_DELETE = 2;
+
+    /**
+     * Il numero di sequenza della modifica, monotono crescente.
+     */
+    @PrimaryKey(autoGenerate = true)
+    private long seq;
+    /**
+     * Il tipo di entità modificata: {@link #ENTITY_NOTE} o {@link #ENTITY_FILE}.
+     */
+    @NonNull
+    private String entityType;
+    /**
+     * L'ID della riga modificata.
+     */
+    private int entityId;
+    /**
+     * L'operazione eseguita: {@link #OP_INSERT}, {@link #OP_UPDATE} o {@link #OP_DELETE}.
+     */
+    private int op;
+    /**
+     * Il timestamp della modifica, in millisecondi.
+     */
+    private long timestamp;
+
+    /**
+     * Costruttore usato da Room per leggere le voci del registro.
+     *
+     * @param entityType Il tipo di entità modificata.
+     * @param entityId L'ID della riga modificata.
+     * @param op L'operazione eseguita.
+     * @param timestamp Il timestamp della modifica.
+     */
+    public ChangeLogEntry(@NonNull String entityType, int entityId, int op, long timestamp) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.op = op;
+        this.timestamp = timestamp;
+    }
+
+    // --- Getter e Setter ---
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    @NonNull
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(@NonNull String entityType) {
+        this.entityType = entityType;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public int getOp() {
+        return op;
+    }
+
+    public void setOp(int op) {
+        this.op = op;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
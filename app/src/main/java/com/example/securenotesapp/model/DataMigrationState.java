@@ -0,0 +1,75 @@
+package com.example.securenotesapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Stato di una migrazione dei dati in background (vedi {@link com.example.securenotesapp.database.DataMigration}).
+ * Il checkpoint viene salvato nella stessa transazione di ogni blocco elaborato, così una migrazione
+ * interrotta (chiusura del database, uscita dall'app) riprende dal blocco successivo all'ultimo completato.
+ */
+@Entity(tableName = "data_migrations")
+public class DataMigrationState {
+    /**
+     * Il nome univoco della migrazione.
+     */
+    @PrimaryKey
+    @NonNull
+    private String name;
+    /**
+     * L'ultima chiave elaborata (es. l'ID dell'ultima nota del blocco), 0 per iniziare.
+     */
+    private long checkpoint;
+    /**
+     * Il numero di righe elaborate finora, per il calcolo dell'avanzamento.
+     */
+    private int processed;
+    /**
+     * Indica se la migrazione è terminata.
+     */
+    private boolean completed;
+
+    /**
+     * Costruttore per lo stato iniziale di una migrazione.
+     *
+     * @param name Il nome univoco della migrazione.
+     */
+    public DataMigrationState(@NonNull String name) {
+        this.name = name;
+    }
+
+    // --- Getter e Setter ---
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.securenotesapp.model;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.util.Objects;
+
 /**
  * Rappresenta un elemento file archiviato nell'applicazione SecureNotes.
  * Questa classe è un'entità di Room, che mappa una tabella nel database locale.
@@ -10,7 +14,14 @@ import androidx.room.PrimaryKey;
  * crittografato sul filesystem e la sua dimensione, oltre a un timestamp
  * per l'ordinamento.
  */
-@Entity(tableName = "file_items")
+@Entity(tableName = "file_items",
+        indices = {
+                // Come per le note, gli indici delle viste iniziano con deletedAt (vedi Note).
+                @Index(value = {"deletedAt", "timestamp"}), // Ordinamento per data, intervallo di date, cestino
+                @Index(value = {"deletedAt", "originalFileName"}), // Ordinamento per nome e prefisso (collazione NOCASE)
+                @Index(value = {"deletedAt", "fileSize"}), // Ordinamento per dimensione
+                @Index(value = {"deletedAt", "mimeType", "timestamp"}) // Filtro per tipo MIME, già ordinato per data
+        })
 public class FileItem {
     /**
      * L'ID univoco del file nel database. È una chiave primaria con autogenerazione.
@@ -20,6 +31,7 @@ public class FileItem {
     /**
      * Il nome originale del file prima della crittografia e dell'archiviazione.
      */
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
     private String originalFileName;
     /**
      * Il tipo MIME del file (es. "image/jpeg", "application/pdf").
@@ -36,6 +48,11 @@ public class FileItem {
      * Utilizzato per ordinare gli elementi della lista.
      */
     private long timestamp;
+    /**
+     * Il momento (in millisecondi) in cui il file è stato spostato nel cestino, o null se il file è attivo.
+     * Il file criptato resta sul filesystem finché la riga non viene eliminata definitivamente.
+     */
+    private Long deletedAt;
     /**
      * Costruttore per creare un nuovo oggetto FileItem.
      *
@@ -138,4 +155,34 @@ public class FileItem {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
-}
\ No newline at end of file
+    /**
+     * Restituisce il momento in cui il file è stato spostato nel cestino.
+     * @return Il timestamp dello spostamento nel cestino, o null se il file è attivo.
+     */
+    public Long getDeletedAt() {
+        return deletedAt;
+    }
+    /**
+     * Imposta il momento in cui il file è stato spostato nel cestino.
+     * @param deletedAt Il timestamp, o null per un file attivo.
+     */
+    public void setDeletedAt(Long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+    /**
+     * Confronta tutti i campi memorizzati con quelli di un altro file, ID compreso.
+     * Usato dagli adattatori per decidere se una riga della lista va aggiornata.
+     *
+     * @param other L'altro file.
+     * @return true se i due file hanno lo stesso contenuto.
+     */
+    public boolean hasSameContent(FileItem other) {
+        return id == other.id
+                && fileSize == other.fileSize
+                && timestamp == other.timestamp
+                && Objects.equals(originalFileName, other.originalFileName)
+                && Objects.equals(mimeType, other.mimeType)
+                && Objects.equals(encryptedFilePath, other.encryptedFilePath)
+                && Objects.equals(deletedAt, other.deletedAt);
+    }
+}
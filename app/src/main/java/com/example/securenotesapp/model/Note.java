@@ -2,14 +2,27 @@ package com.example.securenotesapp.model;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
+
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Rappresenta una singola nota archiviata nell'applicazione SecureNotes.
  * Questa classe è un'entità di Room, che mappa una tabella nel database locale.
  * Contiene l'ID univoco della nota, il suo titolo, il contenuto testuale
  * e un timestamp per l'ordinamento.
  */
-@Entity(tableName = "notes") // Definisce la classe come un'entità Room e il nome della tabella nel DB
+@Entity(tableName = "notes", // Definisce la classe come un'entità Room e il nome della tabella nel DB
+        indices = {
+                @Index(value = {"notebookId"}), // Indice per le note di un quaderno (vedi NotebookDao)
+                // Gli indici delle viste iniziano con deletedAt: "deletedAt IS NULL" diventa una ricerca per
+                // uguaglianza e le note nel cestino restano fuori dall'intervallo letto.
+                @Index(value = {"deletedAt", "timestamp"}), // Ordinamento per data, intervallo di date, cestino
+                @Index(value = {"deletedAt", "title"}), // Ordinamento per titolo e ricerca per prefisso (collazione NOCASE)
+                @Index(value = {"deletedAt", "contentLength"}) // Ordinamento per dimensione
+        })
 public class Note {
     /**
      * L'ID univoco della nota nel database. È una chiave primaria con autogenerazione.
@@ -17,7 +30,7 @@ public class Note {
     @PrimaryKey(autoGenerate = true)
     private int id;
 
-    @ColumnInfo(name = "title") // Nome della colonna nel DB
+    @ColumnInfo(name = "title", collate = ColumnInfo.NOCASE) // Nome della colonna nel DB
     private String title;
 
     @ColumnInfo(name = "content") // Nome della colonna nel DB
@@ -26,6 +39,35 @@ public class Note {
     @ColumnInfo(name = "timestamp") // Per memorizzare la data/ora di creazione o ultima modifica
     private long timestamp;
 
+    /**
+     * Tag del codec con cui è memorizzato il contenuto (vedi {@link com.example.securenotesapp.utils.NoteCodec}).
+     * Con codec diverso da {@code CODEC_PLAIN} la colonna 'content' contiene solo un'anteprima.
+     */
+    @ColumnInfo(name = "contentCodec", defaultValue = "0")
+    private int contentCodec;
+
+    @ColumnInfo(name = "contentBlob", typeAffinity = ColumnInfo.BLOB) // Contenuto compresso, null se in chiaro
+    private byte[] contentBlob;
+
+    /**
+     * L'ID del quaderno che contiene la nota, o null se la nota non appartiene a nessun quaderno.
+     */
+    @ColumnInfo(name = "notebookId")
+    private Integer notebookId;
+
+    /**
+     * La lunghezza in caratteri del contenuto completo, qualunque sia il formato di memorizzazione.
+     * Serve per ordinare per dimensione senza decomprimere né ricomporre il contenuto.
+     */
+    @ColumnInfo(name = "contentLength", defaultValue = "0")
+    private int contentLength;
+
+    /**
+     * Il momento (in millisecondi) in cui la nota è stata spostata nel cestino, o null se la nota è attiva.
+     */
+    @ColumnInfo(name = "deletedAt")
+    private Long deletedAt;
+
     /**
      * Costruttore per creare un nuovo oggetto Note.
      *
@@ -98,4 +140,92 @@ public class Note {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
-}
\ No newline at end of file
+    /**
+     * Restituisce il tag del codec con cui è memorizzato il contenuto.
+     * @return Il codec del contenuto.
+     */
+    public int getContentCodec() {
+        return contentCodec;
+    }
+    /**
+     * Imposta il tag del codec con cui è memorizzato il contenuto.
+     * @param contentCodec Il codec da impostare.
+     */
+    public void setContentCodec(int contentCodec) {
+        this.contentCodec = contentCodec;
+    }
+    /**
+     * Restituisce il contenuto compresso della nota, o null se il contenuto è in chiaro.
+     * @return I byte compressi del contenuto.
+     */
+    public byte[] getContentBlob() {
+        return contentBlob;
+    }
+    /**
+     * Imposta il contenuto compresso della nota.
+     * @param contentBlob I byte compressi da impostare.
+     */
+    public void setContentBlob(byte[] contentBlob) {
+        this.contentBlob = contentBlob;
+    }
+    /**
+     * Restituisce l'ID del quaderno che contiene la nota.
+     * @return L'ID del quaderno, o null se la nota non appartiene a nessun quaderno.
+     */
+    public Integer getNotebookId() {
+        return notebookId;
+    }
+    /**
+     * Imposta il quaderno che contiene la nota.
+     * @param notebookId L'ID del quaderno, o null per nessun quaderno.
+     */
+    public void setNotebookId(Integer notebookId) {
+        this.notebookId = notebookId;
+    }
+    /**
+     * Restituisce la lunghezza in caratteri del contenuto completo della nota.
+     * @return La lunghezza del contenuto.
+     */
+    public int getContentLength() {
+        return contentLength;
+    }
+    /**
+     * Imposta la lunghezza in caratteri del contenuto completo della nota.
+     * @param contentLength La lunghezza da impostare.
+     */
+    public void setContentLength(int contentLength) {
+        this.contentLength = contentLength;
+    }
+    /**
+     * Restituisce il momento in cui la nota è stata spostata nel cestino.
+     * @return Il timestamp dello spostamento nel cestino, o null se la nota è attiva.
+     */
+    public Long getDeletedAt() {
+        return deletedAt;
+    }
+    /**
+     * Imposta il momento in cui la nota è stata spostata nel cestino.
+     * @param deletedAt Il timestamp, o null per una nota attiva.
+     */
+    public void setDeletedAt(Long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+    /**
+     * Confronta tutti i campi memorizzati con quelli di un'altra nota, ID compreso.
+     * Usato dagli adattatori per decidere se una riga della lista va aggiornata.
+     *
+     * @param other L'altra nota.
+     * @return true se le due note hanno lo stesso contenuto.
+     */
+    public boolean hasSameContent(Note other) {
+        return id == other.id
+                && timestamp == other.timestamp
+                && contentCodec == other.contentCodec
+                && contentLength == other.contentLength
+                && Objects.equals(title, other.title)
+                && Objects.equals(notebookId, other.notebookId)
+                && Objects.equals(deletedAt, other.deletedAt)
+                && Objects.equals(content, other.content)
+                && Arrays.equals(contentBlob, other.contentBlob);
+    }
+}
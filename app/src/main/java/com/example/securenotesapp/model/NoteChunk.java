@@ -0,0 +1,120 @@
+package com.example.securenotesapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+/**
+ * Rappresenta un frammento (chunk) del contenuto di una nota molto grande.
+ * Le note oltre la soglia di chunking non salvano il contenuto nella tabella 'notes',
+ * ma lo suddividono in frammenti ordinati per {@code chunkKey} in questa tabella figlia.
+ * Un salvataggio riscrive solo i frammenti effettivamente cambiati.
+ *
+ * Le chiavi di ordinamento sono distanziate ({@code chunkKey}), così che nuovi frammenti
+ * possano essere inseriti tra due esistenti senza rinumerare il resto della nota.
+ */
+@Entity(tableName = "note_chunks",
+        primaryKeys = {"noteId", "chunkKey"},
+        foreignKeys = @ForeignKey(entity = Note.class,
+                parentColumns = "id",
+                childColumns = "noteId",
+                onDelete = ForeignKey.CASCADE)) // Eliminare la nota elimina i suoi frammenti
+public class NoteChunk {
+    /**
+     * L'ID della nota a cui appartiene il frammento.
+     */
+    private int noteId;
+    /**
+     * La chiave di ordinamento del frammento all'interno della nota.
+     */
+    private long chunkKey;
+    /**
+     * Hash a 64 bit del testo del frammento, usato per riconoscere i frammenti invariati
+     * senza leggerne e decifrarne il contenuto.
+     */
+    private long chunkHash;
+    /**
+     * La lunghezza del frammento in caratteri.
+     */
+    private int charLength;
+    /**
+     * Il testo del frammento in UTF-8 compresso con Deflate.
+     */
+    @ColumnInfo(typeAffinity = ColumnInfo.BLOB)
+    private byte[] data;
+
+    /**
+     * Costruttore per creare un nuovo frammento.
+     *
+     * @param noteId L'ID della nota.
+     * @param chunkKey La chiave di ordinamento del frammento.
+     * @param chunkHash L'hash del testo del frammento.
+     * @param charLength La lunghezza del frammento in caratteri.
+     * @param data Il testo compresso del frammento.
+     */
+    public NoteChunk(int noteId, long chunkKey, long chunkHash, int charLength, byte[] data) {
+        this.noteId = noteId;
+        this.chunkKey = chunkKey;
+        this.chunkHash = chunkHash;
+        this.charLength = charLength;
+        this.data = data;
+    }
+
+    // --- Getter e Setter ---
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getChunkKey() {
+        return chunkKey;
+    }
+
+    public void setChunkKey(long chunkKey) {
+        this.chunkKey = chunkKey;
+    }
+
+    public long getChunkHash() {
+        return chunkHash;
+    }
+
+    public void setChunkHash(long chunkHash) {
+        this.chunkHash = chunkHash;
+    }
+
+    public int getCharLength() {
+        return charLength;
+    }
+
+    public void setCharLength(int charLength) {
+        this.charLength = charLength;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Intestazione di un frammento (chiave, hash e lunghezza) senza il contenuto.
+     * Usata per confrontare i frammenti esistenti con quelli nuovi leggendo solo poche colonne.
+     */
+    public static class Header {
+        public long chunkKey;
+        public long chunkHash;
+        public int charLength;
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Header{" + chunkKey + ", " + Long.toHexString(chunkHash) + "}";
+        }
+    }
+}
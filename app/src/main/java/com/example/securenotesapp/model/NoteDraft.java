@@ -0,0 +1,159 @@
+package com.example.securenotesapp.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Rappresenta una bozza non salvata dell'editor, scritta dal salvataggio automatico.
+ * Il contenuto è un'istantanea di base compressa ({@link #base}) seguita da differenze compatte
+ * ({@link NoteDraftDelta}); titolo e quaderno, piccoli, vengono riscritti a ogni salvataggio.
+ * Una bozza appartiene a una nota esistente ({@link #noteId}) o a una nota nuova ({@code noteId} null).
+ */
+@Entity(tableName = "note_drafts",
+        foreignKeys = @ForeignKey(entity = Note.class,
+                parentColumns = "id",
+                childColumns = "noteId",
+                onDelete = ForeignKey.CASCADE), // Eliminare la nota elimina la sua bozza
+        indices = {@Index(value = {"noteId"}, unique = true)}) // Al più una bozza per nota
+public class NoteDraft {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    /**
+     * L'ID della nota modificata, o null per una nota nuova.
+     */
+    private Integer noteId;
+    private String title;
+    private Integer notebookId;
+    /**
+     * Il contenuto di base, compresso, a cui applicare le differenze.
+     */
+    @ColumnInfo(typeAffinity = ColumnInfo.BLOB)
+    private byte[] base;
+    /**
+     * Numero e dimensione in byte delle differenze registrate dopo la base: decidono quando riscriverla.
+     */
+    private int deltaCount;
+    private int deltaBytes;
+    /**
+     * Il momento dell'ultimo salvataggio automatico.
+     */
+    private long updatedAt;
+    /**
+     * Il contenuto ricostruito (base più differenze), non memorizzato.
+     */
+    @Ignore
+    private String content;
+
+    /**
+     * Costruttore per una nuova bozza.
+     *
+     * @param noteId L'ID della nota modificata, o null per una nota nuova.
+     * @param title Il titolo.
+     * @param notebookId Il quaderno, o null.
+     * @param base Il contenuto di base, compresso.
+     * @param updatedAt Il momento del salvataggio.
+     */
+    public NoteDraft(Integer noteId, String title, Integer notebookId, byte[] base, long updatedAt) {
+        this.noteId = noteId;
+        this.title = title;
+        this.notebookId = notebookId;
+        this.base = base;
+        this.updatedAt = updatedAt;
+    }
+
+    // --- Getter e Setter ---
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Integer getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Integer noteId) {
+        this.noteId = noteId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Integer getNotebookId() {
+        return notebookId;
+    }
+
+    public void setNotebookId(Integer notebookId) {
+        this.notebookId = notebookId;
+    }
+
+    public byte[] getBase() {
+        return base;
+    }
+
+    public void setBase(byte[] base) {
+        this.base = base;
+    }
+
+    public int getDeltaCount() {
+        return deltaCount;
+    }
+
+    public void setDeltaCount(int deltaCount) {
+        this.deltaCount = deltaCount;
+    }
+
+    public int getDeltaBytes() {
+        return deltaBytes;
+    }
+
+    public void setDeltaBytes(int deltaBytes) {
+        this.deltaBytes = deltaBytes;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * Intestazione di una bozza senza il contenuto, usata per proporre il ripristino.
+     */
+    public static class Header {
+        public long id;
+        public Integer noteId;
+        public String title;
+        public long updatedAt;
+    }
+
+    /**
+     * Dimensioni di una bozza, usate per decidere quando riscrivere la base.
+     */
+    public static class Sizes {
+        public int deltaCount;
+        public int deltaBytes;
+        public int baseBytes;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.securenotesapp.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Una differenza del contenuto di una bozza ({@link NoteDraft}) rispetto al salvataggio automatico precedente,
+ * serializzata con {@link com.example.securenotesapp.utils.TextDelta#toBytes()}.
+ */
+@Entity(tableName = "note_draft_deltas",
+        foreignKeys = @ForeignKey(entity = NoteDraft.class,
+                parentColumns = "id",
+                childColumns = "draftId",
+                onDelete = ForeignKey.CASCADE), // Eliminare la bozza elimina le sue differenze
+        indices = {@Index(value = {"draftId", "seq"}, unique = true)})
+public class NoteDraftDelta {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    private long draftId;
+    /**
+     * Posizione della differenza nella sequenza della bozza, a partire da 1.
+     */
+    private int seq;
+    @ColumnInfo(typeAffinity = ColumnInfo.BLOB)
+    private byte[] data;
+
+    /**
+     * Costruttore per una nuova differenza.
+     *
+     * @param draftId L'ID della bozza.
+     * @param seq La posizione nella sequenza.
+     * @param data La differenza serializzata.
+     */
+    public NoteDraftDelta(long draftId, int seq, byte[] data) {
+        this.draftId = draftId;
+        this.seq = seq;
+        this.data = data;
+    }
+
+    // --- Getter e Setter ---
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getDraftId() {
+        return draftId;
+    }
+
+    public void setDraftId(long draftId) {
+        this.draftId = draftId;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public void setSeq(int seq) {
+        this.seq = seq;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
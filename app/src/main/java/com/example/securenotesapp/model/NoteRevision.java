@@ -0,0 +1,126 @@
+package com.example.securenotesapp.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Rappresenta una revisione salvata del contenuto di una nota.
+ * Ogni revisione è memorizzata come differenza compatta rispetto alla precedente
+ * ({@link #KIND_DELTA}), con un'istantanea completa periodica ({@link #KIND_SNAPSHOT})
+ * che limita il numero di differenze da applicare per ricostruire una versione.
+ */
+@Entity(tableName = "note_revisions",
+        foreignKeys = @ForeignKey(entity = Note.class,
+                parentColumns = "id",
+                childColumns = "noteId",
+                onDelete = ForeignKey.CASCADE), // Eliminare la nota elimina la sua cronologia
+        indices = {@Index(value = {"noteId", "revision"}, unique = true)})
+public class NoteRevision {
+    // La revisione contiene il contenuto completo, compresso.
+    public static final int KIND_SNAPSHOT = 0;
+    // La revisione contiene la differenza rispetto alla revisione precedente.
+    public static final int KIND_DELTA = 1;
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    /**
+     * L'ID della nota a cui appartiene la revisione.
+     */
+    private int noteId;
+    /**
+     * Il numero progressivo della revisione all'interno della nota.
+     */
+    private int revision;
+    /**
+     * Il timestamp del salvataggio che ha prodotto la revisione.
+     */
+    private long timestamp;
+    /**
+     * Il tipo di revisione: {@link #KIND_SNAPSHOT} o {@link #KIND_DELTA}.
+     */
+    private int kind;
+    /**
+     * Il contenuto compresso (istantanea) o la differenza serializzata.
+     */
+    @ColumnInfo(typeAffinity = ColumnInfo.BLOB)
+    private byte[] data;
+
+    /**
+     * Costruttore per una nuova revisione.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision Il numero della revisione.
+     * @param timestamp Il timestamp del salvataggio.
+     * @param kind Il tipo di revisione.
+     * @param data Il contenuto o la differenza serializzata.
+     */
+    public NoteRevision(int noteId, int revision, long timestamp, int kind, byte[] data) {
+        this.noteId = noteId;
+        this.revision = revision;
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.data = data;
+    }
+
+    // --- Getter e Setter ---
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public void setKind(int kind) {
+        this.kind = kind;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Intestazione di una revisione senza il contenuto, usata dal visualizzatore della cronologia.
+     */
+    public static class Header {
+        public int revision;
+        public long timestamp;
+        public int kind;
+        public int size; // Dimensione in byte dei dati memorizzati
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.securenotesapp.model;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Rappresenta un quaderno, cioè un contenitore di note che può essere annidato in un altro quaderno.
+ * La gerarchia completa (tutti gli antenati e discendenti di ogni quaderno) è indicizzata nella tabella
+ * di chiusura {@link NotebookClosure}; {@code parentId} conserva solo il genitore diretto.
+ */
+@Entity(tableName = "notebooks",
+        foreignKeys = @ForeignKey(entity = Notebook.class,
+                parentColumns = "id",
+                childColumns = "parentId",
+                onDelete = ForeignKey.CASCADE), // Eliminare un quaderno elimina i sotto-quaderni
+        indices = {@Index(value = {"parentId"})})
+public class Notebook {
+    /**
+     * L'ID univoco del quaderno. È una chiave primaria con autogenerazione.
+     */
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    /**
+     * Il nome del quaderno.
+     */
+    private String name;
+    /**
+     * L'ID del quaderno genitore, o null per un quaderno di primo livello.
+     */
+    private Integer parentId;
+
+    /**
+     * Costruttore per creare un nuovo quaderno.
+     *
+     * @param name Il nome del quaderno.
+     * @param parentId L'ID del quaderno genitore, o null per un quaderno di primo livello.
+     */
+    public Notebook(String name, Integer parentId) {
+        this.name = name;
+        this.parentId = parentId;
+    }
+
+    // --- Getter e Setter ---
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Integer parentId) {
+        this.parentId = parentId;
+    }
+}
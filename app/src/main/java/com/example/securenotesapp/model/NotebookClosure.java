@@ -0,0 +1,78 @@
+package com.example.securenotesapp.model;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Riga della tabella di chiusura della gerarchia dei quaderni: esiste una riga per ogni coppia
+ * (antenato, discendente), compresa la coppia di ogni quaderno con sé stesso a profondità 0.
+ *
+ * Così "tutte le note sotto questo quaderno, a qualsiasi profondità" è una singola query indicizzata
+ * su {@code ancestorId}, senza letture ricorsive della gerarchia.
+ */
+@Entity(tableName = "notebook_closure",
+        primaryKeys = {"ancestorId", "descendantId"},
+        foreignKeys = {
+                @ForeignKey(entity = Notebook.class,
+                        parentColumns = "id",
+                        childColumns = "ancestorId",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Notebook.class,
+                        parentColumns = "id",
+                        childColumns = "descendantId",
+                        onDelete = ForeignKey.CASCADE)
+        },
+        indices = {@Index(value = {"descendantId"})}) // Per risalire agli antenati di un quaderno
+public class NotebookClosure {
+    /**
+     * L'ID del quaderno antenato.
+     */
+    private int ancestorId;
+    /**
+     * L'ID del quaderno discendente.
+     */
+    private int descendantId;
+    /**
+     * La distanza tra antenato e discendente (0 per il quaderno stesso, 1 per un figlio diretto).
+     */
+    private int depth;
+
+    /**
+     * Costruttore per una riga della tabella di chiusura.
+     *
+     * @param ancestorId L'ID del quaderno antenato.
+     * @param descendantId L'ID del quaderno discendente.
+     * @param depth La distanza tra i due quaderni.
+     */
+    public NotebookClosure(int ancestorId, int descendantId, int depth) {
+        this.ancestorId = ancestorId;
+        this.descendantId = descendantId;
+        this.depth = depth;
+    }
+
+    // --- Getter e Setter ---
+    public int getAncestorId() {
+        return ancestorId;
+    }
+
+    public void setAncestorId(int ancestorId) {
+        this.ancestorId = ancestorId;
+    }
+
+    public int getDescendantId() {
+        return descendantId;
+    }
+
+    public void setDescendantId(int descendantId) {
+        this.descendantId = descendantId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+}
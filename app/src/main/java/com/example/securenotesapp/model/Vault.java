@@ -0,0 +1,39 @@
+package com.example.securenotesapp.model;
+
+/**
+ * Rappresenta una cassaforte: un insieme indipendente di note e file, con il proprio database,
+ * la propria passphrase e la propria directory dei file criptati (vedi {@link com.example.securenotesapp.VaultManager}).
+ * Non è un'entità del database: l'elenco delle cassaforti deve essere leggibile prima di aprirne una.
+ */
+public class Vault {
+    private String id;
+    private String name;
+
+    /**
+     * Costruttore per una cassaforte.
+     *
+     * @param id L'identificativo univoco, usato nei nomi dei file. Non cambia mai.
+     * @param name Il nome mostrato all'utente.
+     */
+    public Vault(String id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    // --- Getter e Setter ---
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.securenotesapp.utils;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Contenitore cifrato dei backup, diviso in segmenti AES/GCM autenticati uno per uno.
+ *
+ * Con un unico flusso GCM ({@code CipherInputStream}) Android trattiene tutto il testo cifrato fino a
+ * {@code doFinal}: un backup di qualche GB esaurisce la memoria e nulla viene verificato prima della fine.
+ * Qui ogni segmento di {@link #SEGMENT_SIZE} byte in chiaro ha il proprio tag e viene verificato e rilasciato
+ * appena letto, con memoria costante.
+ *
+ * Formato (versione {@link #VERSION}):
+ * <pre>
+ * intestazione: "SNBK" | versione (1 byte) | dimensione del segmento (int) | salt (16 byte) | prefisso del nonce (7 byte)
+ * segmenti:     AES-GCM(segmento in chiaro) | tag (16 byte), uno dopo l'altro; solo l'ultimo può essere più corto
+ * </pre>
+ * La chiave dei segmenti è HMAC-SHA256(chiave della password, salt), diversa per ogni backup. Il nonce di ogni segmento
+ * è prefisso | indice del segmento (int) | 1 se è l'ultimo, 0 altrimenti, e l'intestazione è autenticata
+ * come dato associato di ogni segmento. Segmenti scambiati, rimossi, aggiunti o presi da un altro backup,
+ * e un backup troncato dopo un segmento qualsiasi, non superano la verifica.
+ */
+public final class BackupContainer {
+
+    private static final byte[] MAGIC = "SNBK".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Versione del formato scritta da {@link #openOutputStream}.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Byte in chiaro per segmento: la memoria usata da lettura e scrittura è di circa un segmento.
+     */
+    public static final int SEGMENT_SIZE = 64 * 1024;
+    // Dimensione massima del segmento accettata in lettura, contro intestazioni corrotte.
+    private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int SALT_SIZE = 16;
+    private static final int NONCE_PREFIX_SIZE = 7;
+    private static final int TAG_SIZE = 16;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 4 + SALT_SIZE + NONCE_PREFIX_SIZE;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private BackupContainer() {
+    }
+
+    /**
+     * Controlla se uno stream inizia con l'intestazione del contenitore, senza consumarla.
+     * I backup precedenti iniziano con l'IV casuale di un unico flusso GCM.
+     *
+     * @param in Lo stream del backup.
+     * @return true se lo stream è un contenitore a segmenti.
+     * @throws IOException Se si verifica un errore di I/O durante la lettura.
+     */
+    public static boolean isContainer(PushbackInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        int read = readFully(in, magic, 0, magic.length);
+        in.unread(magic, 0, read);
+        return read == magic.length && Arrays.equals(magic, MAGIC);
+    }
+
+    /**
+     * Apre uno stream che cifra a segmenti, scrivendo subito l'intestazione.
+     * La chiusura scrive l'ultimo segmento e chiude lo stream di destinazione: senza chiusura il backup non è valido.
+     *
+     * @param out Lo stream di destinazione.
+     * @param passwordKey La chiave derivata dalla password.
+     * @return Lo stream in cui scrivere i dati in chiaro.
+     * @throws IOException Se si verifica un errore di I/O durante la scrittura dell'intestazione.
+     * @throws GeneralSecurityException Se la chiave non è valida.
+     */
+    public static OutputStream openOutputStream(OutputStream out, SecretKeySpec passwordKey)
+            throws IOException, GeneralSecurityException {
+        SecureRandom random = new SecureRandom();
+        byte[] salt = new byte[SALT_SIZE];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        random.nextBytes(salt);
+        random.nextBytes(noncePrefix);
+        byte[] header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).put((byte) VERSION).putInt(SEGMENT_SIZE)
+                .put(salt).put(noncePrefix).array();
+        out.write(header);
+        return new EncryptingOutputStream(out, segmentKey(passwordKey, salt), header, noncePrefix, SEGMENT_SIZE);
+    }
+
+    /**
+     * Apre uno stream che decifra un contenitore, leggendone l'intestazione.
+     * Ogni segmento viene verificato prima che i suoi byte siano restituiti; un segmento non valido
+     * (password errata, dati alterati o backup troncato) fa fallire la lettura con una {@link IOException}.
+     *
+     * @param in Lo stream del backup, posizionato sull'intestazione.
+     * @param passwordKey La chiave derivata dalla password.
+     * @return Lo stream dei dati in chiaro.
+     * @throws IOException Se l'intestazione non è valida o si verifica un errore di I/O.
+     * @throws GeneralSecurityException Se la chiave non è valida.
+     */
+    public static InputStream openInputStream(InputStream in, SecretKeySpec passwordKey)
+            throws IOException, GeneralSecurityException {
+        byte[] header = new byte[HEADER_SIZE];
+        if (readFully(in, header, 0, HEADER_SIZE) != HEADER_SIZE) {
+            throw new EOFException("Intestazione del backup incompleta");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        int version = buffer.get() & 0xFF;
+        int segmentSize = buffer.getInt();
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Il file non è un backup a segmenti");
+        }
+        if (version != VERSION) {
+            throw new IOException("Versione del backup non supportata: " + version);
+        }
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IOException("Dimensione del segmento non valida: " + segmentSize);
+        }
+        byte[] salt = new byte[SALT_SIZE];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        buffer.get(salt).get(noncePrefix);
+        return new DecryptingInputStream(in, segmentKey(passwordKey, salt), header, noncePrefix, segmentSize);
+    }
+
+    private static SecretKeySpec segmentKey(SecretKeySpec passwordKey, byte[] salt) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(passwordKey.getEncoded(), "HmacSHA256"));
+        return new SecretKeySpec(mac.doFinal(salt), "AES");
+    }
+
+    private static byte[] nonce(byte[] noncePrefix, int index, boolean last) {
+        return ByteBuffer.allocate(NONCE_PREFIX_SIZE + 5).put(noncePrefix).putInt(index).put((byte) (last ? 1 : 0)).array();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Raccoglie i dati in chiaro e scrive un segmento cifrato ogni {@code segmentSize} byte.
+     * Un segmento pieno viene scritto solo quando arrivano altri dati: alla chiusura il segmento rimasto,
+     * anche vuoto, viene scritto come ultimo.
+     */
+    private static final class EncryptingOutputStream extends FilterOutputStream {
+        private final Cipher cipher;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int length;
+        private int index;
+        private boolean closed;
+
+        EncryptingOutputStream(OutputStream out, SecretKeySpec key, byte[] header, byte[] noncePrefix, int segmentSize)
+                throws GeneralSecurityException {
+            super(out);
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+            this.key = key;
+            this.header = header;
+            this.noncePrefix = noncePrefix;
+            this.plain = new byte[segmentSize];
+            this.sealed = new byte[segmentSize + TAG_SIZE];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream chiuso");
+            }
+            while (len > 0) {
+                if (length == plain.length) {
+                    writeSegment(false); // Altri dati in arrivo: questo segmento non è l'ultimo.
+                }
+                int count = Math.min(len, plain.length - length);
+                System.arraycopy(b, off, plain, length, count);
+                length += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void writeSegment(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, nonce(noncePrefix, index, last)));
+                cipher.updateAAD(header);
+                int count = cipher.doFinal(plain, 0, length, sealed, 0);
+                out.write(sealed, 0, count);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cifratura del segmento " + index + " fallita", e);
+            }
+            index++;
+            length = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush(); // I dati nel segmento in corso restano in memoria fino al suo completamento.
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeSegment(true);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Legge un segmento cifrato alla volta, lo verifica e ne restituisce i byte in chiaro.
+     * Un segmento è l'ultimo se dopo di esso lo stream finisce: lo si scopre leggendo un byte in anticipo.
+     */
+    private static final class DecryptingInputStream extends InputStream {
+        private final PushbackInputStream in;
+        private final Cipher cipher;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final byte[] sealed;
+        private final byte[] plain;
+        private int position;
+        private int length;
+        private int index;
+        private boolean finished;// true dopo aver verificato l'ultimo segmento.
+
+        DecryptingInputStream(InputStream in, SecretKeySpec key, byte[] header, byte[] noncePrefix, int segmentSize)
+                throws GeneralSecurityException {
+            this.in = new PushbackInputStream(in, 1);
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+            this.key = key;
+            this.header = header;
+            this.noncePrefix = noncePrefix;
+            this.sealed = new byte[segmentSize + TAG_SIZE];
+            this.plain = new byte[segmentSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == length) {
+                if (finished) {
+                    return -1;
+                }
+                readSegment();
+            }
+            int count = Math.min(len, length - position);
+            System.arraycopy(plain, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private void readSegment() throws IOException {
+            int count = readFully(in, sealed, 0, sealed.length);
+            boolean last;
+            if (count < sealed.length) {
+                last = true; // Un segmento corto è sempre l'ultimo.
+            } else {
+                int next = in.read();
+                last = next == -1;
+                if (!last) {
+                    in.unread(next);
+                }
+            }
+            if (count < TAG_SIZE) {
+                throw new EOFException("Backup troncato al segmento " + index);
+            }
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, nonce(noncePrefix, index, last)));
+                cipher.updateAAD(header);
+                length = cipher.doFinal(sealed, 0, count, plain, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Segmento " + index + " non valido: password errata o backup danneggiato", e);
+            }
+            position = 0;
+            index++;
+            finished = last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
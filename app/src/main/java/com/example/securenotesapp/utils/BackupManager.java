@@ -6,30 +6,51 @@ import android.util.Log;
 
 import com.example.securenotesapp.dao.FileDao;
 import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.dao.NotebookDao;
+import com.example.securenotesapp.database.NoteArchive;
+import com.example.securenotesapp.database.NoteBodyStore;
 import com.example.securenotesapp.database.NoteDatabase;
 import com.example.securenotesapp.model.FileItem;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.Notebook;
+import com.example.securenotesapp.FileManager;
 import com.example.securenotesapp.KeyManager;
+import com.example.securenotesapp.VaultManager;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.spec.SecretKeySpec;
 import javax.crypto.spec.IvParameterSpec;
 /**
@@ -47,11 +68,25 @@ public class BackupManager {
     private static final String ALGORITHM = "AES";// Algoritmo di crittografia utilizzato, Advanced Encryption Standard.
     private static final String TRANSFORMATION = "AES/GCM/NoPadding"; // Modalità di crittografia AES con GCM
     private static final int BUFFER_SIZE = 8192;// Dimensione del buffer in byte per le operazioni di I/O, 8KB per migliorare le prestazioni.
+    // Righe lette dal database per pagina durante l'esportazione: la memoria usata non dipende dal numero di note.
+    private static final int EXPORT_PAGE_SIZE = 100;
+    // Righe scritte per transazione durante il ripristino.
+    private static final int IMPORT_BATCH_SIZE = 500;
+    // Caratteri di contenuto oltre i quali un lotto di note viene scritto prima di raggiungere IMPORT_BATCH_SIZE.
+    private static final long IMPORT_BATCH_MAX_CHARS = 4L * 1024 * 1024;
 
+    private final NoteDatabase database; // Il database, per le transazioni del ripristino a lotti.
     private final Context context; // Contesto dell'applicazione, necessario per accedere a risorse e servizi di sistema.
     private final NoteDao noteDao; // Data Access Object per le note, permette di interagire con la tabella delle note nel database.
+    private final NoteBodyStore bodyStore; // Gestisce il formato di memorizzazione del contenuto delle note.
     private final FileDao fileDao; // Data Access Object per i metadati dei file, permette di interagire con la tabella dei file nel database.
+    private final NotebookDao notebookDao; // Data Access Object per i quaderni e la loro tabella di chiusura.
+    private final NoteArchive noteArchive; // Archivio delle note vecchie, incluso nel backup.
     private final KeyManager keyManager; // Gestore delle chiavi di crittografia, utilizzato per ottenere le chiavi necessarie e i percorsi dei file criptati.
+    // Righe già scritte dal ripristino in corso: i lotti vengono confermati man mano, quindi un errore a metà
+    // lascia nel database quelli precedenti e l'utente deve saperlo.
+    private int restoredNotes;
+    private int restoredFileItems;
     /**
      * Costruttore per il BackupManager.
      * Inizializza i DAO per accedere al database e il KeyManager per la gestione delle chiavi
@@ -71,8 +106,12 @@ public class BackupManager {
         }
         // Ottiene l'istanza del database Room, passando la passphrase per SQLCipher.
         NoteDatabase db = NoteDatabase.getDatabase(context, dbPassphrase); // Ora passiamo la passphrase
+        this.database = db;
         this.noteDao = db.noteDao();// Ottiene l'interfaccia DAO per le note.
+        this.bodyStore = new NoteBodyStore(db);// Legge e scrive il contenuto nel formato interno (compresso o a frammenti).
         this.fileDao = db.fileDao();// Ottiene l'interfaccia DAO per i file.
+        this.notebookDao = db.notebookDao();// Ottiene l'interfaccia DAO per i quaderni.
+        this.noteArchive = db.getNoteArchive();// Le note archiviate fanno parte del backup.
     }
 
     /**
@@ -80,6 +119,10 @@ public class BackupManager {
      * Il backup include i dati del database (note e metadati dei file) serializzati in JSON
      * e i contenuti binari dei file criptati originali. L'intero file ZIP viene poi
      * [cite_start]criptato usando una password fornita dall'utente con AES/GCM.
+     * La cifratura è a segmenti autenticati uno per uno (vedi {@link BackupContainer}).
+     *
+     * Le righe vengono lette a pagine e scritte con un {@link JsonWriter} direttamente nell'entry ZIP:
+     * la memoria usata non dipende dal numero di note e di file.
      *
      * @param outputUri URI di destinazione dove salvare il file di backup (es. un file selezionato dall'utente).
      * @param password Password fornita dall'utente per la crittografia del file di backup ZIP.
@@ -91,86 +134,115 @@ public class BackupManager {
         try {
             // Genera la chiave AES dalla password fornita dall'utente.
             SecretKeySpec secretKey = keyManager.generateAesKeyFromPassword(password);
-            // Genera un Initialization Vector (IV) casuale per la modalità GCM.
-            byte[] iv = keyManager.generateIv();
             // Apre un OutputStream per scrivere sul file di destinazione specificato dall'URI.
             OutputStream os = context.getContentResolver().openOutputStream(outputUri);
             if (os == null) {
                 Log.e(TAG, "Failed to open output stream for URI: " + outputUri);
                 return false;
             }
-            // Inizializza il Cipher per la crittografia in modalità AES/GCM.
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(iv));
-
-            // Scrive IV all'inizio del file per la decrittografia
-            os.write(iv);
 
-            try (CipherOutputStream cos = new CipherOutputStream(os, cipher);// Stream che cripta i dati prima di scriverli.
-                 ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(cos))) {// Stream che zippa i dati e li scrive tramite CipherOutputStream.
+            // Scrive l'intestazione del contenitore e poi i dati, cifrati a segmenti.
+            try (OutputStream cos = BackupContainer.openOutputStream(os, secretKey);// Stream che cripta i dati prima di scriverli.
+                 ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(cos))) {// Stream che zippa i dati e li scrive nello stream cifrato.
 
-                // 1. Salva le note nel file ZIP.
+                Gson gson = new Gson();
+                // 1. Salva le note nel file ZIP, a pagine: ogni nota viene scritta nell'entry appena letta e poi rilasciata.
+                // Il backup contiene sempre il contenuto in chiaro, indipendente dal codec interno; quello delle note
+                // a frammenti viene scritto dal lettore dei frammenti, senza ricomporlo in memoria.
                 Log.d(TAG, "Exporting notes...");
-                // Recupera tutte le note dal database in modo sincrono.
-                List<Note> notes = noteDao.getAllNotesSync();
-                // Converte la lista di note in una stringa JSON.
-                String notesJson = new Gson().toJson(notes);
-                // Crea una nuova entry nello ZIP per il file JSON delle note.
                 zos.putNextEntry(new ZipEntry("notes.json"));
-                // Scrive i byte della stringa JSON nell'entry dello ZIP.
-                zos.write(notesJson.getBytes());
-                // Chiude l'entry corrente nello ZIP.
-                zos.closeEntry();
+                Writer notesOut = entryWriter(zos);
+                JsonWriter notesWriter = beginJsonArray(notesOut);
+                int noteCount = writePages(noteDao::getNotesAfterSync, Note::getId, note -> {
+                    if (note.getContentCodec() == NoteCodec.CODEC_CHUNKED) {
+                        writeNote(notesWriter, notesOut, gson, note, bodyStore.openChunkReader(note.getId()));
+                    } else {
+                        bodyStore.decodeInPlace(note);
+                        gson.toJson(note, Note.class, notesWriter);
+                    }
+                });
+                // Anche le note archiviate: al ripristino tornano tra le note attive.
+                if (noteArchive.exists()) {
+                    noteArchive.attach();
+                    try {
+                        noteCount += writePages(noteArchive::getArchivedNotesAfter, Note::getId, note -> {
+                            if (note.getContentCodec() == NoteCodec.CODEC_CHUNKED) {
+                                writeNote(notesWriter, notesOut, gson, note, noteArchive.openChunkReader(note.getId()));
+                            } else {
+                                note.setContent(noteArchive.readContent(note));
+                                note.setContentBlob(null);
+                                note.setContentCodec(NoteCodec.CODEC_PLAIN);
+                                gson.toJson(note, Note.class, notesWriter);
+                            }
+                        });
+                    } finally {
+                        noteArchive.detach();
+                    }
+                }
+                endJsonArray(notesWriter, zos);
                 // Aggiorna la UI con l'avanzamento.
                 progressCallback.onProgressUpdate(25, "Salvataggio note...");
-                Log.d(TAG, "Notes exported. Count: " + notes.size());
+                Log.d(TAG, "Notes exported. Count: " + noteCount);
 
-                // 2. Salva i metadati dei file (FileItem) nel file ZIP.
+                // 2. Salva i metadati dei file (FileItem) nel file ZIP, a pagine come le note.
                 Log.d(TAG, "Exporting file items metadata...");
-                // Recupera tutti i metadati dei file dal database in modo sincrono.
-                List<FileItem> fileItems = fileDao.getAllFileItemsSync();
-                // Converte la lista di metadati dei file in una stringa JSON.
-                String fileItemsJson = new Gson().toJson(fileItems);
-                // Crea una nuova entry nello ZIP per il file JSON dei metadati.
                 zos.putNextEntry(new ZipEntry("file_items.json"));
-                // Scrive i byte della stringa JSON nell'entry dello ZIP.
-                zos.write(fileItemsJson.getBytes());
-                // Chiude l'entry corrente nello ZIP.
-                zos.closeEntry();
+                JsonWriter fileItemsWriter = beginJsonArray(entryWriter(zos));
+                int fileItemCount = writePages(fileDao::getFileItemsAfterSync, FileItem::getId,
+                        item -> gson.toJson(item, FileItem.class, fileItemsWriter));
+                endJsonArray(fileItemsWriter, zos);
                 // Aggiorna la UI con l'avanzamento.
                 progressCallback.onProgressUpdate(50, "Salvataggio metadati file...");
-                Log.d(TAG, "File items metadata exported. Count: " + fileItems.size());
+                Log.d(TAG, "File items metadata exported. Count: " + fileItemCount);
+
+                // I quaderni vengono salvati con il solo genitore diretto: la tabella di chiusura si ricostruisce al ripristino.
+                // Sono pochi per costruzione (profondità limitata, creati a mano): basta una sola lettura.
+                List<Notebook> notebooks = notebookDao.getAllNotebooksSync();
+                zos.putNextEntry(new ZipEntry("notebooks.json"));
+                JsonWriter notebooksWriter = beginJsonArray(entryWriter(zos));
+                for (Notebook notebook : notebooks) {
+                    gson.toJson(notebook, Notebook.class, notebooksWriter);
+                }
+                endJsonArray(notebooksWriter, zos);
+                Log.d(TAG, "Notebooks exported. Count: " + notebooks.size());
 
 
-                // 3. Salva i contenuti binari dei file criptati nel file ZIP.
+                // 3. Salva i contenuti binari dei file criptati nel file ZIP, rileggendo i metadati a pagine.
                 Log.d(TAG, "Exporting encrypted file contents...");
-                for (int i = 0; i < fileItems.size(); i++) {
-                    FileItem item = fileItems.get(i);
-                    // Ottiene il percorso del file criptato locale.
-                    File encryptedFile = keyManager.getEncryptedFile(context, item.getOriginalFileName());
-                    // Controlla se il file criptato esiste.
-                    if (encryptedFile != null && encryptedFile.exists()) {
-                        Log.d(TAG, "Adding encrypted file: " + item.getOriginalFileName());
-                        // Aggiunge una nuova entry nello ZIP, utilizzando una sottocartella "files".
-                        zos.putNextEntry(new ZipEntry("files/" + item.getOriginalFileName()));
-                        // Apre un FileInputStream per leggere il contenuto del file criptato.
-                        try (FileInputStream fis = new FileInputStream(encryptedFile);
-                             BufferedInputStream bis = new BufferedInputStream(fis)) {
-                            byte[] buffer = new byte[BUFFER_SIZE];
-                            int count;
-                            // Legge dal file criptato e scrive nell'entry dello ZIP.
-                            while ((count = bis.read(buffer)) != -1) {
-                                zos.write(buffer, 0, count);
+                int processed = 0;
+                int afterId = 0;
+                List<FileItem> page;
+                while (!(page = fileDao.getFileItemsAfterSync(afterId, EXPORT_PAGE_SIZE)).isEmpty()) {
+                    for (FileItem item : page) {
+                        afterId = item.getId();
+                        // Ottiene il percorso del file criptato locale, nella directory della cassaforte attiva.
+                        File encryptedFile = FileManager.resolveEncryptedFile(context, item.getEncryptedFilePath());
+                        // Controlla se il file criptato esiste.
+                        if (encryptedFile.exists()) {
+                            Log.d(TAG, "Adding encrypted file: " + item.getOriginalFileName());
+                            // Aggiunge una nuova entry nello ZIP, utilizzando una sottocartella "files".
+                            // L'entry ha il nome del file criptato: al ripristino la riga viene ricollegata per nome.
+                            zos.putNextEntry(new ZipEntry("files/" + encryptedFile.getName()));
+                            // Apre un FileInputStream per leggere il contenuto del file criptato.
+                            try (FileInputStream fis = new FileInputStream(encryptedFile);
+                                 BufferedInputStream bis = new BufferedInputStream(fis)) {
+                                byte[] buffer = new byte[BUFFER_SIZE];
+                                int count;
+                                // Legge dal file criptato e scrive nell'entry dello ZIP.
+                                while ((count = bis.read(buffer)) != -1) {
+                                    zos.write(buffer, 0, count);
+                                }
                             }
+                            // Chiude l'entry corrente nello ZIP.
+                            zos.closeEntry();
+                        } else {
+                            Log.w(TAG, "Encrypted file not found for: " + item.getOriginalFileName());
                         }
-                        // Chiude l'entry corrente nello ZIP.
-                        zos.closeEntry();
-                    } else {
-                        Log.w(TAG, "Encrypted file not found for: " + item.getOriginalFileName());
+                        // Calcola e aggiorna l'avanzamento basato sul numero di file elaborati.
+                        processed++;
+                        int progress = 50 + (int) (Math.min(processed, fileItemCount) * 50.0 / Math.max(1, fileItemCount));
+                        progressCallback.onProgressUpdate(progress, "Salvataggio file: " + item.getOriginalFileName());
                     }
-                    // Calcola e aggiorna l'avanzamento basato sul numero di file elaborati.
-                    int progress = 50 + (int) ((i + 1) * 50.0 / fileItems.size());
-                    progressCallback.onProgressUpdate(progress, "Salvataggio file: " + item.getOriginalFileName());
                 }
                 // Aggiorna la UI al completamento.
                 progressCallback.onProgressUpdate(100, "Backup completato!");
@@ -202,6 +274,11 @@ public class BackupManager {
 
     /**
      * Esegue il ripristino delle note e dei file da un file ZIP crittografato.
+     * Note e metadati dei file vengono letti dal JSON uno alla volta e scritti a lotti, ognuno in una transazione
+     * (vedi {@link #restoreNotes}): la memoria usata non dipende dalla dimensione del backup.
+     * Se il ripristino si interrompe (es. backup troncato o manomesso) i lotti già scritti restano: il messaggio
+     * di errore riporta quante note e quanti file sono stati ripristinati. Ripetere il ripristino con lo stesso backup
+     * lo completa, perché le righe esistenti vengono aggiornate.
      * @param inputUri URI del file di backup da ripristinare.
      * @param password Password per la decrittografia del backup.
      * @param progressCallback Callback per aggiornare l'avanzamento.
@@ -209,6 +286,8 @@ public class BackupManager {
      */
     public boolean importBackup(Uri inputUri, String password, ProgressCallback progressCallback) {
         Log.d(TAG, "Starting import backup from: " + inputUri.getPath());
+        restoredNotes = 0;
+        restoredFileItems = 0;
         try {
             // Apre un InputStream per leggere dal file di backup specificato dall'URI.
             InputStream is = context.getContentResolver().openInputStream(inputUri);
@@ -217,47 +296,34 @@ public class BackupManager {
                 return false;
             }
 
-            // Legge l'IV (Initialization Vector) dall'inizio del file.
-            byte[] iv = new byte[12]; // GCM IV è tipicamente 12 byte
-            int bytesRead = is.read(iv);
-            if (bytesRead != iv.length) {
-                Log.e(TAG, "Could not read IV from backup file.");
-                return false;
-            }
-
             // Ottiene la chiave AES dalla password fornita dall'utente.
             SecretKeySpec secretKey = keyManager.generateAesKeyFromPassword(password);
 
-            // Inizializza il Cipher per la decrittografia in modalità AES/GCM.
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-
             // Usa try-with-resources per assicurare la chiusura automatica degli stream.
-            try (CipherInputStream cis = new CipherInputStream(is, cipher);// Stream che decrittografa i dati.
+            try (InputStream cis = openDecryptingStream(is, secretKey);// Stream che decrittografa i dati.
                  ZipInputStream zis = new ZipInputStream(new BufferedInputStream(cis))) {// Stream che decomprime i dati decifrati.
 
                 ZipEntry zipEntry;// Rappresenta una singola entry (file o directory) all'interno del file ZIP.
-                List<Note> notesToRestore = null;// Lista temporanea per le note da ripristinare.
-                List<FileItem> fileItemsToRestore = null; // Lista temporanea per i metadati dei file da ripristinare.
+                Gson gson = new Gson();
+                List<Notebook> notebooksToRestore = null; // I quaderni sono pochi: vengono letti per intero.
 
                 // Itera su ogni entry all'interno del file ZIP.
                 while ((zipEntry = zis.getNextEntry()) != null) {
                     Log.d(TAG, "Processing zip entry: " + zipEntry.getName());
 
                     if (zipEntry.getName().equals("notes.json")) {
-                        // Se l'entry è "notes.json", legge il contenuto e lo deserializza in una lista di Note.
+                        // Le note vengono lette una alla volta e scritte a lotti, ognuno in una propria transazione.
                         Log.d(TAG, "Found notes.json");
-                        String notesJson = readZipEntryContent(zis);// Legge il contenuto JSON dall'entry ZIP.
-                        Type noteListType = new TypeToken<List<Note>>(){}.getType();// Definisce il tipo di lista per la deserializzazione JSON.
-                        notesToRestore = new Gson().fromJson(notesJson, noteListType);// Deserializza la stringa JSON in una lista di oggetti Note.
-                        progressCallback.onProgressUpdate(25, "Caricamento note...");
+                        int restored = restoreNotes(openJsonReader(zis), gson, progressCallback);
+                        Log.d(TAG, "Notes restored. Count: " + restored);
                     } else if (zipEntry.getName().equals("file_items.json")) {
-                        // Se l'entry è "file_items.json", legge il contenuto e lo deserializza in una lista di FileItem.
                         Log.d(TAG, "Found file_items.json");
-                        String fileItemsJson = readZipEntryContent(zis);// Legge il contenuto JSON dall'entry ZIP.
-                        Type fileItemListType = new TypeToken<List<FileItem>>(){}.getType();// Definisce il tipo di lista per la deserializzazione JSON.
-                        fileItemsToRestore = new Gson().fromJson(fileItemsJson, fileItemListType);// Deserializza la stringa JSON in una lista di oggetti FileItem.
-                        progressCallback.onProgressUpdate(50, "Caricamento metadati file...");
+                        int restored = restoreFileItems(openJsonReader(zis), gson, progressCallback);
+                        Log.d(TAG, "File items restored. Count: " + restored);
+                    } else if (zipEntry.getName().equals("notebooks.json")) {
+                        Log.d(TAG, "Found notebooks.json");
+                        Type notebookListType = new TypeToken<List<Notebook>>(){}.getType();
+                        notebooksToRestore = gson.fromJson(openJsonReader(zis), notebookListType);
                     } else if (zipEntry.getName().startsWith("files/")) {
                         // Se l'entry inizia con "files/", si tratta di un contenuto di file criptato.
                         // Ripristina i contenuti dei file criptati nella loro posizione locale.
@@ -285,16 +351,10 @@ public class BackupManager {
                     }
                     zis.closeEntry();// Chiude l'entry corrente prima di passare alla successiva.
                 }
-                // Una volta estratte tutte le entry, inserisce i dati nel database.
-                if (notesToRestore != null && !notesToRestore.isEmpty()) {
-                    Log.d(TAG, "Restoring notes to database. Count: " + notesToRestore.size());
-                    noteDao.insertAll(notesToRestore); // Inserisce tutte le note ripristinate nel database
-                    progressCallback.onProgressUpdate(75, "Ripristino note nel database...");
-                }
-                if (fileItemsToRestore != null && !fileItemsToRestore.isEmpty()) {
-                    Log.d(TAG, "Restoring file items to database. Count: " + fileItemsToRestore.size());
-                    fileDao.insertAll(fileItemsToRestore); // Inserisce tutti i metadati dei file ripristinati nel database.
-                    progressCallback.onProgressUpdate(90, "Ripristino metadati file nel database...");
+                // Le note non hanno una chiave esterna sul quaderno: i quaderni possono essere scritti per ultimi.
+                if (notebooksToRestore != null && !notebooksToRestore.isEmpty()) {
+                    Log.d(TAG, "Restoring notebooks to database. Count: " + notebooksToRestore.size());
+                    notebookDao.replaceAll(notebooksToRestore); // Ricostruisce anche la tabella di chiusura.
                 }
                 // Aggiorna la UI al completamento.
                 progressCallback.onProgressUpdate(100, "Ripristino completato!");
@@ -304,7 +364,7 @@ public class BackupManager {
             } catch (IOException e) {
                 // Gestisce le eccezioni di I/O durante il ripristino.
                 Log.e(TAG, "IO exception during restore: " + e.getMessage(), e);
-                progressCallback.onProgressUpdate(-1, "Errore I/O durante il ripristino.");
+                progressCallback.onProgressUpdate(-1, restoreFailureMessage("Errore I/O durante il ripristino."));
                 return false;
             } finally {
                 // Assicura che l'InputStream principale venga chiuso.
@@ -319,27 +379,297 @@ public class BackupManager {
         } catch (Exception e) {
             // Gestisce eccezioni generiche durante la fase di setup del ripristino.
             Log.e(TAG, "Error during import backup setup: " + e.getMessage(), e);
-            progressCallback.onProgressUpdate(-1, "Errore generico durante l'import.");
+            progressCallback.onProgressUpdate(-1, restoreFailureMessage("Errore generico durante l'import."));
             return false;
         }
     }
     /**
-     * Legge il contenuto di una singola entry da un ZipInputStream e lo restituisce come stringa.
-     * Questa funzione è utile per leggere i file JSON (notes.json, file_items.json) all'interno del backup ZIP.
+     * Compone il messaggio di un ripristino fallito, indicando le righe già scritte se il ripristino era iniziato.
+     *
+     * @param error La descrizione dell'errore.
+     * @return Il messaggio da mostrare all'utente.
+     */
+    private String restoreFailureMessage(String error) {
+        if (restoredNotes == 0 && restoredFileItems == 0) {
+            return error;
+        }
+        Log.w(TAG, "Restore interrupted after " + restoredNotes + " notes and " + restoredFileItems + " file items.");
+        return error + " Ripristino parziale: " + restoredNotes + " note e " + restoredFileItems
+                + " file già ripristinati. Ripeti il ripristino per completarlo.";
+    }
+
+    /**
+     * Apre un Writer UTF-8 sull'entry ZIP corrente.
+     * Il writer non va chiuso (chiuderebbe lo ZIP): l'entry si chiude con {@link #endJsonArray}.
+     *
+     * @param zos Lo ZipOutputStream, con l'entry già aperta.
+     * @return Il writer dell'entry.
+     */
+    private static Writer entryWriter(ZipOutputStream zos) {
+        return new BufferedWriter(new OutputStreamWriter(zos, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Apre un {@link JsonWriter} sul writer di un'entry ZIP e inizia un array JSON.
+     *
+     * @param out Il writer dell'entry (vedi {@link #entryWriter}).
+     * @return Il writer JSON, con l'array iniziato.
+     * @throws IOException Se si verifica un errore di I/O durante la scrittura.
+     */
+    private static JsonWriter beginJsonArray(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        return writer;
+    }
+
+    /**
+     * Chiude l'array JSON, svuota il writer nell'entry ZIP e chiude l'entry.
+     *
+     * @param writer Il writer aperto con {@link #beginJsonArray}.
+     * @param zos Lo ZipOutputStream.
+     * @throws IOException Se si verifica un errore di I/O durante la scrittura.
+     */
+    private static void endJsonArray(JsonWriter writer, ZipOutputStream zos) throws IOException {
+        writer.endArray();
+        writer.flush();
+        zos.closeEntry();
+    }
+
+    /**
+     * Scrive tutte le righe restituite da una query a pagine, una pagina alla volta. Ogni riga viene rilasciata
+     * appena scritta: in memoria ci sono al massimo le righe non ancora scritte di una pagina
+     * ({@link #EXPORT_PAGE_SIZE}, nel formato di memorizzazione) e una sola riga decodificata.
+     *
+     * @param loader Legge la pagina successiva all'ultimo ID.
+     * @param idOf Restituisce l'ID di una riga, la chiave di paginazione.
+     * @param rowWriter Scrive una riga.
+     * @return Il numero di righe scritte.
+     * @throws IOException Se si verifica un errore di I/O durante la scrittura.
+     */
+    private static <T> int writePages(PageLoader<T> loader, ToIntFunction<T> idOf, RowWriter<T> rowWriter)
+            throws IOException {
+        int count = 0;
+        int afterId = 0;
+        List<T> page;
+        while (!(page = loader.load(afterId, EXPORT_PAGE_SIZE)).isEmpty()) {
+            for (int i = 0; i < page.size(); i++) {
+                T row = page.get(i);
+                page.set(i, null); // La riga scritta non resta referenziata dalla pagina.
+                afterId = idOf.applyAsInt(row);
+                rowWriter.write(row);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scrive una nota il cui contenuto viene letto da un {@link Reader} e scritto a pezzi, senza ricomporlo
+     * in una stringa. Gli altri campi vengono serializzati da Gson come per le altre note.
+     *
+     * @param writer Il writer JSON dell'array delle note.
+     * @param out Il writer dell'entry su cui scrive {@code writer}.
+     * @param gson L'istanza di Gson che serializza gli altri campi.
+     * @param note La nota, nel formato di memorizzazione.
+     * @param content Il lettore del contenuto completo; viene chiuso al termine.
+     * @throws IOException Se si verifica un errore di I/O durante la lettura o la scrittura.
+     */
+    private static void writeNote(JsonWriter writer, Writer out, Gson gson, Note note, Reader content)
+            throws IOException {
+        note.setContent(null); // Gson omette i campi null: il contenuto viene scritto sotto.
+        note.setContentBlob(null);
+        note.setContentCodec(NoteCodec.CODEC_PLAIN);
+        JsonObject fields = gson.toJsonTree(note, Note.class).getAsJsonObject();
+        writer.beginObject();
+        for (Map.Entry<String, JsonElement> field : fields.entrySet()) {
+            writer.name(field.getKey());
+            gson.toJson(field.getValue(), writer);
+        }
+        writer.name("content");
+        // Un valore vuoto fa scrivere a JsonWriter nome e separatori; la stringa segue direttamente sul writer
+        // dell'entry (JsonWriter non ha un buffer proprio).
+        writer.jsonValue("");
+        try (Reader reader = content) {
+            out.write('"');
+            char[] buffer = new char[BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                writeJsonEscaped(out, buffer, count);
+            }
+            out.write('"');
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Scrive caratteri come contenuto di una stringa JSON, con gli escape richiesti dal formato.
+     */
+    private static void writeJsonEscaped(Writer out, char[] buffer, int count) throws IOException {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            char c = buffer[i];
+            String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                escape = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            out.write(buffer, start, i - start);
+            out.write(escape);
+            start = i + 1;
+        }
+        out.write(buffer, start, count - start);
+    }
+
+    /**
+     * Legge una pagina di righe in ordine di ID, a partire dall'ID successivo a quello indicato.
+     */
+    private interface PageLoader<T> {
+        List<T> load(int afterId, int limit);
+    }
+
+    /**
+     * Scrive una riga dell'esportazione.
+     */
+    private interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+
+    /**
+     * Apre lo stream decifrato di un backup. I backup a segmenti (vedi {@link BackupContainer}) vengono verificati
+     * e rilasciati un segmento alla volta; quelli delle versioni precedenti (IV di 12 byte seguito da un unico
+     * flusso AES/GCM) restano leggibili, ma Android ne trattiene tutto il testo cifrato fino alla verifica finale.
      *
-     * @param zis Lo ZipInputStream da cui leggere l'entry corrente.
-     * @return Il contenuto dell'entry come stringa.
-     * @throws IOException Se si verifica un errore di I/O durante la lettura.
+     * @param is Lo stream del file di backup.
+     * @param secretKey La chiave derivata dalla password.
+     * @return Lo stream dei dati in chiaro (lo ZIP).
+     * @throws IOException Se l'intestazione non può essere letta.
+     * @throws GeneralSecurityException Se il Cipher non può essere inizializzato.
      */
-    private String readZipEntryContent(ZipInputStream zis) throws IOException {
-        StringBuilder builder = new StringBuilder();// Utilizza StringBuilder per costruire la stringa in modo efficiente.
-        byte[] buffer = new byte[BUFFER_SIZE];// Buffer per la lettura dei dati.
-        int count;// Numero di byte letti.
-        // Legge a blocchi dall'InputStream fino alla fine dell'entry.
-        while ((count = zis.read(buffer)) != -1) {
-            builder.append(new String(buffer, 0, count));// Appende i byte letti al StringBuilder, convertendoli in stringa.
+    private static InputStream openDecryptingStream(InputStream is, SecretKeySpec secretKey)
+            throws IOException, GeneralSecurityException {
+        PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(is, BUFFER_SIZE), 4);
+        if (BackupContainer.isContainer(in)) {
+            return BackupContainer.openInputStream(in, secretKey);
+        }
+        Log.d(TAG, "Legacy single-stream backup");
+        // Legge l'IV (Initialization Vector) dall'inizio del file.
+        byte[] iv = new byte[12]; // GCM IV è tipicamente 12 byte
+        int bytesRead = in.read(iv);
+        if (bytesRead != iv.length) {
+            throw new IOException("Could not read IV from backup file.");
+        }
+        // Inizializza il Cipher per la decrittografia in modalità AES/GCM.
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+        return new CipherInputStream(in, cipher);
+    }
+
+    /**
+     * Apre un {@link JsonReader} sull'entry ZIP corrente, decodificando i byte come UTF-8 in modo incrementale:
+     * un carattere a più byte diviso tra due letture viene ricomposto correttamente.
+     * Il reader non va chiuso (chiuderebbe lo ZIP): l'entry si chiude con {@link ZipInputStream#closeEntry()}.
+     *
+     * @param zis Lo ZipInputStream posizionato sull'entry.
+     * @return Il reader dell'entry.
+     */
+    private static JsonReader openJsonReader(ZipInputStream zis) {
+        return new JsonReader(new BufferedReader(new InputStreamReader(zis, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    /**
+     * Ripristina le note leggendole una alla volta dall'array JSON e scrivendole a lotti di {@link #IMPORT_BATCH_SIZE}
+     * (o meno, se il contenuto del lotto supera {@link #IMPORT_BATCH_MAX_CHARS} caratteri).
+     * Ogni lotto è una transazione: in memoria c'è al massimo un lotto e nessuna transazione di scrittura
+     * resta aperta per tutto il ripristino.
+     *
+     * @param reader Il reader posizionato all'inizio dell'array delle note.
+     * @param gson L'istanza di Gson che deserializza le note.
+     * @param progressCallback Riceve il numero di note ripristinate dopo ogni lotto.
+     * @return Il numero di note ripristinate.
+     * @throws IOException Se si verifica un errore di I/O o il JSON non è valido.
+     */
+    private int restoreNotes(JsonReader reader, Gson gson, ProgressCallback progressCallback) throws IOException {
+        List<Note> batch = new ArrayList<>();
+        long batchChars = 0;
+        int restored = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Note note = gson.fromJson(reader, Note.class);
+            batch.add(note);
+            batchChars += note.getContent() != null ? note.getContent().length() : 0;
+            if (batch.size() >= IMPORT_BATCH_SIZE || batchChars >= IMPORT_BATCH_MAX_CHARS) {
+                restored += insertNotes(batch);
+                restoredNotes = restored;
+                batch.clear();
+                batchChars = 0;
+                progressCallback.onProgressUpdate(25, "Ripristino note: " + restored);
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            restored += insertNotes(batch);
+            restoredNotes = restored;
+            progressCallback.onProgressUpdate(25, "Ripristino note: " + restored);
+        }
+        return restored;
+    }
+
+    /**
+     * Scrive un lotto di note in un'unica transazione, nel formato di memorizzazione di un salvataggio normale.
+     *
+     * @param notes Le note del lotto, con il contenuto in chiaro.
+     * @return Il numero di note scritte.
+     */
+    private int insertNotes(List<Note> notes) {
+        bodyStore.upsertAll(notes); // Le note molto grandi vengono salvate a frammenti, le altre compresse se grandi.
+        return notes.size();
+    }
+
+    /**
+     * Ripristina i metadati dei file leggendoli uno alla volta dall'array JSON e scrivendoli a lotti
+     * di {@link #IMPORT_BATCH_SIZE}, ognuno in una propria transazione. Il percorso di ogni file criptato
+     * diventa relativo alla directory della cassaforte attiva.
+     *
+     * @param reader Il reader posizionato all'inizio dell'array dei file.
+     * @param gson L'istanza di Gson che deserializza i file.
+     * @param progressCallback Riceve il numero di file ripristinati dopo ogni lotto.
+     * @return Il numero di file ripristinati.
+     * @throws IOException Se si verifica un errore di I/O o il JSON non è valido.
+     */
+    private int restoreFileItems(JsonReader reader, Gson gson, ProgressCallback progressCallback) throws IOException {
+        List<FileItem> batch = new ArrayList<>();
+        int restored = 0;
+        // I percorsi del backup puntano alla directory della cassaforte (e del dispositivo) da cui è stato esportato:
+        // vengono riscritti nella directory della cassaforte attiva, dove vengono ripristinate le entry "files/".
+        String vaultPath = VaultManager.getEncryptedFilesPath(new VaultManager(context).getActiveVaultId());
+        reader.beginArray();
+        while (reader.hasNext()) {
+            FileItem item = gson.fromJson(reader, FileItem.class);
+            if (item.getEncryptedFilePath() != null) {
+                item.setEncryptedFilePath(vaultPath + File.separator + new File(item.getEncryptedFilePath()).getName());
+            }
+            batch.add(item);
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                fileDao.insertAll(batch);
+                restored += batch.size();
+                restoredFileItems = restored;
+                batch.clear();
+                progressCallback.onProgressUpdate(50, "Ripristino metadati file: " + restored);
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            fileDao.insertAll(batch);
+            restored += batch.size();
+            restoredFileItems = restored;
+            progressCallback.onProgressUpdate(50, "Ripristino metadati file: " + restored);
         }
-        return builder.toString();// Restituisce il contenuto completo come stringa.
+        return restored;
     }
 
     /**
@@ -0,0 +1,92 @@
+package com.example.securenotesapp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Classe utility che suddivide il contenuto di una nota in frammenti definiti dal contenuto
+ * (content-defined chunking). I confini dei frammenti dipendono da un hash scorrevole sui caratteri
+ * e non dalla posizione assoluta: inserire o cancellare testo cambia quindi solo il frammento
+ * toccato dalla modifica, mentre quelli precedenti e successivi restano identici (stesso hash).
+ *
+ * Questo permette di riscrivere nel database solo i frammenti cambiati.
+ */
+public final class ContentChunker {
+    // Dimensione minima di un frammento, in caratteri.
+    public static final int MIN_CHUNK_LENGTH = 8 * 1024;
+    // Dimensione massima di un frammento, in caratteri.
+    public static final int MAX_CHUNK_LENGTH = 64 * 1024;
+    // Maschera sui bit alti dell'hash: con 15 bit il frammento medio è di circa 32K caratteri.
+    private static final long BOUNDARY_MASK = ((1L << 15) - 1) << 40;
+    // Tabella "gear" di valori pseudo-casuali. Il seme è fisso: i confini devono restare stabili tra le versioni.
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5EC0_4E07L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentChunker() {
+    }
+
+    /**
+     * Suddivide il contenuto in frammenti con confini definiti dal contenuto.
+     *
+     * @param content Il contenuto completo.
+     * @return La lista ordinata dei frammenti; la loro concatenazione è uguale al contenuto.
+     */
+    public static List<String> split(String content) {
+        List<String> chunks = new ArrayList<>(content.length() / (MAX_CHUNK_LENGTH / 2) + 1);
+        int start = 0;
+        int length = content.length();
+        while (start < length) {
+            int end = findBoundary(content, start, length);
+            chunks.add(content.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Cerca la fine del frammento che inizia in {@code start}.
+     */
+    private static int findBoundary(String content, int start, int length) {
+        int minEnd = start + MIN_CHUNK_LENGTH;
+        int maxEnd = Math.min(start + MAX_CHUNK_LENGTH, length);
+        if (minEnd >= length) {
+            return length;
+        }
+        long hash = 0;
+        int end = maxEnd;
+        for (int i = start; i < maxEnd; i++) {
+            hash = (hash << 1) + GEAR[content.charAt(i) & 0xFF];
+            if (i + 1 >= minEnd && (hash & BOUNDARY_MASK) == 0) {
+                end = i + 1;
+                break;
+            }
+        }
+        // Non spezza mai una coppia surrogata tra due frammenti.
+        if (end < length && Character.isHighSurrogate(content.charAt(end - 1))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Calcola l'hash FNV-1a a 64 bit di un frammento.
+     *
+     * @param chunk Il testo del frammento.
+     * @return L'hash del frammento.
+     */
+    public static long hash(String chunk) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < chunk.length(); i++) {
+            hash ^= chunk.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.securenotesapp.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Istogramma di latenze in millisecondi, con intervalli fissi e crescenti.
+ * Registrare un valore costa un confronto per intervallo e nessuna allocazione; i percentili sono stimati
+ * con il limite superiore dell'intervallo che li contiene.
+ *
+ * I metodi sono sincronizzati: i valori possono essere registrati da qualunque thread.
+ */
+public class LatencyHistogram {
+
+    // Limiti superiori (inclusi) degli intervalli; l'ultimo intervallo raccoglie i valori oltre l'ultimo limite.
+    private static final long[] BOUNDS_MS = {8, 16, 33, 50, 100, 200, 400, 800, 1600};
+
+    private final String name;
+    private final long[] counts = new long[BOUNDS_MS.length + 1];
+    private long total;
+    private long max;
+
+    /**
+     * Costruttore per LatencyHistogram.
+     *
+     * @param name Il nome mostrato nel riepilogo.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Registra una latenza.
+     *
+     * @param millis La latenza in millisecondi.
+     */
+    public synchronized void record(long millis) {
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        total++;
+        max = Math.max(max, millis);
+    }
+
+    /**
+     * @return Il numero di valori registrati.
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * Stima un percentile.
+     *
+     * @param percentile Il percentile, tra 0 e 100.
+     * @return Il limite superiore dell'intervallo che contiene il percentile, o il massimo registrato
+     * se il percentile cade nell'ultimo intervallo; 0 se non ci sono valori.
+     */
+    public synchronized long percentile(int percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MS[i], max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return Un riepilogo leggibile: numero di valori, percentili stimati e conteggio per intervallo.
+     */
+    public synchronized String summary() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+                "%s: %d valori, p50 <= %d ms, p95 <= %d ms, p99 <= %d ms, massimo %d ms\n",
+                name, total, percentile(50), percentile(95), percentile(99), max));
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(i < BOUNDS_MS.length ? "<=" + BOUNDS_MS[i] : ">" + BOUNDS_MS[BOUNDS_MS.length - 1])
+                    .append(": ").append(counts[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Azzera l'istogramma.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+    }
+}
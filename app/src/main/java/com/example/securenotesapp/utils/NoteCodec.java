@@ -0,0 +1,141 @@
+package com.example.securenotesapp.utils;
+
+import com.example.securenotesapp.model.Note;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Classe utility che gestisce la codifica a riposo del contenuto delle note.
+ * Il contenuto delle note più grandi di {@link #COMPRESSION_THRESHOLD} caratteri viene compresso
+ * con Deflate e salvato nella colonna BLOB {@code contentBlob}, insieme a un tag di codec.
+ * In questo caso la colonna {@code content} conserva solo un'anteprima breve, sufficiente
+ * per la lista delle note, così che le pagine SQLCipher lette durante lo scorrimento restino poche.
+ *
+ * Il contenuto completo viene decompresso solo quando serve davvero (es. apertura nell'editor)
+ * tramite {@link #decode(Note)}.
+ */
+public final class NoteCodec {
+    // Il contenuto è salvato in chiaro (testo) nella colonna 'content'.
+    public static final int CODEC_PLAIN = 0;
+    // Il contenuto è compresso con Deflate (UTF-8) nella colonna 'contentBlob'.
+    public static final int CODEC_DEFLATE = 1;
+    // Il contenuto è salvato a frammenti nella tabella 'note_chunks' (vedi NoteBodyStore).
+    public static final int CODEC_CHUNKED = 2;
+
+    // Soglia (in caratteri) oltre la quale il contenuto viene compresso.
+    public static final int COMPRESSION_THRESHOLD = 16 * 1024;
+    // Lunghezza massima dell'anteprima: quella salvata in 'content' per le note compresse e a frammenti,
+    // quella letta dalle query della lista e quella mostrata nella riga. Più dei caratteri che entrano
+    // nelle due righe dell'anteprima anche su un tablet.
+    public static final int PREVIEW_LENGTH = 300;
+    // La compressione viene mantenuta solo se riduce la dimensione almeno del 10%.
+    private static final double MIN_SAVING_RATIO = 0.9;
+    private static final int BUFFER_SIZE = 8192;
+
+    private NoteCodec() {
+    }
+
+    /**
+     * Prepara una nota per la scrittura nel database, comprimendone il contenuto se supera
+     * la soglia e se la compressione è conveniente. La nota viene modificata sul posto.
+     *
+     * @param note La nota da codificare, con il contenuto completo nel campo {@code content}.
+     * @return true se il contenuto è stato compresso, false se resta in chiaro.
+     */
+    public static boolean encode(Note note) {
+        String content = note.getContent();
+        if (note.getContentCodec() == CODEC_PLAIN) {
+            // Il contenuto è ancora completo: la lunghezza va registrata prima di sostituirlo con l'anteprima.
+            note.setContentLength(content != null ? content.length() : 0);
+        }
+        if (note.getContentCodec() != CODEC_PLAIN || content == null
+                || content.length() < COMPRESSION_THRESHOLD) {
+            return false;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(raw);
+        if (compressed.length > raw.length * MIN_SAVING_RATIO) {
+            return false; // Contenuto poco comprimibile: resta in chiaro.
+        }
+        note.setContentBlob(compressed);
+        note.setContentCodec(CODEC_DEFLATE);
+        note.setContent(preview(content));
+        return true;
+    }
+
+    /**
+     * Restituisce il contenuto completo di una nota, decomprimendolo se necessario.
+     * Per le note a frammenti ({@link #CODEC_CHUNKED}) restituisce solo l'anteprima:
+     * il contenuto completo va letto tramite {@code NoteBodyStore}.
+     *
+     * @param note La nota letta dal database.
+     * @return Il contenuto testuale completo.
+     */
+    public static String decode(Note note) {
+        if (note.getContentCodec() == CODEC_DEFLATE && note.getContentBlob() != null) {
+            return new String(inflate(note.getContentBlob()), StandardCharsets.UTF_8);
+        }
+        return note.getContent();
+    }
+
+    /**
+     * Tronca il contenuto a {@link #PREVIEW_LENGTH} caratteri senza spezzare una coppia surrogata.
+     *
+     * @param content Il contenuto completo.
+     * @return L'anteprima del contenuto.
+     */
+    public static String preview(String content) {
+        if (content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        int end = PREVIEW_LENGTH;
+        if (Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    /**
+     * Comprime un array di byte con Deflate.
+     *
+     * @param data I byte da comprimere.
+     * @return I byte compressi.
+     */
+    public static byte[] deflate(byte[] data) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(bos)) {
+            dos.write(data);
+        } catch (IOException e) {
+            // Non può accadere con un ByteArrayOutputStream.
+            throw new IllegalStateException("Compressione fallita", e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decomprime un array di byte compresso con {@link #deflate(byte[])}.
+     *
+     * @param data I byte compressi.
+     * @return I byte originali.
+     * @throws IllegalStateException Se i dati sono corrotti.
+     */
+    public static byte[] inflate(byte[] data) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream is = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Contenuto compresso corrotto", e);
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.securenotesapp.utils;
+
+/**
+ * Intervallo semiaperto [lower, upper) che contiene tutte le stringhe che iniziano con un prefisso,
+ * confrontate con la collazione NOCASE di SQLite.
+ *
+ * Una condizione {@code colonna >= lower AND colonna < upper} viene risolta da SQLite come ricerca
+ * per intervallo su un indice della colonna, mentre {@code LIKE 'prefisso%'} in generale no.
+ */
+public final class PrefixRange {
+    // Ultimo code point Unicode: un prefisso che termina con questo carattere non ha un successore.
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    /**
+     * Limite inferiore (incluso): il prefisso normalizzato.
+     */
+    public final String lower;
+    /**
+     * Limite superiore (escluso): il prefisso con l'ultimo carattere incrementato.
+     */
+    public final String upper;
+
+    private PrefixRange(String lower, String upper) {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Verifica in memoria se un valore cade nell'intervallo, cioè se inizia con il prefisso secondo NOCASE.
+     * Permette di filtrare il risultato di un prefisso più corto senza interrogare di nuovo il database.
+     *
+     * @param value Il valore, es. il titolo di una nota. Può essere null.
+     * @return true se il valore inizia con il prefisso.
+     */
+    public boolean contains(String value) {
+        if (value == null || value.length() < lower.length()) {
+            return false;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se questo intervallo è contenuto in un altro, cioè se il suo prefisso estende quello dell'altro.
+     *
+     * @param other L'altro intervallo.
+     * @return true se ogni valore di questo intervallo appartiene anche all'altro.
+     */
+    public boolean isWithin(PrefixRange other) {
+        return lower.startsWith(other.lower);
+    }
+
+    /**
+     * Calcola l'intervallo per un prefisso.
+     * NOCASE confronta le lettere ASCII senza distinguere maiuscole e minuscole, quindi il prefisso
+     * viene portato in minuscolo solo per i caratteri A-Z, come fa SQLite.
+     *
+     * @param prefix Il prefisso, non vuoto.
+     * @return L'intervallo delle stringhe che iniziano con il prefisso.
+     * @throws IllegalArgumentException Se il prefisso è vuoto.
+     */
+    public static PrefixRange of(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("Prefisso vuoto");
+        }
+        StringBuilder lower = new StringBuilder(prefix.length());
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            lower.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        // SQLite confronta il testo UTF-8 byte per byte, cioè in ordine di code point:
+        // il successore va calcolato sul code point, non sul singolo char UTF-16.
+        int end = lower.length();
+        while (end > 0) {
+            int last = lower.codePointBefore(end);
+            int start = end - Character.charCount(last);
+            if (last < MAX_CODE_POINT) {
+                int next = last + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    next = Character.MAX_SURROGATE + 1; // I surrogati non sono code point validi.
+                } else if (next >= 'A' && next <= 'Z') {
+                    // Solo dopo '@': NOCASE confronterebbe 'A' come 'a', includendo i caratteri da '[' a '`'.
+                    next = 'Z' + 1;
+                }
+                String upper = lower.substring(0, start) + new String(Character.toChars(next));
+                return new PrefixRange(lower.toString(), upper);
+            }
+            end = start;
+        }
+        // Prefisso composto solo dall'ultimo code point: nessun limite superiore più stretto.
+        return new PrefixRange(lower.toString(), lower + new String(Character.toChars(MAX_CODE_POINT)));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.securenotesapp.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rappresenta la differenza compatta tra due versioni di un testo come singola sostituzione:
+ * a partire dalla posizione {@code offset} vengono rimossi {@code removedLength} caratteri
+ * e inseriti i caratteri di {@code inserted}.
+ *
+ * Il prefisso e il suffisso comuni alle due versioni non vengono memorizzati, quindi
+ * la dimensione della differenza è proporzionale alla modifica e non alla lunghezza del testo.
+ */
+public final class TextDelta {
+    private final int offset;
+    private final int removedLength;
+    private final String inserted;
+
+    /**
+     * Costruttore per una differenza.
+     *
+     * @param offset La posizione (in caratteri) in cui inizia la sostituzione.
+     * @param removedLength Il numero di caratteri rimossi dalla versione precedente.
+     * @param inserted Il testo inserito al posto dei caratteri rimossi.
+     */
+    public TextDelta(int offset, int removedLength, String inserted) {
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.inserted = inserted;
+    }
+
+    /**
+     * Calcola la differenza tra due versioni di un testo confrontandone prefisso e suffisso comuni.
+     *
+     * @param before La versione precedente.
+     * @param after La nuova versione.
+     * @return La differenza che trasforma {@code before} in {@code after}.
+     */
+    public static TextDelta between(String before, String after) {
+        int max = Math.min(before.length(), after.length());
+        int prefix = 0;
+        while (prefix < max && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        // Il testo inserito viene salvato in UTF-8: non deve iniziare o finire a metà di una coppia surrogata.
+        if (prefix > 0 && Character.isHighSurrogate(after.charAt(prefix - 1))) {
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(after.charAt(after.length() - suffix))) {
+            suffix--;
+        }
+        return new TextDelta(prefix, before.length() - prefix - suffix,
+                after.substring(prefix, after.length() - suffix));
+    }
+
+    /**
+     * Restituisce la stessa differenza spostata in avanti di {@code chars} caratteri.
+     * Utile quando la differenza è stata calcolata su una porzione del testo.
+     *
+     * @param chars Il numero di caratteri che precedono la porzione confrontata.
+     * @return La differenza riferita al testo completo.
+     */
+    public TextDelta shift(int chars) {
+        return new TextDelta(offset + chars, removedLength, inserted);
+    }
+
+    /**
+     * Applica la differenza a una versione del testo.
+     *
+     * @param base La versione a cui applicare la differenza.
+     * @return La nuova versione del testo.
+     * @throws IllegalArgumentException Se la differenza non è compatibile con il testo.
+     */
+    public String applyTo(String base) {
+        if (offset + removedLength > base.length()) {
+            throw new IllegalArgumentException("Differenza non applicabile a un testo di " + base.length() + " caratteri");
+        }
+        return new StringBuilder(base.length() - removedLength + inserted.length())
+                .append(base, 0, offset)
+                .append(inserted)
+                .append(base, offset + removedLength, base.length())
+                .toString();
+    }
+
+    /**
+     * Indica se la differenza non cambia il testo.
+     *
+     * @return true se le due versioni sono identiche.
+     */
+    public boolean isEmpty() {
+        return removedLength == 0 && inserted.isEmpty();
+    }
+
+    /**
+     * Serializza la differenza in forma compressa.
+     *
+     * @return I byte della differenza.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(12 + inserted.length());
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeInt(offset);
+            dos.writeInt(removedLength);
+            dos.write(inserted.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Non può accadere con un ByteArrayOutputStream.
+            throw new IllegalStateException(e);
+        }
+        return NoteCodec.deflate(bos.toByteArray());
+    }
+
+    /**
+     * Ricostruisce una differenza serializzata con {@link #toBytes()}.
+     *
+     * @param data I byte della differenza.
+     * @return La differenza.
+     */
+    public static TextDelta fromBytes(byte[] data) {
+        byte[] raw = NoteCodec.inflate(data);
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(raw))) {
+            int offset = dis.readInt();
+            int removedLength = dis.readInt();
+            String inserted = new String(raw, 8, raw.length - 8, StandardCharsets.UTF_8);
+            return new TextDelta(offset, removedLength, inserted);
+        } catch (IOException e) {
+            throw new IllegalStateException("Differenza corrotta", e);
+        }
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRemovedLength() {
+        return removedLength;
+    }
+
+    public String getInserted() {
+        return inserted;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.securenotesapp.utils;
+
+import android.util.LruCache;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formatta i timestamp delle liste ("dd/MM/yyyy HH:mm") con un unico formattatore condiviso
+ * e una cache dei testi già formattati.
+ *
+ * Il formato ha la risoluzione del minuto, quindi la chiave della cache è il minuto del timestamp:
+ * le righe ricollegate durante lo scorrimento (e le note salvate nello stesso minuto) non formattano di nuovo.
+ * Se la lingua del dispositivo cambia, formattatore e cache vengono ricreati.
+ */
+public final class TimestampFormatter {
+    private static final String PATTERN = "dd/MM/yyyy HH:mm";
+    private static final long MINUTE_MS = 60_000L;
+    // Minuti distinti trattenuti: più delle righe visibili in qualunque lista.
+    private static final int CACHE_SIZE = 512;
+
+    private static final LruCache<Long, String> CACHE = new LruCache<>(CACHE_SIZE);
+    // Protetti dalla classe: SimpleDateFormat non è thread-safe.
+    private static SimpleDateFormat format;
+    private static Locale locale;
+
+    private TimestampFormatter() {
+    }
+
+    /**
+     * Restituisce il timestamp formattato per le liste.
+     *
+     * @param timestamp Il timestamp in millisecondi.
+     * @return Il testo formattato.
+     */
+    public static synchronized String format(long timestamp) {
+        Locale current = Locale.getDefault();
+        if (!current.equals(locale)) {
+            locale = current;
+            format = new SimpleDateFormat(PATTERN, current);
+            CACHE.evictAll();
+        }
+        long minute = Math.floorDiv(timestamp, MINUTE_MS);
+        String text = CACHE.get(minute);
+        if (text == null) {
+            text = format.format(new Date(minute * MINUTE_MS));
+            CACHE.put(minute, text);
+        }
+        return text;
+    }
+}
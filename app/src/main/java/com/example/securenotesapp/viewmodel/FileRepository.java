@@ -1,15 +1,24 @@
 package com.example.securenotesapp.viewmodel;
 import android.app.Application;
+import android.util.Log;
 import androidx.lifecycle.LiveData;
 
 import com.example.securenotesapp.SecurityManager; // Necessario per ottenere la passphrase del DB
 import com.example.securenotesapp.dao.FileDao;
+import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.database.LiveRowList;
 import com.example.securenotesapp.database.NoteDatabase;
+import com.example.securenotesapp.model.ChangeLogEntry;
 import com.example.securenotesapp.model.FileItem;
+import com.example.securenotesapp.utils.PrefixRange;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * Repository per la gestione dei dati relativi agli elementi file ({@link FileItem}).
@@ -22,7 +31,14 @@ import java.util.concurrent.Executors;
  * Si interfaccia con {@link FileDao} per le operazioni dirette sul database.
  */
 public class FileRepository {
+    private static final String TAG = "FileRepository";
+    // Ordinamenti disponibili per la lista dei file.
+    public static final int SORT_BY_MODIFIED = 0; // Dal file più recente
+    public static final int SORT_BY_NAME = 1; // Per nome, dalla A alla Z
+    public static final int SORT_BY_SIZE = 2; // Dal file più grande
+
     private FileDao fileDao;// Data Access Object per i file, usato per interagire con il database.
+    private NoteDatabase database;// Usato dalle liste aggiornate riga per riga.
     private LiveData<List<FileItem>> allFileItems;// LiveData che contiene tutti gli elementi file.
     // Pool di thread per eseguire operazioni sul database in background, separatamente dal thread principale.
     private ExecutorService databaseExecutor;
@@ -45,7 +61,7 @@ public class FileRepository {
             byte[] passphrase = securityManager.getDatabasePassphrase();
 
             // Inizializza il database Room, passando la passphrase per SQLCipher.
-            NoteDatabase database = NoteDatabase.getDatabase(application, passphrase);
+            database = NoteDatabase.getDatabase(application, passphrase);
             // Ottiene l'istanza del FileDao dal database.
             fileDao = database.fileDao();
             // Ottiene un LiveData con tutti gli elementi file presenti nel database.
@@ -68,6 +84,109 @@ public class FileRepository {
         return allFileItems;
     }
 
+    /**
+     * Restituisce un {@link LiveData} con i file nell'ordinamento richiesto, eventualmente limitati a un tipo MIME.
+     * Con un tipo MIME la lista è sempre ordinata per data: è l'ordine dell'indice (mimeType, timestamp),
+     * quindi il filtro non richiede alcun ordinamento in memoria.
+     *
+     * @param mimeType Il tipo MIME da mostrare, o null per tutti i file.
+     * @param sortOrder Uno tra {@link #SORT_BY_MODIFIED}, {@link #SORT_BY_NAME} e {@link #SORT_BY_SIZE}.
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItems(String mimeType, int sortOrder) {
+        return new FileItemList(database, mimeType, mimeType != null ? SORT_BY_MODIFIED : sortOrder);
+    }
+
+    /**
+     * Lista dei file attivi, eventualmente di un solo tipo MIME, aggiornata riga per riga (vedi {@link LiveRowList}).
+     */
+    private static final class FileItemList extends LiveRowList<FileItem> {
+        private final String mimeType;
+        private final int sortOrder;
+
+        FileItemList(NoteDatabase database, String mimeType, int sortOrder) {
+            super(database, ChangeLogEntry.ENTITY_FILE);
+            this.mimeType = mimeType;
+            this.sortOrder = sortOrder;
+        }
+
+        @Override
+        protected List<FileItem> loadAll() {
+            FileDao fileDao = database.fileDao();
+            if (mimeType != null) {
+                return fileDao.getFileItemsByMimeTypeSync(mimeType);
+            }
+            switch (sortOrder) {
+                case SORT_BY_NAME:
+                    return fileDao.getFileItemsByNameSync();
+                case SORT_BY_SIZE:
+                    return fileDao.getFileItemsBySizeSync();
+                default:
+                    return fileDao.getFileItemsByModifiedSync();
+            }
+        }
+
+        @Override
+        protected List<FileItem> loadByIds(List<Integer> ids) {
+            return database.fileDao().getFileItemsByIdsSync(ids);
+        }
+
+        @Override
+        protected boolean matches(FileItem fileItem) {
+            return fileItem.getDeletedAt() == null && (mimeType == null || mimeType.equals(fileItem.getMimeType()));
+        }
+
+        @Override
+        protected int getId(FileItem fileItem) {
+            return fileItem.getId();
+        }
+
+        @Override
+        protected Comparator<FileItem> comparator() {
+            switch (sortOrder) {
+                case SORT_BY_NAME:
+                    return (a, b) -> compareNoCase(a.getOriginalFileName(), b.getOriginalFileName());
+                case SORT_BY_SIZE:
+                    return (a, b) -> Long.compare(b.getFileSize(), a.getFileSize());
+                default:
+                    return (a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp());
+            }
+        }
+    }
+    /**
+     * Restituisce un {@link LiveData} con i file aggiunti in un intervallo di tempo, dal più recente,
+     * eventualmente limitati a un tipo MIME.
+     *
+     * @param mimeType Il tipo MIME, o null per tutti i file.
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItemsInDateRange(String mimeType, long fromTime, long toTime) {
+        return mimeType != null
+                ? fileDao.getFileItemsByMimeTypeInDateRange(mimeType, fromTime, toTime)
+                : fileDao.getFileItemsInDateRange(fromTime, toTime);
+    }
+    /**
+     * Restituisce un {@link LiveData} con i file il cui nome inizia con un prefisso,
+     * senza distinguere maiuscole e minuscole, ordinati per nome.
+     *
+     * @param prefix Il prefisso del nome, non vuoto.
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItemsByNamePrefix(String prefix) {
+        PrefixRange range = PrefixRange.of(prefix);
+        return fileDao.getFileItemsByNamePrefix(range.lower, range.upper);
+    }
+    /**
+     * Restituisce un {@link LiveData} con i tipi MIME dei file presenti.
+     *
+     * @return Un LiveData con la lista dei tipi MIME, in ordine alfabetico.
+     */
+    public LiveData<List<String>> getMimeTypes() {
+        return fileDao.getMimeTypes();
+    }
+
     // Metodi per le operazioni CRUD (Create, Read, Update, Delete)
     // Eseguiti su un thread separato
 
@@ -76,27 +195,125 @@ public class FileRepository {
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param fileItem L'oggetto {@link FileItem} da inserire.
+     * @return Un future completato con l'ID generato, o con l'errore se l'inserimento fallisce.
      */
-    public void insert(FileItem fileItem) {
-        databaseExecutor.execute(() -> fileDao.insert(fileItem));
+    public CompletableFuture<Integer> insert(FileItem fileItem) {
+        return supply(() -> {
+            fileItem.setId((int) fileDao.insert(fileItem));
+            return fileItem.getId();
+        });
     }
     /**
      * Aggiorna un elemento file esistente nel database.
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param fileItem L'oggetto {@link FileItem} da aggiornare.
+     * @return Un future completato con il numero di righe aggiornate.
      */
-    public void update(FileItem fileItem) {
-        databaseExecutor.execute(() -> fileDao.update(fileItem));
+    public CompletableFuture<Integer> update(FileItem fileItem) {
+        return supply(() -> fileDao.update(fileItem));
     }
     /**
      * Elimina un elemento file dal database.
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param fileItem L'oggetto {@link FileItem} da eliminare.
+     * @return Un future completato con il numero di righe eliminate.
+     */
+    public CompletableFuture<Integer> delete(FileItem fileItem) {
+        return supply(() -> fileDao.delete(fileItem));
+    }
+    /**
+     * Sposta un file nel cestino. Riga e file criptato restano finché il cestino non viene svuotato.
+     *
+     * @param fileItem Il file da spostare nel cestino.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(FileItem fileItem) {
+        return supply(() -> fileDao.setDeletedAt(fileItem.getId(), System.currentTimeMillis()));
+    }
+    /**
+     * Ripristina un file dal cestino: si azzera solo il campo deletedAt.
+     *
+     * @param fileItem Il file da ripristinare.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(FileItem fileItem) {
+        return supply(() -> fileDao.setDeletedAt(fileItem.getId(), null));
+    }
+    /**
+     * Sposta nel cestino una selezione di file in un'unica transazione: le liste si aggiornano una volta sola.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(List<Integer> fileItemIds) {
+        List<Integer> ids = new ArrayList<>(fileItemIds);
+        return supply(() -> fileDao.setDeletedAtForSelection(ids, System.currentTimeMillis()));
+    }
+    /**
+     * Ripristina dal cestino una selezione di file in un'unica transazione, es. per annullare {@link #moveToTrash(List)}.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(List<Integer> fileItemIds) {
+        List<Integer> ids = new ArrayList<>(fileItemIds);
+        return supply(() -> fileDao.setDeletedAtForSelection(ids, null));
+    }
+    /**
+     * Elimina definitivamente le righe di una selezione di file in un'unica transazione.
+     * I file criptati restano sul filesystem: il chiamante li elimina dalle righe restituite,
+     * con un unico task per tutta la selezione (vedi {@link com.example.securenotesapp.FileManager#deleteEncryptedFiles}).
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con le righe eliminate.
+     */
+    public CompletableFuture<List<FileItem>> deletePermanently(List<Integer> fileItemIds) {
+        List<Integer> ids = new ArrayList<>(fileItemIds);
+        return supply(() -> fileDao.deleteSelection(ids));
+    }
+    /**
+     * Carica le righe di una selezione di file, es. per esportarli.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con le righe trovate, nell'ordine dei blocchi di ID.
+     */
+    public CompletableFuture<List<FileItem>> getFileItemsByIds(List<Integer> fileItemIds) {
+        List<Integer> ids = new ArrayList<>(fileItemIds);
+        return supply(() -> {
+            List<FileItem> fileItems = new ArrayList<>(ids.size());
+            for (int from = 0; from < ids.size(); from += NoteDao.MAX_IDS_PER_QUERY) {
+                fileItems.addAll(fileDao.getFileItemsByIdsSync(
+                        ids.subList(from, Math.min(ids.size(), from + NoteDao.MAX_IDS_PER_QUERY))));
+            }
+            return fileItems;
+        });
+    }
+    /**
+     * Esegue un'operazione sul database in un thread del pool e ne restituisce il risultato come future.
+     * Gli errori completano il future in modo eccezionale e vengono anche registrati nel log,
+     * così non vanno persi quando il chiamante ignora il risultato.
+     *
+     * @param operation L'operazione da eseguire.
+     * @return Un future completato con il risultato dell'operazione.
+     */
+    private <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(operation, databaseExecutor);
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Operazione sui file fallita: " + error.getMessage(), error);
+            }
+        });
+        return future;
+    }
+    /**
+     * Restituisce un {@link LiveData} con i file nel cestino, dal più recentemente eliminato.
+     *
+     * @return Un LiveData con la lista dei file nel cestino.
      */
-    public void delete(FileItem fileItem) {
-        databaseExecutor.execute(() -> fileDao.delete(fileItem));
+    public LiveData<List<FileItem>> getTrashedFileItems() {
+        return fileDao.getTrashedFileItems();
     }
     /**
      * Restituisce un {@link LiveData} contenente un singolo elemento file basato sul suo ID.
@@ -3,10 +3,13 @@ package com.example.securenotesapp.viewmodel; // Lo stesso package di NoteViewMo
 import android.app.Application;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 
 import com.example.securenotesapp.model.FileItem;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * ViewModel per la gestione dei dati degli elementi file ({@link FileItem}) nell'interfaccia utente.
@@ -19,6 +22,10 @@ import java.util.List;
 public class FileViewModel extends AndroidViewModel {
     private FileRepository repository; // Il Repository che gestisce l'accesso ai dati.
     private LiveData<List<FileItem>> allFileItems;// LiveData che contiene la lista di tutti gli elementi file.
+    // Filtro per tipo MIME e ordinamento della lista: ogni cambiamento sostituisce la query osservata.
+    private final MutableLiveData<ListQuery> listQuery =
+            new MutableLiveData<>(new ListQuery(null, FileRepository.SORT_BY_MODIFIED));
+    private LiveData<List<FileItem>> fileItems;// File filtrati e ordinati secondo listQuery.
 
     /**
      * Costruttore per il FileViewModel.
@@ -31,6 +38,8 @@ public class FileViewModel extends AndroidViewModel {
         super(application);// Chiama il costruttore della classe genitore AndroidViewModel.
         repository = new FileRepository(application); // Inizializza il repository con il contesto dell'applicazione.
         allFileItems = repository.getAllFileItems(); // Ottiene il LiveData con tutti gli elementi file dal repository.
+        fileItems = Transformations.switchMap(listQuery,
+                query -> repository.getFileItems(query.mimeType, query.sortOrder));
     }
 
     /**
@@ -44,32 +53,175 @@ public class FileViewModel extends AndroidViewModel {
         return allFileItems;
     }
 
+    /**
+     * Restituisce i file filtrati per tipo MIME e ordinati secondo le scelte correnti.
+     *
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItems() {
+        return fileItems;
+    }
+
+    /**
+     * Limita la lista dei file a un tipo MIME. Con un filtro attivo la lista è ordinata per data.
+     *
+     * @param mimeType Il tipo MIME, o null per mostrare tutti i file.
+     */
+    public void setMimeTypeFilter(String mimeType) {
+        listQuery.setValue(new ListQuery(mimeType, getSortOrder()));
+    }
+
+    /**
+     * Restituisce il tipo MIME a cui è limitata la lista dei file.
+     *
+     * @return Il tipo MIME, o null se sono mostrati tutti i file.
+     */
+    public String getMimeTypeFilter() {
+        return listQuery.getValue().mimeType;
+    }
+
+    /**
+     * Cambia l'ordinamento della lista dei file.
+     *
+     * @param sortOrder Uno tra {@link FileRepository#SORT_BY_MODIFIED}, {@link FileRepository#SORT_BY_NAME}
+     *                  e {@link FileRepository#SORT_BY_SIZE}.
+     */
+    public void setSortOrder(int sortOrder) {
+        listQuery.setValue(new ListQuery(getMimeTypeFilter(), sortOrder));
+    }
+
+    /**
+     * Restituisce l'ordinamento corrente della lista dei file.
+     *
+     * @return L'ordinamento, una delle costanti {@code SORT_BY_*} di {@link FileRepository}.
+     */
+    public int getSortOrder() {
+        return listQuery.getValue().sortOrder;
+    }
+
+    /**
+     * Restituisce i tipi MIME dei file presenti, per il filtro.
+     *
+     * @return Un LiveData con la lista dei tipi MIME.
+     */
+    public LiveData<List<String>> getMimeTypes() {
+        return repository.getMimeTypes();
+    }
+
+    /**
+     * Restituisce i file aggiunti in un intervallo di tempo, dal più recente.
+     *
+     * @param mimeType Il tipo MIME, o null per tutti i file.
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItemsInDateRange(String mimeType, long fromTime, long toTime) {
+        return repository.getFileItemsInDateRange(mimeType, fromTime, toTime);
+    }
+
+    /**
+     * Restituisce i file il cui nome inizia con un prefisso, ordinati per nome.
+     *
+     * @param prefix Il prefisso del nome, non vuoto.
+     * @return Un LiveData con la lista di {@link FileItem}.
+     */
+    public LiveData<List<FileItem>> getFileItemsByNamePrefix(String prefix) {
+        return repository.getFileItemsByNamePrefix(prefix);
+    }
+
     /**
      * Inserisce un nuovo elemento file nel database.
      * Questa operazione viene delegata al {@link FileRepository}.
      *
      * @param fileItem L'oggetto {@link FileItem} da inserire.
+     * @return Un future completato con l'ID generato, o con l'errore se l'inserimento fallisce.
      */
-    public void insert(FileItem fileItem) {
-        repository.insert(fileItem);
+    public CompletableFuture<Integer> insert(FileItem fileItem) {
+        return repository.insert(fileItem);
     }
     /**
      * Aggiorna un elemento file esistente nel database.
      * Questa operazione viene delegata al {@link FileRepository}.
      *
      * @param fileItem L'oggetto {@link FileItem} da aggiornare.
+     * @return Un future completato con il numero di righe aggiornate.
      */
-    public void update(FileItem fileItem) {
-        repository.update(fileItem);
+    public CompletableFuture<Integer> update(FileItem fileItem) {
+        return repository.update(fileItem);
     }
     /**
      * Elimina un elemento file dal database.
      * Questa operazione viene delegata al {@link FileRepository}.
      *
      * @param fileItem L'oggetto {@link FileItem} da eliminare.
+     * @return Un future completato con il numero di righe eliminate.
+     */
+    public CompletableFuture<Integer> delete(FileItem fileItem) {
+        return repository.delete(fileItem);
+    }
+    /**
+     * Sposta un file nel cestino.
+     *
+     * @param fileItem L'oggetto {@link FileItem} da spostare nel cestino.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(FileItem fileItem) {
+        return repository.moveToTrash(fileItem);
+    }
+    /**
+     * Ripristina un file dal cestino.
+     *
+     * @param fileItem L'oggetto {@link FileItem} da ripristinare.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(FileItem fileItem) {
+        return repository.restoreFromTrash(fileItem);
+    }
+    /**
+     * Sposta nel cestino una selezione di file in un'unica transazione.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(List<Integer> fileItemIds) {
+        return repository.moveToTrash(fileItemIds);
+    }
+    /**
+     * Ripristina dal cestino una selezione di file in un'unica transazione.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(List<Integer> fileItemIds) {
+        return repository.restoreFromTrash(fileItemIds);
+    }
+    /**
+     * Elimina definitivamente le righe di una selezione di file in un'unica transazione.
+     * I file criptati vanno eliminati dal chiamante, dalle righe restituite.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con le righe eliminate.
+     */
+    public CompletableFuture<List<FileItem>> deletePermanently(List<Integer> fileItemIds) {
+        return repository.deletePermanently(fileItemIds);
+    }
+    /**
+     * Carica le righe di una selezione di file.
+     *
+     * @param fileItemIds Gli ID dei file.
+     * @return Un future completato con le righe trovate.
      */
-    public void delete(FileItem fileItem) {
-        repository.delete(fileItem);
+    public CompletableFuture<List<FileItem>> getFileItemsByIds(List<Integer> fileItemIds) {
+        return repository.getFileItemsByIds(fileItemIds);
+    }
+    /**
+     * Restituisce i file nel cestino, dal più recentemente eliminato.
+     *
+     * @return Un LiveData con la lista dei file nel cestino.
+     */
+    public LiveData<List<FileItem>> getTrashedFileItems() {
+        return repository.getTrashedFileItems();
     }
     /**
      * Restituisce un {@link LiveData} contenente un singolo elemento file basato sul suo ID.
@@ -81,4 +233,17 @@ public class FileViewModel extends AndroidViewModel {
     public LiveData<FileItem> getFileItemById(int fileItemId) {
         return repository.getFileItemById(fileItemId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Filtro per tipo MIME e ordinamento della lista dei file.
+     */
+    private static final class ListQuery {
+        final String mimeType; // null = tutti i file
+        final int sortOrder;
+
+        ListQuery(String mimeType, int sortOrder) {
+            this.mimeType = mimeType;
+            this.sortOrder = sortOrder;
+        }
+    }
+}
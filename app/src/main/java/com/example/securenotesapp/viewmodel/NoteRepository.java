@@ -1,15 +1,45 @@
 package com.example.securenotesapp.viewmodel;
 
 import android.app.Application;
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import androidx.documentfile.provider.DocumentFile;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 import com.example.securenotesapp.dao.NoteDao;
+import com.example.securenotesapp.dao.NotebookDao;
+import com.example.securenotesapp.database.LiveRowList;
+import com.example.securenotesapp.database.NoteArchive;
+import com.example.securenotesapp.database.NoteBodyStore;
+import com.example.securenotesapp.database.NoteCache;
 import com.example.securenotesapp.database.NoteDatabase;
+import com.example.securenotesapp.database.NoteDraftStore;
+import com.example.securenotesapp.database.NoteRevisionStore;
+import com.example.securenotesapp.database.TrashPurgeWorker;
+import com.example.securenotesapp.model.ChangeLogEntry;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteRevision;
+import com.example.securenotesapp.model.Notebook;
 import com.example.securenotesapp.KeyManager; // Importa KeyManager
+import com.example.securenotesapp.utils.PrefixRange;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Repository per la gestione dei dati delle note.
@@ -19,10 +49,25 @@ import java.util.concurrent.Executors;
  * il thread principale dell'UI. Utilizza {@link LiveData} per fornire dati osservabili.
  */
 public class NoteRepository {
+    private static final String TAG = "NoteRepository";
+    // Ordinamenti disponibili per la lista delle note.
+    public static final int SORT_BY_MODIFIED = 0; // Dalla modifica più recente
+    public static final int SORT_BY_TITLE = 1; // Per titolo, dalla A alla Z
+    public static final int SORT_BY_SIZE = 2; // Dalla nota più lunga
+
     private NoteDao noteDao;// Data Access Object per le note, usato per interagire con il database.
     private LiveData<List<Note>> allNotes;// LiveData che contiene la lista di tutte le note.
+    private NoteBodyStore bodyStore;// Sceglie il formato di memorizzazione del contenuto (chiaro, compresso, a frammenti).
+    private NoteCache noteCache;// Contenuto delle note aperte di recente, condiviso da tutti i repository.
+    private NoteDraftStore draftStore;// Bozze del salvataggio automatico dell'editor.
+    private NoteDatabase database;// Usato per accedere alla cronologia delle revisioni.
+    private NoteRevisionStore revisionStore;// Ricostruisce le revisioni passate del contenuto.
+    private NotebookDao notebookDao;// Data Access Object per i quaderni e la loro gerarchia.
     // Pool di thread per eseguire operazioni sul database in background.
     private ExecutorService databaseExecutor;
+    // Thread della ricerca durante la digitazione: le ricerche non attendono dietro le scritture, né le rallentano.
+    // È condiviso da tutti i repository, che vengono creati a ogni ViewModel e non vengono chiusi.
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
 
     /**
      * Costruttore per il NoteRepository.
@@ -49,8 +94,13 @@ public class NoteRepository {
             }
 
             // Inizializza il database Room (singleton), passando la passphrase per SQLCipher
-            NoteDatabase database = NoteDatabase.getDatabase(application, passphrase);
+            database = NoteDatabase.getDatabase(application, passphrase);
             noteDao = database.noteDao();// Ottiene l'istanza del DAO per le note.
+            bodyStore = new NoteBodyStore(database);
+            noteCache = database.getNoteCache();
+            draftStore = database.getNoteDraftStore();
+            revisionStore = new NoteRevisionStore(database);
+            notebookDao = database.notebookDao();
             allNotes = noteDao.getAllNotes();// Recupera tutte le note come LiveData
 
         } catch (Exception e) {
@@ -78,16 +128,227 @@ public class NoteRepository {
     public LiveData<Note> getNoteById(int id) {
         return noteDao.getNoteById(id);
     }
+    /**
+     * Carica in background una nota con il contenuto completo, decompresso o ricomposto dai frammenti se necessario.
+     * La lista delle note contiene solo l'anteprima delle note compresse o a frammenti: l'editor deve usare
+     * questo metodo per ottenere il testo integrale.
+     * Le note aperte di recente vengono servite da {@link NoteCache} senza accedere al database:
+     * in quel caso il LiveData ha già il valore quando viene restituito. La nota restituita non va modificata.
+     *
+     * @param id L'ID della nota.
+     * @return Un LiveData che riceverà la nota in chiaro, o null se la nota non esiste o non può essere letta.
+     */
+    public LiveData<Note> loadNote(int id) {
+        Note cached = noteCache.get(id);
+        if (cached != null) {
+            return new MutableLiveData<>(cached);
+        }
+        MutableLiveData<Note> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> {
+            try {
+                long generation = noteCache.getGeneration();
+                Note note = noteDao.getNoteByIdSync(id);
+                if (note != null) {
+                    bodyStore.decodeInPlace(note);
+                    noteCache.put(note, generation);
+                }
+                result.postValue(note);
+            } catch (Exception e) {
+                Log.e(TAG, "Caricamento della nota " + id + " fallito: " + e.getMessage(), e);
+                result.postValue(null);
+            }
+        });
+        return result;
+    }
+    /**
+     * Salva in background lo stato dell'editor in una bozza (vedi {@link NoteDraftStore}).
+     * I salvataggi della stessa bozza vanno avviati solo dopo il completamento del precedente.
+     *
+     * @param draftId L'ID della bozza, o 0 se l'editor non ne ha ancora una.
+     * @param noteId L'ID della nota modificata, o null per una nota nuova.
+     * @param title Il titolo.
+     * @param notebookId Il quaderno, o null.
+     * @param content Il contenuto completo.
+     * @return Un future completato con l'ID della bozza.
+     */
+    public CompletableFuture<Long> saveDraft(long draftId, Integer noteId, String title, Integer notebookId, String content) {
+        return supply(() -> draftStore.save(draftId, noteId, title, notebookId, content));
+    }
+    /**
+     * Carica in background una bozza con il contenuto ricostruito.
+     *
+     * @param draftId L'ID della bozza.
+     * @return Un LiveData che riceverà la bozza, o null se non esiste.
+     */
+    public LiveData<NoteDraft> loadDraft(long draftId) {
+        MutableLiveData<NoteDraft> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(draftStore.load(draftId)));
+        return result;
+    }
+    /**
+     * Carica in background la bozza non salvata di una nota esistente, se presente.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un LiveData che riceverà la bozza, o null se la nota non ha bozze.
+     */
+    public LiveData<NoteDraft> loadDraftForNote(int noteId) {
+        MutableLiveData<NoteDraft> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(draftStore.loadForNote(noteId)));
+        return result;
+    }
+    /**
+     * Carica in background le intestazioni di tutte le bozze non salvate, dalla più recente.
+     *
+     * @return Un LiveData che riceverà la lista delle intestazioni.
+     */
+    public LiveData<List<NoteDraft.Header>> loadDraftHeaders() {
+        MutableLiveData<List<NoteDraft.Header>> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(draftStore.getHeaders()));
+        return result;
+    }
+    /**
+     * Elimina in background una bozza.
+     *
+     * @param draftId L'ID della bozza.
+     * @return Un future completato al termine dell'eliminazione.
+     */
+    public CompletableFuture<Void> deleteDraft(long draftId) {
+        return supply(() -> {
+            draftStore.delete(draftId);
+            return null;
+        });
+    }
+    /**
+     * Elimina in background tutte le bozze.
+     */
+    public void deleteAllDrafts() {
+        databaseExecutor.execute(() -> draftStore.deleteAll());
+    }
+    /**
+     * Restituisce un {@link LiveData} con le note nell'ordinamento richiesto, limitate a un quaderno
+     * (compresi i sotto-quaderni) o tutte. Ogni ordinamento è una query distinta servita da un indice.
+     * Dopo il primo caricamento la lista viene aggiornata riga per riga (vedi {@link LiveRowList}):
+     * salvare una nota rilegge solo quella nota.
+     *
+     * @param notebookId L'ID del quaderno, o null per tutte le note.
+     * @param sortOrder Uno tra {@link #SORT_BY_MODIFIED}, {@link #SORT_BY_TITLE} e {@link #SORT_BY_SIZE}.
+     * @return Un LiveData con la lista delle note.
+     */
+    public LiveData<List<Note>> getNotes(Integer notebookId, int sortOrder) {
+        return new NoteList(database, notebookId, sortOrder);
+    }
+    /**
+     * Restituisce un {@link LiveData} con le note modificate in un intervallo di tempo, dalla più recente.
+     *
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un LiveData con la lista delle note.
+     */
+    public LiveData<List<Note>> getNotesInDateRange(long fromTime, long toTime) {
+        return noteDao.getNotesInDateRange(fromTime, toTime);
+    }
+    /**
+     * Restituisce un {@link LiveData} con le note il cui titolo inizia con un prefisso,
+     * senza distinguere maiuscole e minuscole, ordinate per titolo.
+     *
+     * @param prefix Il prefisso del titolo, non vuoto.
+     * @return Un LiveData con la lista delle note.
+     */
+    public LiveData<List<Note>> getNotesByTitlePrefix(String prefix) {
+        PrefixRange range = PrefixRange.of(prefix);
+        return noteDao.getNotesByTitlePrefix(range.lower, range.upper);
+    }
+    /**
+     * Cerca in background le note il cui titolo inizia con un prefisso, ordinate per titolo.
+     * Le ricerche vengono eseguite una alla volta su un thread dedicato, condiviso da tutti i repository: annullando il {@link Future} restituito
+     * una ricerca superata non viene eseguita, se non è ancora iniziata.
+     *
+     * @param prefix Il prefisso del titolo, non vuoto.
+     * @param callback Riceve le note trovate, sul thread della ricerca. Non viene chiamato in caso di errore.
+     * @return Il Future della ricerca, per annullarla.
+     */
+    public Future<?> searchByTitlePrefix(String prefix, Consumer<List<Note>> callback) {
+        PrefixRange range = PrefixRange.of(prefix);
+        return SEARCH_EXECUTOR.submit(() -> {
+            try {
+                callback.accept(noteDao.getNotesByTitlePrefixSync(range.lower, range.upper));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Errore durante la ricerca delle note", e);
+            }
+        });
+    }
+    /**
+     * Restituisce un {@link LiveData} con tutti i quaderni, ordinati per nome.
+     *
+     * @return Un LiveData con la lista dei quaderni.
+     */
+    public LiveData<List<Notebook>> getNotebooks() {
+        return notebookDao.getAllNotebooks();
+    }
+    /**
+     * Crea un nuovo quaderno in background.
+     *
+     * @param notebook Il quaderno da creare.
+     * @return Un LiveData che riceverà true se il quaderno è stato creato, false se la gerarchia è troppo profonda.
+     */
+    public LiveData<Boolean> createNotebook(Notebook notebook) {
+        MutableLiveData<Boolean> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(notebookDao.createNotebook(notebook) != -1));
+        return result;
+    }
+    /**
+     * Sposta in background un quaderno, con i suoi sotto-quaderni, sotto un nuovo genitore.
+     *
+     * @param notebookId L'ID del quaderno da spostare.
+     * @param newParentId L'ID del nuovo genitore, o null per il primo livello.
+     * @return Un LiveData che riceverà true se lo spostamento è riuscito.
+     */
+    public LiveData<Boolean> moveNotebook(int notebookId, Integer newParentId) {
+        MutableLiveData<Boolean> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(notebookDao.moveNotebook(notebookId, newParentId)));
+        return result;
+    }
+    /**
+     * Elimina in background un quaderno e i suoi sotto-quaderni, spostando le note nel genitore.
+     *
+     * @param notebook Il quaderno da eliminare.
+     */
+    public void deleteNotebook(Notebook notebook) {
+        databaseExecutor.execute(() -> notebookDao.deleteNotebook(notebook));
+    }
+    /**
+     * Restituisce un {@link LiveData} con le intestazioni della cronologia di una nota, dalla più recente.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un LiveData con la lista delle intestazioni delle revisioni.
+     */
+    public LiveData<List<NoteRevision.Header>> getRevisions(int noteId) {
+        return database.noteRevisionDao().getRevisionHeaders(noteId);
+    }
+    /**
+     * Ricostruisce in background il contenuto di una revisione passata di una nota.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision Il numero della revisione.
+     * @return Un LiveData che riceverà il contenuto, o null se la revisione non è più disponibile.
+     */
+    public LiveData<String> loadRevisionContent(int noteId, int revision) {
+        MutableLiveData<String> result = new MutableLiveData<>();
+        databaseExecutor.execute(() -> result.postValue(revisionStore.reconstruct(noteId, revision)));
+        return result;
+    }
     /**
      * Inserisce una nuova nota nel database.
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param note L'oggetto {@link Note} da inserire.
+     * @return Un future completato con l'ID generato, o con l'errore se l'inserimento fallisce.
      */
-    public void insert(Note note) {
+    public CompletableFuture<Integer> insert(Note note) {
         // Esegue l'operazione di inserimento sul database in un thread del pool.
-        databaseExecutor.execute(() -> {
-            noteDao.insert(note);
+        return supply(() -> {
+            bodyStore.insert(note); // Comprime o suddivide il contenuto se supera le soglie.
+            return note.getId();
         });
     }
     /**
@@ -95,22 +356,269 @@ public class NoteRepository {
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param note L'oggetto {@link Note} da aggiornare.
+     * @return Un future completato con il numero di righe aggiornate (0 se la nota non esiste più).
      */
-    public void update(Note note) {
+    public CompletableFuture<Integer> update(Note note) {
         // Esegue l'operazione di aggiornamento sul database in un thread del pool.
-        databaseExecutor.execute(() -> {
-            noteDao.update(note);
+        return supply(() -> {
+            int rows = bodyStore.update(note); // Riscrive solo i frammenti cambiati per le note grandi.
+            // Senza attendere il registro delle modifiche: l'editor riaperto subito dopo non deve vedere il testo vecchio.
+            noteCache.invalidate(note.getId());
+            return rows;
         });
     }
     /**
-     * Elimina una nota dal database.
+     * Sposta una nota nel cestino. La riga resta nel database e viene esclusa dalle viste della lista.
+     *
+     * @param note La nota da spostare nel cestino.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(Note note) {
+        return supply(() -> noteDao.setDeletedAt(note.getId(), System.currentTimeMillis()));
+    }
+    /**
+     * Ripristina una nota dal cestino (es. "Annulla" dopo lo swipe): si azzera solo il campo deletedAt.
+     *
+     * @param note La nota da ripristinare.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(Note note) {
+        return supply(() -> noteDao.setDeletedAt(note.getId(), null));
+    }
+    /**
+     * Sposta nel cestino una selezione di note in un'unica transazione: le liste si aggiornano una volta sola.
+     *
+     * @param noteIds Gli ID delle note.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(List<Integer> noteIds) {
+        List<Integer> ids = new ArrayList<>(noteIds);
+        return supply(() -> noteDao.setDeletedAtForSelection(ids, System.currentTimeMillis()));
+    }
+    /**
+     * Ripristina dal cestino una selezione di note in un'unica transazione, es. per annullare {@link #moveToTrash(List)}.
+     *
+     * @param noteIds Gli ID delle note.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(List<Integer> noteIds) {
+        List<Integer> ids = new ArrayList<>(noteIds);
+        return supply(() -> noteDao.setDeletedAtForSelection(ids, null));
+    }
+    /**
+     * Sposta una selezione di note in un quaderno in un'unica transazione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @param notebookId Il quaderno di destinazione, o null per nessun quaderno.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToNotebook(List<Integer> noteIds, Integer notebookId) {
+        List<Integer> ids = new ArrayList<>(noteIds);
+        return supply(() -> noteDao.setNotebookIdForSelection(ids, notebookId));
+    }
+    /**
+     * Esporta in chiaro una selezione di note in una directory scelta dall'utente, un file di testo per nota
+     * con il titolo, una riga vuota e il contenuto. Le note vengono lette a blocchi, una lettura per blocco.
+     *
+     * @param context Il contesto, per scrivere nella directory di destinazione.
+     * @param noteIds Gli ID delle note.
+     * @param treeUri L'URI della directory di destinazione (da {@code ACTION_OPEN_DOCUMENT_TREE}).
+     * @return Un future completato con il numero di note esportate; quelle che non possono essere scritte vengono saltate.
+     */
+    public CompletableFuture<Integer> exportNotes(Context context, List<Integer> noteIds, Uri treeUri) {
+        List<Integer> ids = new ArrayList<>(noteIds);
+        Context appContext = context.getApplicationContext();
+        return supply(() -> {
+            DocumentFile directory = DocumentFile.fromTreeUri(appContext, treeUri);
+            if (directory == null) {
+                return 0;
+            }
+            int exported = 0;
+            for (int from = 0; from < ids.size(); from += NoteDao.MAX_IDS_PER_QUERY) {
+                List<Note> notes = noteDao.getNotesByIdsSync(
+                        ids.subList(from, Math.min(ids.size(), from + NoteDao.MAX_IDS_PER_QUERY)));
+                for (Note note : notes) {
+                    bodyStore.decodeInPlace(note);
+                    if (exportNote(appContext, directory, note)) {
+                        exported++;
+                    }
+                }
+            }
+            return exported;
+        });
+    }
+
+    private static boolean exportNote(Context context, DocumentFile directory, Note note) {
+        String title = note.getTitle() == null || note.getTitle().trim().isEmpty() ? "Nota " + note.getId() : note.getTitle().trim();
+        DocumentFile target = directory.createFile("text/plain", title.replaceAll("[\\\\/:*?\"<>|]", "_"));
+        if (target == null) {
+            Log.e(TAG, "Impossibile creare il file esportato per la nota " + note.getId());
+            return false;
+        }
+        try (OutputStream outputStream = context.getContentResolver().openOutputStream(target.getUri())) {
+            if (outputStream == null) {
+                throw new IOException("Stream di destinazione non disponibile");
+            }
+            String content = note.getContent() != null ? note.getContent() : "";
+            outputStream.write((title + "\n\n" + content).getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Esportazione della nota " + note.getId() + " fallita: " + e.getMessage(), e);
+            target.delete(); // Nessun file parziale nella destinazione.
+            return false;
+        }
+    }
+    /**
+     * Restituisce un {@link LiveData} con le note nel cestino, dalla più recentemente eliminata.
+     *
+     * @return Un LiveData con la lista delle note nel cestino.
+     */
+    public LiveData<List<Note>> getTrashedNotes() {
+        return noteDao.getTrashedNotes();
+    }
+    /**
+     * Carica in background le note archiviate (vedi {@link NoteArchive}), tutte o quelle il cui titolo
+     * inizia con un prefisso. L'archivio viene collegato solo per la durata della lettura.
+     * Room non osserva l'archivio: il risultato non si aggiorna da solo.
+     *
+     * @param prefix Il prefisso del titolo, o null o vuoto per tutte le note archiviate.
+     * @return Un LiveData che riceverà la lista delle note archiviate, o null se la lettura fallisce.
+     */
+    public LiveData<List<Note>> loadArchivedNotes(String prefix) {
+        MutableLiveData<List<Note>> result = new MutableLiveData<>();
+        supply(() -> {
+            NoteArchive archive = database.getNoteArchive();
+            if (!archive.exists()) {
+                return Collections.<Note>emptyList(); // Nessuna nota è mai stata archiviata.
+            }
+            archive.attach();
+            try {
+                return prefix == null || prefix.isEmpty()
+                        ? archive.getArchivedNotes() : archive.searchByTitlePrefix(prefix);
+            } finally {
+                archive.detach();
+            }
+        }).whenComplete((notes, error) -> result.postValue(error != null ? null : notes));
+        return result;
+    }
+    /**
+     * Riporta in background una nota dall'archivio tra le note attive.
+     *
+     * @param note La nota archiviata.
+     * @return Un future completato al termine del ripristino, o in modo eccezionale se il ripristino fallisce.
+     */
+    public CompletableFuture<Void> restoreFromArchive(Note note) {
+        return supply(() -> {
+            NoteArchive archive = database.getNoteArchive();
+            archive.attach();
+            try {
+                archive.restore(note.getId());
+            } finally {
+                archive.detach();
+            }
+            return null;
+        });
+    }
+    /**
+     * Lista delle note attive di un quaderno (o di tutti), aggiornata riga per riga.
+     * Una modifica alla gerarchia dei quaderni cambia il filtro e provoca un caricamento completo.
+     */
+    private static final class NoteList extends LiveRowList<Note> {
+        private final Integer notebookId;
+        private final int sortOrder;
+        private Set<Integer> subtreeIds; // Quaderni del filtro, letti a ogni caricamento completo.
+
+        NoteList(NoteDatabase database, Integer notebookId, int sortOrder) {
+            super(database, ChangeLogEntry.ENTITY_NOTE, "notebook_closure");
+            this.notebookId = notebookId;
+            this.sortOrder = sortOrder;
+        }
+
+        @Override
+        protected void prepare() {
+            subtreeIds = notebookId == null ? null : new HashSet<>(database.notebookDao().getSubtreeIds(notebookId));
+        }
+
+        @Override
+        protected List<Note> loadAll() {
+            NotebookDao notebookDao = database.notebookDao();
+            NoteDao noteDao = database.noteDao();
+            switch (sortOrder) {
+                case SORT_BY_TITLE:
+                    return notebookId == null ? noteDao.getNotesByTitleSync() : notebookDao.getNotesInSubtreeByTitleSync(notebookId);
+                case SORT_BY_SIZE:
+                    return notebookId == null ? noteDao.getNotesBySizeSync() : notebookDao.getNotesInSubtreeBySizeSync(notebookId);
+                default:
+                    return notebookId == null ? noteDao.getNotesByModifiedSync() : notebookDao.getNotesInSubtreeSync(notebookId);
+            }
+        }
+
+        @Override
+        protected List<Note> loadByIds(List<Integer> ids) {
+            return database.noteDao().getNoteRowsByIdsSync(ids);
+        }
+
+        @Override
+        protected boolean matches(Note note) {
+            return note.getDeletedAt() == null
+                    && (subtreeIds == null || (note.getNotebookId() != null && subtreeIds.contains(note.getNotebookId())));
+        }
+
+        @Override
+        protected int getId(Note note) {
+            return note.getId();
+        }
+
+        @Override
+        protected Comparator<Note> comparator() {
+            switch (sortOrder) {
+                case SORT_BY_TITLE:
+                    return (a, b) -> compareNoCase(a.getTitle(), b.getTitle());
+                case SORT_BY_SIZE:
+                    return (a, b) -> Integer.compare(b.getContentLength(), a.getContentLength());
+                default:
+                    return (a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp());
+            }
+        }
+    }
+    /**
+     * Svuota il cestino: elimina definitivamente tutte le note e tutti i file nel cestino,
+     * compresi i file criptati sul filesystem.
+     *
+     * @param context Il contesto, per risolvere i percorsi dei file criptati.
+     */
+    public void emptyTrash(Context context) {
+        databaseExecutor.execute(() -> TrashPurgeWorker.purge(context, database, Long.MAX_VALUE));
+    }
+    /**
+     * Elimina definitivamente una nota dal database, con i suoi frammenti e le sue revisioni.
      * L'operazione viene eseguita in un thread separato gestito da {@code databaseExecutor}.
      *
      * @param note L'oggetto {@link Note} da eliminare.
+     * @return Un future completato con il numero di righe eliminate.
      */
-    public void delete(Note note) {
-        databaseExecutor.execute(() -> {
-            noteDao.delete(note);
+    public CompletableFuture<Integer> delete(Note note) {
+        return supply(() -> {
+            int rows = noteDao.delete(note);
+            noteCache.invalidate(note.getId());
+            return rows;
+        });
+    }
+    /**
+     * Esegue un'operazione sul database in un thread del pool e ne restituisce il risultato come future.
+     * Gli errori completano il future in modo eccezionale e vengono anche registrati nel log,
+     * così non vanno persi quando il chiamante ignora il risultato.
+     *
+     * @param operation L'operazione da eseguire.
+     * @return Un future completato con il risultato dell'operazione.
+     */
+    private <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(operation, databaseExecutor);
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Operazione sulle note fallita: " + error.getMessage(), error);
+            }
         });
+        return future;
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,19 @@
 package com.example.securenotesapp.viewmodel;
 
 import android.app.Application;
+import android.net.Uri;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import com.example.securenotesapp.model.Note;
+import com.example.securenotesapp.model.NoteDraft;
+import com.example.securenotesapp.model.NoteRevision;
+import com.example.securenotesapp.model.Notebook;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * {@code NoteViewModel} è un ViewModel che gestisce i dati delle note per la UI.
@@ -14,6 +23,11 @@ import java.util.List;
 public class NoteViewModel extends AndroidViewModel {
     private NoteRepository repository;// Dichiarazione del repository per l'accesso ai dati.
     private LiveData<List<Note>> allNotes;// LiveData che conterrà tutte le note, aggiornandosi automaticamente.
+    // Quaderno e ordinamento della lista delle note: ogni cambiamento sostituisce la query osservata.
+    private final MutableLiveData<ListQuery> listQuery =
+            new MutableLiveData<>(new ListQuery(null, NoteRepository.SORT_BY_MODIFIED));
+    private LiveData<List<Note>> notes;// Note del quaderno selezionato, o tutte le note.
+    private CompletableFuture<Long> editorDraftWrite;// Ultima scrittura della bozza dell'editor (vedi setEditorDraftWrite).
 
     /**
      * Costruttore per il {@code NoteViewModel}.
@@ -27,6 +41,9 @@ public class NoteViewModel extends AndroidViewModel {
         repository = new NoteRepository(application);
         // Ottiene il LiveData di tutte le note dal repository.
         allNotes = repository.getAllNotes();
+        // Cambiando quaderno o ordinamento la sorgente della lista viene sostituita, senza ricreare gli osservatori.
+        notes = Transformations.switchMap(listQuery,
+                query -> repository.getNotes(query.notebookId, query.sortOrder));
     }
 
     /**
@@ -39,6 +56,125 @@ public class NoteViewModel extends AndroidViewModel {
         return allNotes;
     }
 
+    /**
+     * Restituisce le note del quaderno selezionato con {@link #setNotebookFilter(Integer)},
+     * compresi i sotto-quaderni, o tutte le note se nessun quaderno è selezionato.
+     *
+     * @return Un {@link LiveData} di una lista di {@link Note}.
+     */
+    public LiveData<List<Note>> getNotes() {
+        return notes;
+    }
+
+    /**
+     * Limita la lista delle note a un quaderno e ai suoi sotto-quaderni.
+     *
+     * @param notebookId L'ID del quaderno, o null per mostrare tutte le note.
+     */
+    public void setNotebookFilter(Integer notebookId) {
+        listQuery.setValue(new ListQuery(notebookId, getSortOrder()));
+    }
+
+    /**
+     * Restituisce il quaderno a cui è limitata la lista delle note.
+     *
+     * @return L'ID del quaderno, o null se sono mostrate tutte le note.
+     */
+    public Integer getNotebookFilter() {
+        return listQuery.getValue().notebookId;
+    }
+
+    /**
+     * Cambia l'ordinamento della lista delle note.
+     *
+     * @param sortOrder Uno tra {@link NoteRepository#SORT_BY_MODIFIED}, {@link NoteRepository#SORT_BY_TITLE}
+     *                  e {@link NoteRepository#SORT_BY_SIZE}.
+     */
+    public void setSortOrder(int sortOrder) {
+        listQuery.setValue(new ListQuery(getNotebookFilter(), sortOrder));
+    }
+
+    /**
+     * Restituisce l'ordinamento corrente della lista delle note.
+     *
+     * @return L'ordinamento, una delle costanti {@code SORT_BY_*} di {@link NoteRepository}.
+     */
+    public int getSortOrder() {
+        return listQuery.getValue().sortOrder;
+    }
+
+    /**
+     * Restituisce le note modificate in un intervallo di tempo, dalla più recente.
+     *
+     * @param fromTime Inizio dell'intervallo in millisecondi (incluso).
+     * @param toTime Fine dell'intervallo in millisecondi (escluso).
+     * @return Un {@link LiveData} di una lista di {@link Note}.
+     */
+    public LiveData<List<Note>> getNotesInDateRange(long fromTime, long toTime) {
+        return repository.getNotesInDateRange(fromTime, toTime);
+    }
+
+    /**
+     * Restituisce le note il cui titolo inizia con un prefisso, ordinate per titolo.
+     *
+     * @param prefix Il prefisso del titolo, non vuoto.
+     * @return Un {@link LiveData} di una lista di {@link Note}.
+     */
+    public LiveData<List<Note>> getNotesByTitlePrefix(String prefix) {
+        return repository.getNotesByTitlePrefix(prefix);
+    }
+
+    /**
+     * Cerca in background le note il cui titolo inizia con un prefisso, ordinate per titolo.
+     *
+     * @param prefix Il prefisso del titolo, non vuoto.
+     * @param callback Riceve le note trovate, su un thread in background.
+     * @return Il {@link Future} della ricerca, per annullarla.
+     */
+    public Future<?> searchByTitlePrefix(String prefix, Consumer<List<Note>> callback) {
+        return repository.searchByTitlePrefix(prefix, callback);
+    }
+
+    /**
+     * Restituisce tutti i quaderni, ordinati per nome.
+     *
+     * @return Un {@link LiveData} con la lista dei quaderni.
+     */
+    public LiveData<List<Notebook>> getNotebooks() {
+        return repository.getNotebooks();
+    }
+
+    /**
+     * Crea un nuovo quaderno.
+     *
+     * @param name Il nome del quaderno.
+     * @param parentId L'ID del quaderno genitore, o null per il primo livello.
+     * @return Un {@link LiveData} che riceverà true se il quaderno è stato creato.
+     */
+    public LiveData<Boolean> createNotebook(String name, Integer parentId) {
+        return repository.createNotebook(new Notebook(name, parentId));
+    }
+
+    /**
+     * Sposta un quaderno, con i suoi sotto-quaderni, sotto un nuovo genitore.
+     *
+     * @param notebookId L'ID del quaderno da spostare.
+     * @param newParentId L'ID del nuovo genitore, o null per il primo livello.
+     * @return Un {@link LiveData} che riceverà true se lo spostamento è riuscito.
+     */
+    public LiveData<Boolean> moveNotebook(int notebookId, Integer newParentId) {
+        return repository.moveNotebook(notebookId, newParentId);
+    }
+
+    /**
+     * Elimina un quaderno e i suoi sotto-quaderni; le note vengono spostate nel quaderno genitore.
+     *
+     * @param notebook Il quaderno da eliminare.
+     */
+    public void deleteNotebook(Notebook notebook) {
+        repository.deleteNotebook(notebook);
+    }
+
     /**
      * Restituisce un {@link LiveData} di una singola nota, cercandola per ID.
      * Utile per visualizzare i dettagli di una nota specifica.
@@ -50,14 +186,123 @@ public class NoteViewModel extends AndroidViewModel {
         return repository.getNoteById(id);
     }
 
+    /**
+     * Salva in background lo stato dell'editor in una bozza.
+     *
+     * @param draftId L'ID della bozza, o 0 se l'editor non ne ha ancora una.
+     * @param noteId L'ID della nota modificata, o null per una nota nuova.
+     * @param title Il titolo.
+     * @param notebookId Il quaderno, o null.
+     * @param content Il contenuto completo.
+     * @return Un future completato con l'ID della bozza.
+     */
+    public CompletableFuture<Long> saveDraft(long draftId, Integer noteId, String title, Integer notebookId, String content) {
+        return repository.saveDraft(draftId, noteId, title, notebookId, content);
+    }
+
+    /**
+     * Conserva l'ultima scrittura della bozza dell'editor, che sopravvive alla ricreazione dell'Activity
+     * (es. una rotazione subito dopo una modifica): l'Activity ricreata la attende invece di ricaricare la nota.
+     *
+     * @param write Il future della scrittura, completato con l'ID della bozza.
+     */
+    public void setEditorDraftWrite(CompletableFuture<Long> write) {
+        editorDraftWrite = write;
+    }
+
+    /**
+     * @return L'ultima scrittura della bozza dell'editor, o null se l'editor non ne ha ancora avviate.
+     */
+    public CompletableFuture<Long> getEditorDraftWrite() {
+        return editorDraftWrite;
+    }
+
+    /**
+     * Carica in background una bozza con il contenuto ricostruito.
+     *
+     * @param draftId L'ID della bozza.
+     * @return Un {@link LiveData} che riceverà la bozza, o null se non esiste.
+     */
+    public LiveData<NoteDraft> loadDraft(long draftId) {
+        return repository.loadDraft(draftId);
+    }
+
+    /**
+     * Carica in background la bozza non salvata di una nota esistente.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un {@link LiveData} che riceverà la bozza, o null se la nota non ha bozze.
+     */
+    public LiveData<NoteDraft> loadDraftForNote(int noteId) {
+        return repository.loadDraftForNote(noteId);
+    }
+
+    /**
+     * Carica in background le intestazioni di tutte le bozze non salvate.
+     *
+     * @return Un {@link LiveData} che riceverà la lista delle intestazioni.
+     */
+    public LiveData<List<NoteDraft.Header>> loadDraftHeaders() {
+        return repository.loadDraftHeaders();
+    }
+
+    /**
+     * Elimina in background una bozza.
+     *
+     * @param draftId L'ID della bozza.
+     * @return Un future completato al termine dell'eliminazione.
+     */
+    public CompletableFuture<Void> deleteDraft(long draftId) {
+        return repository.deleteDraft(draftId);
+    }
+
+    /**
+     * Elimina in background tutte le bozze.
+     */
+    public void deleteAllDrafts() {
+        repository.deleteAllDrafts();
+    }
+
+    /**
+     * Carica in background una nota con il contenuto completo, decomprimendolo se necessario.
+     *
+     * @param id L'ID della nota.
+     * @return Un {@link LiveData} che riceverà la nota in chiaro, o null se non esiste.
+     */
+    public LiveData<Note> loadNote(int id) {
+        return repository.loadNote(id);
+    }
+
+    /**
+     * Restituisce la cronologia delle revisioni di una nota, dalla più recente.
+     *
+     * @param noteId L'ID della nota.
+     * @return Un {@link LiveData} con le intestazioni delle revisioni.
+     */
+    public LiveData<List<NoteRevision.Header>> getRevisions(int noteId) {
+        return repository.getRevisions(noteId);
+    }
+
+    /**
+     * Ricostruisce in background il contenuto di una revisione passata di una nota.
+     *
+     * @param noteId L'ID della nota.
+     * @param revision Il numero della revisione.
+     * @return Un {@link LiveData} che riceverà il contenuto della revisione.
+     */
+    public LiveData<String> loadRevisionContent(int noteId, int revision) {
+        return repository.loadRevisionContent(noteId, revision);
+    }
+
     /**
      * Inserisce una nuova nota nel database.
      * L'operazione viene gestita dal repository, tipicamente su un thread separato.
      *
      * @param note La {@link Note} da inserire.
+     * @return Un future completato con l'ID generato, o con l'errore se l'inserimento fallisce.
      */
-    public void insert(Note note) {
-        repository.insert(note);
+    public CompletableFuture<Integer> insert(Note note) {
+        return repository.insert(note);
     }
 
     /**
@@ -65,19 +310,130 @@ public class NoteViewModel extends AndroidViewModel {
      * L'operazione viene gestita dal repository, tipicamente su un thread separato.
      *
      * @param note La {@link Note} da aggiornare.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> update(Note note) {
+        return repository.update(note);
+    }
+    /**
+     * Sposta una nota nel cestino.
+     *
+     * @param note La {@link Note} da spostare nel cestino.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(Note note) {
+        return repository.moveToTrash(note);
+    }
+
+    /**
+     * Ripristina una nota dal cestino.
+     *
+     * @param note La {@link Note} da ripristinare.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(Note note) {
+        return repository.restoreFromTrash(note);
+    }
+
+    /**
+     * Sposta nel cestino una selezione di note in un'unica transazione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToTrash(List<Integer> noteIds) {
+        return repository.moveToTrash(noteIds);
+    }
+
+    /**
+     * Ripristina dal cestino una selezione di note in un'unica transazione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> restoreFromTrash(List<Integer> noteIds) {
+        return repository.restoreFromTrash(noteIds);
+    }
+
+    /**
+     * Sposta una selezione di note in un quaderno in un'unica transazione.
+     *
+     * @param noteIds Gli ID delle note.
+     * @param notebookId Il quaderno di destinazione, o null per nessun quaderno.
+     * @return Un future completato con il numero di righe aggiornate.
+     */
+    public CompletableFuture<Integer> moveToNotebook(List<Integer> noteIds, Integer notebookId) {
+        return repository.moveToNotebook(noteIds, notebookId);
+    }
+
+    /**
+     * Esporta in chiaro una selezione di note, un file di testo per nota, in una directory scelta dall'utente.
+     *
+     * @param noteIds Gli ID delle note.
+     * @param treeUri L'URI della directory di destinazione.
+     * @return Un future completato con il numero di note esportate.
+     */
+    public CompletableFuture<Integer> exportNotes(List<Integer> noteIds, Uri treeUri) {
+        return repository.exportNotes(getApplication(), noteIds, treeUri);
+    }
+
+    /**
+     * Restituisce le note nel cestino, dalla più recentemente eliminata.
+     *
+     * @return Un {@link LiveData} di una lista di {@link Note}.
      */
+    public LiveData<List<Note>> getTrashedNotes() {
+        return repository.getTrashedNotes();
+    }
 
-    public void update(Note note) {
-        repository.update(note);
+    /**
+     * Carica le note archiviate, tutte o quelle il cui titolo inizia con un prefisso.
+     *
+     * @param prefix Il prefisso del titolo, o null o vuoto per tutte.
+     * @return Un {@link LiveData} che riceverà la lista delle note archiviate, o null se la lettura fallisce.
+     */
+    public LiveData<List<Note>> loadArchivedNotes(String prefix) {
+        return repository.loadArchivedNotes(prefix);
     }
+
     /**
-     * Elimina una nota dal database.
+     * Riporta una nota dall'archivio tra le note attive.
+     *
+     * @param note La nota archiviata.
+     * @return Un future completato al termine del ripristino, o in modo eccezionale se il ripristino fallisce.
+     */
+    public CompletableFuture<Void> restoreFromArchive(Note note) {
+        return repository.restoreFromArchive(note);
+    }
+
+    /**
+     * Svuota il cestino, eliminando definitivamente note e file.
+     */
+    public void emptyTrash() {
+        repository.emptyTrash(getApplication());
+    }
+
+    /**
+     * Elimina definitivamente una nota dal database.
      * L'operazione viene gestita dal repository, tipicamente su un thread separato.
      *
      * @param note La {@link Note} da eliminare.
+     * @return Un future completato con il numero di righe eliminate.
+     */
+    public CompletableFuture<Integer> delete(Note note) {
+        return repository.delete(note);
+    }
+
+    /**
+     * Quaderno e ordinamento della lista delle note.
      */
+    private static final class ListQuery {
+        final Integer notebookId; // null = tutte le note
+        final int sortOrder;
 
-    public void delete(Note note) {
-        repository.delete(note);
+        ListQuery(Integer notebookId, int sortOrder) {
+            this.notebookId = notebookId;
+            this.sortOrder = sortOrder;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package com.example.securenotesapp.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test di {@link BackupContainer}: dati attorno ai confini dei segmenti, backup troncati e backup alterati.
+ */
+public class BackupContainerTest {
+
+    private static final int SEGMENT = BackupContainer.SEGMENT_SIZE;
+    // Intestazione: "SNBK", versione, dimensione del segmento, salt, prefisso del nonce.
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 16 + 7;
+    private static final int TAG_SIZE = 16;
+
+    private static final SecretKeySpec KEY = new SecretKeySpec(filled(32, (byte) 1), "AES");
+    private static final SecretKeySpec OTHER_KEY = new SecretKeySpec(filled(32, (byte) 2), "AES");
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static byte[] randomBytes(long seed, int length) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] seal(byte[] plain) throws Exception {
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        try (OutputStream out = BackupContainer.openOutputStream(sealed, KEY)) {
+            // Scritture di lunghezza variabile, per attraversare i confini dei segmenti in punti diversi.
+            Random random = new Random(plain.length);
+            int offset = 0;
+            while (offset < plain.length) {
+                int count = Math.min(plain.length - offset, 1 + random.nextInt(SEGMENT / 3));
+                out.write(plain, offset, count);
+                offset += count;
+            }
+        }
+        return sealed.toByteArray();
+    }
+
+    private static byte[] open(byte[] sealed, SecretKeySpec key) throws Exception {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = BackupContainer.openInputStream(new ByteArrayInputStream(sealed), key)) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                plain.write(buffer, 0, count);
+            }
+        }
+        return plain.toByteArray();
+    }
+
+    private static void assertRejected(byte[] sealed) throws Exception {
+        try {
+            open(sealed, KEY);
+            fail("Backup non valido accettato");
+        } catch (IOException expected) {
+            // Atteso: il contenitore non supera la verifica.
+        }
+    }
+
+    private static void assertRoundTrip(int length) throws Exception {
+        byte[] plain = randomBytes(length, length);
+        assertArrayEquals(plain, open(seal(plain), KEY));
+    }
+
+    @Test
+    public void roundTrip_aroundSegmentBoundaries() throws Exception {
+        for (int length : new int[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 2 * SEGMENT, 3 * SEGMENT + 17}) {
+            assertRoundTrip(length);
+        }
+    }
+
+    @Test
+    public void seal_sizeMatchesSegments() throws Exception {
+        // Un backup vuoto ha un solo segmento vuoto; un multiplo esatto del segmento termina con un segmento pieno.
+        assertEquals(HEADER_SIZE + TAG_SIZE, seal(new byte[0]).length);
+        assertEquals(HEADER_SIZE + SEGMENT + TAG_SIZE, seal(new byte[SEGMENT]).length);
+        assertEquals(HEADER_SIZE + SEGMENT + 1 + 2 * TAG_SIZE, seal(new byte[SEGMENT + 1]).length);
+    }
+
+    @Test
+    public void isContainer_detectsHeaderWithoutConsumingIt() throws Exception {
+        byte[] sealed = seal(randomBytes(1, 100));
+        PushbackInputStream in = new PushbackInputStream(new ByteArrayInputStream(sealed), 4);
+        assertTrue(BackupContainer.isContainer(in));
+        byte[] first = new byte[4];
+        assertEquals(4, in.read(first));
+        assertArrayEquals(Arrays.copyOf(sealed, 4), first);
+
+        assertFalse(BackupContainer.isContainer(new PushbackInputStream(new ByteArrayInputStream(randomBytes(2, 100)), 4)));
+        assertFalse(BackupContainer.isContainer(new PushbackInputStream(new ByteArrayInputStream(new byte[2]), 4)));
+    }
+
+    @Test
+    public void open_rejectsWrongPassword() throws Exception {
+        byte[] sealed = seal(randomBytes(3, 1000));
+        try {
+            open(sealed, OTHER_KEY);
+            fail("Password errata accettata");
+        } catch (IOException expected) {
+            // Atteso.
+        }
+    }
+
+    @Test
+    public void open_rejectsTruncationAtSegmentBoundary() throws Exception {
+        byte[] sealed = seal(randomBytes(4, 2 * SEGMENT + 100));
+        // Senza l'ultimo segmento il penultimo risulta l'ultimo, ma è stato cifrato come intermedio.
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE + 2 * (SEGMENT + TAG_SIZE)));
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE + SEGMENT + TAG_SIZE));
+    }
+
+    @Test
+    public void open_rejectsMissingFullLastSegment() throws Exception {
+        // Con un multiplo esatto del segmento il troncamento lascia un segmento pieno, letto come ultimo.
+        byte[] sealed = seal(randomBytes(5, 2 * SEGMENT));
+        assertEquals(HEADER_SIZE + 2 * (SEGMENT + TAG_SIZE), sealed.length);
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE + SEGMENT + TAG_SIZE));
+    }
+
+    @Test
+    public void open_rejectsTruncationInsideSegment() throws Exception {
+        byte[] sealed = seal(randomBytes(6, 2 * SEGMENT + 100));
+        assertRejected(Arrays.copyOf(sealed, sealed.length - 1));
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE + SEGMENT / 2));
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE + TAG_SIZE - 1));
+        assertRejected(Arrays.copyOf(sealed, HEADER_SIZE - 1));
+    }
+
+    @Test
+    public void open_rejectsAppendedData() throws Exception {
+        byte[] sealed = seal(randomBytes(7, SEGMENT + 100));
+        byte[] longer = Arrays.copyOf(sealed, sealed.length + TAG_SIZE);
+        assertRejected(longer);
+    }
+
+    @Test
+    public void open_rejectsModifiedBytes() throws Exception {
+        byte[] sealed = seal(randomBytes(8, 2 * SEGMENT + 100));
+        // Un byte nell'intestazione (salt), nel primo segmento, nel suo tag e nell'ultimo segmento.
+        for (int position : new int[]{HEADER_SIZE - 10, HEADER_SIZE + 5, HEADER_SIZE + SEGMENT + TAG_SIZE - 1,
+                sealed.length - 1}) {
+            byte[] tampered = sealed.clone();
+            tampered[position] ^= 0x01;
+            assertRejected(tampered);
+        }
+    }
+
+    @Test
+    public void open_rejectsSwappedSegments() throws Exception {
+        byte[] sealed = seal(randomBytes(9, 3 * SEGMENT));
+        int sealedSegment = SEGMENT + TAG_SIZE;
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, HEADER_SIZE, swapped, HEADER_SIZE + sealedSegment, sealedSegment);
+        System.arraycopy(sealed, HEADER_SIZE + sealedSegment, swapped, HEADER_SIZE, sealedSegment);
+        assertRejected(swapped);
+    }
+
+    @Test
+    public void open_rejectsSegmentFromAnotherBackup() throws Exception {
+        byte[] plain = randomBytes(10, 2 * SEGMENT);
+        byte[] first = seal(plain);
+        byte[] second = seal(plain);
+        // Stessa chiave e stessi dati, ma salt e nonce diversi: i segmenti non sono intercambiabili.
+        byte[] mixed = first.clone();
+        System.arraycopy(second, HEADER_SIZE, mixed, HEADER_SIZE, SEGMENT + TAG_SIZE);
+        assertRejected(mixed);
+    }
+
+    @Test
+    public void open_rejectsUnsupportedVersion() throws Exception {
+        byte[] sealed = seal(randomBytes(11, 10));
+        sealed[4] = (byte) (BackupContainer.VERSION + 1);
+        assertRejected(sealed);
+    }
+}
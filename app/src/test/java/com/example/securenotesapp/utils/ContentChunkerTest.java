@@ -0,0 +1,109 @@
+package com.example.securenotesapp.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test di {@link ContentChunker}: limiti dei frammenti e stabilità dei confini dopo una modifica.
+ */
+public class ContentChunkerTest {
+
+    private static String randomText(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(8) == 0) {
+                builder.append(random.nextBoolean() ? ' ' : '\n');
+            }
+        }
+        return builder.substring(0, length);
+    }
+
+    @Test
+    public void split_concatenationEqualsContent() {
+        String content = randomText(1, 500_000);
+        assertEquals(content, String.join("", ContentChunker.split(content)));
+    }
+
+    @Test
+    public void split_emptyAndShortContent() {
+        assertTrue(ContentChunker.split("").isEmpty());
+        String shortText = randomText(2, ContentChunker.MIN_CHUNK_LENGTH);
+        List<String> chunks = ContentChunker.split(shortText);
+        assertEquals(1, chunks.size());
+        assertEquals(shortText, chunks.get(0));
+    }
+
+    @Test
+    public void split_respectsMinimumAndMaximumLength() {
+        List<String> chunks = ContentChunker.split(randomText(3, 1_000_000));
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = chunks.get(i).length();
+            assertTrue("Frammento troppo lungo: " + length, length <= ContentChunker.MAX_CHUNK_LENGTH);
+            if (i < chunks.size() - 1) {
+                assertTrue("Frammento troppo corto: " + length, length >= ContentChunker.MIN_CHUNK_LENGTH);
+            }
+        }
+    }
+
+    @Test
+    public void split_repetitiveContentIsCutAtMaximumLength() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 3 * ContentChunker.MAX_CHUNK_LENGTH) {
+            builder.append('x');
+        }
+        List<String> chunks = ContentChunker.split(builder.toString());
+        assertEquals(3, chunks.size());
+        assertEquals(ContentChunker.MAX_CHUNK_LENGTH, chunks.get(0).length());
+    }
+
+    @Test
+    public void split_insertionChangesOnlyNearbyChunks() {
+        String before = randomText(4, 1_000_000);
+        int at = before.length() / 2;
+        String after = before.substring(0, at) + "testo inserito" + before.substring(at);
+
+        List<String> oldChunks = ContentChunker.split(before);
+        List<String> newChunks = ContentChunker.split(after);
+        Set<Long> oldHashes = new HashSet<>();
+        for (String chunk : oldChunks) {
+            oldHashes.add(ContentChunker.hash(chunk));
+        }
+        int changed = 0;
+        for (String chunk : newChunks) {
+            if (!oldHashes.contains(ContentChunker.hash(chunk))) {
+                changed++;
+            }
+        }
+        // L'inserimento tocca un frammento; al più i due vicini si riallineano.
+        assertTrue("Frammenti cambiati: " + changed + " su " + newChunks.size(), changed <= 2);
+    }
+
+    @Test
+    public void split_doesNotSplitSurrogatePairs() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 4 * ContentChunker.MAX_CHUNK_LENGTH) {
+            builder.append("😀");
+        }
+        String content = builder.toString();
+        List<String> chunks = ContentChunker.split(content);
+        for (String chunk : chunks) {
+            assertFalse(Character.isLowSurrogate(chunk.charAt(0)));
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+        }
+        assertEquals(content, String.join("", chunks));
+    }
+
+    @Test
+    public void hash_dependsOnContent() {
+        assertEquals(ContentChunker.hash("frammento"), ContentChunker.hash(new String("frammento")));
+        assertNotEquals(ContentChunker.hash("frammento"), ContentChunker.hash("frammentO"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.securenotesapp.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test di {@link PrefixRange}: limiti dell'intervallo secondo la collazione NOCASE di SQLite.
+ */
+public class PrefixRangeTest {
+
+    /**
+     * Confronto NOCASE di SQLite: le lettere A-Z vengono portate in minuscolo, poi si confrontano i code point.
+     */
+    private static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = fold(a.codePointAt(i));
+            int cb = fold(b.codePointAt(j));
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int fold(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Valuta {@code value >= lower AND value < upper} come farebbe SQLite.
+     */
+    private static boolean inRange(PrefixRange range, String value) {
+        return compareNoCase(value, range.lower) >= 0 && compareNoCase(value, range.upper) < 0;
+    }
+
+    @Test
+    public void of_lowercasesOnlyAsciiLetters() {
+        PrefixRange range = PrefixRange.of("RiÈ");
+        assertEquals("riÈ", range.lower);
+        assertEquals("riÉ", range.upper);
+    }
+
+    @Test
+    public void of_matchesPrefixIgnoringCase() {
+        PrefixRange range = PrefixRange.of("Nota");
+        assertTrue(inRange(range, "nota"));
+        assertTrue(inRange(range, "NOTA del giorno"));
+        assertFalse(inRange(range, "notb"));
+        assertFalse(inRange(range, "not"));
+        assertTrue(range.contains("NoTa 1"));
+        assertFalse(range.contains("Not"));
+    }
+
+    @Test
+    public void of_upperBoundSkipsUppercaseLetters() {
+        // Il successore di '@' è 'A', che NOCASE confronterebbe come 'a'.
+        PrefixRange range = PrefixRange.of("@");
+        assertEquals("[", range.upper);
+        assertTrue(inRange(range, "@nota"));
+        for (char c : "[\\]^_`".toCharArray()) {
+            assertFalse("Incluso: " + c, inRange(range, c + "x"));
+        }
+        assertFalse(inRange(range, "Alfa"));
+        assertFalse(inRange(range, "alfa"));
+    }
+
+    @Test
+    public void of_upperBoundAfterLowercaseZ() {
+        PrefixRange range = PrefixRange.of("Z");
+        assertEquals("z", range.lower);
+        assertEquals("{", range.upper);
+        assertTrue(inRange(range, "Zeta"));
+        assertFalse(inRange(range, "{x"));
+    }
+
+    @Test
+    public void of_upperBoundSkipsSurrogates() {
+        PrefixRange range = PrefixRange.of("a퟿");
+        assertEquals("a", range.upper);
+    }
+
+    @Test
+    public void of_incrementsSupplementaryCodePoints() {
+        PrefixRange range = PrefixRange.of("x😀");
+        assertEquals("x😁", range.upper);
+        assertTrue(inRange(range, "x😀 fine"));
+    }
+
+    @Test
+    public void of_lastCodePointCarriesToThePreviousCharacter() {
+        String max = new String(Character.toChars(Character.MAX_CODE_POINT));
+        assertEquals("b", PrefixRange.of("a" + max).upper);
+    }
+
+    @Test
+    public void isWithin_extendedPrefix() {
+        assertTrue(PrefixRange.of("Notabene").isWithin(PrefixRange.of("nota")));
+        assertFalse(PrefixRange.of("no").isWithin(PrefixRange.of("nota")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsEmptyPrefix() {
+        PrefixRange.of("");
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.securenotesapp.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test di {@link TextDelta}: calcolo, applicazione e serializzazione delle differenze.
+ */
+public class TextDeltaTest {
+
+    private static void assertRoundTrip(String before, String after) {
+        TextDelta delta = TextDelta.between(before, after);
+        assertEquals(after, delta.applyTo(before));
+        assertEquals(after, TextDelta.fromBytes(delta.toBytes()).applyTo(before));
+    }
+
+    @Test
+    public void between_storesOnlyTheChangedRange() {
+        TextDelta delta = TextDelta.between("il gatto dorme", "il cane dorme");
+        assertEquals(3, delta.getOffset());
+        assertEquals(5, delta.getRemovedLength());
+        assertEquals("cane", delta.getInserted());
+    }
+
+    @Test
+    public void between_identicalTextsIsEmpty() {
+        assertTrue(TextDelta.between("uguale", "uguale").isEmpty());
+        assertTrue(TextDelta.between("", "").isEmpty());
+    }
+
+    @Test
+    public void roundTrip_insertionsDeletionsAndReplacements() {
+        assertRoundTrip("", "nuovo testo");
+        assertRoundTrip("testo da cancellare", "");
+        assertRoundTrip("inizio fine", "inizio metà fine");
+        assertRoundTrip("inizio metà fine", "inizio fine");
+        assertRoundTrip("aaaa", "aaaaaa"); // Prefisso e suffisso si sovrappongono.
+        assertRoundTrip("abcabc", "abc");
+    }
+
+    @Test
+    public void between_doesNotSplitSurrogatePairs() {
+        // Due emoji con lo stesso surrogato alto: il prefisso comune finirebbe a metà della coppia.
+        String before = "x😀y";
+        String after = "x😁y";
+        TextDelta delta = TextDelta.between(before, after);
+        assertEquals(1, delta.getOffset());
+        assertEquals("😁", delta.getInserted());
+        assertRoundTrip(before, after);
+        // Stesso surrogato basso: il suffisso comune inizierebbe a metà della coppia.
+        assertRoundTrip("x😀y", "x🨀y");
+    }
+
+    @Test
+    public void shift_movesTheDeltaIntoTheFullText() {
+        TextDelta delta = TextDelta.between("bbb", "bxb").shift(3);
+        assertEquals("aaabxbccc", delta.applyTo("aaabbbccc"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void applyTo_rejectsATextThatIsTooShort() {
+        TextDelta.between("testo lungo", "testo lungo!").applyTo("corto");
+    }
+}